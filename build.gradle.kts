@@ -18,23 +18,11 @@ dependencies {
 	testImplementation("junit:junit:4.13.1")
 }
 
-// Task to generate JNI headers
-val headers = tasks.register<Exec>("headers") {
-	description = "Generates JNI .h header files"
-
-	val javaFile = file("src/main/java/lcms4j/xyz/LCMS4J.java")
-	val destFile = file("src/jni/cpp/lcms4j.h")
-
-	inputs.file(javaFile)
-	outputs.file(destFile)
-
-	commandLine(
-		"javah",
-		"-J-Dfile.encoding=UTF-8",
-		"-classpath", "src/main/java",
-		"-d", "src/jni/cpp",
-		"lcms4j.xyz.LCMS4J"
-	)
+// JNI headers are generated by the Java compiler itself (javah is no longer shipped since JDK 10)
+val jniHeadersDir = layout.buildDirectory.dir("generated/jni-headers")
+
+tasks.named<JavaCompile>("compileJava") {
+	options.headerOutputDirectory.set(jniHeadersDir)
 }
 
 data class CompilerConfig(
@@ -51,7 +39,7 @@ var libOS = ""
 // Task to compile JNI shared object
 val jni = tasks.register<Exec>("jni") {
 	description = "Compiles JNI shared object which will allow access to native libraries."
-	dependsOn(headers)
+	dependsOn(tasks.named("compileJava"))
 
 	val jdkHome = file(System.getProperty("java.home")).parentFile
 	println("JDK Home: $jdkHome")
@@ -93,6 +81,7 @@ val jni = tasks.register<Exec>("jni") {
 	val libPath = "$libDir/lcms4j$libSuffix"
 
 	inputs.dir("src/jni/cpp")
+	inputs.dir(jniHeadersDir)
 
 	doFirst {
 		file(libDir).mkdirs()
@@ -108,6 +97,7 @@ val jni = tasks.register<Exec>("jni") {
 		"-o", libPath,
 		compilerInclude,
 		compilerInclude2,
+		"-I${jniHeadersDir.get().asFile}", // Include path for generated JNI headers
 		"-I/usr/include/lcms2", // Include path for lcms2
 		"src/jni/cpp/jcms.cpp",
 		"-llcms2"
@@ -152,7 +142,6 @@ tasks.register<Zip>("zipsrc") {
 
 tasks.named<Delete>("clean") {
 	doLast {
-		delete(tasks.named("headers").get().outputs.files.singleFile)
 		delete(tasks.named("jni").get().outputs.files)
 	}
 }
@@ -174,3 +163,39 @@ tasks.jar {
 	// Set the duplicates strategy to EXCLUDE
 	duplicatesStrategy = DuplicatesStrategy.EXCLUDE
 }
+
+// java.lang.foreign backend (-Dlcms4j.backend=ffm) needs a JDK 22 toolchain, so it is only built on request
+// ("gradle build -Pffm"). It is compiled apart and packaged as a multi-release entry, so the library still runs
+// on Java 11 with the JNI backend
+if (project.hasProperty("ffm")) {
+	val java22: SourceSet by sourceSets.creating {
+		java.srcDir("src/main/java22")
+		compileClasspath += sourceSets.main.get().output
+	}
+
+	tasks.named<JavaCompile>("compileJava22Java") {
+		javaCompiler.set(javaToolchains.compilerFor { languageVersion.set(JavaLanguageVersion.of(22)) })
+		options.release.set(22)
+	}
+
+	// Runs the tests again with the java.lang.foreign backend: "gradle testFfm -Pffm"
+	tasks.register<Test>("testFfm") {
+		description = "Runs the tests calling LittleCMS through java.lang.foreign instead of JNI."
+		group = "verification"
+		testClassesDirs = sourceSets.test.get().output.classesDirs
+		classpath = sourceSets.test.get().runtimeClasspath + java22.output
+		javaLauncher.set(javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(22)) })
+		systemProperty("lcms4j.backend", "ffm")
+		jvmArgs("--enable-native-access=ALL-UNNAMED")
+	}
+
+	tasks.jar {
+		// Java 22 classes are only seen by Java 22 or later runtimes
+		into("META-INF/versions/22") {
+			from(java22.output)
+		}
+		manifest {
+			attributes("Multi-Release" to "true")
+		}
+	}
+}
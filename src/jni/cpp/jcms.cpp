@@ -1,9 +1,21 @@
 #include <jni.h>
 #include <lcms2.h>
-#include "lcms4j_xyz_LCMS4J.h"
+#include "lcms4j_xyz_JniBackend.h"
 
-JNIEXPORT jlong JNICALL Java_lcms4j_xyz_LCMS4J_cmsOpenProfileFromFile
-  (JNIEnv *env, jclass cls, jstring filename, jstring mode) {
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsCreateContext
+  (JNIEnv *env, jobject obj) {
+	cmsContext hContext = cmsCreateContext(NULL, NULL);
+	return (jlong)hContext;
+}
+
+JNIEXPORT void JNICALL Java_lcms4j_xyz_JniBackend_cmsDeleteContext
+  (JNIEnv *env, jobject obj, jlong hContext) {
+	cmsDeleteContext((cmsContext)hContext);
+	return;
+}
+
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsOpenProfileFromFile
+  (JNIEnv *env, jobject obj, jstring filename, jstring mode) {
 
 	const char *strFilename = env->GetStringUTFChars(filename, 0);
 	const char *strMode = env->GetStringUTFChars(mode, 0);
@@ -14,8 +26,20 @@ JNIEXPORT jlong JNICALL Java_lcms4j_xyz_LCMS4J_cmsOpenProfileFromFile
 	return (jlong)hProfile;
 }
 
-JNIEXPORT jlong JNICALL Java_lcms4j_xyz_LCMS4J_cmsOpenProfileFromMem
-  (JNIEnv *env, jclass cls, jbyteArray dataBuffer) {
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsOpenProfileFromFileTHR
+  (JNIEnv *env, jobject obj, jlong hContext, jstring filename, jstring mode) {
+
+	const char *strFilename = env->GetStringUTFChars(filename, 0);
+	const char *strMode = env->GetStringUTFChars(mode, 0);
+	cmsHPROFILE hProfile = cmsOpenProfileFromFileTHR((cmsContext)hContext, strFilename, strMode);
+	env->ReleaseStringUTFChars(filename, strFilename);
+	env->ReleaseStringUTFChars(mode, strMode);
+
+	return (jlong)hProfile;
+}
+
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsOpenProfileFromMem
+  (JNIEnv *env, jobject obj, jbyteArray dataBuffer) {
 	jbyte* data = env->GetByteArrayElements(dataBuffer, NULL);
 	jsize size = env->GetArrayLength(dataBuffer);
 	cmsHPROFILE hProfile = cmsOpenProfileFromMem((void*) data, (cmsUInt32Number) size);
@@ -24,21 +48,31 @@ JNIEXPORT jlong JNICALL Java_lcms4j_xyz_LCMS4J_cmsOpenProfileFromMem
 	return (jlong)hProfile;
 }
 
-JNIEXPORT jboolean JNICALL Java_lcms4j_xyz_LCMS4J_cmsCloseProfile
-  (JNIEnv *env, jclass cls, jlong hprofile) {
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsOpenProfileFromMemTHR
+  (JNIEnv *env, jobject obj, jlong hContext, jbyteArray dataBuffer) {
+	jbyte* data = env->GetByteArrayElements(dataBuffer, NULL);
+	jsize size = env->GetArrayLength(dataBuffer);
+	cmsHPROFILE hProfile = cmsOpenProfileFromMemTHR((cmsContext)hContext, (void*) data, (cmsUInt32Number) size);
+	env->ReleaseByteArrayElements(dataBuffer, data, JNI_ABORT);
+
+	return (jlong)hProfile;
+}
+
+JNIEXPORT jboolean JNICALL Java_lcms4j_xyz_JniBackend_cmsCloseProfile
+  (JNIEnv *env, jobject obj, jlong hprofile) {
 	cmsCloseProfile((void *)hprofile);
 	return true;
 }
 
-JNIEXPORT jstring JNICALL Java_lcms4j_xyz_LCMS4J_cmsGetProfileInfoASCII
-  (JNIEnv *env, jclass cls, jlong hprofile) {
+JNIEXPORT jstring JNICALL Java_lcms4j_xyz_JniBackend_cmsGetProfileInfoASCII
+  (JNIEnv *env, jobject obj, jlong hprofile) {
 	char textBuffer[512];
 	cmsGetProfileInfoASCII((void*)hprofile, cmsInfoDescription,"en","EN",textBuffer,512);
 	return env->NewStringUTF(textBuffer);
 }
 
-JNIEXPORT jbyteArray JNICALL Java_lcms4j_xyz_LCMS4J_cmsSaveProfileToMem
-  (JNIEnv *env, jclass cls, jlong hprofile) {
+JNIEXPORT jbyteArray JNICALL Java_lcms4j_xyz_JniBackend_cmsSaveProfileToMem
+  (JNIEnv *env, jobject obj, jlong hprofile) {
 
 	// Get required buffer size
 	cmsUInt32Number size = 0;
@@ -59,40 +93,124 @@ JNIEXPORT jbyteArray JNICALL Java_lcms4j_xyz_LCMS4J_cmsSaveProfileToMem
 	return dataBuffer;
 }
 
+JNIEXPORT jint JNICALL Java_lcms4j_xyz_JniBackend_cmsGetColorSpace
+  (JNIEnv *env, jobject obj, jlong hprofile) {
+	return (jint) cmsGetColorSpace((cmsHPROFILE) hprofile);
+}
+
+JNIEXPORT jint JNICALL Java_lcms4j_xyz_JniBackend_cmsGetDeviceClass
+  (JNIEnv *env, jobject obj, jlong hprofile) {
+	return (jint) cmsGetDeviceClass((cmsHPROFILE) hprofile);
+}
+
+JNIEXPORT jint JNICALL Java_lcms4j_xyz_JniBackend_cmsChannelsOf
+  (JNIEnv *env, jobject obj, jint colorSpace) {
+	return (jint) cmsChannelsOf((cmsColorSpaceSignature) colorSpace);
+}
 
-JNIEXPORT jlong JNICALL Java_lcms4j_xyz_LCMS4J_cmsCreateTransform
-  (JNIEnv *env, jclass cls, jlong hInputProfile, jint inputType, jlong hOutputProfile, jint outputType, jint intent, jint flags) {
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsCreateTransform
+  (JNIEnv *env, jobject obj, jlong hInputProfile, jint inputType, jlong hOutputProfile, jint outputType, jint intent, jint flags) {
 	cmsHTRANSFORM hTransform = cmsCreateTransform((void*)hInputProfile, inputType, (void*)hOutputProfile, outputType, intent, flags);
 	return (jlong)hTransform;
 }
 
-JNIEXPORT void JNICALL Java_lcms4j_xyz_LCMS4J_cmsDeleteTransform
-  (JNIEnv *env, jclass cls, jlong hTransform) {
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsCreateTransformTHR
+  (JNIEnv *env, jobject obj, jlong hContext, jlong hInputProfile, jint inputType, jlong hOutputProfile, jint outputType, jint intent, jint flags) {
+	cmsHTRANSFORM hTransform = cmsCreateTransformTHR((cmsContext)hContext, (void*)hInputProfile, inputType, (void*)hOutputProfile, outputType, intent, flags);
+	return (jlong)hTransform;
+}
+
+JNIEXPORT void JNICALL Java_lcms4j_xyz_JniBackend_cmsDeleteTransform
+  (JNIEnv *env, jobject obj, jlong hTransform) {
 	cmsDeleteTransform((void*)hTransform);
 	return;
 }
 
-JNIEXPORT void JNICALL Java_lcms4j_xyz_LCMS4J_cmsDoTransform
-  (JNIEnv *env, jclass cls, jlong hTransform, jbyteArray inputBuffer, jbyteArray outputBuffer, jint size) {
+JNIEXPORT void JNICALL Java_lcms4j_xyz_JniBackend_cmsDoTransform
+  (JNIEnv *env, jobject obj, jlong hTransform, jbyteArray inputBuffer, jbyteArray outputBuffer, jint size) {
 	jbyte* input = env->GetByteArrayElements(inputBuffer, NULL);
 	jbyte* output = env->GetByteArrayElements(outputBuffer, NULL);
 	cmsDoTransform((void*)hTransform, (const void*)input, (void*)output, size);
-	env->ReleaseByteArrayElements(inputBuffer, input, 0);
+	// Input data is never modified, so there is no need to copy it back
+	env->ReleaseByteArrayElements(inputBuffer, input, JNI_ABORT);
 	env->ReleaseByteArrayElements(outputBuffer, output, 0);
 	return;
 }
 
-JNIEXPORT jlong JNICALL Java_lcms4j_xyz_LCMS4J_cmsCreate_1sRGBProfile
-  (JNIEnv *env, jclass cls) {
+JNIEXPORT void JNICALL Java_lcms4j_xyz_JniBackend_cmsDoTransformDirect
+  (JNIEnv *env, jobject obj, jlong hTransform, jobject inputBuffer, jint inputOffset, jobject outputBuffer, jint outputOffset, jint size) {
+	jbyte* input = (jbyte*) env->GetDirectBufferAddress(inputBuffer);
+	jbyte* output = (jbyte*) env->GetDirectBufferAddress(outputBuffer);
+	if (input == NULL || output == NULL) {
+		return;
+	}
+	cmsDoTransform((void*)hTransform, (const void*)(input + inputOffset), (void*)(output + outputOffset), size);
+	return;
+}
+
+JNIEXPORT void JNICALL Java_lcms4j_xyz_JniBackend_cmsDoTransformArray
+  (JNIEnv *env, jobject obj, jlong hTransform, jobject inputBuffer, jint inputOffset, jobject outputBuffer, jint outputOffset, jint size) {
+	// No JNI calls are allowed until critical arrays are released
+	cmsUInt8Number* input = (cmsUInt8Number*) env->GetPrimitiveArrayCritical((jarray)inputBuffer, NULL);
+	if (input == NULL) {
+		return;
+	}
+	cmsUInt8Number* output = (cmsUInt8Number*) env->GetPrimitiveArrayCritical((jarray)outputBuffer, NULL);
+	if (output == NULL) {
+		env->ReleasePrimitiveArrayCritical((jarray)inputBuffer, input, JNI_ABORT);
+		return;
+	}
+	cmsDoTransform((void*)hTransform, (const void*)(input + inputOffset), (void*)(output + outputOffset), size);
+	env->ReleasePrimitiveArrayCritical((jarray)outputBuffer, output, 0);
+	env->ReleasePrimitiveArrayCritical((jarray)inputBuffer, input, JNI_ABORT);
+	return;
+}
+
+JNIEXPORT void JNICALL Java_lcms4j_xyz_JniBackend_cmsDoTransformLineStride
+  (JNIEnv *env, jobject obj, jlong hTransform, jobject inputBuffer, jint inputOffset, jobject outputBuffer, jint outputOffset,
+		  jint pixelsPerLine, jint lineCount, jint bytesPerLineIn, jint bytesPerLineOut, jint bytesPerPlaneIn, jint bytesPerPlaneOut) {
+	// No JNI calls are allowed until critical arrays are released
+	cmsUInt8Number* input = (cmsUInt8Number*) env->GetPrimitiveArrayCritical((jarray)inputBuffer, NULL);
+	if (input == NULL) {
+		return;
+	}
+	cmsUInt8Number* output = (cmsUInt8Number*) env->GetPrimitiveArrayCritical((jarray)outputBuffer, NULL);
+	if (output == NULL) {
+		env->ReleasePrimitiveArrayCritical((jarray)inputBuffer, input, JNI_ABORT);
+		return;
+	}
+	cmsDoTransformLineStride((void*)hTransform, (const void*)(input + inputOffset), (void*)(output + outputOffset),
+			pixelsPerLine, lineCount, bytesPerLineIn, bytesPerLineOut, bytesPerPlaneIn, bytesPerPlaneOut);
+	env->ReleasePrimitiveArrayCritical((jarray)outputBuffer, output, 0);
+	env->ReleasePrimitiveArrayCritical((jarray)inputBuffer, input, JNI_ABORT);
+	return;
+}
+
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsCreate_1sRGBProfile
+  (JNIEnv *env, jobject obj) {
 	cmsHPROFILE hProfile = cmsCreate_sRGBProfile();
 	return (jlong) hProfile;
 }
 
 
-JNIEXPORT jlong JNICALL Java_lcms4j_xyz_LCMS4J_cmsCreateGrayProfile
-  (JNIEnv *env, jclass cls, jdouble gamma) {
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsCreateGrayProfile
+  (JNIEnv *env, jobject obj, jdouble gamma) {
 	cmsToneCurve* GammaCurve = cmsBuildGamma(0, (cmsFloat64Number)gamma);
 	cmsHPROFILE hProfile = cmsCreateGrayProfile(cmsD50_xyY(), GammaCurve);
 	cmsFreeToneCurve(GammaCurve);
 	return (jlong) hProfile;
 }
+
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsCreate_1sRGBProfileTHR
+  (JNIEnv *env, jobject obj, jlong hContext) {
+	cmsHPROFILE hProfile = cmsCreate_sRGBProfileTHR((cmsContext)hContext);
+	return (jlong) hProfile;
+}
+
+JNIEXPORT jlong JNICALL Java_lcms4j_xyz_JniBackend_cmsCreateGrayProfileTHR
+  (JNIEnv *env, jobject obj, jlong hContext, jdouble gamma) {
+	cmsToneCurve* GammaCurve = cmsBuildGamma((cmsContext)hContext, (cmsFloat64Number)gamma);
+	cmsHPROFILE hProfile = cmsCreateGrayProfileTHR((cmsContext)hContext, cmsD50_xyY(), GammaCurve);
+	cmsFreeToneCurve(GammaCurve);
+	return (jlong) hProfile;
+}
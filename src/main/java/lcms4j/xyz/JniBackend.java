@@ -0,0 +1,91 @@
+package lcms4j.xyz;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Access to LittleCMS library through the LCMS4J JNI shared object (<code>src/jni/cpp/jcms.cpp</code>).<br><br>
+ * This is the default backend. The shared object is loaded, or extracted from classpath resources, the first time
+ * the backend is used.
+ */
+final class JniBackend implements NativeBackend {
+
+	// Ensure loading of shared object / dll for JNI access to LittleCMS library
+	static {
+		LCMS4J.loadNativeLibrary();
+	}
+
+	@Override
+	public String getName() {
+		return "jni";
+	}
+
+	@Override
+	public native long cmsCreateContext();
+
+	@Override
+	public native void cmsDeleteContext(long hContext);
+
+	@Override
+	public native long cmsOpenProfileFromFile(String filename, String mode);
+
+	@Override
+	public native long cmsOpenProfileFromFileTHR(long hContext, String filename, String mode);
+
+	@Override
+	public native long cmsOpenProfileFromMem(byte[] buffer);
+
+	@Override
+	public native long cmsOpenProfileFromMemTHR(long hContext, byte[] buffer);
+
+	@Override
+	public native boolean cmsCloseProfile(long hProfile);
+
+	@Override
+	public native String cmsGetProfileInfoASCII(long hProfile);
+
+	@Override
+	public native byte[] cmsSaveProfileToMem(long hProfile);
+
+	@Override
+	public native int cmsGetColorSpace(long hProfile);
+
+	@Override
+	public native int cmsGetDeviceClass(long hProfile);
+
+	@Override
+	public native int cmsChannelsOf(int colorSpace);
+
+	@Override
+	public native long cmsCreateTransform(long hInputProfile, int inputFormat, long hOutputProfile, int outputFormat, int intent, int flags);
+
+	@Override
+	public native long cmsCreateTransformTHR(long hContext, long hInputProfile, int inputFormat, long hOutputProfile, int outputFormat, int intent, int flags);
+
+	@Override
+	public native void cmsDeleteTransform(long hTransform);
+
+	@Override
+	public native void cmsDoTransform(long hTransform, byte[] inputBuffer, byte[] outputBuffer, int size);
+
+	@Override
+	public native void cmsDoTransformDirect(long hTransform, ByteBuffer inputBuffer, int inputOffset, ByteBuffer outputBuffer, int outputOffset, int size);
+
+	@Override
+	public native void cmsDoTransformArray(long hTransform, Object inputBuffer, int inputOffset, Object outputBuffer, int outputOffset, int size);
+
+	@Override
+	public native void cmsDoTransformLineStride(long hTransform, Object inputBuffer, int inputOffset, Object outputBuffer, int outputOffset,
+			int pixelsPerLine, int lineCount, int bytesPerLineIn, int bytesPerLineOut, int bytesPerPlaneIn, int bytesPerPlaneOut);
+
+	@Override
+	public native long cmsCreate_sRGBProfile();
+
+	@Override
+	public native long cmsCreate_sRGBProfileTHR(long hContext);
+
+	@Override
+	public native long cmsCreateGrayProfile(double gamma);
+
+	@Override
+	public native long cmsCreateGrayProfileTHR(long hContext, double gamma);
+}
@@ -6,6 +6,7 @@ import java.lang.Throwable;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -24,7 +25,8 @@ import java.util.jar.JarFile;
 /**
  * Utility class for the JavaCMS library.<br>
  * <br>
- * Defines common constants and provides JNI access to LittleCMS library.
+ * Defines common constants and provides access to LittleCMS library, through JNI or through
+ * <code>java.lang.foreign</code> (see {@link #BACKEND_PROPERTY}).
  * 
  * @author Enric Tordera
  */
@@ -36,9 +38,52 @@ public class LCMS4J {
 	private static final String NATIVE_LIBRARY_NAME = "lcms4j";
 	/** Path to temp dir where native libraries are extracted to during runtime */
 	private static String m_tempDir = null;
+	/** Name of system property for selecting the backend used to call LittleCMS library: <code>jni</code> (default) or <code>ffm</code>. */
+	public static final String BACKEND_PROPERTY = "lcms4j.backend";
+	/** Name of system property for the path or name of LittleCMS shared library loaded by the <code>ffm</code> backend. */
+	public static final String LIBRARY_PROPERTY = "lcms4j.lcms2.library";
+	/** Backend used to call LittleCMS library. */
+	private static final NativeBackend s_backend = createBackend();
 
-	// Ensure loading of shared object / dll for JNI access to LittleCMS library
-	static {
+	/**
+	 * Creates the backend selected with the <code>lcms4j.backend</code> system property. The <code>ffm</code> backend
+	 * calls LittleCMS through <code>java.lang.foreign</code> and needs Java 22 or later, but no JNI shared object.
+	 * 
+	 * @return Backend used to call LittleCMS library.
+	 * @throws UnsatisfiedLinkError If the backend is unknown or not available in this runtime.
+	 */
+	private static NativeBackend createBackend() {
+		String backend = System.getProperty(BACKEND_PROPERTY, "jni");
+		if (backend.equalsIgnoreCase("ffm")) {
+			try {
+				return (NativeBackend) Class.forName("lcms4j.xyz.FfmBackend").getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				Throwable cause = (e.getCause() == null ? e : e.getCause());
+				UnsatisfiedLinkError error = new UnsatisfiedLinkError("LCMS4J ffm backend requires Java 22 and LittleCMS library ("+cause+")");
+				error.initCause(e);
+				throw error;
+			}
+		}
+		if (!backend.equalsIgnoreCase("jni")) {
+			throw new UnsatisfiedLinkError("Unknown LCMS4J backend: "+backend);
+		}
+		return new JniBackend();
+	}
+
+	/**
+	 * Gets the name of the backend used to call LittleCMS library.
+	 * 
+	 * @return <code>jni</code> or <code>ffm</code>
+	 */
+	public static String getBackend() {
+		return s_backend.getName();
+	}
+
+	/**
+	 * Loads the shared object / dll for JNI access to LittleCMS library, extracting it from classpath resources
+	 * if it is not found in the library path.
+	 */
+	static void loadNativeLibrary() {
 		try {
 			// Try to load library in current library path
 			loadLibrary(NATIVE_LIBRARY_NAME);
@@ -285,6 +330,54 @@ public class LCMS4J {
 	public static String getVersion() {
 		return VERSION;
 	}
+
+	/**
+	 * Gets the number of bytes used by one pixel in a bitmap buffer format.
+	 * 
+	 * @param format Bitmap buffer type identifier (TYPE_*)
+	 * @return Number of bytes per pixel, including extra (alpha) channels
+	 */
+	public static int getPixelSize(int format) {
+		int bytes = format & 0x07;
+		if (bytes == 0) {
+			// Zero bytes stands for 64 bit double values
+			bytes = 8;
+		}
+		int channels = (format >> 3) & 0x0F;
+		int extra = (format >> 7) & 0x07;
+		return bytes * (channels + extra);
+	}
+	
+	/**
+	 * Gets the number of extra (alpha) channels of a bitmap buffer format.
+	 * 
+	 * @param format Bitmap buffer type identifier (TYPE_*)
+	 * @return Number of extra channels per pixel
+	 */
+	public static int getExtraChannels(int format) {
+		return (format >> 7) & 0x07;
+	}
+	
+	/**
+	 * Checks if a bitmap buffer format stores each channel in its own plane, instead of interleaving the
+	 * channels of every pixel.
+	 * 
+	 * @param format Bitmap buffer type identifier (TYPE_*)
+	 * @return <code>true</code> if channels are stored in separate planes
+	 */
+	public static boolean isPlanar(int format) {
+		return ((format >> 12) & 0x01) != 0;
+	}
+	
+	/**
+	 * Checks if color channels of a bitmap buffer format are premultiplied by alpha.
+	 * 
+	 * @param format Bitmap buffer type identifier (TYPE_*)
+	 * @return <code>true</code> if color channels are premultiplied by alpha
+	 */
+	public static boolean isPremultiplied(int format) {
+		return ((format >> 23) & 0x01) != 0;
+	}
 	
 
 	// ---------------------------------------------------------------
@@ -324,21 +417,29 @@ public class LCMS4J {
 	public static final int TYPE_BGR_16_PLANAR     = 267290;
 	public static final int TYPE_BGR_16_SE         = 265242;
 	public static final int TYPE_RGBA_8            = 262297;
+	public static final int TYPE_RGBA_8_PREMUL     = 8650905;
 	public static final int TYPE_RGBA_8_PLANAR     = 266393;
 	public static final int TYPE_RGBA_16           = 262298;
+	public static final int TYPE_RGBA_16_PREMUL    = 8650906;
 	public static final int TYPE_RGBA_16_PLANAR    = 266394;
 	public static final int TYPE_RGBA_16_SE        = 264346;
 	public static final int TYPE_ARGB_8            = 278681;
+	public static final int TYPE_ARGB_8_PREMUL     = 8667289;
 	public static final int TYPE_ARGB_8_PLANAR     = 282777;
 	public static final int TYPE_ARGB_16           = 278682;
+	public static final int TYPE_ARGB_16_PREMUL    = 8667290;
 	public static final int TYPE_ABGR_8            = 263321;
+	public static final int TYPE_ABGR_8_PREMUL     = 8651929;
 	public static final int TYPE_ABGR_8_PLANAR     = 267417;
 	public static final int TYPE_ABGR_16           = 263322;
+	public static final int TYPE_ABGR_16_PREMUL    = 8651930;
 	public static final int TYPE_ABGR_16_PLANAR    = 267418;
 	public static final int TYPE_ABGR_16_SE        = 265370;
 	public static final int TYPE_BGRA_8            = 279705;
+	public static final int TYPE_BGRA_8_PREMUL     = 8668313;
 	public static final int TYPE_BGRA_8_PLANAR     = 283801;
 	public static final int TYPE_BGRA_16           = 279706;
+	public static final int TYPE_BGRA_16_PREMUL    = 8668314;
 	public static final int TYPE_BGRA_16_SE        = 281754;
 	public static final int TYPE_CMY_8             = 327705;
 	public static final int TYPE_CMY_8_PLANAR      = 331801;
@@ -499,12 +600,34 @@ public class LCMS4J {
 	/** create prelinearization tables if possible */
 	public static final int CMSFLAGS_CLUT_PRE_LINEARIZATION = 0x0010;     
 	public static final int CMSFLAGS_NODEFAULTRESOURCEDEF = 0x01000000; 	
+	/** Copy extra channels (alpha) from input to output buffers */
+	public static final int CMSFLAGS_COPY_ALPHA = 0x04000000;
 		
 	
 	// ---------------------------------------------------------------
-	// LittleCMS library native access functions
+	// LittleCMS library access functions
 	// ---------------------------------------------------------------
 	
+	/**
+	 * Creates a new LittleCMS context. Each context has its own memory allocators, plug-ins and error
+	 * handling, isolated from the global context and from any other context.
+	 * 
+	 * @return A handle to a context object on success, <code>0</code> on error.
+	 */
+	public static long cmsCreateContext() {
+		return s_backend.cmsCreateContext();
+	}
+	
+	/**
+	 * Frees a context and all resources allocated by it. Profiles and transforms created inside the
+	 * context should be freed before.
+	 * 
+	 * @param hContext Handle to the context object to be freed.
+	 */
+	public static void cmsDeleteContext(long hContext) {
+		s_backend.cmsDeleteContext(hContext);
+	}
+	
 	/**
 	 * Opens a file-based ICC profile returning a handle to it.
 	 * 
@@ -512,7 +635,21 @@ public class LCMS4J {
 	 * @param mode "r" for normal operation, "w" for profile creation
 	 * @return A handle to an ICC profile object on success, <code>0</code> on error.
 	 */
-	public static native long cmsOpenProfileFromFile(String filename, String mode);
+	public static long cmsOpenProfileFromFile(String filename, String mode) {
+		return s_backend.cmsOpenProfileFromFile(filename, mode);
+	}
+
+	/**
+	 * Opens a file-based ICC profile inside a given context, returning a handle to it.
+	 * 
+	 * @param hContext Handle to a context object, or <code>0</code> for the global context
+	 * @param filename File name with full path
+	 * @param mode "r" for normal operation, "w" for profile creation
+	 * @return A handle to an ICC profile object on success, <code>0</code> on error.
+	 */
+	public static long cmsOpenProfileFromFileTHR(long hContext, String filename, String mode) {
+		return s_backend.cmsOpenProfileFromFileTHR(hContext, filename, mode);
+	}
 	
 	/**
 	 * Opens an ICC profile which is entirely contained in a memory block, returning
@@ -521,7 +658,21 @@ public class LCMS4J {
 	 * @param buffer Data buffer containing the profile
 	 * @return A handle to an ICC profile object on success, <code>0</code> on error.
 	 */
-	public static native long cmsOpenProfileFromMem(byte[] buffer);
+	public static long cmsOpenProfileFromMem(byte[] buffer) {
+		return s_backend.cmsOpenProfileFromMem(buffer);
+	}
+
+	/**
+	 * Opens an ICC profile which is entirely contained in a memory block inside a given context,
+	 * returning a handle to it.
+	 * 
+	 * @param hContext Handle to a context object, or <code>0</code> for the global context
+	 * @param buffer Data buffer containing the profile
+	 * @return A handle to an ICC profile object on success, <code>0</code> on error.
+	 */
+	public static long cmsOpenProfileFromMemTHR(long hContext, byte[] buffer) {
+		return s_backend.cmsOpenProfileFromMemTHR(hContext, buffer);
+	}
 	
 	/**
 	 * Closes a profile handle and frees any associated resource. Can return error when creating disk 
@@ -530,7 +681,9 @@ public class LCMS4J {
 	 * @param hProfile Handle to a profile object.
 	 * @return <code>true</code> on success, <code>false</code> on error
 	 */
-	public static native boolean cmsCloseProfile(long hProfile);
+	public static boolean cmsCloseProfile(long hProfile) {
+		return s_backend.cmsCloseProfile(hProfile);
+	}
 	
 	
 	/**
@@ -539,7 +692,9 @@ public class LCMS4J {
 	 * @param hProfile Handle to a profile object
 	 * @return String description of the ICC Profile
 	 */
-	public static native String cmsGetProfileInfoASCII(long hProfile);
+	public static String cmsGetProfileInfoASCII(long hProfile) {
+		return s_backend.cmsGetProfileInfoASCII(hProfile);
+	}
 	
 	/**
 	 * Saves contents of the profile to a memory buffer.
@@ -547,7 +702,39 @@ public class LCMS4J {
 	 * @param hProfile Handle to a profile object
 	 * @return Memory buffer with profile contents. It will be empty on error.
 	 */
-	public static native byte[] cmsSaveProfileToMem(long hProfile);
+	public static byte[] cmsSaveProfileToMem(long hProfile) {
+		return s_backend.cmsSaveProfileToMem(hProfile);
+	}
+	
+	/**
+	 * Gets the color space of a profile.
+	 * 
+	 * @param hProfile Handle to a profile object
+	 * @return ICC color space signature of the profile (for instance, <code>ICC_Profile.icSigRgbData</code>)
+	 */
+	public static int cmsGetColorSpace(long hProfile) {
+		return s_backend.cmsGetColorSpace(hProfile);
+	}
+	
+	/**
+	 * Gets the device class of a profile.
+	 * 
+	 * @param hProfile Handle to a profile object
+	 * @return ICC device class signature of the profile (for instance, <code>ICC_Profile.icSigDisplayClass</code>)
+	 */
+	public static int cmsGetDeviceClass(long hProfile) {
+		return s_backend.cmsGetDeviceClass(hProfile);
+	}
+	
+	/**
+	 * Gets the number of channels of a color space.
+	 * 
+	 * @param colorSpace ICC color space signature
+	 * @return Number of channels of the color space
+	 */
+	public static int cmsChannelsOf(int colorSpace) {
+		return s_backend.cmsChannelsOf(colorSpace);
+	}
 	
 	/**
 	 * Creates a color transform for translating bitmaps.
@@ -560,14 +747,34 @@ public class LCMS4J {
 	 * @param flags Bit-field constants for the conversion (CMSFLAGS_*)
 	 * @return A handle to a transform object on success, <code>0</code> on error.
 	 */
-	public static native long cmsCreateTransform(long hInputProfile, int inputFormat, long hOutputProfile, int outputFormat, int intent, int flags);
+	public static long cmsCreateTransform(long hInputProfile, int inputFormat, long hOutputProfile, int outputFormat, int intent, int flags) {
+		return s_backend.cmsCreateTransform(hInputProfile, inputFormat, hOutputProfile, outputFormat, intent, flags);
+	}
+
+	/**
+	 * Creates a color transform for translating bitmaps inside a given context.
+	 * 
+	 * @param hContext Handle to a context object, or <code>0</code> for the global context
+	 * @param hInputProfile Handle to a profile object capable to work in input direction
+	 * @param inputFormat Input bitmap buffer type identifier (TYPE_*)
+	 * @param hOutputProfile Handle to a profile object capable to work in output direction
+	 * @param outputFormat Output bitmap buffer type identifier (TYPE_*)
+	 * @param intent Intent identifier (INTENT_*)
+	 * @param flags Bit-field constants for the conversion (CMSFLAGS_*)
+	 * @return A handle to a transform object on success, <code>0</code> on error.
+	 */
+	public static long cmsCreateTransformTHR(long hContext, long hInputProfile, int inputFormat, long hOutputProfile, int outputFormat, int intent, int flags) {
+		return s_backend.cmsCreateTransformTHR(hContext, hInputProfile, inputFormat, hOutputProfile, outputFormat, intent, flags);
+	}
 	
 	/**
 	 * Closes a transform handle and frees any associated memory. This function does NOT free the
 	 * profiles used to create the transform.
 	 * @param hTransform Handle to the transform object to be freed.
 	 */
-	public static native void cmsDeleteTransform(long hTransform);
+	public static void cmsDeleteTransform(long hTransform) {
+		s_backend.cmsDeleteTransform(hTransform);
+	}
 	
 	/**
 	 * Translates bitmaps according parameters of a predefined color transform.
@@ -576,13 +783,80 @@ public class LCMS4J {
 	 * @param outputBuffer Output bitmap data buffer
 	 * @param size Number of PIXELS to be transformed
 	 */
-	public static native void cmsDoTransform(long hTransform, byte[] inputBuffer, byte[] outputBuffer, int size);
+	public static void cmsDoTransform(long hTransform, byte[] inputBuffer, byte[] outputBuffer, int size) {
+		s_backend.cmsDoTransform(hTransform, inputBuffer, outputBuffer, size);
+	}
+
+	/**
+	 * Translates bitmaps stored in direct buffers according parameters of a predefined color transform.<br>
+	 * Pixel data is accessed in place through the native address of the buffers, so no copies are made.
+	 * 
+	 * @param hTransform Handle to transform
+	 * @param inputBuffer Direct buffer with input bitmap data
+	 * @param inputOffset Offset (in bytes) of the first input pixel inside <code>inputBuffer</code>
+	 * @param outputBuffer Direct buffer for output bitmap data
+	 * @param outputOffset Offset (in bytes) of the first output pixel inside <code>outputBuffer</code>
+	 * @param size Number of PIXELS to be transformed
+	 */
+	public static void cmsDoTransformDirect(long hTransform, ByteBuffer inputBuffer, int inputOffset, ByteBuffer outputBuffer, int outputOffset, int size) {
+		s_backend.cmsDoTransformDirect(hTransform, inputBuffer, inputOffset, outputBuffer, outputOffset, size);
+	}
+
+	/**
+	 * Translates a region of bitmap arrays according parameters of a predefined color transform.<br>
+	 * Arrays are pinned while the transform is running instead of being copied. Input array is never
+	 * copied back, as its contents are not modified.
+	 * 
+	 * @param hTransform Handle to transform
+	 * @param inputBuffer Input bitmap data buffer (a primitive array: <code>byte[]</code>, <code>short[]</code>, <code>float[]</code>...)
+	 * @param inputOffset Offset (in bytes) of the first input pixel inside <code>inputBuffer</code>
+	 * @param outputBuffer Output bitmap data buffer (a primitive array: <code>byte[]</code>, <code>short[]</code>, <code>float[]</code>...)
+	 * @param outputOffset Offset (in bytes) of the first output pixel inside <code>outputBuffer</code>
+	 * @param size Number of PIXELS to be transformed
+	 */
+	public static void cmsDoTransformArray(long hTransform, Object inputBuffer, int inputOffset, Object outputBuffer, int outputOffset, int size) {
+		s_backend.cmsDoTransformArray(hTransform, inputBuffer, inputOffset, outputBuffer, outputOffset, size);
+	}
+
+	/**
+	 * Translates bitmaps with padded lines (or regions of bigger bitmaps) according parameters of a
+	 * predefined color transform. Arrays are pinned while the transform is running instead of being copied.
+	 * 
+	 * @param hTransform Handle to transform
+	 * @param inputBuffer Input bitmap data buffer (a primitive array: <code>byte[]</code>, <code>short[]</code>, <code>float[]</code>...)
+	 * @param inputOffset Offset (in bytes) of the first input pixel inside <code>inputBuffer</code>
+	 * @param outputBuffer Output bitmap data buffer (a primitive array: <code>byte[]</code>, <code>short[]</code>, <code>float[]</code>...)
+	 * @param outputOffset Offset (in bytes) of the first output pixel inside <code>outputBuffer</code>
+	 * @param pixelsPerLine Number of PIXELS to be transformed on each line
+	 * @param lineCount Number of lines to be transformed
+	 * @param bytesPerLineIn Distance (in bytes) between the start of two consecutive input lines
+	 * @param bytesPerLineOut Distance (in bytes) between the start of two consecutive output lines
+	 * @param bytesPerPlaneIn Distance (in bytes) between input planes (only for planar formats)
+	 * @param bytesPerPlaneOut Distance (in bytes) between output planes (only for planar formats)
+	 */
+	public static void cmsDoTransformLineStride(long hTransform, Object inputBuffer, int inputOffset, Object outputBuffer, int outputOffset, 
+			int pixelsPerLine, int lineCount, int bytesPerLineIn, int bytesPerLineOut, int bytesPerPlaneIn, int bytesPerPlaneOut) {
+		s_backend.cmsDoTransformLineStride(hTransform, inputBuffer, inputOffset, outputBuffer, outputOffset,
+				pixelsPerLine, lineCount, bytesPerLineIn, bytesPerLineOut, bytesPerPlaneIn, bytesPerPlaneOut);
+	}
 	
 	/**
 	 * Create an ICC virtual profile for sRGB space.
 	 * @return A handle to an ICC profile object on success, <code>0</code> on error
 	 */
-	public static native long cmsCreate_sRGBProfile();
+	public static long cmsCreate_sRGBProfile() {
+		return s_backend.cmsCreate_sRGBProfile();
+	}
+
+	/**
+	 * Create an ICC virtual profile for sRGB space inside a given context.
+	 * 
+	 * @param hContext Handle to a context object, or <code>0</code> for the global context
+	 * @return A handle to an ICC profile object on success, <code>0</code> on error
+	 */
+	public static long cmsCreate_sRGBProfileTHR(long hContext) {
+		return s_backend.cmsCreate_sRGBProfileTHR(hContext);
+	}
 	
 	/**
 	 * Creates a gray profile based on D50 white point and custom gamma.
@@ -590,5 +864,18 @@ public class LCMS4J {
 	 * @param gamma Gamma value that defines the transfer function of the gray profile.
 	 * @return A handle to an ICC profile object on success, <code>0</code> on error
 	 */
-	public static native long cmsCreateGrayProfile(double gamma);
+	public static long cmsCreateGrayProfile(double gamma) {
+		return s_backend.cmsCreateGrayProfile(gamma);
+	}
+
+	/**
+	 * Creates a gray profile based on D50 white point and custom gamma inside a given context.
+	 * 
+	 * @param hContext Handle to a context object, or <code>0</code> for the global context
+	 * @param gamma Gamma value that defines the transfer function of the gray profile.
+	 * @return A handle to an ICC profile object on success, <code>0</code> on error
+	 */
+	public static long cmsCreateGrayProfileTHR(long hContext, double gamma) {
+		return s_backend.cmsCreateGrayProfileTHR(hContext, gamma);
+	}
 }
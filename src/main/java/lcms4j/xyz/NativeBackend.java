@@ -0,0 +1,87 @@
+package lcms4j.xyz;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Access to the functions of LittleCMS library used by LCMS4J.<br><br>
+ * Each method has the same semantics as the {@link LCMS4J} method with the same name, which dispatches to the
+ * backend selected with the <code>lcms4j.backend</code> system property.
+ */
+interface NativeBackend {
+
+	/**
+	 * Gets the name of the backend, as given in the <code>lcms4j.backend</code> system property.
+	 * @return Backend name.
+	 */
+	String getName();
+
+	/** @see LCMS4J#cmsCreateContext() */
+	long cmsCreateContext();
+
+	/** @see LCMS4J#cmsDeleteContext(long) */
+	void cmsDeleteContext(long hContext);
+
+	/** @see LCMS4J#cmsOpenProfileFromFile(String, String) */
+	long cmsOpenProfileFromFile(String filename, String mode);
+
+	/** @see LCMS4J#cmsOpenProfileFromFileTHR(long, String, String) */
+	long cmsOpenProfileFromFileTHR(long hContext, String filename, String mode);
+
+	/** @see LCMS4J#cmsOpenProfileFromMem(byte[]) */
+	long cmsOpenProfileFromMem(byte[] buffer);
+
+	/** @see LCMS4J#cmsOpenProfileFromMemTHR(long, byte[]) */
+	long cmsOpenProfileFromMemTHR(long hContext, byte[] buffer);
+
+	/** @see LCMS4J#cmsCloseProfile(long) */
+	boolean cmsCloseProfile(long hProfile);
+
+	/** @see LCMS4J#cmsGetProfileInfoASCII(long) */
+	String cmsGetProfileInfoASCII(long hProfile);
+
+	/** @see LCMS4J#cmsSaveProfileToMem(long) */
+	byte[] cmsSaveProfileToMem(long hProfile);
+
+	/** @see LCMS4J#cmsGetColorSpace(long) */
+	int cmsGetColorSpace(long hProfile);
+
+	/** @see LCMS4J#cmsGetDeviceClass(long) */
+	int cmsGetDeviceClass(long hProfile);
+
+	/** @see LCMS4J#cmsChannelsOf(int) */
+	int cmsChannelsOf(int colorSpace);
+
+	/** @see LCMS4J#cmsCreateTransform(long, int, long, int, int, int) */
+	long cmsCreateTransform(long hInputProfile, int inputFormat, long hOutputProfile, int outputFormat, int intent, int flags);
+
+	/** @see LCMS4J#cmsCreateTransformTHR(long, long, int, long, int, int, int) */
+	long cmsCreateTransformTHR(long hContext, long hInputProfile, int inputFormat, long hOutputProfile, int outputFormat, int intent, int flags);
+
+	/** @see LCMS4J#cmsDeleteTransform(long) */
+	void cmsDeleteTransform(long hTransform);
+
+	/** @see LCMS4J#cmsDoTransform(long, byte[], byte[], int) */
+	void cmsDoTransform(long hTransform, byte[] inputBuffer, byte[] outputBuffer, int size);
+
+	/** @see LCMS4J#cmsDoTransformDirect(long, ByteBuffer, int, ByteBuffer, int, int) */
+	void cmsDoTransformDirect(long hTransform, ByteBuffer inputBuffer, int inputOffset, ByteBuffer outputBuffer, int outputOffset, int size);
+
+	/** @see LCMS4J#cmsDoTransformArray(long, Object, int, Object, int, int) */
+	void cmsDoTransformArray(long hTransform, Object inputBuffer, int inputOffset, Object outputBuffer, int outputOffset, int size);
+
+	/** @see LCMS4J#cmsDoTransformLineStride(long, Object, int, Object, int, int, int, int, int, int, int) */
+	void cmsDoTransformLineStride(long hTransform, Object inputBuffer, int inputOffset, Object outputBuffer, int outputOffset,
+			int pixelsPerLine, int lineCount, int bytesPerLineIn, int bytesPerLineOut, int bytesPerPlaneIn, int bytesPerPlaneOut);
+
+	/** @see LCMS4J#cmsCreate_sRGBProfile() */
+	long cmsCreate_sRGBProfile();
+
+	/** @see LCMS4J#cmsCreate_sRGBProfileTHR(long) */
+	long cmsCreate_sRGBProfileTHR(long hContext);
+
+	/** @see LCMS4J#cmsCreateGrayProfile(double) */
+	long cmsCreateGrayProfile(double gamma);
+
+	/** @see LCMS4J#cmsCreateGrayProfileTHR(long, double) */
+	long cmsCreateGrayProfileTHR(long hContext, double gamma);
+}
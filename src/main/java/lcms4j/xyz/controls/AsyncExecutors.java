@@ -0,0 +1,80 @@
+package lcms4j.xyz.controls;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executors for asynchronous color transformations.<br><br>
+ * File reads and writes run on virtual threads when the Java runtime supports them (Java 21 or later), and on
+ * cached daemon threads otherwise. Native color work runs on a bounded pool of platform threads, one per available
+ * processor, so long JNI calls never hold the carrier threads of virtual threads.
+ */
+final class AsyncExecutors {
+	/** Executor for file reads and writes */
+	private static final ExecutorService s_io = createIoExecutor();
+	/** Executor for native color work */
+	private static final ExecutorService s_native = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+			new DaemonThreadFactory("lcms4j-transform-"));
+
+	/**
+	 * Static utility class, not to be instantiated.
+	 */
+	private AsyncExecutors() {
+	}
+
+	/**
+	 * Gets the executor for file reads and writes.
+	 *
+	 * @return Executor running each task on a new virtual thread, or on a cached daemon thread if virtual threads
+	 *         are not supported
+	 */
+	static ExecutorService io() {
+		return s_io;
+	}
+
+	/**
+	 * Gets the executor for native color work.
+	 *
+	 * @return Executor with a bounded pool of platform daemon threads
+	 */
+	static ExecutorService nativeWork() {
+		return s_native;
+	}
+
+	/**
+	 * Creates the executor for file reads and writes. Virtual threads are looked up by reflection, as this library
+	 * is built for Java 11.
+	 *
+	 * @return Executor for file reads and writes
+	 */
+	private static ExecutorService createIoExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newCachedThreadPool(new DaemonThreadFactory("lcms4j-io-"));
+		}
+	}
+
+	/**
+	 * Factory of named daemon threads, which do not prevent the JVM from exiting.
+	 */
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		/** Prefix of thread names */
+		private final String m_prefix;
+		/** Number of created threads */
+		private final AtomicInteger m_count = new AtomicInteger();
+
+		private DaemonThreadFactory(String prefix) {
+			m_prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, m_prefix + m_count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package lcms4j.xyz.controls;
+
+/**
+ * Options of a batch color transformation performed by
+ * {@link IccTransformer#transformAll(java.nio.file.Path, java.nio.file.Path, BatchOptions) IccTransformer.transformAll()}.<br><br>
+ * A batch runs decoding, color transformation and encoding of images as separate stages, each one with its own
+ * threads. Stages are connected by bounded queues, which limit the number of decoded and transformed images
+ * kept in memory while waiting for the next stage.
+ */
+public class BatchOptions {
+	/** Default number of threads for decoding source images */
+	public static final int DEFAULT_DECODE_THREADS = 2;
+	/** Default number of threads for encoding transformed images */
+	public static final int DEFAULT_ENCODE_THREADS = 2;
+	/** Default capacity of the queues between stages (images) */
+	public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+	/** Number of threads for decoding source images */
+	private int m_decodeThreads = DEFAULT_DECODE_THREADS;
+	/** Number of threads for color transformation */
+	private int m_transformThreads = Runtime.getRuntime().availableProcessors();
+	/** Number of threads for encoding transformed images */
+	private int m_encodeThreads = DEFAULT_ENCODE_THREADS;
+	/** Capacity of the queues between stages (images) */
+	private int m_queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+	/**
+	 * Gets the number of threads for decoding source images.
+	 *
+	 * @return Number of threads
+	 */
+	public int getDecodeThreads() {
+		return m_decodeThreads;
+	}
+
+	/**
+	 * Sets the number of threads for decoding source images.
+	 *
+	 * @param decodeThreads Number of threads (at least 1)
+	 */
+	public void setDecodeThreads(int decodeThreads) {
+		m_decodeThreads = Math.max(1, decodeThreads);
+	}
+
+	/**
+	 * Gets the number of threads for color transformation. By default, the number of available processors.
+	 *
+	 * @return Number of threads
+	 */
+	public int getTransformThreads() {
+		return m_transformThreads;
+	}
+
+	/**
+	 * Sets the number of threads for color transformation.
+	 *
+	 * @param transformThreads Number of threads (at least 1)
+	 */
+	public void setTransformThreads(int transformThreads) {
+		m_transformThreads = Math.max(1, transformThreads);
+	}
+
+	/**
+	 * Gets the number of threads for encoding transformed images.
+	 *
+	 * @return Number of threads
+	 */
+	public int getEncodeThreads() {
+		return m_encodeThreads;
+	}
+
+	/**
+	 * Sets the number of threads for encoding transformed images.
+	 *
+	 * @param encodeThreads Number of threads (at least 1)
+	 */
+	public void setEncodeThreads(int encodeThreads) {
+		m_encodeThreads = Math.max(1, encodeThreads);
+	}
+
+	/**
+	 * Gets the capacity of the queues between stages.
+	 *
+	 * @return Maximum number of images waiting for the next stage
+	 */
+	public int getQueueCapacity() {
+		return m_queueCapacity;
+	}
+
+	/**
+	 * Sets the capacity of the queues between stages. A stage waits for the next one when its output queue is full.
+	 *
+	 * @param queueCapacity Maximum number of images waiting for the next stage (at least 1)
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		m_queueCapacity = Math.max(1, queueCapacity);
+	}
+}
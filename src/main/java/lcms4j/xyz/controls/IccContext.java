@@ -0,0 +1,69 @@
+package lcms4j.xyz.controls;
+
+import lcms4j.xyz.LCMS4J;
+
+/**
+ * Represents an isolated LittleCMS context.<br><br>
+ * By default, all profiles and transforms share the global LittleCMS context, so error handling, plug-ins and
+ * internal memory allocators are shared by every thread of the JVM. Profiles and transforms created with an
+ * <code>IccContext</code> use its own allocators and plug-ins instead, so a worker pool or tenant can be kept
+ * apart from any other.<br><br>
+ * This class uses native LittleCMS C library, and may allocate resources that will not be automatically freed by
+ * JVM's garbage collection. It is mandatory to call {@link #dispose() dispose()} method on any <code>IccContext</code>
+ * object when it is no longer needed, after disposing all profiles and transforms created with it.
+ *
+ * @see IccProfile#IccProfile(IccContext, byte[])
+ * @see IccTransform#IccTransform(IccContext, IccProfile, int, IccProfile, int, int, int)
+ * @see IccTransformer#IccTransformer(IccContext, java.awt.color.ICC_Profile, int, boolean)
+ */
+public class IccContext {
+	/** Handle to native context data */
+	private long m_hContext = 0;
+
+	/**
+	 * Creates a new isolated LittleCMS context.<br>
+	 * <br>
+	 * Remember to call the {@link #dispose() dispose()} method when this object is no longer needed in order
+	 * to assure proper freeing of native resources.
+	 *
+	 * @throws LCMS4JException If not able to create native context
+	 */
+	public IccContext() throws LCMS4JException {
+		m_hContext = LCMS4J.cmsCreateContext();
+		if (m_hContext == 0) {
+			throw new LCMS4JException("Can't create native IccContext");
+		}
+	}
+
+	/**
+	 * Frees any native resources allocated by this object, including cached transforms and registered profiles of
+	 * this context. Profiles and transforms created with this context must not be used after calling this method.
+	 */
+	public void dispose() {
+		if (m_hContext != 0) {
+			TransformCache.clear(this);
+			IccProfileRegistry.clear(this);
+			LCMS4J.cmsDeleteContext(m_hContext);
+			m_hContext = 0;
+		}
+	}
+
+	/**
+	 * Gets the handle to native resources used by this object.
+	 *
+	 * @return Handle to native context, or <code>0</code> if disposed.
+	 */
+	public long getHandle() {
+		return m_hContext;
+	}
+
+	/**
+	 * Gets the native handle of a context, taking care of the global context.
+	 *
+	 * @param context A context, or <code>null</code> for the global context
+	 * @return Handle to native context, or <code>0</code> for the global context
+	 */
+	static long handleOf(IccContext context) {
+		return (context == null ? 0 : context.getHandle());
+	}
+}
@@ -2,11 +2,15 @@ package lcms4j.xyz.controls;
 
 import lcms4j.xyz.LCMS4J;
 
+import java.awt.color.ColorSpace;
 import java.awt.color.ICC_Profile;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 /**
  * Representation of an ICC color profile.<br><br>
@@ -28,6 +32,20 @@ public class IccProfile {
 	public static final int PROFILE_FOGRA39 = 4;
 	/** Native handle to ICC Profile data */
 	private long m_hProfile = 0;
+	/** Context where native ICC Profile data is allocated (<code>null</code> for the global context) */
+	private final IccContext m_context;
+	/** Profile ID (MD5 fingerprint) of ICC Profile data, computed on first use */
+	private byte[] m_profileId = null;
+	/** ICC color space signature of the profile, read on first use (<code>0</code> if not read yet) */
+	private int m_colorSpace = 0;
+	/** ICC device class signature of the profile, read on first use (<code>0</code> if not read yet) */
+	private int m_deviceClass = 0;
+	/** Number of channels of the color space of the profile, read on first use (<code>-1</code> if not read yet) */
+	private int m_channels = -1;
+	/** Raw ICC data of the profile, saved on first use */
+	private byte[] m_data = null;
+	/** Registry entry that owns native ICC Profile data, or <code>null</code> if owned by this object */
+	private RefCountedCache.Entry<?, IccProfile> m_registryEntry = null;
 	
 	/**
 	 * Constructs an IccProfile object for a predefined standard ICC profile.
@@ -36,12 +54,24 @@ public class IccProfile {
 	 * @throws LCMS4JException If the standard profile can not be generated
 	 */
 	public IccProfile(int id) throws LCMS4JException {
+		this(null, id);
+	}
+	
+	/**
+	 * Constructs an IccProfile object for a predefined standard ICC profile inside a given context.
+	 *  
+	 * @param context Context where native profile data is allocated (<code>null</code> for the global context)
+	 * @param id Id for the standard ICC profile (constants <code>IccProfile.PROFILE_*</code>)
+	 * @throws LCMS4JException If the standard profile can not be generated
+	 */
+	public IccProfile(IccContext context, int id) throws LCMS4JException {
+		m_context = context;
 		switch (id) {
 			case PROFILE_GRAY:
-				m_hProfile = LCMS4J.cmsCreateGrayProfile(2.2);
+				m_hProfile = LCMS4J.cmsCreateGrayProfileTHR(IccContext.handleOf(m_context), 2.2);
 				break;
 			case PROFILE_SRGB:
-				m_hProfile = LCMS4J.cmsCreate_sRGBProfile();
+				m_hProfile = LCMS4J.cmsCreate_sRGBProfileTHR(IccContext.handleOf(m_context));
 				break;
 			case PROFILE_ADOBERGB:
 				loadFromResource("AdobeRGB1998.icc");
@@ -62,6 +92,18 @@ public class IccProfile {
 	 * @throws LCMS4JException When unable to load ICC profile data from this file
 	 */
 	public IccProfile(File file) throws LCMS4JException {
+		this(null, file);
+	}
+	
+	/**
+	 * Constructs an IccProfile object based on data contained in a file, inside a given context.
+	 * 
+	 * @param context Context where native profile data is allocated (<code>null</code> for the global context)
+	 * @param file File with ICC profile data (usually <code>.icm</code> or <code>.icc</code> extension)
+	 * @throws LCMS4JException When unable to load ICC profile data from this file
+	 */
+	public IccProfile(IccContext context, File file) throws LCMS4JException {
+		m_context = context;
 		if (file == null) {
 			throw new IllegalArgumentException("ICC profile file can not be null.");
 		}
@@ -77,6 +119,18 @@ public class IccProfile {
 	 * @throws LCMS4JException When unable to load ICC profile data from this memory buffer
 	 */
 	public IccProfile(byte[] data) throws LCMS4JException {
+		this(null, data);
+	}
+	
+	/**
+	 * Constructs an IccProfile object based on data contained in a memory buffer, inside a given context.
+	 * 
+	 * @param context Context where native profile data is allocated (<code>null</code> for the global context)
+	 * @param data Memory buffer with complete data of the ICC profile
+	 * @throws LCMS4JException When unable to load ICC profile data from this memory buffer
+	 */
+	public IccProfile(IccContext context, byte[] data) throws LCMS4JException {
+		m_context = context;
 		if (data == null) {
 			throw new IllegalArgumentException("ICC profile data can not be null.");
 		}
@@ -86,7 +140,21 @@ public class IccProfile {
 	}
 	
 	/**
-	 * Frees any native resources allocated by the <code>IccProfile</code> object
+	 * Creates an <code>IccProfile</code> object that shares the native resources of a registered profile.
+	 * 
+	 * @param registryEntry Registry entry of the registered profile, already acquired for this object
+	 */
+	IccProfile(RefCountedCache.Entry<?, IccProfile> registryEntry) {
+		IccProfile registered = registryEntry.getValue();
+		m_context = registered.m_context;
+		m_hProfile = registered.m_hProfile;
+		m_profileId = registered.m_profileId;
+		m_registryEntry = registryEntry;
+	}
+	
+	/**
+	 * Frees any native resources allocated by the <code>IccProfile</code> object. Profiles obtained from
+	 * {@link IccProfileRegistry} are returned to the registry instead.
 	 */
 	public void dispose() {
 		close();
@@ -136,7 +204,7 @@ public class IccProfile {
 	 */
 	public boolean loadFromFile(File file) {
 		close();
-		m_hProfile = LCMS4J.cmsOpenProfileFromFile(file.getAbsolutePath(),"r");
+		m_hProfile = LCMS4J.cmsOpenProfileFromFileTHR(IccContext.handleOf(m_context), file.getAbsolutePath(), "r");
 		return (m_hProfile != 0);
 	}
 	
@@ -148,7 +216,7 @@ public class IccProfile {
 	 */
 	public boolean loadFromMem(byte[] data) {
 		close();
-		m_hProfile = LCMS4J.cmsOpenProfileFromMem(data);
+		m_hProfile = LCMS4J.cmsOpenProfileFromMemTHR(IccContext.handleOf(m_context), data);
 		return (m_hProfile != 0);
 	}
 	
@@ -156,10 +224,18 @@ public class IccProfile {
 	 * Frees any previously loaded ICC Profile data.
 	 */
 	private void close() {
-		if (m_hProfile != 0) {
+		if (m_registryEntry != null) {
+			m_registryEntry.release();
+			m_registryEntry = null;
+		} else if (m_hProfile != 0) {
 			LCMS4J.cmsCloseProfile(m_hProfile);
-			m_hProfile = 0;
-		}		
+		}
+		m_hProfile = 0;
+		m_profileId = null;
+		m_colorSpace = 0;
+		m_deviceClass = 0;
+		m_channels = -1;
+		m_data = null;
 	}
 
 	/**
@@ -175,6 +251,158 @@ public class IccProfile {
 		return name;
 	}
 	
+	/**
+	 * Gets the profile ID of this profile: the MD5 fingerprint of its contents, as defined by the ICC specification.<br>
+	 * It is computed the first time it is requested, and kept until profile data is reloaded.
+	 * 
+	 * @return The 16 bytes of the profile ID, or <code>null</code> if no profile data is loaded or on error
+	 */
+	public synchronized byte[] getProfileId() {
+		if (m_profileId == null) {
+			byte[] profileData = getDataInternal();
+			if (profileData != null) {
+				m_profileId = computeProfileId(profileData);
+			}
+		}
+		return (m_profileId == null ? null : m_profileId.clone());
+	}
+	
+	/**
+	 * Gets the ICC color space signature of this profile. It is read the first time it is requested.
+	 * 
+	 * @return ICC color space signature (for instance, <code>ICC_Profile.icSigRgbData</code>), or <code>0</code>
+	 *         if no profile data is loaded
+	 */
+	public synchronized int getColorSpace() {
+		if (m_colorSpace == 0 && m_hProfile != 0) {
+			m_colorSpace = LCMS4J.cmsGetColorSpace(m_hProfile);
+		}
+		return m_colorSpace;
+	}
+	
+	/**
+	 * Gets the color space type of this profile, as defined by <code>java.awt.color.ColorSpace</code>
+	 * (the same value returned by <code>ICC_Profile.getColorSpaceType()</code>).
+	 * 
+	 * @return Color space type (<code>ColorSpace.TYPE_*</code>), or <code>-1</code> if unknown or no profile data is loaded
+	 */
+	public int getColorSpaceType() {
+		switch (getColorSpace()) {
+			case ICC_Profile.icSigXYZData: return ColorSpace.TYPE_XYZ;
+			case ICC_Profile.icSigLabData: return ColorSpace.TYPE_Lab;
+			case ICC_Profile.icSigLuvData: return ColorSpace.TYPE_Luv;
+			case ICC_Profile.icSigYCbCrData: return ColorSpace.TYPE_YCbCr;
+			case ICC_Profile.icSigYxyData: return ColorSpace.TYPE_Yxy;
+			case ICC_Profile.icSigRgbData: return ColorSpace.TYPE_RGB;
+			case ICC_Profile.icSigGrayData: return ColorSpace.TYPE_GRAY;
+			case ICC_Profile.icSigHsvData: return ColorSpace.TYPE_HSV;
+			case ICC_Profile.icSigHlsData: return ColorSpace.TYPE_HLS;
+			case ICC_Profile.icSigCmykData: return ColorSpace.TYPE_CMYK;
+			case ICC_Profile.icSigCmyData: return ColorSpace.TYPE_CMY;
+			case ICC_Profile.icSigSpace2CLR: return ColorSpace.TYPE_2CLR;
+			case ICC_Profile.icSigSpace3CLR: return ColorSpace.TYPE_3CLR;
+			case ICC_Profile.icSigSpace4CLR: return ColorSpace.TYPE_4CLR;
+			case ICC_Profile.icSigSpace5CLR: return ColorSpace.TYPE_5CLR;
+			case ICC_Profile.icSigSpace6CLR: return ColorSpace.TYPE_6CLR;
+			case ICC_Profile.icSigSpace7CLR: return ColorSpace.TYPE_7CLR;
+			case ICC_Profile.icSigSpace8CLR: return ColorSpace.TYPE_8CLR;
+			case ICC_Profile.icSigSpace9CLR: return ColorSpace.TYPE_9CLR;
+			case ICC_Profile.icSigSpaceACLR: return ColorSpace.TYPE_ACLR;
+			case ICC_Profile.icSigSpaceBCLR: return ColorSpace.TYPE_BCLR;
+			case ICC_Profile.icSigSpaceCCLR: return ColorSpace.TYPE_CCLR;
+			case ICC_Profile.icSigSpaceDCLR: return ColorSpace.TYPE_DCLR;
+			case ICC_Profile.icSigSpaceECLR: return ColorSpace.TYPE_ECLR;
+			case ICC_Profile.icSigSpaceFCLR: return ColorSpace.TYPE_FCLR;
+			default: return -1;
+		}
+	}
+	
+	/**
+	 * Gets the ICC device class signature of this profile. It is read the first time it is requested.
+	 * 
+	 * @return ICC device class signature (for instance, <code>ICC_Profile.icSigDisplayClass</code>), or <code>0</code>
+	 *         if no profile data is loaded
+	 */
+	public synchronized int getDeviceClass() {
+		if (m_deviceClass == 0 && m_hProfile != 0) {
+			m_deviceClass = LCMS4J.cmsGetDeviceClass(m_hProfile);
+		}
+		return m_deviceClass;
+	}
+	
+	/**
+	 * Gets the number of channels of the color space of this profile. It is read the first time it is requested.
+	 * 
+	 * @return Number of color channels, or <code>0</code> if no profile data is loaded
+	 */
+	public synchronized int getNumChannels() {
+		if (m_channels == -1 && m_hProfile != 0) {
+			m_channels = LCMS4J.cmsChannelsOf(getColorSpace());
+		}
+		return Math.max(0, m_channels);
+	}
+	
+	/**
+	 * Gets the raw ICC data of this profile. Native profile is saved to memory only the first time it is requested.
+	 * 
+	 * @return Copy of the complete ICC data of the profile, or <code>null</code> if no profile data is loaded or on error
+	 */
+	public synchronized byte[] getData() {
+		byte[] data = getDataInternal();
+		return (data == null ? null : data.clone());
+	}
+	
+	/**
+	 * Gets the raw ICC data of this profile, saving native profile to memory if not done yet.
+	 * 
+	 * @return Complete ICC data of the profile (not to be modified), or <code>null</code> if no profile data is loaded or on error
+	 */
+	private synchronized byte[] getDataInternal() {
+		if (m_data == null && m_hProfile != 0) {
+			byte[] data = LCMS4J.cmsSaveProfileToMem(m_hProfile);
+			if (data.length > 0) {
+				m_data = data;
+			}
+		}
+		return m_data;
+	}
+	
+	/**
+	 * Sets the profile ID of this profile, when already known.
+	 * 
+	 * @param profileId The 16 bytes of the profile ID of the loaded profile data
+	 */
+	synchronized void setProfileId(byte[] profileId) {
+		m_profileId = profileId.clone();
+	}
+	
+	/**
+	 * Computes the profile ID of ICC profile data, as defined by the ICC specification: the MD5 fingerprint of
+	 * the whole profile, with profile flags, rendering intent and profile ID header fields set to zero.
+	 * 
+	 * @param data Complete data of an ICC profile
+	 * @return The 16 bytes of the profile ID, or <code>null</code> if data is too short to be an ICC profile
+	 */
+	static byte[] computeProfileId(byte[] data) {
+		if (data.length < 128) {
+			return null;
+		}
+		MessageDigest md5;
+		try {
+			md5 = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			// MD5 is available on every Java platform
+			throw new IllegalStateException(e);
+		}
+		byte[] header = Arrays.copyOf(data, 128);
+		Arrays.fill(header, 44, 48, (byte) 0);
+		Arrays.fill(header, 64, 68, (byte) 0);
+		Arrays.fill(header, 84, 100, (byte) 0);
+		md5.update(header);
+		md5.update(data, 128, data.length - 128);
+		return md5.digest();
+	}
+	
 	/**
 	 * Gets the handle to native resources used by this object.
 	 * 
@@ -184,17 +412,24 @@ public class IccProfile {
 		return m_hProfile;
 	}
 	
+	/**
+	 * Gets the context where native resources of this object are allocated.
+	 * 
+	 * @return Context of this profile, or <code>null</code> for the global context.
+	 */
+	public IccContext getContext() {
+		return m_context;
+	}
+	
 	/**
 	 * Gets a standard <code>ICC_Profile</code> object from this profile.
 	 * @return A standard <code>ICC_Profile</code> object, or <code>null</code> on error
 	 */
 	public ICC_Profile getICC_Profile() {
 		ICC_Profile result = null;
-		if (m_hProfile != 0) {
-			byte[] profileData = LCMS4J.cmsSaveProfileToMem(m_hProfile);
-			if (profileData.length > 0) {
-				result = ICC_Profile.getInstance(profileData);
-			}
+		byte[] profileData = getDataInternal();
+		if (profileData != null) {
+			result = ICC_Profile.getInstance(profileData);
 		}
 		return result;
 	}
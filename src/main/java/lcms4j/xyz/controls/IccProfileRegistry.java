@@ -0,0 +1,164 @@
+package lcms4j.xyz.controls;
+
+import java.awt.color.ICC_Profile;
+import java.util.Arrays;
+
+/**
+ * Process-wide registry of shared ICC profiles.<br><br>
+ * Images processed in batches usually embed the same few ICC profiles. Profiles obtained from this registry are
+ * parsed only once for each distinct profile (identified by its ICC profile ID, the MD5 fingerprint of its contents)
+ * and context, and the same native profile is shared among all their users.<br><br>
+ * Profiles returned by {@link #getProfile(IccContext, byte[]) getProfile()} must be returned to the registry by calling
+ * {@link IccProfile#dispose() dispose()} as any other <code>IccProfile</code>. Profiles not in use are evicted in
+ * least recently used order whenever the estimated memory used by all registered profiles exceeds the size budget
+ * of the registry.
+ */
+public final class IccProfileRegistry {
+	/** Default size budget of the registry (bytes) */
+	public static final long DEFAULT_MAX_SIZE = 16L * 1024 * 1024;
+	/** Estimated size of a native profile, not including its data (bytes) */
+	private static final long PROFILE_OVERHEAD = 4096;
+	/** Registered profiles */
+	private static final RefCountedCache<Key, IccProfile> s_profiles = new RefCountedCache<>(DEFAULT_MAX_SIZE, IccProfile::dispose);
+
+	/**
+	 * Static utility class, not to be instantiated.
+	 */
+	private IccProfileRegistry() {
+	}
+
+	/**
+	 * Gets a shared profile for ICC profile data, loading it if there is no registered profile with the same
+	 * profile ID inside the context.<br>
+	 * <br>
+	 * Remember to call the {@link IccProfile#dispose() dispose()} method of the returned profile when it is
+	 * no longer needed, in order to return it to the registry.
+	 *
+	 * @param context Context where native profile data is allocated (<code>null</code> for the global context)
+	 * @param data Memory buffer with complete data of the ICC profile
+	 * @return A profile for the ICC profile data
+	 * @throws LCMS4JException When unable to load ICC profile data from this memory buffer
+	 */
+	public static IccProfile getProfile(IccContext context, byte[] data) throws LCMS4JException {
+		if (data == null) {
+			throw new IllegalArgumentException("ICC profile data can not be null.");
+		}
+		byte[] profileId = (getMaxSize() > 0 ? IccProfile.computeProfileId(data) : null);
+		if (profileId == null) {
+			// Not registrable
+			return new IccProfile(context, data);
+		}
+		Key key = new Key(IccContext.handleOf(context), profileId);
+		RefCountedCache.Entry<Key, IccProfile> entry = s_profiles.acquire(key);
+		if (entry == null) {
+			// Native profile is parsed without locking the registry
+			IccProfile profile = new IccProfile(context, data);
+			profile.setProfileId(profileId);
+			entry = s_profiles.put(key, profile, PROFILE_OVERHEAD + 2L * data.length, key.m_context);
+		}
+		return new IccProfile(entry);
+	}
+
+	/**
+	 * Gets a shared profile for a standard <code>ICC_Profile</code> object, loading it if there is no registered
+	 * profile with the same profile ID inside the context.
+	 *
+	 * @param context Context where native profile data is allocated (<code>null</code> for the global context)
+	 * @param profile Standard ICC profile
+	 * @return A profile for the ICC profile
+	 * @throws LCMS4JException When unable to load ICC profile data
+	 * @see #getProfile(IccContext, byte[])
+	 */
+	public static IccProfile getProfile(IccContext context, ICC_Profile profile) throws LCMS4JException {
+		if (profile == null) {
+			throw new IllegalArgumentException("ICC profile can not be null.");
+		}
+		return getProfile(context, profile.getData());
+	}
+
+	/**
+	 * Sets the size budget of the registry. Profiles not in use are evicted until the estimated memory used by all
+	 * registered profiles fits the new budget.
+	 *
+	 * @param maxSize Size budget (bytes). <code>0</code> disables sharing of profiles.
+	 */
+	public static void setMaxSize(long maxSize) {
+		s_profiles.setMaxSize(maxSize);
+	}
+
+	/**
+	 * Gets the size budget of the registry.
+	 *
+	 * @return Size budget (bytes)
+	 */
+	public static long getMaxSize() {
+		return s_profiles.getMaxSize();
+	}
+
+	/**
+	 * Gets the estimated memory used by all registered profiles.
+	 *
+	 * @return Estimated size (bytes)
+	 */
+	public static long getSize() {
+		return s_profiles.getSize();
+	}
+
+	/**
+	 * Gets the number of registered profiles.
+	 *
+	 * @return Number of registered profiles
+	 */
+	public static int getCount() {
+		return s_profiles.getCount();
+	}
+
+	/**
+	 * Removes all profiles from the registry. Native resources of profiles in use are freed when their last
+	 * user disposes them.
+	 */
+	public static void clear() {
+		s_profiles.clear(null);
+	}
+
+	/**
+	 * Removes all profiles allocated inside a context from the registry.
+	 *
+	 * @param context Context of the profiles (<code>null</code> for the global context)
+	 */
+	static void clear(IccContext context) {
+		s_profiles.clear(Long.valueOf(IccContext.handleOf(context)));
+	}
+
+	/**
+	 * Key of a registered profile.
+	 */
+	private static final class Key {
+		/** Native handle of the context of the profile */
+		private final long m_context;
+		/** Profile ID */
+		private final byte[] m_profileId;
+
+		private Key(long context, byte[] profileId) {
+			m_context = context;
+			m_profileId = profileId;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Long.hashCode(m_context) + Arrays.hashCode(m_profileId);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return m_context == other.m_context && Arrays.equals(m_profileId, other.m_profileId);
+		}
+	}
+}
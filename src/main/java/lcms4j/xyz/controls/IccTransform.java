@@ -2,6 +2,9 @@ package lcms4j.xyz.controls;
 
 import lcms4j.xyz.LCMS4J;
 
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+
 /**
  * Represents an ICC color transformation operation.<br><br>
  * This class uses native LittleCMS C library for managing ICC color transformations, and may allocate resources that
@@ -12,11 +15,24 @@ import lcms4j.xyz.LCMS4J;
  *
  */
 public class IccTransform {
+	/**
+	 * Maximum size (in bytes) of the pixel data transformed by each native call on primitive arrays. Native code
+	 * accesses arrays in critical regions, where garbage collection may be blocked, so larger blocks of pixel data
+	 * are transformed by several calls.
+	 */
+	static final int MAX_CALL_BYTES = 4 * 1024 * 1024;
 	/** Handle to native ICC transform data */
 	private long m_hTransform = 0;
+	/** Format of input pixel data (LCMS4J.TYPE_*) */
+	private final int m_inputFormat;
+	/** Format of output pixel data (LCMS4J.TYPE_*) */
+	private final int m_outputFormat;
+	/** Cache entry that owns native transform data, or <code>null</code> if owned by this object */
+	private final RefCountedCache.Entry<?, IccTransform> m_cacheEntry;
 	
 	/**
-	 * Creates an <code>IccTransform</code> object that will manage ICC color conversions.<br>
+	 * Creates an <code>IccTransform</code> object that will manage ICC color conversions, inside the context of
+	 * the source profile.<br>
 	 * <br>
 	 * Remember to call the {@link #dispose() dispose()} method when this object is no longer needed in order
 	 * to assure proper freeing of native resources.
@@ -30,18 +46,58 @@ public class IccTransform {
 	 * @throws LCMS4JException If not able to create native Icc Transform object
 	 */
 	public IccTransform(IccProfile srcProfile, int inputFormat, IccProfile dstProfile, int outputFormat, int intent, int flags) throws LCMS4JException {
-		m_hTransform = LCMS4J.cmsCreateTransform(srcProfile.getHandle(), inputFormat, dstProfile.getHandle(), outputFormat, intent, flags);
+		this(srcProfile.getContext(), srcProfile, inputFormat, dstProfile, outputFormat, intent, flags);
+	}
+	
+	/**
+	 * Creates an <code>IccTransform</code> object that will manage ICC color conversions inside a given context.<br>
+	 * <br>
+	 * Remember to call the {@link #dispose() dispose()} method when this object is no longer needed in order
+	 * to assure proper freeing of native resources.
+	 * 
+	 * @param context Context where native transform data is allocated (<code>null</code> for the global context)
+	 * @param srcProfile Source ICC profile for the color transformation
+	 * @param inputFormat Format of the input pixel data for the color transformation operations (LCMS4J.TYPE_*).
+	 * @param dstProfile Destination ICC profile for the color transformation
+	 * @param outputFormat Format of the output pixel data for the color transformation operations  (LCMS4J.TYPE_*).
+	 * @param intent Rendering intent for the color transformation (LCMS4J.INTENT_*).
+	 * @param flags Flags that modify transformation algorithm (LCMS4J.CMSFLAGS_*)
+	 * @throws LCMS4JException If not able to create native Icc Transform object
+	 */
+	public IccTransform(IccContext context, IccProfile srcProfile, int inputFormat, IccProfile dstProfile, int outputFormat, int intent, int flags) throws LCMS4JException {
+		m_hTransform = LCMS4J.cmsCreateTransformTHR(IccContext.handleOf(context), srcProfile.getHandle(), inputFormat, dstProfile.getHandle(), outputFormat, intent, flags);
 		if (m_hTransform == 0) {
 			throw new LCMS4JException("Can't create native IccTransform");
 		}
+		m_inputFormat = inputFormat;
+		m_outputFormat = outputFormat;
+		m_cacheEntry = null;
 	}
 	
 	/**
-	 * Frees any native resources allocated by this object
+	 * Creates an <code>IccTransform</code> object that shares the native resources of a cached transform.
+	 * 
+	 * @param cacheEntry Cache entry of the cached transform, already acquired for this object
+	 */
+	IccTransform(RefCountedCache.Entry<?, IccTransform> cacheEntry) {
+		IccTransform cached = cacheEntry.getValue();
+		m_hTransform = cached.m_hTransform;
+		m_inputFormat = cached.m_inputFormat;
+		m_outputFormat = cached.m_outputFormat;
+		m_cacheEntry = cacheEntry;
+	}
+	
+	/**
+	 * Frees any native resources allocated by this object. Transforms obtained from {@link TransformCache}
+	 * are returned to the cache instead.
 	 */
 	public void dispose() {
 		if (m_hTransform != 0) {
-			LCMS4J.cmsDeleteTransform(m_hTransform);
+			if (m_cacheEntry != null) {
+				m_cacheEntry.release();
+			} else {
+				LCMS4J.cmsDeleteTransform(m_hTransform);
+			}
 			m_hTransform = 0;
 		}
 	}
@@ -60,5 +116,387 @@ public class IccTransform {
 	public void transform(byte[] inputData, byte[] outputData, int size) {
 		LCMS4J.cmsDoTransform(m_hTransform, inputData, outputData, size);
 	}
+
+	/**
+	 * Performs ICC color transformation on a region of arrays of pixel data.<br>
+	 * <br>
+	 * Arrays are accessed in place by the native transform, so this method can work directly on image raster
+	 * data without intermediate copies. Input and output may be the same array if input and output formats
+	 * have the same pixel size.
+	 * 
+	 * @param inputData Array of input pixel data to transform.
+	 * @param inputOffset Index of the first byte of input pixel data.
+	 * @param outputData Array of output transformed pixel data.
+	 * @param outputOffset Index of the first byte of output pixel data.
+	 * @param pixels Number of pixels to be transformed
+	 * @throws IndexOutOfBoundsException If the requested pixels exceed the bounds of any of the arrays
+	 */
+	public void transform(byte[] inputData, int inputOffset, byte[] outputData, int outputOffset, int pixels) {
+		transformArray(inputData, inputOffset, outputData, outputOffset, pixels);
+	}
+	
+	/**
+	 * Performs ICC color transformation on a region of arrays of 16-bit pixel data.<br>
+	 * <br>
+	 * Input and output formats specified when constructing the <code>IccTransform</code> object should be
+	 * 16-bit formats (<code>LCMS4J.TYPE_*_16</code>). Arrays are accessed in place by the native transform.
+	 * 
+	 * @param inputData Array of input pixel data to transform.
+	 * @param inputOffset Index of the first element of input pixel data.
+	 * @param outputData Array of output transformed pixel data.
+	 * @param outputOffset Index of the first element of output pixel data.
+	 * @param pixels Number of pixels to be transformed
+	 * @throws IndexOutOfBoundsException If the requested pixels exceed the bounds of any of the arrays
+	 */
+	public void transform(short[] inputData, int inputOffset, short[] outputData, int outputOffset, int pixels) {
+		transformArray(inputData, inputOffset, outputData, outputOffset, pixels);
+	}
+	
+	/**
+	 * Performs ICC color transformation on a region of arrays of floating point pixel data.<br>
+	 * <br>
+	 * Input and output formats specified when constructing the <code>IccTransform</code> object should be
+	 * floating point formats (<code>LCMS4J.TYPE_*_FLT</code>). Arrays are accessed in place by the native transform.
+	 * 
+	 * @param inputData Array of input pixel data to transform.
+	 * @param inputOffset Index of the first element of input pixel data.
+	 * @param outputData Array of output transformed pixel data.
+	 * @param outputOffset Index of the first element of output pixel data.
+	 * @param pixels Number of pixels to be transformed
+	 * @throws IndexOutOfBoundsException If the requested pixels exceed the bounds of any of the arrays
+	 */
+	public void transform(float[] inputData, int inputOffset, float[] outputData, int outputOffset, int pixels) {
+		transformArray(inputData, inputOffset, outputData, outputOffset, pixels);
+	}
+	
+	/**
+	 * Performs ICC color transformation on a rectangular block of pixel data with a single native call.<br>
+	 * <br>
+	 * Lines of pixel data may be padded, or be part of a bigger raster (region of interest). The distance between
+	 * the start of two consecutive lines is given by the stride of input and output data. Input and output may
+	 * be the same array if input and output formats have the same pixel size.<br>
+	 * <br>
+	 * For planar formats (<code>LCMS4J.TYPE_*_PLANAR</code>), each channel is stored in its own plane of
+	 * <code>height</code> lines, one plane right after another, and the stride is the distance between two
+	 * consecutive lines of a plane.
+	 * 
+	 * @param inputData Array of input pixel data to transform.
+	 * @param inputOffset Index of the first byte of the first input line.
+	 * @param outputData Array of output transformed pixel data.
+	 * @param outputOffset Index of the first byte of the first output line.
+	 * @param width Number of pixels to be transformed on each line
+	 * @param height Number of lines to be transformed
+	 * @param inputStride Distance (in bytes) between the start of two consecutive input lines
+	 * @param outputStride Distance (in bytes) between the start of two consecutive output lines
+	 * @throws IndexOutOfBoundsException If the requested lines exceed the bounds of any of the arrays
+	 * @throws IllegalArgumentException If any stride is smaller than a line of pixel data
+	 */
+	public void transform(byte[] inputData, int inputOffset, byte[] outputData, int outputOffset, int width, int height, int inputStride, int outputStride) {
+		transformRaster(inputData, inputOffset, outputData, outputOffset, width, height, inputStride, outputStride);
+	}
 	
+	/**
+	 * Performs ICC color transformation on a rectangular block of 16-bit pixel data with a single native call.<br>
+	 * <br>
+	 * Input and output formats specified when constructing the <code>IccTransform</code> object should be
+	 * 16-bit formats (<code>LCMS4J.TYPE_*_16</code>). Offsets and strides are given in array elements.
+	 * 
+	 * @param inputData Array of input pixel data to transform.
+	 * @param inputOffset Index of the first element of the first input line.
+	 * @param outputData Array of output transformed pixel data.
+	 * @param outputOffset Index of the first element of the first output line.
+	 * @param width Number of pixels to be transformed on each line
+	 * @param height Number of lines to be transformed
+	 * @param inputStride Distance (in elements) between the start of two consecutive input lines
+	 * @param outputStride Distance (in elements) between the start of two consecutive output lines
+	 * @throws IndexOutOfBoundsException If the requested lines exceed the bounds of any of the arrays
+	 * @throws IllegalArgumentException If any stride is smaller than a line of pixel data
+	 */
+	public void transform(short[] inputData, int inputOffset, short[] outputData, int outputOffset, int width, int height, int inputStride, int outputStride) {
+		transformRaster(inputData, inputOffset, outputData, outputOffset, width, height, inputStride, outputStride);
+	}
+	
+	/**
+	 * Performs ICC color transformation on a rectangular block of floating point pixel data with a single native call.<br>
+	 * <br>
+	 * Input and output formats specified when constructing the <code>IccTransform</code> object should be
+	 * floating point formats (<code>LCMS4J.TYPE_*_FLT</code>). Offsets and strides are given in array elements.
+	 * 
+	 * @param inputData Array of input pixel data to transform.
+	 * @param inputOffset Index of the first element of the first input line.
+	 * @param outputData Array of output transformed pixel data.
+	 * @param outputOffset Index of the first element of the first output line.
+	 * @param width Number of pixels to be transformed on each line
+	 * @param height Number of lines to be transformed
+	 * @param inputStride Distance (in elements) between the start of two consecutive input lines
+	 * @param outputStride Distance (in elements) between the start of two consecutive output lines
+	 * @throws IndexOutOfBoundsException If the requested lines exceed the bounds of any of the arrays
+	 * @throws IllegalArgumentException If any stride is smaller than a line of pixel data
+	 */
+	public void transform(float[] inputData, int inputOffset, float[] outputData, int outputOffset, int width, int height, int inputStride, int outputStride) {
+		transformRaster(inputData, inputOffset, outputData, outputOffset, width, height, inputStride, outputStride);
+	}
+
+	/**
+	 * Performs ICC color transformation on a region of arrays of int-packed pixel data.<br>
+	 * <br>
+	 * Each <code>int</code> holds a pixel of four 8-bit samples, as in <code>TYPE_INT_*</code> buffered images.
+	 * Samples are seen by the native transform in the byte order of the platform, so on little-endian platforms
+	 * an <code>int</code> packed as <code>0xAARRGGBB</code> matches <code>LCMS4J.TYPE_BGRA_8</code>.
+	 * Arrays are accessed in place by the native transform.
+	 *
+	 * @param inputData Array of input pixel data to transform.
+	 * @param inputOffset Index of the first element of input pixel data.
+	 * @param outputData Array of output transformed pixel data.
+	 * @param outputOffset Index of the first element of output pixel data.
+	 * @param pixels Number of pixels to be transformed
+	 * @throws IndexOutOfBoundsException If the requested pixels exceed the bounds of any of the arrays
+	 */
+	public void transform(int[] inputData, int inputOffset, int[] outputData, int outputOffset, int pixels) {
+		transformArray(inputData, inputOffset, outputData, outputOffset, pixels);
+	}
+
+	/**
+	 * Performs ICC color transformation on a rectangular block of int-packed pixel data with a single native call.<br>
+	 * <br>
+	 * Each <code>int</code> holds a pixel of four 8-bit samples, in the byte order of the platform (see
+	 * {@link #transform(int[], int, int[], int, int)}). Offsets and strides are given in array elements.
+	 *
+	 * @param inputData Array of input pixel data to transform.
+	 * @param inputOffset Index of the first element of the first input line.
+	 * @param outputData Array of output transformed pixel data.
+	 * @param outputOffset Index of the first element of the first output line.
+	 * @param width Number of pixels to be transformed on each line
+	 * @param height Number of lines to be transformed
+	 * @param inputStride Distance (in elements) between the start of two consecutive input lines
+	 * @param outputStride Distance (in elements) between the start of two consecutive output lines
+	 * @throws IndexOutOfBoundsException If the requested lines exceed the bounds of any of the arrays
+	 * @throws IllegalArgumentException If any stride is smaller than a line of pixel data
+	 */
+	public void transform(int[] inputData, int inputOffset, int[] outputData, int outputOffset, int width, int height, int inputStride, int outputStride) {
+		transformRaster(inputData, inputOffset, outputData, outputOffset, width, height, inputStride, outputStride);
+	}
+
+	/**
+	 * Performs ICC color transformation on pixel data stored in direct buffers.<br>
+	 * <br>
+	 * Pixel data is read from and written to native memory in place, avoiding any copy between Java heap and native
+	 * heap. Data is read starting at the current position of <code>inputData</code> and written starting at the
+	 * current position of <code>outputData</code>. Positions of the buffers are not modified.
+	 * 
+	 * @param inputData Direct buffer with input pixel data to transform.
+	 * @param outputData Direct buffer for output transformed pixel data.
+	 * @param pixels Number of pixels to be transformed
+	 * @throws IllegalArgumentException If any of the buffers is not direct, read-only (output) or too small
+	 */
+	public void transform(ByteBuffer inputData, ByteBuffer outputData, int pixels) {
+		if (!inputData.isDirect() || !outputData.isDirect()) {
+			throw new IllegalArgumentException("Pixel data buffers must be direct buffers");
+		}
+		if (outputData.isReadOnly()) {
+			throw new IllegalArgumentException("Output pixel data buffer can not be read-only");
+		}
+		if (pixels < 0 
+				|| (long) pixels * LCMS4J.getPixelSize(m_inputFormat) > inputData.remaining()
+				|| (long) pixels * LCMS4J.getPixelSize(m_outputFormat) > outputData.remaining()) {
+			throw new IllegalArgumentException("Pixel data buffers too small for "+pixels+" pixels");
+		}
+		LCMS4J.cmsDoTransformDirect(m_hTransform, inputData, inputData.position(), outputData, outputData.position(), pixels);
+	}
+	
+	/**
+	 * Performs ICC color transformation on a region of primitive arrays of pixel data.<br>
+	 * Arrays may be of different types (for instance, <code>short[]</code> input and <code>byte[]</code> output)
+	 * as long as they match the formats of this transform. Pixels are transformed by native calls of up to
+	 * {@link #MAX_CALL_BYTES} bytes of pixel data each.<br>
+	 * <br>
+	 * For planar formats (<code>LCMS4J.TYPE_*_PLANAR</code>), each plane holds <code>pixels</code> samples of one
+	 * channel, one plane after another. Calls on planar data keep the size of the whole planes.
+	 * 
+	 * @param inputData Primitive array of input pixel data to transform.
+	 * @param inputOffset Index of the first element of input pixel data.
+	 * @param outputData Primitive array of output transformed pixel data.
+	 * @param outputOffset Index of the first element of output pixel data.
+	 * @param pixels Number of pixels to be transformed
+	 * @throws IndexOutOfBoundsException If the requested pixels exceed the bounds of any of the arrays
+	 */
+	void transformArray(Object inputData, int inputOffset, Object outputData, int outputOffset, int pixels) {
+		int inputElementSize = getElementSize(inputData);
+		int outputElementSize = getElementSize(outputData);
+		long inputByteOffset = (long) inputOffset * inputElementSize;
+		long outputByteOffset = (long) outputOffset * outputElementSize;
+		checkBounds(inputByteOffset, pixels, m_inputFormat, inputData, inputElementSize);
+		checkBounds(outputByteOffset, pixels, m_outputFormat, outputData, outputElementSize);
+		int inputPixelSize = LCMS4J.getPixelSize(m_inputFormat);
+		int outputPixelSize = LCMS4J.getPixelSize(m_outputFormat);
+		int callPixels = Math.max(1, MAX_CALL_BYTES / Math.max(1, Math.max(inputPixelSize, outputPixelSize)));
+		if (LCMS4J.isPlanar(m_inputFormat) || LCMS4J.isPlanar(m_outputFormat)) {
+			// Each call transforms a single line, taken from all the planes of the whole pixel data
+			int inputPlaneSize = planeSize(getLineSize(pixels, m_inputFormat), 1);
+			int outputPlaneSize = planeSize(getLineSize(pixels, m_outputFormat), 1);
+			for (int first = 0; first < pixels; first += callPixels) {
+				int count = Math.min(callPixels, pixels - first);
+				LCMS4J.cmsDoTransformLineStride(m_hTransform, inputData, (int) (inputByteOffset + getLineSize(first, m_inputFormat)),
+						outputData, (int) (outputByteOffset + getLineSize(first, m_outputFormat)), count, 1,
+						(int) getLineSize(count, m_inputFormat), (int) getLineSize(count, m_outputFormat), inputPlaneSize, outputPlaneSize);
+			}
+			return;
+		}
+		for (int first = 0; first < pixels; first += callPixels) {
+			int count = Math.min(callPixels, pixels - first);
+			LCMS4J.cmsDoTransformArray(m_hTransform, inputData, (int) (inputByteOffset + (long) first * inputPixelSize),
+					outputData, (int) (outputByteOffset + (long) first * outputPixelSize), count);
+		}
+	}
+	
+	/**
+	 * Performs ICC color transformation on a rectangular block of primitive arrays of pixel data.<br>
+	 * Arrays may be of different types (for instance, <code>short[]</code> input and <code>byte[]</code> output)
+	 * as long as they match the formats of this transform.<br>
+	 * <br>
+	 * For planar formats (<code>LCMS4J.TYPE_*_PLANAR</code>), the stride is the distance between two consecutive
+	 * lines of a plane, and each plane holds <code>height</code> lines of one channel, one plane after another.<br>
+	 * <br>
+	 * Lines are transformed by native calls of up to {@link #MAX_CALL_BYTES} bytes of pixel data each (at least
+	 * one line per call).
+	 * 
+	 * @param inputData Primitive array of input pixel data to transform.
+	 * @param inputOffset Index of the first element of the first input line.
+	 * @param outputData Primitive array of output transformed pixel data.
+	 * @param outputOffset Index of the first element of the first output line.
+	 * @param width Number of pixels to be transformed on each line
+	 * @param height Number of lines to be transformed
+	 * @param inputStride Distance (in elements) between the start of two consecutive input lines
+	 * @param outputStride Distance (in elements) between the start of two consecutive output lines
+	 * @throws IndexOutOfBoundsException If the requested lines exceed the bounds of any of the arrays
+	 * @throws IllegalArgumentException If any stride is smaller than a line of pixel data
+	 */
+	void transformRaster(Object inputData, int inputOffset, Object outputData, int outputOffset, int width, int height, int inputStride, int outputStride) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("Width and height can not be negative");
+		}
+		if (height == 0 || width == 0) {
+			return;
+		}
+		int inputElementSize = getElementSize(inputData);
+		int outputElementSize = getElementSize(outputData);
+		long inputByteStride = (long) inputStride * inputElementSize;
+		long outputByteStride = (long) outputStride * outputElementSize;
+		if (inputByteStride < getLineSize(width, m_inputFormat) || outputByteStride < getLineSize(width, m_outputFormat)) {
+			throw new IllegalArgumentException("Stride can not be smaller than a line of pixel data");
+		}
+		long inputByteOffset = (long) inputOffset * inputElementSize;
+		long outputByteOffset = (long) outputOffset * outputElementSize;
+		checkBounds(inputByteOffset, width, height, inputByteStride, m_inputFormat, inputData, inputElementSize);
+		checkBounds(outputByteOffset, width, height, outputByteStride, m_outputFormat, outputData, outputElementSize);
+		// Planes keep their size, as lines of each call are taken from all the planes of the whole block
+		int inputPlaneSize = planeSize(inputByteStride, height);
+		int outputPlaneSize = planeSize(outputByteStride, height);
+		long lineBytes = (long) width * Math.max(LCMS4J.getPixelSize(m_inputFormat), LCMS4J.getPixelSize(m_outputFormat));
+		int callLines = (int) Math.max(1, Math.min(height, MAX_CALL_BYTES / Math.max(1, lineBytes)));
+		for (int first = 0; first < height; first += callLines) {
+			int lines = Math.min(callLines, height - first);
+			LCMS4J.cmsDoTransformLineStride(m_hTransform, inputData, (int) (inputByteOffset + first * inputByteStride),
+					outputData, (int) (outputByteOffset + first * outputByteStride), width, lines,
+					(int) inputByteStride, (int) outputByteStride, inputPlaneSize, outputPlaneSize);
+		}
+	}
+	
+	/**
+	 * Checks that a number of pixels fits inside an array of pixel data.
+	 * 
+	 * @param offset Offset (in bytes) of the first byte of pixel data
+	 * @param pixels Number of pixels
+	 * @param format Format of pixel data (LCMS4J.TYPE_*)
+	 * @param data Primitive array of pixel data
+	 * @param elementSize Size (in bytes) of an element of the array
+	 * @throws IndexOutOfBoundsException If pixel data exceeds the array bounds, or can not be addressed by native code
+	 */
+	private static void checkBounds(long offset, int pixels, int format, Object data, int elementSize) {
+		long length = (long) Array.getLength(data) * elementSize;
+		long end = offset + (long) pixels * LCMS4J.getPixelSize(format);
+		if (offset < 0 || pixels < 0 || end > length || offset > Integer.MAX_VALUE) {
+			throw new IndexOutOfBoundsException("Pixel data out of array bounds (offset "+offset+", "+pixels+" pixels, length "+length+" bytes)");
+		}
+	}
+	
+	/**
+	 * Checks that a rectangular block of pixels fits inside an array of pixel data. For planar formats, all the planes
+	 * must fit inside the array.
+	 * 
+	 * @param offset Offset (in bytes) of the first byte of pixel data
+	 * @param width Number of pixels on each line
+	 * @param height Number of lines
+	 * @param stride Distance (in bytes) between the start of two consecutive lines
+	 * @param format Format of pixel data (LCMS4J.TYPE_*)
+	 * @param data Primitive array of pixel data
+	 * @param elementSize Size (in bytes) of an element of the array
+	 * @throws IndexOutOfBoundsException If pixel data exceeds the array bounds, or can not be addressed by native code
+	 */
+	private static void checkBounds(long offset, int width, int height, long stride, int format, Object data, int elementSize) {
+		long length = (long) Array.getLength(data) * elementSize;
+		long end = offset + (height - 1) * stride + getLineSize(width, format);
+		if (LCMS4J.isPlanar(format)) {
+			long plane = stride * height;
+			if (plane > Integer.MAX_VALUE) {
+				throw new IndexOutOfBoundsException("Plane of pixel data too big ("+plane+" bytes)");
+			}
+			end += (getChannels(format) - 1) * plane;
+		}
+		if (offset < 0 || end > length || offset > Integer.MAX_VALUE) {
+			throw new IndexOutOfBoundsException("Pixel data out of array bounds (offset "+offset+", "+width+"x"+height
+					+" pixels, stride "+stride+", length "+length+" bytes)");
+		}
+	}
+	
+	/**
+	 * Gets the size of a line of pixel data. For planar formats, it is the size of a line of a single channel.
+	 * 
+	 * @param width Number of pixels on the line
+	 * @param format Format of pixel data (LCMS4J.TYPE_*)
+	 * @return Size of the line in bytes
+	 */
+	private static long getLineSize(int width, int format) {
+		long lineSize = (long) width * LCMS4J.getPixelSize(format);
+		return LCMS4J.isPlanar(format) ? lineSize / getChannels(format) : lineSize;
+	}
+	
+	/**
+	 * Gets the number of channels of a pixel, including extra (alpha) channels.
+	 * 
+	 * @param format Format of pixel data (LCMS4J.TYPE_*)
+	 * @return Number of channels
+	 */
+	private static int getChannels(int format) {
+		return ((format >> 3) & 0x0F) + LCMS4J.getExtraChannels(format);
+	}
+	
+	/**
+	 * Gets the size of the elements of a primitive array of pixel data.
+	 * 
+	 * @param data Primitive array of pixel data
+	 * @return Size of an element in bytes
+	 * @throws IllegalArgumentException If <code>data</code> is not a supported primitive array
+	 */
+	private static int getElementSize(Object data) {
+		if (data instanceof byte[]) {
+			return 1;
+		} else if (data instanceof short[]) {
+			return 2;
+		} else if (data instanceof int[] || data instanceof float[]) {
+			return 4;
+		}
+		throw new IllegalArgumentException("Unsupported pixel data array type");
+	}
+
+	/**
+	 * Gets the size of a plane of pixel data, as needed by planar formats.
+	 * 
+	 * @param stride Distance (in bytes) between the start of two consecutive lines
+	 * @param height Number of lines
+	 * @return Size of a plane in bytes, limited to the maximum size of an array
+	 */
+	private static int planeSize(long stride, int height) {
+		return (int) Math.min(Integer.MAX_VALUE, stride * height);
+	}
 }
@@ -1,16 +1,52 @@
 package lcms4j.xyz.controls;
 
+import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.color.ColorSpace;
 import java.awt.color.ICC_Profile;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
 import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 
@@ -29,12 +65,18 @@ import lcms4j.xyz.imaging.*;
 public class IccTransformer {
 	/** Destination profile for color transformations */
 	private IccProfile m_destinationProfile = null;
+	/** Destination profile for color transformations, as embedded in output files */
+	private ICC_Profile m_destinationICC = null;
 	/** Default RGB profile to be used as source for color transformations */
 	private IccProfile m_defaultRGB = null;
 	/** Default CMYK profile to be used as source for color transformations */
 	private IccProfile m_defaultCMYK = null;
 	/** Default Gray profile to be used as source for color transformations */
 	private IccProfile m_defaultGray = null; 
+	/** Built-in sRGB profile for JPEG files with sRGB EXIF color space (created on first use) */
+	private IccProfile m_exifSRGB = null;
+	/** Built-in AdobeRGB profile for JPEG files with AdobeRGB EXIF color space (created on first use) */
+	private IccProfile m_exifAdobeRGB = null;
 	/** Intent for color transformations */
 	private int m_intent = LCMS4J.INTENT_RELATIVE_COLORIMETRIC;
 	/** Flags for color transformations */
@@ -43,7 +85,52 @@ public class IccTransformer {
 	private boolean m_useEmbeddedProfiles = true;
 	/** Quality of JPEG compression for output files (0 to 1)*/
 	private float m_jpegQuality = 1f;
+	/** Context for all native profiles and transforms of this transformer (<code>null</code> for the global context) */
+	private final IccContext m_context;
+	/** Maximum number of bands transformed in parallel (<code>1</code> for serial transformations) */
+	private int m_parallelism = 1;
+	/** Minimum number of rows of each band for parallel transformations */
+	private int m_minBandRows = DEFAULT_MIN_BAND_ROWS;
 	
+	/** Parallelism value that uses as many bands as the parallelism of the common <code>ForkJoinPool</code> */
+	public static final int PARALLELISM_AUTO = 0;
+	/** Default minimum number of rows of each band for parallel transformations */
+	public static final int DEFAULT_MIN_BAND_ROWS = 64;
+	/** Strip rows value of streaming transformations that uses the tallest strips fitting <code>DEFAULT_STRIP_BYTES</code> */
+	public static final int STRIP_ROWS_AUTO = 0;
+	/** Memory budget of the strips of streaming transformations with <code>STRIP_ROWS_AUTO</code> (bytes) */
+	public static final int DEFAULT_STRIP_BYTES = 64 * 1024 * 1024;
+	/** Estimated memory of a pixel of a strip: source and transformed pixels of up to 4 channels of 16 bits (bytes) */
+	private static final int STRIP_PIXEL_BYTES = 16;
+	
+	/** Color space types of interleaved component layouts supported for <code>TYPE_CUSTOM</code> images */
+	private static final int[] COMPONENT_COLOR_SPACES = {
+			ColorSpace.TYPE_GRAY, ColorSpace.TYPE_GRAY, 
+			ColorSpace.TYPE_RGB, ColorSpace.TYPE_RGB, ColorSpace.TYPE_RGB, ColorSpace.TYPE_RGB, ColorSpace.TYPE_RGB, ColorSpace.TYPE_RGB,
+			ColorSpace.TYPE_CMYK
+	};
+	/** Band offsets of interleaved component layouts supported for <code>TYPE_CUSTOM</code> images */
+	private static final int[][] COMPONENT_BAND_OFFSETS = {
+			{0}, {0, 1}, 
+			{0, 1, 2}, {2, 1, 0}, {0, 1, 2, 3}, {1, 2, 3, 0}, {3, 2, 1, 0}, {2, 1, 0, 3},
+			{0, 1, 2, 3}
+	};
+	/** LCMS4J buffer types of interleaved component layouts for 8-bit, 16-bit and floating point data (<code>0</code> if not available) */
+	private static final int[][] COMPONENT_BUFFER_TYPES = {
+			{LCMS4J.TYPE_GRAY_8, LCMS4J.TYPE_GRAY_16, LCMS4J.TYPE_GRAY_FLT},
+			{LCMS4J.TYPE_GRAYA_8, LCMS4J.TYPE_GRAYA_16, 0},
+			{LCMS4J.TYPE_RGB_8, LCMS4J.TYPE_RGB_16, LCMS4J.TYPE_RGB_FLT},
+			{LCMS4J.TYPE_BGR_8, LCMS4J.TYPE_BGR_16, LCMS4J.TYPE_BGR_FLT},
+			{LCMS4J.TYPE_RGBA_8, LCMS4J.TYPE_RGBA_16, LCMS4J.TYPE_RGBA_FLT},
+			{LCMS4J.TYPE_ARGB_8, LCMS4J.TYPE_ARGB_16, LCMS4J.TYPE_ARGB_FLT},
+			{LCMS4J.TYPE_ABGR_8, LCMS4J.TYPE_ABGR_16, 0},
+			{LCMS4J.TYPE_BGRA_8, LCMS4J.TYPE_BGRA_16, LCMS4J.TYPE_BGRA_FLT},
+			// LittleCMS floating point CMYK ranges 0..100, while Java ranges 0..1
+			{LCMS4J.TYPE_CMYK_8, LCMS4J.TYPE_CMYK_16, 0}
+	};
+	/** <code>true</code> if packed int pixels are stored with their least significant byte first */
+	private static final boolean LITTLE_ENDIAN = (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+
 	/**
 	 * Creates an <code>IccTransformer</code> object that will perform color transformations to a
 	 * predefined destination profile.
@@ -54,12 +141,29 @@ public class IccTransformer {
 	 * @throws LCMS4JException If destination profile contains invalid data
 	 */
 	public IccTransformer(ICC_Profile destinationProfile, int intent, boolean blackPointCompensation) throws LCMS4JException {
-		m_destinationProfile = new IccProfile(destinationProfile.getData());
+		this(null, destinationProfile, intent, blackPointCompensation);
+	}
+	
+	/**
+	 * Creates an <code>IccTransformer</code> object that will perform color transformations to a
+	 * predefined destination profile, allocating all its native profiles and transforms inside a given context.
+	 * 
+	 * @param context Context for native profiles and transforms (<code>null</code> for the global context)
+	 * @param destinationProfile Destination ICC profile for color transformations
+	 * @param intent Intent for color transformations (<code>LCMS4J.INTENT_*</code>)
+	 * @param blackPointCompensation If <code>true</code>, black point compensation is used for colorimetric relative transformations
+	 * @throws LCMS4JException If destination profile contains invalid data
+	 */
+	public IccTransformer(IccContext context, ICC_Profile destinationProfile, int intent, boolean blackPointCompensation) throws LCMS4JException {
+		m_context = context;
+		byte[] destinationData = destinationProfile.getData();
+		m_destinationProfile = new IccProfile(m_context, destinationData);
+		m_destinationICC = ICC_Profile.getInstance(destinationData);
 		m_intent = intent;
 		m_flags = (blackPointCompensation ? LCMS4J.CMSFLAGS_BLACKPOINTCOMPENSATION : 0);
-		m_defaultGray = new IccProfile(IccProfile.PROFILE_GRAY);
-		m_defaultRGB = new IccProfile(IccProfile.PROFILE_SRGB);
-		m_defaultCMYK = new IccProfile(IccProfile.PROFILE_FOGRA39);
+		m_defaultGray = new IccProfile(m_context, IccProfile.PROFILE_GRAY);
+		m_defaultRGB = new IccProfile(m_context, IccProfile.PROFILE_SRGB);
+		m_defaultCMYK = new IccProfile(m_context, IccProfile.PROFILE_FOGRA39);
 	}
 	
 	/**
@@ -75,8 +179,8 @@ public class IccTransformer {
 		IccProfile src = null;
 		BufferedImage result;
 		try {
-			src = new IccProfile(srcProfile.getData());
-			result = transform(image, src, m_destinationProfile, m_intent, m_flags);
+			src = IccProfileRegistry.getProfile(m_context, srcProfile);
+			result = transform(image, src, m_destinationProfile, m_intent, m_flags, m_parallelism, m_minBandRows);
 		} finally {
 			if (src != null) src.dispose();
 		}
@@ -87,12 +191,106 @@ public class IccTransformer {
 	 * Performs color transformation on an image file. Transformed image is returned as a new <code>BufferedImage</code>.<br>
 	 * Destination profile, intent and flags should have been set previously
 	 * 
+	 * High bit depth images (for instance, 16-bit PNG files) are transformed in a single pass, and the
+	 * transformed image keeps the bit depth of the source image.
+	 * 
 	 * @param srcImage Source image file
 	 * @return the color transformed image
 	 * @throws LCMS4JException if any error occurs during color transformation
 	 */
-	@SuppressWarnings("unused")
 	public BufferedImage transform(File srcImage) throws LCMS4JException {
+		return transform(srcImage, true);
+	}
+	
+	/**
+	 * Performs color transformation on an image file. Transformed image is returned as a new <code>BufferedImage</code>.
+	 * 
+	 * @param srcImage Source image file
+	 * @param keepBitDepth If <code>true</code>, transformed image keeps the bit depth of high bit depth source images.
+	 *        Otherwise, transformed image is always 8-bit.
+	 * @return the color transformed image
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	private BufferedImage transform(File srcImage, boolean keepBitDepth) throws LCMS4JException {
+		return transform(decode(srcImage), keepBitDepth);
+	}
+	
+	/**
+	 * Reads the raster and metadata of an image file, and determines its pixel format and source profile.<br>
+	 * The source image must be passed to {@link #transform(SourceImage, boolean)} (or disposed) in order to
+	 * free the native resources of its source profile.
+	 * 
+	 * @param srcImage Source image file
+	 * @return Decoded source image
+	 * @throws LCMS4JException if source image can not be read or is not supported
+	 */
+	private SourceImage decode(File srcImage) throws LCMS4JException {
+		// Validate input image
+		if (srcImage == null) {
+			throw new LCMS4JException("Source image can not be null.");
+		}
+		return decode(readSource(srcImage));
+	}
+	
+	/**
+	 * Reads an image file into memory, so its raster and metadata are parsed from the same bytes.
+	 * 
+	 * @param srcImage Source image file
+	 * @return Source image bytes
+	 * @throws LCMS4JException if source image can not be read
+	 */
+	private static ImageSource readSource(File srcImage) throws LCMS4JException {
+		try {
+			return new ImageSource(srcImage);
+		} catch (IOException e) {
+			throw new LCMS4JException("Unable to read source image: "+e.getMessage());
+		}
+	}
+	
+	/**
+	 * Reads an image file from a stream into memory, so its raster and metadata are parsed from the same bytes.
+	 * 
+	 * @param srcImage Stream positioned at the start of the source image file
+	 * @return Source image bytes
+	 * @throws LCMS4JException if source image can not be read
+	 */
+	private static ImageSource readSource(InputStream srcImage) throws LCMS4JException {
+		if (srcImage == null) {
+			throw new LCMS4JException("Source image can not be null.");
+		}
+		try {
+			return new ImageSource(srcImage);
+		} catch (IOException e) {
+			throw new LCMS4JException("Unable to read source image: "+e.getMessage());
+		}
+	}
+	
+	/**
+	 * Decodes the raster and metadata of an image read into memory, and determines its pixel format and source profile.<br>
+	 * The source image must be passed to {@link #transform(SourceImage, boolean)} (or disposed) in order to
+	 * free the native resources of its source profile.
+	 * 
+	 * @param srcImage Source image bytes
+	 * @return Decoded source image
+	 * @throws LCMS4JException if source image can not be read or is not supported
+	 */
+	private SourceImage decode(ImageSource srcImage) throws LCMS4JException {
+		return decode(srcImage, null);
+	}
+	
+	/**
+	 * Decodes the raster and metadata of an image read into memory, and determines its pixel format and source profile,
+	 * optionally taking the source profile from the metadata of another image.<br>
+	 * The source image must be passed to {@link #transform(SourceImage, boolean)} (or disposed) in order to
+	 * free the native resources of its source profile.
+	 * 
+	 * @param srcImage Source image bytes
+	 * @param profileMetadata Metadata with the embedded profile of the source image (for instance, the metadata of
+	 *        the image which embeds it as a thumbnail), or <code>null</code> to use the metadata of the source image
+	 * @return Decoded source image
+	 * @throws LCMS4JException if source image can not be read or is not supported
+	 */
+	private SourceImage decode(ImageSource srcImage, ImageMetadata profileMetadata) throws LCMS4JException {
 		// Validate input image
 		if (srcImage == null) {
 			throw new LCMS4JException("Source image can not be null.");
@@ -101,10 +299,10 @@ public class IccTransformer {
 		Raster raster = null;
 		int width = 0;
 		int height = 0;
-		int numBands = 0;
-		byte[] rasterData = null;
+		Object rasterData = null;
+		BufferedImage decoded = null;
 		ImageReader reader = null;
-		try (ImageInputStream input = ImageIO.createImageInputStream(srcImage)) {
+		try (ImageInputStream input = srcImage.createImageInputStream()) {
 			Iterator<ImageReader> it = ImageIO.getImageReaders(input);
 			
 			while (it.hasNext() && (raster == null)) {
@@ -115,8 +313,7 @@ public class IccTransformer {
 					continue;
 				}
 				raster = reader.readRaster(0, null);
-				rasterData = ((DataBufferByte)raster.getDataBuffer()).getData();
-				numBands = raster.getNumBands();
+				rasterData = getRasterData(raster);
 				width = reader.getWidth(0);
 				height = reader.getHeight(0);
 				reader.dispose();
@@ -129,28 +326,77 @@ public class IccTransformer {
 		}
 		if (raster == null) {
 			try {
-				BufferedImage bi = ImageIO.read(srcImage);
-				raster = bi.getRaster();
-				rasterData = ((DataBufferByte)raster.getDataBuffer()).getData();
-				numBands = raster.getNumBands();
-				width = bi.getWidth();
-				height = bi.getHeight();				
+				decoded = ImageIO.read(srcImage.createImageInputStream());
 			} catch (IOException e) {
 				throw new LCMS4JException("Unable to read source image: "+e.getMessage());
 			}			
+			if (decoded == null) {
+				throw new LCMS4JException("Unable to read source image: unsupported image format.");
+			}
+			raster = decoded.getRaster();
+			rasterData = getRasterData(raster);
+			width = decoded.getWidth();
+			height = decoded.getHeight();				
 		}
         // Read image metadata
-		ImageMetadata md = ImageMetadata.getInstance(srcImage);
+		ImageMetadata md = srcImage.getMetadata();
+		if (md.isIndexed()) {
+			throw new LCMS4JException("Unsupported input image color model (indexed).");
+		}
+		return createSource(raster, rasterData, decoded, width, height, md, profileMetadata);
+	}
+	
+	/**
+	 * Determines the pixel format and source profile of the raster of an image file, and converts its
+	 * raster data to a color space supported by LittleCMS if needed.
+	 * 
+	 * @param raster Raster of the image
+	 * @param rasterData Primitive array of raster data
+	 * @param decoded Decoded image, or <code>null</code> if the raster was read directly
+	 * @param width Width of the raster
+	 * @param height Height of the raster
+	 * @param md Metadata of the image file
+	 * @return Source image
+	 * @throws LCMS4JException if the raster is not supported, or the embedded profile of the image is not valid
+	 */
+	private SourceImage createSource(Raster raster, Object rasterData, BufferedImage decoded, int width, int height, ImageMetadata md) throws LCMS4JException {
+		return createSource(raster, rasterData, decoded, width, height, md, null);
+	}
+	
+	/**
+	 * Determines the pixel format and source profile of the raster of an image file, and converts its
+	 * raster data to a color space supported by LittleCMS if needed.
+	 * 
+	 * @param raster Raster of the image
+	 * @param rasterData Primitive array of raster data
+	 * @param decoded Decoded image, or <code>null</code> if the raster was read directly
+	 * @param width Width of the raster
+	 * @param height Height of the raster
+	 * @param md Metadata of the image file
+	 * @param profileMetadata Metadata with the embedded profile of the raster, or <code>null</code> to use <code>md</code>.
+	 *        Embedded profiles taken from other metadata are ignored if their color space does not match the raster.
+	 * @return Source image
+	 * @throws LCMS4JException if the raster is not supported, or the embedded profile of the image is not valid
+	 */
+	private SourceImage createSource(Raster raster, Object rasterData, BufferedImage decoded, int width, int height, ImageMetadata md, 
+			ImageMetadata profileMetadata) throws LCMS4JException {
+		int numBands = raster.getNumBands();
+		int dataType = raster.getDataBuffer().getDataType();
 		JPEGMetadata jpmd = null;
 		if (md.getImageType() == ImageType.JPEG) {
 			jpmd = (JPEGMetadata) md;
 		}
-		if (md.isIndexed()) {
-			throw new LCMS4JException("Unsupported input image color model (indexed).");
-		}
 		// Determine raster format and default profile
 		int inputFormat = -1;
 		IccProfile inputProfile = null;
+		if (dataType != DataBuffer.TYPE_BYTE) {
+			// High bit depth images are decoded as component images by ImageIO
+			if (decoded != null) {
+				inputFormat = getLcms4jBufferType(decoded);
+				inputProfile = getDefaultProfile(decoded.getColorModel().getColorSpace().getType());
+			}
+			numBands = 0;
+		}
 		switch (numBands) {
 			// Grayscale
 			case 1:
@@ -161,12 +407,7 @@ public class IccTransformer {
 			case 3:
 				inputProfile = m_defaultRGB;
 				inputFormat = LCMS4J.TYPE_RGB_8;
-				if (md.getImageType() == ImageType.JPEG) {
-                    assert jpmd != null;
-                    if (!jpmd.isAdobeApp14Found() || (jpmd.getAdobeColorTransform() == JPEGMetadata.ADOBE_TRANSFORM_YCbCr)) {
-						convertYCbCrToRGB(rasterData);
-					}
-				} else if (md.getImageType() == ImageType.PNG) {
+				if (md.getImageType() == ImageType.PNG) {
 					inputFormat = LCMS4J.TYPE_BGR_8;
 				}
 				break;
@@ -181,7 +422,6 @@ public class IccTransformer {
 								inputFormat = LCMS4J.TYPE_CMYK_8_REV;
 								break;
 							case JPEGMetadata.ADOBE_TRANSFORM_YCCK:
-								convertYcckToCmyk(rasterData, true);
 								inputFormat = LCMS4J.TYPE_CMYK_8;
 								break;
 						}
@@ -193,80 +433,711 @@ public class IccTransformer {
 				}
 				break;
 		}
-		if (inputFormat == -1) {
+		if (inputFormat <= 0 || inputProfile == null) {
 			throw new LCMS4JException("Unsupported input image raster type.");
 		}
-		// Generate output BufferedImage
-		int outputType = getBufferedImageType(m_destinationProfile, md.isTransparent());
-		if (outputType == -1) {
-			throw new LCMS4JException("Unsupported output profile type.");
+		prepareRasterData(raster, rasterData, md, m_parallelism);
+		// Determine input profile
+		boolean ownsProfile = false;
+		if (m_useEmbeddedProfiles) {
+			ImageMetadata profileMd = (profileMetadata == null ? md : profileMetadata);
+			ICC_Profile profile = profileMd.getIccProfile();
+			if ((profile != null) && (profileMetadata != null) && (profile.getColorSpaceType() != inputProfile.getColorSpaceType())) {
+				profile = null;
+			}
+			if (profile != null) {
+				inputProfile = IccProfileRegistry.getProfile(m_context, profile);
+				ownsProfile = true;
+			} else if (profileMd.getImageType() == ImageType.JPEG) {
+                long exifCS = ((JPEGMetadata) profileMd).getExifColorSpace();
+				if ((exifCS == JPEGMetadata.EXIF_CS_SRGB) && (numBands == 3)) {
+					inputProfile = getExifProfile(IccProfile.PROFILE_SRGB);
+				} else if ((exifCS == JPEGMetadata.EXIF_CS_ADOBERGB) && (numBands == 3)) {
+					inputProfile = getExifProfile(IccProfile.PROFILE_ADOBERGB);
+				}
+			}
 		}
-		BufferedImage output = new BufferedImage(width, height, outputType);
-		byte[] outputData = ((DataBufferByte)output.getRaster().getDataBuffer()).getData();
-		int outputNumBands = output.getRaster().getNumBands();
-		int outputFormat = getLcms4jBufferType(output);
-		if (outputFormat == 0) {
-			throw new LCMS4JException("Unsupported output image type");
+		return new SourceImage(raster, rasterData, width, height, md, inputFormat, inputProfile, ownsProfile);
+	}
+	
+	/**
+	 * Converts raster data of a JPEG file from the color space used for compression (YCbCr or YCCK) to the
+	 * color space of its ICC profile (RGB or CMYK), in place. Other rasters are not modified.
+	 * 
+	 * @param raster Raster of the image
+	 * @param rasterData Primitive array of raster data
+	 * @param md Metadata of the image file
+	 * @param parallelism Maximum number of parallel conversion tasks
+	 */
+	private static void prepareRasterData(Raster raster, Object rasterData, ImageMetadata md, int parallelism) {
+		if (md.getImageType() != ImageType.JPEG || raster.getDataBuffer().getDataType() != DataBuffer.TYPE_BYTE) {
+			return;
 		}
-		// Perform transformation
-		boolean usingEmbeddedProfile = false;
+		JPEGMetadata jpmd = (JPEGMetadata) md;
+		switch (raster.getNumBands()) {
+			case 3:
+				if (!jpmd.isAdobeApp14Found() || (jpmd.getAdobeColorTransform() == JPEGMetadata.ADOBE_TRANSFORM_YCbCr)) {
+					JpegColorConverter.convertYCbCrToRGB((byte[]) rasterData, parallelism);
+				}
+				break;
+			case 4:
+				if (jpmd.isAdobeApp14Found() && (jpmd.getAdobeColorTransform() == JPEGMetadata.ADOBE_TRANSFORM_YCCK)) {
+					JpegColorConverter.convertYcckToCmyk((byte[]) rasterData, parallelism);
+				}
+				break;
+		}
+	}
+	
+	/**
+	 * Performs color transformation on a decoded source image, and frees the native resources of its source profile.
+	 * 
+	 * @param source Decoded source image
+	 * @param keepBitDepth If <code>true</code>, transformed image keeps the bit depth of high bit depth source images.
+	 *        Otherwise, transformed image is always 8-bit.
+	 * @return the color transformed image
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	private BufferedImage transform(SourceImage source, boolean keepBitDepth) throws LCMS4JException {
+		IccTransform icctransform = null;
+		try {
+			// Generate output BufferedImage
+			int dataType = source.m_raster.getDataBuffer().getDataType();
+			boolean transparency = source.m_metadata.isTransparent() && (LCMS4J.getExtraChannels(source.m_inputFormat) > 0);
+			BufferedImage output = createOutputImage(m_destinationProfile, source.m_width, source.m_height, transparency, 
+					keepBitDepth ? dataType : DataBuffer.TYPE_BYTE);
+			if (output == null) {
+				throw new LCMS4JException("Unsupported output profile type.");
+			}
+			Object outputData = getRasterData(output.getRaster());
+			int outputFormat = getLcms4jBufferType(output);
+			if (outputFormat == 0) {
+				throw new LCMS4JException("Unsupported output image type");
+			}
+			// Perform transformation
+			icctransform = TransformCache.getTransform(source.m_inputProfile, source.m_inputFormat, m_destinationProfile, outputFormat, m_intent, 
+					m_flags | getAlphaFlags(source.m_inputFormat, outputFormat));
+			transformBands(icctransform, source.m_rasterData, getDataOffset(source.m_raster), outputData, 0, source.m_width, source.m_height, 
+					getScanlineStride(source.m_raster), getScanlineStride(output.getRaster()), m_parallelism, m_minBandRows);
+			return output;
+		} finally {
+			if (icctransform != null) icctransform.dispose();
+			source.dispose();
+		}
+	}
+	
+	/**
+	 * Performs color transformaton on an image file. Transformed image is saved to another (or the same) file.<br>
+	 * Destination profile, intent and flags should have been set previously
+	 * 
+	 * @param srcImage Source image file
+	 * @param dstImage Destination image file
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	public void transform(File srcImage, File dstImage) throws LCMS4JException {
+		if (srcImage == null) {
+			throw new LCMS4JException("Source image can not be null.");
+		}
+		transform(readSource(srcImage), dstImage);
+	}
+	
+	/**
+	 * Performs color transformation on an image already read into memory. Transformed image is returned as a
+	 * new <code>BufferedImage</code>, keeping the bit depth of high bit depth source images.<br>
+	 * Pixels and metadata are decoded from the bytes of the source, without reading the image file again.
+	 * 
+	 * @param srcImage Source image bytes
+	 * @return the color transformed image
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	public BufferedImage transform(ImageSource srcImage) throws LCMS4JException {
+		return transform(decode(srcImage), true);
+	}
+	
+	/**
+	 * Performs color transformation on an image already read into memory. Transformed image is saved to a file.<br>
+	 * Pixels and metadata are decoded from the bytes of the source, without reading the image file again.
+	 * 
+	 * @param srcImage Source image bytes
+	 * @param dstImage Destination image file
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	public void transform(ImageSource srcImage, File dstImage) throws LCMS4JException {
+		// Determine output image type by extension
+		ImageType type = getOutputType(dstImage);
+
+		// Transform source image (JPEG files are always 8-bit)
+		SourceImage source = decode(srcImage);
+		double dpi = source.m_metadata.getDpiX();
+		BufferedImage output = transform(source, type == ImageType.PNG);
+
+		// Save output image to file
+		write(output, dstImage, type, dpi);
+	}
+	
+	/**
+	 * Performs color transformation on an image file read from a stream. Transformed image is returned as a new
+	 * <code>BufferedImage</code>, keeping the bit depth of high bit depth source images.<br>
+	 * The stream is read up to its end into memory, and it is not closed.
+	 * 
+	 * @param srcImage Stream positioned at the start of the source image file
+	 * @return the color transformed image
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	public BufferedImage transform(InputStream srcImage) throws LCMS4JException {
+		return transform(readSource(srcImage));
+	}
+	
+	/**
+	 * Performs color transformation on an image file read from a stream. Transformed image is written to another
+	 * stream, without using any temporary file.<br>
+	 * The source stream is read up to its end into memory. None of the streams is closed.
+	 * 
+	 * @param srcImage Stream positioned at the start of the source image file
+	 * @param dstImage Stream where the transformed image file is written
+	 * @param type Type of the transformed image file (<code>ImageType.JPEG</code> or <code>ImageType.PNG</code>)
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	public void transform(InputStream srcImage, OutputStream dstImage, ImageType type) throws LCMS4JException {
+		transform(readSource(srcImage), dstImage, type);
+	}
+	
+	/**
+	 * Performs color transformation on an image already read into memory. Transformed image is written to a stream.<br>
+	 * Pixels and metadata are decoded from the bytes of the source, without reading the image file again.
+	 * 
+	 * @param srcImage Source image bytes
+	 * @param dstImage Stream where the transformed image file is written. The stream is not closed.
+	 * @param type Type of the transformed image file (<code>ImageType.JPEG</code> or <code>ImageType.PNG</code>)
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	public void transform(ImageSource srcImage, OutputStream dstImage, ImageType type) throws LCMS4JException {
+		if (dstImage == null) {
+			throw new LCMS4JException("Destination stream can not be null.");
+		}
+		if (type != ImageType.JPEG && type != ImageType.PNG) {
+			throw new LCMS4JException("Unsupported output image type: " + type);
+		}
+
+		// Transform source image (JPEG files are always 8-bit)
+		SourceImage source = decode(srcImage);
+		double dpi = source.m_metadata.getDpiX();
+		BufferedImage output = transform(source, type == ImageType.PNG);
+
+		// Write output image to stream
+		switch (type) {
+			case JPEG:
+				if (!ImageWriter.writeJpeg(output, dstImage, m_jpegQuality, (int)Math.round(dpi), m_destinationICC)) {
+					throw new LCMS4JException("Unable to write output image");
+				}
+				break;
+
+			default:
+				if (!ImageWriter.writePng(output, dstImage, dpi, m_destinationICC)) {
+					throw new LCMS4JException("Unable to write output image");
+				}
+				break;
+		}
+	}
+	
+	/**
+	 * Performs color transformation on an image file in horizontal strips, without loading the whole image in memory,
+	 * using the tallest strips that fit {@link #DEFAULT_STRIP_BYTES}.
+	 * Transformed image is saved to another file, which must be a PNG file.<br>
+	 * Destination profile, intent and flags should have been set previously.
+	 * 
+	 * @param srcImage Source image file
+	 * @param dstImage Destination image file (PNG)
+	 * @throws LCMS4JException if any error occurs during color transformation, or destination file is not a PNG file
+	 * @see #transformStreaming(File, File, int)
+	 */
+	public void transformStreaming(File srcImage, File dstImage) throws LCMS4JException {
+		transformStreaming(srcImage, dstImage, STRIP_ROWS_AUTO);
+	}
+	
+	/**
+	 * Performs color transformation on an image file in horizontal strips, without loading the whole image in memory.
+	 * Transformed image is saved to another file, which must be a PNG file.<br>
+	 * Destination profile, intent and flags should have been set previously.<br>
+	 * <br>
+	 * Each strip is read from the source file, transformed and written to the destination file before reading the
+	 * next one, so memory usage depends on the width of the image and the height of the strips, but not on the
+	 * height of the image.
+	 * 
+	 * @param srcImage Source image file
+	 * @param dstImage Destination image file (PNG)
+	 * @param stripRows Number of rows of each strip, or {@link #STRIP_ROWS_AUTO} for the tallest strips that fit
+	 *        {@link #DEFAULT_STRIP_BYTES}. Image readers decode the source file from its beginning for every strip, so
+	 *        an image of <i>H</i> rows takes about <i>H / stripRows</i> partial decodings, and decoding time grows
+	 *        with <i>H&sup2; / stripRows</i>: short strips save memory, but make tall images much slower.
+	 * @throws LCMS4JException if any error occurs during color transformation, or destination file is not a PNG file
+	 */
+	public void transformStreaming(File srcImage, File dstImage, int stripRows) throws LCMS4JException {
+		if (srcImage == null || dstImage == null) {
+			throw new IllegalArgumentException("Image files can not be null.");
+		}
+		if (stripRows < 0) {
+			throw new IllegalArgumentException("Strip rows can not be negative.");
+		}
+		if (getOutputType(dstImage) != ImageType.PNG) {
+			throw new LCMS4JException("Streaming transformation only supports PNG destination files.");
+		}
+		// Read image metadata
+		ImageMetadata md = ImageMetadata.getInstance(srcImage);
+		if (md.isIndexed()) {
+			throw new LCMS4JException("Unsupported input image color model (indexed).");
+		}
+		ImageReader reader = null;
+		SourceImage source = null;
 		IccTransform icctransform = null;
+		PNGStreamWriter writer = null;
+		boolean completed = false;
+		try (ImageInputStream input = ImageIO.createImageInputStream(srcImage)) {
+			Iterator<ImageReader> it = (input == null ? null : ImageIO.getImageReaders(input));
+			if (it == null || !it.hasNext()) {
+				throw new LCMS4JException("Unable to read source image: no suitable reader found.");
+			}
+			reader = it.next();
+			reader.setInput(input);
+			int width = reader.getWidth(0);
+			int height = reader.getHeight(0);
+			if (stripRows == STRIP_ROWS_AUTO) {
+				stripRows = (int) Math.max(1, DEFAULT_STRIP_BYTES / ((long) width * STRIP_PIXEL_BYTES));
+			}
+			stripRows = Math.min(stripRows, height);
+			BufferedImage output = null;
+			for (int y=0; y<height; y+=stripRows) {
+				// Read strip
+				int rows = Math.min(stripRows, height - y);
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceRegion(new Rectangle(0, y, width, rows));
+				Raster raster;
+				BufferedImage decoded = null;
+				if (reader.canReadRaster()) {
+					raster = reader.readRaster(0, param);
+				} else {
+					decoded = reader.read(0, param);
+					raster = decoded.getRaster();
+				}
+				Object rasterData = getRasterData(raster);
+				if (source == null) {
+					// First strip determines formats, profiles and transform for the whole image
+					source = createSource(raster, rasterData, decoded, width, rows, md);
+					boolean transparency = md.isTransparent() && (LCMS4J.getExtraChannels(source.m_inputFormat) > 0);
+					output = createOutputImage(m_destinationProfile, width, stripRows, transparency, raster.getDataBuffer().getDataType());
+					if (output == null) {
+						throw new LCMS4JException("Unsupported output profile type.");
+					}
+					int outputFormat = getLcms4jBufferType(output);
+					if (outputFormat == 0) {
+						throw new LCMS4JException("Unsupported output image type");
+					}
+					icctransform = TransformCache.getTransform(source.m_inputProfile, source.m_inputFormat, m_destinationProfile, outputFormat, m_intent, 
+							m_flags | getAlphaFlags(source.m_inputFormat, outputFormat));
+					writer = createPngWriter(dstImage, output, width, height, md.getDpiX());
+				} else {
+					prepareRasterData(raster, rasterData, md, m_parallelism);
+				}
+				// Transform and write strip
+				transformBands(icctransform, rasterData, getDataOffset(raster), getRasterData(output.getRaster()), 0, width, rows, 
+						getScanlineStride(raster), getScanlineStride(output.getRaster()), m_parallelism, m_minBandRows);
+				writer.writeRows(output.getRaster(), rows);
+			}
+			writer.close();
+			completed = true;
+		} catch (IOException | IllegalArgumentException e) {
+			throw new LCMS4JException("Unable to transform image: " + e.getMessage(), e);
+		} finally {
+			if (reader != null) reader.dispose();
+			if (icctransform != null) icctransform.dispose();
+			if (source != null) source.dispose();
+			if (!completed && writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					/* Ignore, incomplete file is deleted */
+				}
+				dstImage.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Performs color transformation on a reduced version of an image file, for previews. Transformed image is
+	 * returned as a new 8-bit <code>BufferedImage</code>, whose width and height are not greater than <code>maxEdge</code>.<br>
+	 * Destination profile, intent and flags should have been set previously.<br>
+	 * <br>
+	 * The image reader only stores one of every <i>n</i> pixels of every <i>n</i> rows, with the smallest <i>n</i>
+	 * that fits the image in <code>maxEdge</code>, so only the pixels of the thumbnail are color transformed.
+	 * Pixels are picked, not averaged, so thumbnails of detailed images may show aliasing.
+	 *
+	 * @param srcImage Source image file
+	 * @param maxEdge Maximum width and height of the thumbnail (px)
+	 * @return the color transformed thumbnail
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	public BufferedImage transformThumbnail(File srcImage, int maxEdge) throws LCMS4JException {
+		if (srcImage == null) {
+			throw new LCMS4JException("Source image can not be null.");
+		}
+		if (maxEdge <= 0) {
+			throw new IllegalArgumentException("Maximum edge must be positive.");
+		}
+		ImageSource imageSource = readSource(srcImage);
+		ImageMetadata md = imageSource.getMetadata();
+		if (md.isIndexed()) {
+			throw new LCMS4JException("Unsupported input image color model (indexed).");
+		}
+		// Read subsampled raster
+		Raster raster;
+		BufferedImage decoded = null;
+		ImageReader reader = null;
+		try (ImageInputStream input = imageSource.createImageInputStream()) {
+			Iterator<ImageReader> it = ImageIO.getImageReaders(input);
+			if (!it.hasNext()) {
+				throw new LCMS4JException("Unable to read source image: no suitable reader found.");
+			}
+			reader = it.next();
+			reader.setInput(input);
+			int longestEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+			int subsampling = Math.max(1, (longestEdge + maxEdge - 1) / maxEdge);
+			ImageReadParam param = reader.getDefaultReadParam();
+			param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+			if (reader.canReadRaster()) {
+				raster = reader.readRaster(0, param);
+			} else {
+				decoded = reader.read(0, param);
+				raster = decoded.getRaster();
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			throw new LCMS4JException("Unable to read source image: " + e.getMessage(), e);
+		} finally {
+			if (reader != null) reader.dispose();
+		}
+		// Transform thumbnail pixels
+		SourceImage source = createSource(raster, getRasterData(raster), decoded, raster.getWidth(), raster.getHeight(), md);
+		return transform(source, false);
+	}
+
+	/**
+	 * Performs color transformation on the thumbnail embedded in the EXIF metadata of a JPEG file, without
+	 * decoding the main image. Transformed thumbnail is returned as a new 8-bit <code>BufferedImage</code>.<br>
+	 * Destination profile, intent and flags should have been set previously.<br>
+	 * <br>
+	 * Thumbnails do not embed color profiles, so the thumbnail is transformed from the embedded profile (or EXIF
+	 * color space) of the main image, if its color space matches the thumbnail, and from the default profiles otherwise.
+	 *
+	 * @param srcImage Source image file
+	 * @return the color transformed thumbnail, or <code>null</code> if the image has no embedded thumbnail
+	 * @throws LCMS4JException if any error occurs during color transformation
+	 */
+	public BufferedImage transformEmbeddedThumbnail(File srcImage) throws LCMS4JException {
+		if (srcImage == null) {
+			throw new LCMS4JException("Source image can not be null.");
+		}
+		ImageMetadata md = ImageMetadata.getInstance(srcImage);
+		if (!md.hasThumbnail()) {
+			return null;
+		}
+		ByteArrayInputStream thumbnail = md.getThumbnailAsInputStream();
+		if (thumbnail == null) {
+			throw new LCMS4JException("Unable to read embedded thumbnail.");
+		}
+		return transform(decode(new ImageSource(thumbnail.readAllBytes()), md), false);
+	}
+
+	/**
+	 * Creates a PNG writer for the strips of a transformed image, embedding the destination profile.
+	 * 
+	 * @param dstImage Destination image file
+	 * @param strip Image used for transformed strips
+	 * @param width Width of the image
+	 * @param height Height of the image
+	 * @param dpi Resolution of the image (dots per inch)
+	 * @return PNG writer
+	 * @throws IOException if the file can not be written
+	 * @throws LCMS4JException if the strip image can not be written as PNG
+	 */
+	private PNGStreamWriter createPngWriter(File dstImage, BufferedImage strip, int width, int height, double dpi) throws IOException, LCMS4JException {
+		int bitDepth;
+		switch (strip.getRaster().getDataBuffer().getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+				bitDepth = 8;
+				break;
+			case DataBuffer.TYPE_USHORT:
+				bitDepth = 16;
+				break;
+			default:
+				throw new LCMS4JException("Unsupported output data type for PNG files");
+		}
+		int colourType;
+		switch (strip.getRaster().getNumBands()) {
+			case 1:
+				colourType = PNGStreamWriter.COLOUR_TYPE_GRAY;
+				break;
+			case 3:
+				colourType = PNGStreamWriter.COLOUR_TYPE_RGB;
+				break;
+			case 4:
+				colourType = PNGStreamWriter.COLOUR_TYPE_RGBA;
+				break;
+			default:
+				throw new LCMS4JException("Unsupported output image type for PNG files");
+		}
+		return new PNGStreamWriter(dstImage, width, height, bitDepth, colourType, Math.max(0, dpi), m_destinationICC);
+	}
+	
+	/**
+	 * Performs color transformation on an image file asynchronously. Transformed image is saved to another (or the same) file.<br>
+	 * Destination profile, intent and flags should have been set previously.<br>
+	 * <br>
+	 * Only the bytes of the source file are read, and the bytes of the destination file are written, on virtual
+	 * threads (when supported by the Java runtime). Decoding, color transformation and encoding, which run native
+	 * code, run on a bounded pool of platform threads. This transformer must not be disposed until the returned
+	 * future is completed.
+	 * 
+	 * @param srcImage Source image file
+	 * @param dstImage Destination image file
+	 * @return Future completed when the destination file is written. On error, it is completed exceptionally with a
+	 *         <code>CompletionException</code> caused by an <code>LCMS4JException</code>.
+	 */
+	public CompletableFuture<Void> transformAsync(File srcImage, File dstImage) {
+		if (srcImage == null || dstImage == null) {
+			throw new IllegalArgumentException("Image files can not be null.");
+		}
+		ImageType type = getOutputType(dstImage);
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return readSource(srcImage);
+			} catch (LCMS4JException e) {
+				throw new CompletionException(e);
+			}
+		}, AsyncExecutors.io()).thenApplyAsync(source -> {
+			try {
+				ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+				transform(source, encoded, type);
+				return encoded.toByteArray();
+			} catch (LCMS4JException e) {
+				throw new CompletionException(e);
+			}
+		}, AsyncExecutors.nativeWork()).thenAcceptAsync(encoded -> {
+			try {
+				Files.write(dstImage.toPath(), encoded);
+			} catch (IOException e) {
+				throw new CompletionException(new LCMS4JException("Unable to write output image: "+e.getMessage()));
+			}
+		}, AsyncExecutors.io());
+	}
+	
+	/**
+	 * Performs color transformation on a <code>BufferedImage</code> asynchronously, on a bounded pool of
+	 * platform threads.<br>
+	 * Destination profile, intent and flags should have been set previously. This transformer must not be
+	 * disposed until the returned future is completed.
+	 * 
+	 * @param image Original image to be transformed
+	 * @param srcProfile Source ICC profile of the image
+	 * @return Future completed with the transformed image. On error, it is completed exceptionally with a
+	 *         <code>CompletionException</code> caused by an <code>LCMS4JException</code>.
+	 */
+	public CompletableFuture<BufferedImage> transformAsync(BufferedImage image, ICC_Profile srcProfile) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return transform(image, srcProfile);
+			} catch (LCMS4JException e) {
+				throw new CompletionException(e);
+			}
+		}, AsyncExecutors.nativeWork());
+	}
+	
+	/**
+	 * Performs color transformation on all JPEG and PNG image files of a directory, selected by their extension
+	 * in any case. Transformed images are saved to another (or the same) directory with the same file names.<br>
+	 * Destination profile, intent and flags should have been set previously.<br>
+	 * <br>
+	 * Decoding, color transformation and encoding of the images run as separate stages, each one on its own threads,
+	 * connected by bounded queues: files are read and written while other images are being transformed.
+	 * Images are not transformed in order.
+	 * 
+	 * @param inDir Directory of source image files
+	 * @param outDir Directory of destination image files (created if it does not exist)
+	 * @param options Options of the batch (<code>null</code> for default options)
+	 * @return Failed source files, with the error that made them fail (empty if all files were transformed)
+	 * @throws LCMS4JException if directories can not be read or created, or if the batch is interrupted
+	 */
+	public Map<Path, LCMS4JException> transformAll(Path inDir, Path outDir, BatchOptions options) throws LCMS4JException {
+		if (inDir == null || outDir == null) {
+			throw new IllegalArgumentException("Directories can not be null.");
+		}
+		if (options == null) {
+			options = new BatchOptions();
+		}
+		int decodeThreads = options.getDecodeThreads();
+		int transformThreads = options.getTransformThreads();
+		int encodeThreads = options.getEncodeThreads();
+		// List source files
+		BlockingQueue<Path> sources = new LinkedBlockingQueue<>();
+		try (DirectoryStream<Path> dir = Files.newDirectoryStream(inDir, path -> path.getFileName().toString().matches("(?i).*\\.(jpe?g|png)"))) {
+			for (Path path : dir) {
+				if (Files.isRegularFile(path)) {
+					sources.add(path);
+				}
+			}
+			Files.createDirectories(outDir);
+		} catch (IOException e) {
+			throw new LCMS4JException("Unable to list source images: " + e.getMessage(), e);
+		}
+		// Run the pipeline
+		Map<Path, LCMS4JException> failures = new ConcurrentHashMap<>();
+		BlockingQueue<BatchItem> decoded = new ArrayBlockingQueue<>(options.getQueueCapacity());
+		BlockingQueue<BatchItem> transformed = new ArrayBlockingQueue<>(options.getQueueCapacity());
+		ExecutorService decoders = Executors.newFixedThreadPool(decodeThreads);
+		ExecutorService transformers = Executors.newFixedThreadPool(transformThreads);
+		ExecutorService encoders = Executors.newFixedThreadPool(encodeThreads);
 		try {
-			// Determine input profile
-			if (m_useEmbeddedProfiles) {
-				ICC_Profile profile = md.getIccProfile();
-				if (profile != null) {
-					inputProfile = new IccProfile(profile.getData());
-					usingEmbeddedProfile = true;
-				} else if (md.getImageType() == ImageType.JPEG) {
-                    assert jpmd != null;
-                    long exifCS = jpmd.getExifColorSpace();
-					if ((exifCS == JPEGMetadata.EXIF_CS_SRGB) && (numBands == 3)) {
-						inputProfile = new IccProfile(IccProfile.PROFILE_SRGB);
-						usingEmbeddedProfile = true;
-					} else if ((exifCS == JPEGMetadata.EXIF_CS_ADOBERGB) && (numBands == 3)) {
-						inputProfile = new IccProfile(IccProfile.PROFILE_ADOBERGB);
-						usingEmbeddedProfile = true;
+			List<Future<?>> stages = new ArrayList<>();
+			// Decoding: source file to source image
+			AtomicInteger decodersLeft = new AtomicInteger(decodeThreads);
+			for (int i=0; i<decodeThreads; i++) {
+				stages.add(decoders.submit(() -> {
+					try {
+						Path path;
+						while ((path = sources.poll()) != null) {
+							BatchItem item = new BatchItem(path, outDir.resolve(path.getFileName()));
+							try {
+								item.m_source = decode(path.toFile());
+							} catch (Exception e) {
+								failures.put(path, toLCMS4JException(e));
+								continue;
+							}
+							try {
+								decoded.put(item);
+							} catch (InterruptedException e) {
+								item.m_source.dispose();
+								throw e;
+							}
+						}
+					} finally {
+						if (decodersLeft.decrementAndGet() == 0) {
+							endStage(decoded, transformThreads);
+						}
 					}
-				}
+					return null;
+				}));
 			}
-			// Perform transformation
-			icctransform = new IccTransform(inputProfile, inputFormat, m_destinationProfile, outputFormat, m_intent, m_flags);
-			byte[] inputBuffer = new byte[width * numBands];
-			byte[] outputBuffer = new byte[width * outputNumBands];
-			for (int line=0; line<height; line++) {
-				System.arraycopy(rasterData, line * width * numBands, inputBuffer, 0, width * numBands);
-				icctransform.transform(inputBuffer, outputBuffer, width);
-				System.arraycopy(outputBuffer, 0, outputData, line * width * outputNumBands, width * outputNumBands);
+			// Color transformation: source image to output image
+			AtomicInteger transformersLeft = new AtomicInteger(transformThreads);
+			for (int i=0; i<transformThreads; i++) {
+				stages.add(transformers.submit(() -> {
+					try {
+						BatchItem item;
+						while ((item = decoded.take()) != BatchItem.END) {
+							try {
+								item.m_type = getOutputType(item.m_target.toFile());
+								item.m_dpi = item.m_source.m_metadata.getDpiX();
+								item.m_output = transform(item.m_source, item.m_type == ImageType.PNG);
+								item.m_source = null;
+							} catch (Exception e) {
+								failures.put(item.m_path, toLCMS4JException(e));
+								continue;
+							}
+							transformed.put(item);
+						}
+					} finally {
+						if (transformersLeft.decrementAndGet() == 0) {
+							endStage(transformed, encodeThreads);
+						}
+					}
+					return null;
+				}));
+			}
+			// Encoding: output image to destination file, with embedded profile and resolution
+			for (int i=0; i<encodeThreads; i++) {
+				stages.add(encoders.submit(() -> {
+					BatchItem item;
+					while ((item = transformed.take()) != BatchItem.END) {
+						try {
+							write(item.m_output, item.m_target.toFile(), item.m_type, item.m_dpi);
+						} catch (Exception e) {
+							failures.put(item.m_path, toLCMS4JException(e));
+						}
+					}
+					return null;
+				}));
 			}
+			// Wait for all stages to finish, last stage first: an earlier stage may be blocked on a full queue
+			// if all the threads of the next stage failed
+			for (int i=stages.size()-1; i>=0; i--) {
+				stages.get(i).get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LCMS4JException("Batch transformation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new LCMS4JException("Batch transformation failed: " + e.getCause(), e.getCause());
 		} finally {
-			if (icctransform != null) icctransform.dispose();
-			if (usingEmbeddedProfile) inputProfile.dispose();
+			decoders.shutdownNow();
+			transformers.shutdownNow();
+			encoders.shutdownNow();
+			awaitTermination(decoders);
+			awaitTermination(transformers);
+			awaitTermination(encoders);
+			// Free source images left in queues when the batch did not finish
+			for (BatchItem item : decoded) {
+				if (item.m_source != null) item.m_source.dispose();
+			}
 		}
-		// Recover transparency
-		if (md.isTransparent()) {
-			for (int y=0; y<height; y++) {
-				for (int x=0; x<width; x++) {
-					outputData[(y*width + x) * outputNumBands] = rasterData[(y*width + x) * numBands];
-				}
+		return failures;
+	}
+	
+	/**
+	 * Signals the end of a stage of a batch to all the consumers of its output queue.
+	 * 
+	 * @param queue Output queue of the stage
+	 * @param consumers Number of consumers of the queue
+	 * @throws InterruptedException if interrupted while waiting for space in the queue
+	 */
+	private static void endStage(BlockingQueue<BatchItem> queue, int consumers) throws InterruptedException {
+		for (int i=0; i<consumers; i++) {
+			queue.put(BatchItem.END);
+		}
+	}
+	
+	/**
+	 * Waits for all the threads of a stage of a batch to finish, after it has been shut down.
+	 * 
+	 * @param executor Executor of the stage
+	 */
+	private static void awaitTermination(ExecutorService executor) {
+		boolean interrupted = false;
+		while (!executor.isTerminated()) {
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				interrupted = true;
 			}
 		}
-		return output;
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
 	}
 	
 	/**
-	 * Performs color transformaton on an image file. Transformed image is saved to another (or the same) file.<br>
-	 * Destination profile, intent and flags should have been set previously
+	 * Gets an exception as an <code>LCMS4JException</code>.
+	 * 
+	 * @param e Exception
+	 * @return The same exception if it is an <code>LCMS4JException</code>, or a new one caused by it
+	 */
+	private static LCMS4JException toLCMS4JException(Exception e) {
+		return (e instanceof LCMS4JException ? (LCMS4JException) e : new LCMS4JException(e.toString(), e));
+	}
+	
+	/**
+	 * Determines the type of an output image file by its extension.
 	 * 
-	 * @param srcImage Source image file
 	 * @param dstImage Destination image file
-	 * @throws LCMS4JException if any error occurs during color transformation
+	 * @return <code>ImageType.PNG</code> for files with <i>png</i> extension, <code>ImageType.JPEG</code> otherwise
 	 */
-	public void transform(File srcImage, File dstImage) throws LCMS4JException {
-		// Transform source image
-		BufferedImage output = transform(srcImage);
-
-		// Determine output image type by extension
+	private static ImageType getOutputType(File dstImage) {
 		ImageType type = ImageType.JPEG;
 		try {
 			String ext = dstImage.getName().substring(dstImage.getName().lastIndexOf(".")+1);
@@ -276,21 +1147,28 @@ public class IccTransformer {
 		} catch (Exception e) {
 			/* Ignore */
 		}
-
-		// Determine input DPI
-		ImageMetadata md = ImageMetadata.getInstance(srcImage);
-		double dpi = md.getDpiX();
-
-		// Save output image to file
+		return type;
+	}
+	
+	/**
+	 * Saves a transformed image to a file, embedding the destination profile.
+	 * 
+	 * @param output Transformed image
+	 * @param dstImage Destination image file
+	 * @param type Type of the destination image file
+	 * @param dpi Resolution of the image (dots per inch)
+	 * @throws LCMS4JException if the image can not be written
+	 */
+	private void write(BufferedImage output, File dstImage, ImageType type, double dpi) throws LCMS4JException {
 		switch (type) {
 			case JPEG:
-				if (!ImageWriter.writeJpeg(output, dstImage, m_jpegQuality, (int)Math.round(dpi), m_destinationProfile.getICC_Profile())) {
+				if (!ImageWriter.writeJpeg(output, dstImage, m_jpegQuality, (int)Math.round(dpi), m_destinationICC)) {
 					throw new LCMS4JException("Unable to write output image");
 				}
 				break;
 
 			case PNG:
-				if (!ImageWriter.writePng(output, dstImage, dpi, m_destinationProfile.getICC_Profile())) {
+				if (!ImageWriter.writePng(output, dstImage, dpi, m_destinationICC)) {
 					throw new LCMS4JException("Unable to write output image");
 				}
 				break;
@@ -315,7 +1193,7 @@ public class IccTransformer {
 			throw new LCMS4JException("Profile should be in RGB color space.");
 		}
 		m_defaultRGB.dispose();
-		m_defaultRGB = new IccProfile(profile.getData());
+		m_defaultRGB = new IccProfile(m_context, profile.getData());
 	}
 
 	/**
@@ -333,7 +1211,7 @@ public class IccTransformer {
 			throw new LCMS4JException("Profile should be in CMYK color space.");
 		}
 		m_defaultCMYK.dispose();
-		m_defaultCMYK = new IccProfile(profile.getData());
+		m_defaultCMYK = new IccProfile(m_context, profile.getData());
 	}
 	
 	/**
@@ -351,7 +1229,7 @@ public class IccTransformer {
 			throw new LCMS4JException("Profile should be in Gray color space.");
 		}
 		m_defaultGray.dispose();
-		m_defaultGray = new IccProfile(profile.getData());
+		m_defaultGray = new IccProfile(m_context, profile.getData());
 	}
 	
 	/**
@@ -394,6 +1272,28 @@ public class IccTransformer {
 		m_useEmbeddedProfiles = useEmbeddedProfiles;
 	}
 	
+	/**
+	 * Gets the built-in profile for the EXIF color space of JPEG files. Each profile is created once, and shared by all
+	 * the images transformed by this object, so its profile ID is only computed once for the transform cache.
+	 * 
+	 * @param id Identifier of the built-in profile (<code>IccProfile.PROFILE_SRGB</code> or
+	 *        <code>IccProfile.PROFILE_ADOBERGB</code>)
+	 * @return Built-in profile, owned by this object
+	 * @throws LCMS4JException If the profile can not be created
+	 */
+	private synchronized IccProfile getExifProfile(int id) throws LCMS4JException {
+		if (id == IccProfile.PROFILE_SRGB) {
+			if (m_exifSRGB == null) {
+				m_exifSRGB = new IccProfile(m_context, id);
+			}
+			return m_exifSRGB;
+		}
+		if (m_exifAdobeRGB == null) {
+			m_exifAdobeRGB = new IccProfile(m_context, id);
+		}
+		return m_exifAdobeRGB;
+	}
+
 	/**
 	 * Frees any native resources allocated by this object.
 	 */
@@ -402,6 +1302,12 @@ public class IccTransformer {
 		if (m_defaultRGB != null) m_defaultRGB.dispose();
 		if (m_defaultCMYK != null) m_defaultCMYK.dispose();
 		if (m_defaultGray != null) m_defaultGray.dispose();
+		synchronized (this) {
+			if (m_exifSRGB != null) m_exifSRGB.dispose();
+			if (m_exifAdobeRGB != null) m_exifAdobeRGB.dispose();
+			m_exifSRGB = null;
+			m_exifAdobeRGB = null;
+		}
 	}
 
 	/**
@@ -415,6 +1321,25 @@ public class IccTransformer {
 	 * @return Transformed image.
      */
 	public static BufferedImage transform(BufferedImage image, IccProfile src, IccProfile dst, int intent, int flags) throws LCMS4JException {
+		return transform(image, src, dst, intent, flags, 1, DEFAULT_MIN_BAND_ROWS);
+	}
+
+	/**
+	 * Perform ICC color transformation on an image, splitting its rows into bands that are transformed in parallel
+	 * on the common <code>ForkJoinPool</code>. All bands share a single native transform, and the transformed image
+	 * is identical to the one obtained by a serial transformation.
+	 * 
+	 * @param image Original image to be color transformed.
+	 * @param src Source profile for color transformation.
+	 * @param dst Destination profile for color transformation.
+	 * @param intent Transformation rendering intent (LCMS4J.INTENT_*)
+	 * @param flags Flags that modify transformation algorithm (LCMS4J.CCFLAGS_*)
+	 * @param parallelism Maximum number of bands transformed in parallel (<code>1</code> for a serial transformation,
+	 *        {@link #PARALLELISM_AUTO} for the parallelism of the common <code>ForkJoinPool</code>)
+	 * @param minBandRows Minimum number of rows of each band
+	 * @return Transformed image.
+     */
+	public static BufferedImage transform(BufferedImage image, IccProfile src, IccProfile dst, int intent, int flags, int parallelism, int minBandRows) throws LCMS4JException {
 		// Validate input parameters
 		if (image == null) {
 			throw new IllegalArgumentException("Image must not be null");
@@ -435,18 +1360,17 @@ public class IccTransformer {
 		}
 		// Check input data buffer type
 		int inputDataBufferType = image.getRaster().getDataBuffer().getDataType();
-		if (inputDataBufferType != DataBuffer.TYPE_BYTE) {
+		if (inputDataBufferType != DataBuffer.TYPE_BYTE && inputDataBufferType != DataBuffer.TYPE_USHORT && inputDataBufferType != DataBuffer.TYPE_FLOAT
+				&& inputDataBufferType != DataBuffer.TYPE_INT) {
 			throw new LCMS4JException("Unsupported input data buffer type");
 		}
-		// Define output image based on destination profile
-		boolean transparency = false;
-		transparency |= (image.getType() == BufferedImage.TYPE_4BYTE_ABGR);
-		transparency |= (image.getType() == BufferedImage.TYPE_4BYTE_ABGR_PRE);
-		int outputImageType = getBufferedImageType(dst, transparency);
-		if (outputImageType == -1) {
+		// Define output image based on destination profile, with the same data buffer type as input image (8-bit for packed int pixels)
+		boolean transparency = image.getColorModel().hasAlpha();
+		BufferedImage outputImage = createOutputImage(dst, image.getWidth(), image.getHeight(), transparency, 
+				inputDataBufferType == DataBuffer.TYPE_INT ? DataBuffer.TYPE_BYTE : inputDataBufferType);
+		if (outputImage == null) {
 			throw new LCMS4JException("Unsupported output profile type");
 		}
-		BufferedImage outputImage = new BufferedImage(image.getWidth(), image.getHeight(), outputImageType);
 		int outputFormat = getLcms4jBufferType(outputImage);
 		if (outputFormat == 0) {
 			throw new LCMS4JException("Unsupported output image type");
@@ -454,22 +1378,16 @@ public class IccTransformer {
 		// Perform transformation
 		IccTransform icctransform = null;
 		try {
-			// Generate IccTransform object
-			icctransform = new IccTransform(src, inputFormat, dst, outputFormat, intent, flags);
+			// Get cached IccTransform object (alpha is carried by the native transform)
+			icctransform = TransformCache.getTransform(src, inputFormat, dst, outputFormat, intent, flags | getAlphaFlags(inputFormat, outputFormat));
 			// Prepare data buffers
-			byte[] in = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-			byte[] out = ((DataBufferByte) outputImage.getRaster().getDataBuffer()).getData();
-			int pixels = image.getWidth() * image.getHeight();
+			Object in = getRasterData(image.getRaster());
+			Object out = getRasterData(outputImage.getRaster());
+			int inOffset = getDataOffset(image.getRaster());
+			int inStride = getScanlineStride(image.getRaster());
+			int outStride = getScanlineStride(outputImage.getRaster());
 			// Perform transformation
-			icctransform.transform(in, out, pixels);
-			// Recover transparency data
-			if (transparency) {
-				for (int y=0; y<image.getHeight(); y++) {
-					for (int x=0; x<image.getWidth(); x++) {
-						out[(y*image.getWidth() + x) * 4] = in[(y*image.getWidth() + x) * 4];
-					}
-				}				
-			}
+			transformBands(icctransform, in, inOffset, out, 0, image.getWidth(), image.getHeight(), inStride, outStride, parallelism, minBandRows);
 		} finally {
 			// Dispose all native resources
 			if (icctransform != null) icctransform.dispose();	
@@ -493,8 +1411,8 @@ public class IccTransformer {
 		BufferedImage output = null;
 
 		try {
-			srcProfile = new IccProfile(src.getData());
-			dstProfile = new IccProfile(dst.getData());
+			srcProfile = IccProfileRegistry.getProfile(null, src);
+			dstProfile = IccProfileRegistry.getProfile(null, dst);
 			output = transform(image, srcProfile, dstProfile, intent, flags);
 		} finally {
 			if (srcProfile != null) srcProfile.dispose();
@@ -502,6 +1420,115 @@ public class IccTransformer {
 		}
 		return output;
 	}
+
+	/**
+	 * Perform ICC color transformation on a region of an image, in place, with relative colorimetric intent.
+	 *
+	 * @param image Image to be color transformed.
+	 * @param roi Region of the image to transform (<code>null</code> for the whole image).
+	 * @param src Source profile for color transformation.
+	 * @param dst Destination profile for color transformation.
+	 * @throws LCMS4JException If the image type is not supported, or profiles are not compatible with the image.
+	 * @see #transformInPlace(BufferedImage, Rectangle, IccProfile, IccProfile, int, int)
+	 */
+	public static void transformInPlace(BufferedImage image, Rectangle roi, IccProfile src, IccProfile dst) throws LCMS4JException {
+		transformInPlace(image, roi, src, dst, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+	}
+
+	/**
+	 * Perform ICC color transformation on a region of an image, in place.<br>
+	 * <br>
+	 * Transformed pixels replace the original ones in the raster of the image, so no output image is allocated.
+	 * Both profiles must be of the color space of the image, as the pixel layout does not change. The color model
+	 * of the image is not modified: pixels of the region are meant to be interpreted in the destination profile.
+	 *
+	 * @param image Image to be color transformed.
+	 * @param roi Region of the image to transform (<code>null</code> for the whole image). Only the part of the
+	 *        region inside the image is transformed.
+	 * @param src Source profile for color transformation.
+	 * @param dst Destination profile for color transformation.
+	 * @param intent Transformation rendering intent (LCMS4J.INTENT_*)
+	 * @param flags Flags that modify transformation algorithm (LCMS4J.CMSFLAGS_*)
+	 * @throws LCMS4JException If the image type is not supported, or profiles are not compatible with the image.
+	 */
+	public static void transformInPlace(BufferedImage image, Rectangle roi, IccProfile src, IccProfile dst, int intent, int flags) throws LCMS4JException {
+		// Validate input parameters
+		if (image == null) {
+			throw new IllegalArgumentException("Image must not be null");
+		}
+		if (src == null) {
+			throw new IllegalArgumentException("Source profile must not be null");
+		}
+		if (dst == null) {
+			throw new IllegalArgumentException("Destination profile must not be null");
+		}
+		// Input and output share the same pixel layout
+		int format = getLcms4jBufferType(image);
+		if (format == 0) {
+			throw new LCMS4JException("Unsupported image type");
+		}
+		if (!isProfileValid(image, src)) {
+			throw new LCMS4JException("Source profile not compatible with image type");
+		}
+		if (!isProfileValid(image, dst)) {
+			throw new LCMS4JException("Destination profile not compatible with image type");
+		}
+		// Clip region of interest to image bounds
+		Rectangle region = new Rectangle(0, 0, image.getWidth(), image.getHeight());
+		if (roi != null) {
+			region = region.intersection(roi);
+		}
+		if (region.isEmpty()) {
+			return;
+		}
+		// Perform transformation
+		IccTransform icctransform = null;
+		try {
+			// Get cached IccTransform object (alpha is carried by the native transform)
+			icctransform = TransformCache.getTransform(src, format, dst, format, intent, flags | getAlphaFlags(format, format));
+			// Input and output are the same raster region
+			Raster raster = image.getRaster().createChild(region.x, region.y, region.width, region.height, region.x, region.y, null);
+			Object data = getRasterData(raster);
+			int offset = getDataOffset(raster);
+			int stride = getScanlineStride(raster);
+			icctransform.transformRaster(data, offset, data, offset, region.width, region.height, stride, stride);
+		} finally {
+			// Dispose all native resources
+			if (icctransform != null) icctransform.dispose();
+		}
+	}
+
+	/**
+	 * Performs ICC color transformation on a rectangular block of interleaved pixel data, splitting its rows into
+	 * bands that are transformed in parallel on the common <code>ForkJoinPool</code>.
+	 * 
+	 * @param transform Transform shared by all bands
+	 * @param inputData Primitive array of input pixel data
+	 * @param inputOffset Index of the first element of the first input line
+	 * @param outputData Primitive array of output pixel data
+	 * @param outputOffset Index of the first element of the first output line
+	 * @param width Number of pixels on each line
+	 * @param height Number of lines
+	 * @param inputStride Distance (in elements) between the start of two consecutive input lines
+	 * @param outputStride Distance (in elements) between the start of two consecutive output lines
+	 * @param parallelism Maximum number of bands (<code>1</code> for a serial transformation,
+	 *        {@link #PARALLELISM_AUTO} for the parallelism of the common <code>ForkJoinPool</code>)
+	 * @param minBandRows Minimum number of rows of each band
+	 */
+	private static void transformBands(IccTransform transform, Object inputData, int inputOffset, Object outputData, int outputOffset, 
+			int width, int height, int inputStride, int outputStride, int parallelism, int minBandRows) {
+		if (parallelism == PARALLELISM_AUTO) {
+			parallelism = ForkJoinPool.getCommonPoolParallelism();
+		}
+		int bands = Math.min(Math.max(1, parallelism), height / Math.max(1, minBandRows));
+		if (bands <= 1) {
+			transform.transformRaster(inputData, inputOffset, outputData, outputOffset, width, height, inputStride, outputStride);
+			return;
+		}
+		int bandRows = (height + bands - 1) / bands;
+		ForkJoinPool.commonPool().invoke(new BandTransform(transform, inputData, inputOffset, outputData, outputOffset, 
+				width, inputStride, outputStride, 0, height, bandRows));
+	}
 	
 	/**
 	 * Gets LCMS4J buffer type that fits the raster data of an image
@@ -517,27 +1544,225 @@ public class IccTransformer {
 				bufferType = LCMS4J.TYPE_BGR_8;
 				break;
 			case BufferedImage.TYPE_4BYTE_ABGR:
-			case BufferedImage.TYPE_4BYTE_ABGR_PRE:
 				bufferType = LCMS4J.TYPE_ABGR_8;
 				break;
+			case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+				bufferType = LCMS4J.TYPE_ABGR_8_PREMUL;
+				break;
 			case BufferedImage.TYPE_BYTE_GRAY:
 				bufferType = LCMS4J.TYPE_GRAY_8;
 				break;
-			case BufferedImage.TYPE_BYTE_BINARY:
-			case BufferedImage.TYPE_BYTE_INDEXED:
-			case BufferedImage.TYPE_CUSTOM:
+			case BufferedImage.TYPE_USHORT_GRAY:
+				bufferType = LCMS4J.TYPE_GRAY_16;
+				break;
+			// Packed int pixels are read as bytes in native order, and unused bytes as extra channels
+			case BufferedImage.TYPE_INT_RGB:
 			case BufferedImage.TYPE_INT_ARGB:
+				bufferType = LITTLE_ENDIAN ? LCMS4J.TYPE_BGRA_8 : LCMS4J.TYPE_ARGB_8;
+				break;
 			case BufferedImage.TYPE_INT_ARGB_PRE:
+				bufferType = LITTLE_ENDIAN ? LCMS4J.TYPE_BGRA_8_PREMUL : LCMS4J.TYPE_ARGB_8_PREMUL;
+				break;
 			case BufferedImage.TYPE_INT_BGR:
-			case BufferedImage.TYPE_INT_RGB:
+				bufferType = LITTLE_ENDIAN ? LCMS4J.TYPE_RGBA_8 : LCMS4J.TYPE_ABGR_8;
+				break;
+			case BufferedImage.TYPE_CUSTOM:
+				bufferType = getComponentBufferType(image);
+				break;
+			case BufferedImage.TYPE_BYTE_BINARY:
+			case BufferedImage.TYPE_BYTE_INDEXED:
 			case BufferedImage.TYPE_USHORT_555_RGB:
 			case BufferedImage.TYPE_USHORT_565_RGB:
-			case BufferedImage.TYPE_USHORT_GRAY:
                 break;
 		}
 		return bufferType;
 	}
 
+	/**
+	 * Gets LCMS4J buffer type that fits the raster data of a custom image with interleaved components
+	 * (for instance, 16-bit images decoded by ImageIO).
+	 * 
+	 * @param image Image to analyze
+	 * @return LCMS4J buffer type Id (<code>LCMS4J.TYPE_*</code>), or <code>0</code> if no valid type is found
+	 */
+	private static int getComponentBufferType(BufferedImage image) {
+		ColorModel cm = image.getColorModel();
+		if (!(cm instanceof ComponentColorModel)) {
+			return 0;
+		}
+		if (!(image.getSampleModel() instanceof ComponentSampleModel)) {
+			return 0;
+		}
+		ComponentSampleModel sm = (ComponentSampleModel) image.getSampleModel();
+		if (sm.getPixelStride() != sm.getNumBands() || image.getRaster().getDataBuffer().getNumBanks() != 1) {
+			return 0;
+		}
+		int depth;
+		switch (sm.getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+				depth = 0;
+				break;
+			case DataBuffer.TYPE_USHORT:
+				depth = 1;
+				break;
+			case DataBuffer.TYPE_FLOAT:
+				depth = 2;
+				break;
+			default:
+				return 0;
+		}
+		// Band offsets relative to the first component of the pixel
+		int[] bandOffsets = sm.getBandOffsets();
+		int minBandOffset = Integer.MAX_VALUE;
+		for (int bandOffset : bandOffsets) {
+			minBandOffset = Math.min(minBandOffset, bandOffset);
+		}
+		for (int i=0; i<bandOffsets.length; i++) {
+			bandOffsets[i] -= minBandOffset;
+		}
+		int colorSpaceType = cm.getColorSpace().getType();
+		for (int i=0; i<COMPONENT_BAND_OFFSETS.length; i++) {
+			if (COMPONENT_COLOR_SPACES[i] == colorSpaceType && Arrays.equals(COMPONENT_BAND_OFFSETS[i], bandOffsets)) {
+				int bufferType = COMPONENT_BUFFER_TYPES[i][depth];
+				return cm.isAlphaPremultiplied() ? getPremultipliedBufferType(bufferType) : bufferType;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the premultiplied alpha variant of an LCMS4J buffer type.
+	 * 
+	 * @param bufferType LCMS4J buffer type Id (<code>LCMS4J.TYPE_*</code>) with non premultiplied alpha
+	 * @return LCMS4J buffer type Id with premultiplied alpha, or <code>0</code> if not available
+	 */
+	private static int getPremultipliedBufferType(int bufferType) {
+		switch (bufferType) {
+			case LCMS4J.TYPE_RGBA_8:
+				return LCMS4J.TYPE_RGBA_8_PREMUL;
+			case LCMS4J.TYPE_RGBA_16:
+				return LCMS4J.TYPE_RGBA_16_PREMUL;
+			case LCMS4J.TYPE_ARGB_8:
+				return LCMS4J.TYPE_ARGB_8_PREMUL;
+			case LCMS4J.TYPE_ARGB_16:
+				return LCMS4J.TYPE_ARGB_16_PREMUL;
+			case LCMS4J.TYPE_ABGR_8:
+				return LCMS4J.TYPE_ABGR_8_PREMUL;
+			case LCMS4J.TYPE_ABGR_16:
+				return LCMS4J.TYPE_ABGR_16_PREMUL;
+			case LCMS4J.TYPE_BGRA_8:
+				return LCMS4J.TYPE_BGRA_8_PREMUL;
+			case LCMS4J.TYPE_BGRA_16:
+				return LCMS4J.TYPE_BGRA_16_PREMUL;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * Gets the flags needed to carry extra (alpha) channels through a color transformation.<br>
+	 * Alpha is copied (and scaled to output bit depth) by LittleCMS itself only if both formats have the same number
+	 * of extra channels. Premultiplied input colors are restored by LittleCMS before being transformed.
+	 * 
+	 * @param inputFormat Format of input pixel data (<code>LCMS4J.TYPE_*</code>)
+	 * @param outputFormat Format of output pixel data (<code>LCMS4J.TYPE_*</code>)
+	 * @return Flags to be added to color transformation flags (<code>LCMS4J.CMSFLAGS_*</code>)
+	 */
+	private static int getAlphaFlags(int inputFormat, int outputFormat) {
+		int flags = 0;
+		int extra = LCMS4J.getExtraChannels(inputFormat);
+		if (extra > 0 && extra == LCMS4J.getExtraChannels(outputFormat)) {
+			flags |= LCMS4J.CMSFLAGS_COPY_ALPHA;
+		}
+		// 8-bit matrix-shaper optimization ignores premultiplied alpha, so a precalculated CLUT is used instead
+		if (LCMS4J.isPremultiplied(inputFormat) && (inputFormat & 0x07) == 1) {
+			flags |= LCMS4J.CMSFLAGS_FORCE_CLUT;
+		}
+		return flags;
+	}
+
+	/**
+	 * Gets the primitive array that holds the data of a raster.
+	 * 
+	 * @param raster Raster to analyze
+	 * @return Data array of the raster (<code>byte[]</code>, <code>short[]</code>, <code>int[]</code> or <code>float[]</code>)
+	 * @throws LCMS4JException If raster data is not stored in a single bank of a supported data type
+	 */
+	private static Object getRasterData(Raster raster) throws LCMS4JException {
+		DataBuffer dataBuffer = raster.getDataBuffer();
+		if (dataBuffer.getNumBanks() != 1) {
+			throw new LCMS4JException("Unsupported raster data layout");
+		}
+		switch (dataBuffer.getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+				return ((DataBufferByte) dataBuffer).getData();
+			case DataBuffer.TYPE_USHORT:
+				return ((DataBufferUShort) dataBuffer).getData();
+			case DataBuffer.TYPE_INT:
+				return ((DataBufferInt) dataBuffer).getData();
+			case DataBuffer.TYPE_FLOAT:
+				return ((DataBufferFloat) dataBuffer).getData();
+			default:
+				throw new LCMS4JException("Unsupported input data buffer type");
+		}
+	}
+
+	/**
+	 * Gets the index of the first data element of a raster inside its data buffer.
+	 * 
+	 * @param raster Raster to analyze
+	 * @return Index of the data element for the first band of the top left pixel of the raster
+	 * @throws LCMS4JException If raster data is not stored as interleaved or packed pixels
+	 */
+	private static int getDataOffset(Raster raster) throws LCMS4JException {
+		if (raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+			SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+			int x = raster.getMinX() - raster.getSampleModelTranslateX();
+			int y = raster.getMinY() - raster.getSampleModelTranslateY();
+			return raster.getDataBuffer().getOffset() + y * sm.getScanlineStride() + x;
+		}
+		ComponentSampleModel sm = getComponentSampleModel(raster);
+		int minBandOffset = Integer.MAX_VALUE;
+		for (int bandOffset : sm.getBandOffsets()) {
+			minBandOffset = Math.min(minBandOffset, bandOffset);
+		}
+		int x = raster.getMinX() - raster.getSampleModelTranslateX();
+		int y = raster.getMinY() - raster.getSampleModelTranslateY();
+		return raster.getDataBuffer().getOffset() + y * sm.getScanlineStride() + x * sm.getPixelStride() + minBandOffset;
+	}
+
+	/**
+	 * Gets the distance between the start of two consecutive lines of a raster.
+	 * 
+	 * @param raster Raster to analyze
+	 * @return Distance between lines as number of data elements
+	 * @throws LCMS4JException If raster data is not stored as interleaved or packed pixels
+	 */
+	private static int getScanlineStride(Raster raster) throws LCMS4JException {
+		if (raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+			return ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+		}
+		return getComponentSampleModel(raster).getScanlineStride();
+	}
+
+	/**
+	 * Gets the sample model of a raster that stores pixels as interleaved components.
+	 * 
+	 * @param raster Raster to analyze
+	 * @return Sample model of the raster
+	 * @throws LCMS4JException If raster data is not stored as interleaved pixels
+	 */
+	private static ComponentSampleModel getComponentSampleModel(Raster raster) throws LCMS4JException {
+		if (!(raster.getSampleModel() instanceof ComponentSampleModel)) {
+			throw new LCMS4JException("Unsupported raster data layout");
+		}
+		ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+		if (sm.getPixelStride() != sm.getNumBands()) {
+			throw new LCMS4JException("Unsupported raster data layout");
+		}
+		return sm;
+	}
+
 	/**
 	 * Gets <code>BufferedImage</code> type that fits the components of an ICC profile.
 	 * @param profile Reference ICC profile
@@ -546,44 +1771,86 @@ public class IccTransformer {
 	private static int getBufferedImageType(IccProfile profile, boolean transparency) {
 		int bufferedImageType = -1;
 		
-		ICC_Profile javaProfile = profile.getICC_Profile();
-		if (javaProfile != null) {
-			switch (javaProfile.getColorSpaceType()) {
-				case ColorSpace.TYPE_RGB:
-					bufferedImageType = transparency ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR;
-					break;
-				case ColorSpace.TYPE_GRAY:
-					bufferedImageType = BufferedImage.TYPE_BYTE_GRAY;
-					break;					
-				case ColorSpace.TYPE_2CLR:
-				case ColorSpace.TYPE_3CLR:
-				case ColorSpace.TYPE_4CLR:
-				case ColorSpace.TYPE_5CLR:
-				case ColorSpace.TYPE_6CLR:
-				case ColorSpace.TYPE_7CLR:
-				case ColorSpace.TYPE_8CLR:
-				case ColorSpace.TYPE_9CLR:
-				case ColorSpace.TYPE_ACLR:
-				case ColorSpace.TYPE_BCLR:
-				case ColorSpace.TYPE_CCLR:
-				case ColorSpace.TYPE_DCLR:
-				case ColorSpace.TYPE_ECLR:
-				case ColorSpace.TYPE_FCLR:
-				case ColorSpace.TYPE_CMY:
-				case ColorSpace.TYPE_CMYK:
-				case ColorSpace.TYPE_HLS:
-				case ColorSpace.TYPE_HSV:
-				case ColorSpace.TYPE_Lab:
-				case ColorSpace.TYPE_Luv:
-				case ColorSpace.TYPE_XYZ:
-				case ColorSpace.TYPE_YCbCr:
-				case ColorSpace.TYPE_Yxy:
+		switch (profile.getColorSpaceType()) {
+			case ColorSpace.TYPE_RGB:
+				bufferedImageType = transparency ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR;
+				break;
+			case ColorSpace.TYPE_GRAY:
+				bufferedImageType = BufferedImage.TYPE_BYTE_GRAY;
+				break;					
+			case ColorSpace.TYPE_2CLR:
+			case ColorSpace.TYPE_3CLR:
+			case ColorSpace.TYPE_4CLR:
+			case ColorSpace.TYPE_5CLR:
+			case ColorSpace.TYPE_6CLR:
+			case ColorSpace.TYPE_7CLR:
+			case ColorSpace.TYPE_8CLR:
+			case ColorSpace.TYPE_9CLR:
+			case ColorSpace.TYPE_ACLR:
+			case ColorSpace.TYPE_BCLR:
+			case ColorSpace.TYPE_CCLR:
+			case ColorSpace.TYPE_DCLR:
+			case ColorSpace.TYPE_ECLR:
+			case ColorSpace.TYPE_FCLR:
+			case ColorSpace.TYPE_CMY:
+			case ColorSpace.TYPE_CMYK:
+			case ColorSpace.TYPE_HLS:
+			case ColorSpace.TYPE_HSV:
+			case ColorSpace.TYPE_Lab:
+			case ColorSpace.TYPE_Luv:
+			case ColorSpace.TYPE_XYZ:
+			case ColorSpace.TYPE_YCbCr:
+			case ColorSpace.TYPE_Yxy:
                     break;
-			}
 		}
 		return bufferedImageType;
 	}
 	
+	/**
+	 * Creates an image that fits the components of an ICC profile.<br>
+	 * 8-bit images use standard <code>BufferedImage</code> types, while 16-bit and floating point images
+	 * use interleaved component color models with the same band layout.
+	 * 
+	 * @param profile Reference ICC profile
+	 * @param width Width of the image
+	 * @param height Height of the image
+	 * @param transparency If <code>true</code>, image has an alpha channel (if supported by the profile type)
+	 * @param dataType Data type of image samples (<code>DataBuffer.TYPE_BYTE</code>, <code>TYPE_USHORT</code> or <code>TYPE_FLOAT</code>)
+	 * @return The new image, or <code>null</code> if no valid type is found
+	 */
+	private static BufferedImage createOutputImage(IccProfile profile, int width, int height, boolean transparency, int dataType) {
+		int bufferedImageType = getBufferedImageType(profile, transparency);
+		if (bufferedImageType == -1) {
+			return null;
+		}
+		if (dataType == DataBuffer.TYPE_BYTE) {
+			return new BufferedImage(width, height, bufferedImageType);
+		}
+		boolean alpha = (bufferedImageType == BufferedImage.TYPE_4BYTE_ABGR);
+		ColorSpace cs = ColorSpace.getInstance(bufferedImageType == BufferedImage.TYPE_BYTE_GRAY ? ColorSpace.CS_GRAY : ColorSpace.CS_sRGB);
+		ColorModel cm = new ComponentColorModel(cs, alpha, false, alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE, dataType);
+		return new BufferedImage(cm, cm.createCompatibleWritableRaster(width, height), false, null);
+	}
+
+	/**
+	 * Gets the default profile that will be used as source profile for a color space.
+	 * 
+	 * @param colorSpaceType Color space type (<code>ColorSpace.TYPE_*</code>)
+	 * @return Default profile, or <code>null</code> if there is no default profile for the color space
+	 */
+	private IccProfile getDefaultProfile(int colorSpaceType) {
+		switch (colorSpaceType) {
+			case ColorSpace.TYPE_GRAY:
+				return m_defaultGray;
+			case ColorSpace.TYPE_RGB:
+				return m_defaultRGB;
+			case ColorSpace.TYPE_CMYK:
+				return m_defaultCMYK;
+			default:
+				return null;
+		}
+	}
+	
 	/**
 	 * Checks if an ICC profile type is compatible with an image. For instance, an RGB image
 	 * fits an RGB ICC profile, but not a CMYK one.
@@ -595,11 +1862,10 @@ public class IccTransformer {
 	private static boolean isProfileValid(BufferedImage image, IccProfile profile) {
 		boolean profileValid = false;
 		// Get profile and image types
-		ICC_Profile javaProfile = profile.getICC_Profile();
-		if (javaProfile == null) {
+		int profileType = profile.getColorSpaceType();
+		if (profileType == -1) {
 			return false;
 		}
-		int profileType = javaProfile.getColorSpaceType();
 		int imageType = image.getType();
 		// Check
 		switch (imageType) {
@@ -618,79 +1884,53 @@ public class IccTransformer {
 			case BufferedImage.TYPE_USHORT_GRAY:
                 profileValid = (profileType == ColorSpace.TYPE_GRAY);
 				break;
+			case BufferedImage.TYPE_CUSTOM:
+				profileValid = (profileType == image.getColorModel().getColorSpace().getType());
+				break;
 			case BufferedImage.TYPE_BYTE_BINARY:
 			case BufferedImage.TYPE_BYTE_INDEXED:
-			case BufferedImage.TYPE_CUSTOM:
                 break;
 		}
 		return profileValid;
 	}
 
 	/**
-	 * Transforms YCCK raster data to non-inverted CMYK data.
+	 * Gets the maximum number of bands of rows transformed in parallel.
 	 * 
-	 * @param ycck YCCK raster data
-	 * @param inverted True if YCCK is stored as inverted values
+	 * @return Maximum number of bands (<code>1</code> for serial transformations, {@link #PARALLELISM_AUTO} for
+	 *         the parallelism of the common <code>ForkJoinPool</code>)
 	 */
-	private static void convertYcckToCmyk(byte[] ycck, boolean inverted) {
-		int numPixels = ycck.length / 4;
-		
-		for (int i=0; i<numPixels; i++) {
-			double y  = ((int)ycck[4*i]) & 0xFF;
-			double cb = ((int)ycck[4*i+1]) & 0xFF;
-			double cr = ((int)ycck[4*i+2]) & 0xFF;
-			int black = ((int)ycck[4*i+3]) & 0xFF;
-			
-			if (inverted) {
-				black = 255 - black;
-			}
-
-			double red   = y + 1.402*(cr - 128.0);
-			double green = y - 0.34414*(cb - 128.0) - 0.71414*(cr - 128.0);
-			double blue  = y + 1.772*(cb - 128.0);
+	public int getParallelism() {
+		return m_parallelism;
+	}
 
-			int cyan    = clip8bit(inverted ? red : 255.0 - red);
-			int magenta = clip8bit(inverted ? green : 255.0 - green);
-			int yellow  = clip8bit(inverted ? blue : 255.0 - blue);
-			
-			ycck[4*i]   = (byte)(cyan & 0xFF);
-			ycck[4*i+1] = (byte)(magenta & 0xFF);;
-			ycck[4*i+2] = (byte)(yellow & 0xFF);;
-			ycck[4*i+3] = (byte)(black & 0xFF);;
-		}		
+	/**
+	 * Sets the maximum number of bands of rows transformed in parallel. Images are transformed serially by default.
+	 * 
+	 * @param parallelism Maximum number of bands (<code>1</code> for serial transformations, {@link #PARALLELISM_AUTO} for
+	 *        the parallelism of the common <code>ForkJoinPool</code>)
+	 */
+	public void setParallelism(int parallelism) {
+		m_parallelism = Math.max(PARALLELISM_AUTO, parallelism);
 	}
 
 	/**
-	 * Transforms YCbCr raster data to RGB data.
+	 * Gets the minimum number of rows of each band for parallel transformations.
 	 * 
-	 * @param ycbcr YCbCr raster data
+	 * @return Minimum number of rows of each band
 	 */
-	private static void convertYCbCrToRGB(byte[] ycbcr) {
-		int numPixels = ycbcr.length / 3;
-		
-		for (int i=0; i<numPixels; i++) {
-			double y  = ((int)ycbcr[3*i]) & 0xFF;
-			double cb = ((int)ycbcr[3*i+1]) & 0xFF;
-			double cr = ((int)ycbcr[3*i+2]) & 0xFF;
-			
-			int red   = clip8bit(y + 1.402*(cr - 128.0));
-			int green = clip8bit(y - 0.34414*(cb - 128.0) - 0.71414*(cr - 128.0));
-			int blue  = clip8bit(y + 1.772*(cb - 128.0));
-			
-			ycbcr[3*i]   = (byte)(red & 0xFF);
-			ycbcr[3*i+1] = (byte)(green & 0xFF);
-			ycbcr[3*i+2] = (byte)(blue & 0xFF);
-		}
+	public int getMinBandRows() {
+		return m_minBandRows;
 	}
-	
+
 	/**
-	 * Clips a value to fit inside the integer range [0..255]
+	 * Sets the minimum number of rows of each band for parallel transformations. Images with fewer rows than twice
+	 * this value are transformed serially.
 	 * 
-	 * @param value The value to clip
-	 * @return Clipped value inside the integer range [0..255]
+	 * @param minBandRows Minimum number of rows of each band
 	 */
-	private static int clip8bit(double value) {
-		return (int) Math.max(0, Math.min(255, Math.round(value)));
+	public void setMinBandRows(int minBandRows) {
+		m_minBandRows = Math.max(1, minBandRows);
 	}
 
 	/**
@@ -709,4 +1949,134 @@ public class IccTransformer {
 	public void setJpegQuality(float jpegQuality) {
 		m_jpegQuality = Math.max(0, Math.min(1, jpegQuality));
 	}
+
+	/**
+	 * A range of rows of an image, transformed as a single band or split in halves.
+	 */
+	@SuppressWarnings("serial")
+	private static final class BandTransform extends RecursiveAction {
+		/** Transform shared by all bands */
+		private final IccTransform m_transform;
+		/** Primitive array of input pixel data */
+		private final Object m_inputData;
+		/** Index of the first element of the first input line of the image */
+		private final int m_inputOffset;
+		/** Primitive array of output pixel data */
+		private final Object m_outputData;
+		/** Index of the first element of the first output line of the image */
+		private final int m_outputOffset;
+		/** Number of pixels on each line */
+		private final int m_width;
+		/** Distance (in elements) between the start of two consecutive input lines */
+		private final int m_inputStride;
+		/** Distance (in elements) between the start of two consecutive output lines */
+		private final int m_outputStride;
+		/** First row of the range */
+		private final int m_firstRow;
+		/** Number of rows of the range */
+		private final int m_rows;
+		/** Maximum number of rows of a band */
+		private final int m_bandRows;
+
+		private BandTransform(IccTransform transform, Object inputData, int inputOffset, Object outputData, int outputOffset, 
+				int width, int inputStride, int outputStride, int firstRow, int rows, int bandRows) {
+			m_transform = transform;
+			m_inputData = inputData;
+			m_inputOffset = inputOffset;
+			m_outputData = outputData;
+			m_outputOffset = outputOffset;
+			m_width = width;
+			m_inputStride = inputStride;
+			m_outputStride = outputStride;
+			m_firstRow = firstRow;
+			m_rows = rows;
+			m_bandRows = bandRows;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_rows <= m_bandRows) {
+				m_transform.transformRaster(m_inputData, m_inputOffset + m_firstRow * m_inputStride, 
+						m_outputData, m_outputOffset + m_firstRow * m_outputStride, m_width, m_rows, m_inputStride, m_outputStride);
+				return;
+			}
+			// Split at a band boundary
+			int half = ((m_rows / m_bandRows + 1) / 2) * m_bandRows;
+			invokeAll(
+					new BandTransform(m_transform, m_inputData, m_inputOffset, m_outputData, m_outputOffset, 
+							m_width, m_inputStride, m_outputStride, m_firstRow, half, m_bandRows),
+					new BandTransform(m_transform, m_inputData, m_inputOffset, m_outputData, m_outputOffset, 
+							m_width, m_inputStride, m_outputStride, m_firstRow + half, m_rows - half, m_bandRows));
+		}
+	}
+
+	/**
+	 * An image file read and ready to be transformed, holding its source profile.
+	 */
+	private static final class SourceImage {
+		/** Raster of the image */
+		private final Raster m_raster;
+		/** Primitive array of raster data */
+		private final Object m_rasterData;
+		/** Width of the image */
+		private final int m_width;
+		/** Height of the image */
+		private final int m_height;
+		/** Metadata of the image file */
+		private final ImageMetadata m_metadata;
+		/** Format of raster data (LCMS4J.TYPE_*) */
+		private final int m_inputFormat;
+		/** Source profile of the image */
+		private IccProfile m_inputProfile;
+		/** <code>true</code> if the source profile is owned by this image (not a default or built-in profile of the transformer) */
+		private boolean m_ownsProfile;
+
+		private SourceImage(Raster raster, Object rasterData, int width, int height, ImageMetadata metadata, 
+				int inputFormat, IccProfile inputProfile, boolean ownsProfile) {
+			m_raster = raster;
+			m_rasterData = rasterData;
+			m_width = width;
+			m_height = height;
+			m_metadata = metadata;
+			m_inputFormat = inputFormat;
+			m_inputProfile = inputProfile;
+			m_ownsProfile = ownsProfile;
+		}
+
+		/**
+		 * Frees the native resources of the source profile, if owned by this image.
+		 */
+		private void dispose() {
+			if (m_ownsProfile) {
+				m_inputProfile.dispose();
+				m_ownsProfile = false;
+			}
+		}
+	}
+
+	/**
+	 * An image file going through the decode, transform and encode stages of a batch transformation
+	 * ({@link IccTransformer#transformAll(Path, Path, BatchOptions)}).
+	 */
+	private static final class BatchItem {
+		/** Marker of the end of a stage */
+		private static final BatchItem END = new BatchItem(null, null);
+		/** Source image file */
+		private final Path m_path;
+		/** Destination image file */
+		private final Path m_target;
+		/** Decoded source image */
+		private SourceImage m_source = null;
+		/** Transformed image */
+		private BufferedImage m_output = null;
+		/** Type of destination image file */
+		private ImageType m_type = null;
+		/** Resolution of the image (dots per inch) */
+		private double m_dpi = 0;
+
+		private BatchItem(Path path, Path target) {
+			m_path = path;
+			m_target = target;
+		}
+	}
 }
@@ -0,0 +1,171 @@
+package lcms4j.xyz.controls;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts raster data of JPEG files from the color spaces used for compression (YCbCr and YCCK) to RGB and CMYK.<br><br>
+ * Conversions use integer arithmetic on precomputed tables: red and blue offsets are rounded to integers, and
+ * green offsets are kept in decimal fixed point, which holds the coefficients of the JFIF specification exactly.
+ * Results match the floating point formulas of the specification, rounded to the nearest integer, bit for bit.
+ * Where the exact green value lies half-way between two integers, the result of the floating point formula depends
+ * on its rounding errors, so these rare values are computed with it.<br><br>
+ * Large rasters can be converted in parallel on the common <code>ForkJoinPool</code>.
+ */
+final class JpegColorConverter {
+	/** Minimum number of pixels converted by each parallel task */
+	static final int MIN_PARALLEL_PIXELS = 1 << 18;
+
+	/** One in fixed point (green coefficients have 5 decimals) */
+	private static final int ONE = 100000;
+	/** Integer bias of green offsets, which keeps fixed point values positive for rounding by division */
+	private static final int GREEN_BIAS = 256;
+
+	/** Red offset for each Cr value */
+	private static final int[] s_crToR = new int[256];
+	/** Blue offset for each Cb value */
+	private static final int[] s_cbToB = new int[256];
+	/** Green offset for each Cb value (fixed point) */
+	private static final int[] s_cbToG = new int[256];
+	/** Green offset for each Cr value (fixed point, including rounding and bias) */
+	private static final int[] s_crToG = new int[256];
+	static {
+		for (int i=0; i<256; i++) {
+			int x = i - 128;
+			s_crToR[i] = (int) Math.round(1.402 * x);
+			s_cbToB[i] = (int) Math.round(1.772 * x);
+			s_cbToG[i] = -34414 * x;
+			s_crToG[i] = -71414 * x + ONE / 2 + GREEN_BIAS * ONE;
+		}
+	}
+
+	/**
+	 * Static utility class, not to be instantiated.
+	 */
+	private JpegColorConverter() {
+	}
+
+	/**
+	 * Transforms YCbCr raster data to RGB data, in place.
+	 *
+	 * @param ycbcr YCbCr raster data (3 bytes per pixel)
+	 * @param parallelism Maximum number of parallel tasks (<code>1</code> for serial conversions,
+	 *        {@link IccTransformer#PARALLELISM_AUTO} for the parallelism of the common <code>ForkJoinPool</code>)
+	 */
+	static void convertYCbCrToRGB(byte[] ycbcr, int parallelism) {
+		convert(ycbcr, 3, ycbcr.length / 3, parallelism);
+	}
+
+	/**
+	 * Transforms inverted YCCK raster data, as stored by Adobe applications, to non-inverted CMYK data, in place.
+	 *
+	 * @param ycck Inverted YCCK raster data (4 bytes per pixel)
+	 * @param parallelism Maximum number of parallel tasks (<code>1</code> for serial conversions,
+	 *        {@link IccTransformer#PARALLELISM_AUTO} for the parallelism of the common <code>ForkJoinPool</code>)
+	 */
+	static void convertYcckToCmyk(byte[] ycck, int parallelism) {
+		convert(ycck, 4, ycck.length / 4, parallelism);
+	}
+
+	/**
+	 * Converts raster data, splitting it in ranges of pixels converted in parallel if it is large enough.
+	 *
+	 * @param data Raster data
+	 * @param numBands Number of bands (<code>3</code> for YCbCr, <code>4</code> for YCCK)
+	 * @param numPixels Number of pixels
+	 * @param parallelism Maximum number of parallel tasks
+	 */
+	private static void convert(byte[] data, int numBands, int numPixels, int parallelism) {
+		if (parallelism == IccTransformer.PARALLELISM_AUTO) {
+			parallelism = ForkJoinPool.getCommonPoolParallelism();
+		}
+		int tasks = Math.min(Math.max(1, parallelism), numPixels / MIN_PARALLEL_PIXELS);
+		if (tasks <= 1) {
+			convertRange(data, numBands, 0, numPixels);
+			return;
+		}
+		int taskPixels = (numPixels + tasks - 1) / tasks;
+		ForkJoinPool.commonPool().invoke(new Conversion(data, numBands, 0, numPixels, taskPixels));
+	}
+
+	/**
+	 * Converts a range of pixels.
+	 *
+	 * @param data Raster data
+	 * @param numBands Number of bands (<code>3</code> for YCbCr, <code>4</code> for YCCK)
+	 * @param firstPixel First pixel of the range
+	 * @param numPixels Number of pixels of the range
+	 */
+	private static void convertRange(byte[] data, int numBands, int firstPixel, int numPixels) {
+		int end = (firstPixel + numPixels) * numBands;
+		for (int i = firstPixel * numBands; i < end; i += numBands) {
+			int y  = data[i] & 0xFF;
+			int cb = data[i+1] & 0xFF;
+			int cr = data[i+2] & 0xFF;
+
+			int green = s_cbToG[cb] + s_crToG[cr];
+			if (green % ONE != 0) {
+				green = clip8bit(y + green / ONE - GREEN_BIAS);
+			} else {
+				// Half-way value, rounded as the floating point formula does
+				green = (int) Math.max(0, Math.min(255, Math.round(y - 0.34414*(cb - 128.0) - 0.71414*(cr - 128.0))));
+			}
+
+			// Inverted YCCK: CMY are stored as RGB values
+			data[i]   = (byte) clip8bit(y + s_crToR[cr]);
+			data[i+1] = (byte) green;
+			data[i+2] = (byte) clip8bit(y + s_cbToB[cb]);
+			if (numBands == 4) {
+				data[i+3] = (byte) (255 - (data[i+3] & 0xFF));
+			}
+		}
+	}
+
+	/**
+	 * Clips a value to fit inside the integer range [0..255]
+	 *
+	 * @param value The value to clip
+	 * @return Clipped value inside the integer range [0..255]
+	 */
+	private static int clip8bit(int value) {
+		return value < 0 ? 0 : (value > 255 ? 255 : value);
+	}
+
+	/**
+	 * Conversion of a range of pixels, recursively split in halves until each range fits in a task.
+	 */
+	@SuppressWarnings("serial")
+	private static final class Conversion extends RecursiveAction {
+		/** Raster data */
+		private final byte[] m_data;
+		/** Number of bands */
+		private final int m_numBands;
+		/** First pixel of the range */
+		private final int m_firstPixel;
+		/** Number of pixels of the range */
+		private final int m_numPixels;
+		/** Maximum number of pixels of a task */
+		private final int m_taskPixels;
+
+		private Conversion(byte[] data, int numBands, int firstPixel, int numPixels, int taskPixels) {
+			m_data = data;
+			m_numBands = numBands;
+			m_firstPixel = firstPixel;
+			m_numPixels = numPixels;
+			m_taskPixels = taskPixels;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_numPixels <= m_taskPixels) {
+				convertRange(m_data, m_numBands, m_firstPixel, m_numPixels);
+				return;
+			}
+			// Split at a task boundary
+			int half = ((m_numPixels / m_taskPixels + 1) / 2) * m_taskPixels;
+			invokeAll(
+					new Conversion(m_data, m_numBands, m_firstPixel, half, m_taskPixels),
+					new Conversion(m_data, m_numBands, m_firstPixel + half, m_numPixels - half, m_taskPixels));
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package lcms4j.xyz.controls;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Cache of shared objects holding native resources, with reference counting and least recently used eviction.<br><br>
+ * Every cached object has an estimated size. Objects not in use are evicted in least recently used order whenever
+ * the estimated size of all cached objects exceeds the size budget of the cache. Objects in use are never evicted:
+ * their native resources are freed when their last user releases them.
+ *
+ * @param <K> Type of the keys of cached objects
+ * @param <V> Type of cached objects
+ */
+final class RefCountedCache<K, V> {
+	/** Cached objects, in least recently used order */
+	private final Map<K, Entry<K, V>> m_entries = new LinkedHashMap<>(16, 0.75f, true);
+	/** Function that frees the native resources of a cached object */
+	private final Consumer<V> m_disposer;
+	/** Size budget of the cache (bytes) */
+	private long m_maxSize;
+	/** Estimated size of all cached objects (bytes) */
+	private long m_size = 0;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxSize Size budget of the cache (bytes)
+	 * @param disposer Function that frees the native resources of a cached object
+	 */
+	RefCountedCache(long maxSize, Consumer<V> disposer) {
+		m_maxSize = maxSize;
+		m_disposer = disposer;
+	}
+
+	/**
+	 * Gets a cached object, adding a new user to it.
+	 *
+	 * @param key Key of the object
+	 * @return Cache entry of the object, or <code>null</code> if not cached
+	 */
+	synchronized Entry<K, V> acquire(K key) {
+		Entry<K, V> entry = m_entries.get(key);
+		if (entry != null) {
+			entry.m_users++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Adds an object to the cache, with a first user. If an object with the same key was added meanwhile by another
+	 * thread, the provided object is disposed and the cached one is used instead.
+	 *
+	 * @param key Key of the object
+	 * @param value Object to add
+	 * @param size Estimated size of the object (bytes)
+	 * @param context Native handle of the context of the object
+	 * @return Cache entry of the object
+	 */
+	Entry<K, V> put(K key, V value, long size, long context) {
+		Entry<K, V> entry;
+		List<V> evicted;
+		synchronized (this) {
+			entry = m_entries.get(key);
+			if (entry == null) {
+				entry = new Entry<>(this, value, size, context);
+				m_entries.put(key, entry);
+				m_size += size;
+				value = null;
+			}
+			entry.m_users++;
+			evicted = evict();
+		}
+		if (value != null) {
+			m_disposer.accept(value);
+		}
+		dispose(evicted);
+		return entry;
+	}
+
+	/**
+	 * Removes a user from a cached object.
+	 *
+	 * @param entry Cache entry of the object
+	 */
+	void release(Entry<K, V> entry) {
+		List<V> evicted;
+		synchronized (this) {
+			entry.m_users--;
+			if (entry.m_evicted) {
+				evicted = new ArrayList<>();
+				if (entry.m_users == 0) {
+					evicted.add(entry.m_value);
+				}
+			} else {
+				evicted = evict();
+			}
+		}
+		dispose(evicted);
+	}
+
+	/**
+	 * Sets the size budget of the cache. Objects not in use are evicted until the estimated size of all cached
+	 * objects fits the new budget.
+	 *
+	 * @param maxSize Size budget (bytes)
+	 */
+	void setMaxSize(long maxSize) {
+		List<V> evicted;
+		synchronized (this) {
+			m_maxSize = Math.max(0, maxSize);
+			evicted = evict();
+		}
+		dispose(evicted);
+	}
+
+	/**
+	 * Gets the size budget of the cache.
+	 *
+	 * @return Size budget (bytes)
+	 */
+	synchronized long getMaxSize() {
+		return m_maxSize;
+	}
+
+	/**
+	 * Gets the estimated size of all cached objects.
+	 *
+	 * @return Estimated size (bytes)
+	 */
+	synchronized long getSize() {
+		return m_size;
+	}
+
+	/**
+	 * Gets the number of cached objects.
+	 *
+	 * @return Number of cached objects
+	 */
+	synchronized int getCount() {
+		return m_entries.size();
+	}
+
+	/**
+	 * Removes objects from the cache. Native resources of objects in use are freed when their last user releases them.
+	 *
+	 * @param context Native handle of the context of the objects to remove, or <code>null</code> for all objects
+	 */
+	void clear(Long context) {
+		List<V> evicted = new ArrayList<>();
+		synchronized (this) {
+			Iterator<Entry<K, V>> it = m_entries.values().iterator();
+			while (it.hasNext()) {
+				Entry<K, V> entry = it.next();
+				if (context == null || entry.m_context == context.longValue()) {
+					it.remove();
+					m_size -= entry.m_size;
+					entry.m_evicted = true;
+					if (entry.m_users == 0) {
+						evicted.add(entry.m_value);
+					}
+				}
+			}
+		}
+		dispose(evicted);
+	}
+
+	/**
+	 * Evicts objects not in use, in least recently used order, until the estimated size of all cached objects
+	 * fits the size budget. Must be called while holding the lock of the cache.
+	 *
+	 * @return Evicted objects, whose native resources must be freed
+	 */
+	private List<V> evict() {
+		List<V> evicted = new ArrayList<>();
+		Iterator<Entry<K, V>> it = m_entries.values().iterator();
+		while (m_size > m_maxSize && it.hasNext()) {
+			Entry<K, V> entry = it.next();
+			if (entry.m_users == 0) {
+				it.remove();
+				m_size -= entry.m_size;
+				entry.m_evicted = true;
+				evicted.add(entry.m_value);
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Frees the native resources of evicted objects.
+	 *
+	 * @param evicted Evicted objects
+	 */
+	private void dispose(List<V> evicted) {
+		for (V value : evicted) {
+			m_disposer.accept(value);
+		}
+	}
+
+	/**
+	 * An object in the cache, shared by all its current users.
+	 *
+	 * @param <K> Type of the key of the object
+	 * @param <V> Type of the object
+	 */
+	static final class Entry<K, V> {
+		/** Cache that holds this entry */
+		private final RefCountedCache<K, V> m_cache;
+		/** Cached object, owner of native resources */
+		private final V m_value;
+		/** Estimated size of the object (bytes) */
+		private final long m_size;
+		/** Native handle of the context of the object */
+		private final long m_context;
+		/** Number of current users of the object */
+		private int m_users = 0;
+		/** <code>true</code> if removed from the cache (native resources are freed when there are no users left) */
+		private boolean m_evicted = false;
+
+		private Entry(RefCountedCache<K, V> cache, V value, long size, long context) {
+			m_cache = cache;
+			m_value = value;
+			m_size = size;
+			m_context = context;
+		}
+
+		/**
+		 * Gets the cached object.
+		 *
+		 * @return Cached object
+		 */
+		V getValue() {
+			return m_value;
+		}
+
+		/**
+		 * Removes a user from the cached object.
+		 */
+		void release() {
+			m_cache.release(this);
+		}
+	}
+}
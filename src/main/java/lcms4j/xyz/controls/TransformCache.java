@@ -0,0 +1,215 @@
+package lcms4j.xyz.controls;
+
+import java.util.Arrays;
+
+import lcms4j.xyz.LCMS4J;
+
+/**
+ * Process-wide cache of native ICC color transforms.<br><br>
+ * Creating a native transform optimizes the whole color pipeline and usually precalculates a device link table,
+ * which may take longer than converting the image itself. Transforms obtained from this cache are kept after
+ * being used, keyed by the profile IDs (MD5) of their source and destination profiles, their input and output formats,
+ * rendering intent, flags and context, so later conversions with the same parameters reuse the compiled transform.<br><br>
+ * Transforms returned by {@link #getTransform(IccProfile, int, IccProfile, int, int, int) getTransform()} are shared
+ * among all their users, and must be returned to the cache by calling {@link IccTransform#dispose() dispose()} as
+ * any other <code>IccTransform</code>. Transforms not in use are evicted in least recently used order whenever the
+ * estimated size of all cached transforms exceeds the size budget of the cache.
+ */
+public final class TransformCache {
+	/** Default size budget of the cache (bytes) */
+	public static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+	/** Estimated size of a transform, not including its precalculated table (bytes) */
+	private static final long TRANSFORM_OVERHEAD = 4096;
+	/** Cached transforms */
+	private static final RefCountedCache<Key, IccTransform> s_cache = new RefCountedCache<>(DEFAULT_MAX_SIZE, IccTransform::dispose);
+
+	/**
+	 * Static utility class, not to be instantiated.
+	 */
+	private TransformCache() {
+	}
+
+	/**
+	 * Gets a transform from the cache, creating it if there is no cached transform for the same parameters.
+	 * The transform is allocated inside the context of the source profile.<br>
+	 * <br>
+	 * Remember to call the {@link IccTransform#dispose() dispose()} method of the returned transform when it is
+	 * no longer needed, in order to return it to the cache.
+	 *
+	 * @param srcProfile Source ICC profile for the color transformation
+	 * @param inputFormat Format of the input pixel data for the color transformation operations (LCMS4J.TYPE_*).
+	 * @param dstProfile Destination ICC profile for the color transformation
+	 * @param outputFormat Format of the output pixel data for the color transformation operations  (LCMS4J.TYPE_*).
+	 * @param intent Rendering intent for the color transformation (LCMS4J.INTENT_*).
+	 * @param flags Flags that modify transformation algorithm (LCMS4J.CMSFLAGS_*)
+	 * @return A transform for the requested parameters
+	 * @throws LCMS4JException If not able to create native Icc Transform object
+	 */
+	public static IccTransform getTransform(IccProfile srcProfile, int inputFormat, IccProfile dstProfile, int outputFormat, int intent, int flags) throws LCMS4JException {
+		IccContext context = srcProfile.getContext();
+		if (getMaxSize() <= 0) {
+			return new IccTransform(context, srcProfile, inputFormat, dstProfile, outputFormat, intent, flags);
+		}
+		byte[] srcId = srcProfile.getProfileId();
+		byte[] dstId = dstProfile.getProfileId();
+		if (srcId == null || dstId == null) {
+			// Not cacheable
+			return new IccTransform(context, srcProfile, inputFormat, dstProfile, outputFormat, intent, flags);
+		}
+		Key key = new Key(IccContext.handleOf(context), srcId, dstId, inputFormat, outputFormat, intent, flags);
+		RefCountedCache.Entry<Key, IccTransform> entry = s_cache.acquire(key);
+		if (entry == null) {
+			// Native transform is created without locking the cache, as it may take a while
+			IccTransform transform = new IccTransform(context, srcProfile, inputFormat, dstProfile, outputFormat, intent, flags);
+			entry = s_cache.put(key, transform, estimateSize(inputFormat, outputFormat, flags), key.m_context);
+		}
+		return new IccTransform(entry);
+	}
+
+	/**
+	 * Sets the size budget of the cache. Transforms not in use are evicted until the estimated size of all cached
+	 * transforms fits the new budget.
+	 *
+	 * @param maxSize Size budget (bytes). <code>0</code> disables caching.
+	 */
+	public static void setMaxSize(long maxSize) {
+		s_cache.setMaxSize(maxSize);
+	}
+
+	/**
+	 * Gets the size budget of the cache.
+	 *
+	 * @return Size budget (bytes)
+	 */
+	public static long getMaxSize() {
+		return s_cache.getMaxSize();
+	}
+
+	/**
+	 * Gets the estimated size of all cached transforms.
+	 *
+	 * @return Estimated size (bytes)
+	 */
+	public static long getSize() {
+		return s_cache.getSize();
+	}
+
+	/**
+	 * Gets the number of cached transforms.
+	 *
+	 * @return Number of cached transforms
+	 */
+	public static int getCount() {
+		return s_cache.getCount();
+	}
+
+	/**
+	 * Removes all transforms from the cache. Native resources of transforms in use are freed when their last
+	 * user disposes them.
+	 */
+	public static void clear() {
+		s_cache.clear(null);
+	}
+
+	/**
+	 * Removes all transforms allocated inside a context from the cache.
+	 *
+	 * @param context Context of the transforms (<code>null</code> for the global context)
+	 */
+	static void clear(IccContext context) {
+		s_cache.clear(Long.valueOf(IccContext.handleOf(context)));
+	}
+
+	/**
+	 * Estimates the memory used by a native transform, based on the size of the precalculated table LittleCMS
+	 * builds for it (16-bit entries on a grid of input channels).
+	 *
+	 * @param inputFormat Format of the input pixel data (LCMS4J.TYPE_*).
+	 * @param outputFormat Format of the output pixel data (LCMS4J.TYPE_*).
+	 * @param flags Flags that modify transformation algorithm (LCMS4J.CMSFLAGS_*)
+	 * @return Estimated size of the transform (bytes)
+	 */
+	static long estimateSize(int inputFormat, int outputFormat, int flags) {
+		int inputChannels = (inputFormat >> 3) & 0x0F;
+		int outputChannels = (outputFormat >> 3) & 0x0F;
+		// Same number of grid points as cmsReasonableGridpointsByColorspace()
+		int gridPoints = (flags >> 16) & 0xFF;
+		if (gridPoints == 0) {
+			if ((flags & LCMS4J.CMSFLAGS_HIGHRESPRECALC) != 0) {
+				gridPoints = (inputChannels > 4 ? 7 : (inputChannels == 4 ? 23 : 49));
+			} else if ((flags & LCMS4J.CMSFLAGS_LOWRESPRECALC) != 0) {
+				gridPoints = (inputChannels > 4 ? 6 : (inputChannels == 1 ? 33 : 17));
+			} else {
+				gridPoints = (inputChannels > 4 ? 7 : (inputChannels == 4 ? 17 : 33));
+			}
+		}
+		long tableSize = 2L * outputChannels;
+		for (int i=0; i<inputChannels; i++) {
+			tableSize *= gridPoints;
+		}
+		return TRANSFORM_OVERHEAD + tableSize;
+	}
+
+	/**
+	 * Key of a cached transform.
+	 */
+	private static final class Key {
+		/** Native handle of the context of the transform */
+		private final long m_context;
+		/** Profile ID of the source profile */
+		private final byte[] m_srcId;
+		/** Profile ID of the destination profile */
+		private final byte[] m_dstId;
+		/** Format of input pixel data */
+		private final int m_inputFormat;
+		/** Format of output pixel data */
+		private final int m_outputFormat;
+		/** Rendering intent */
+		private final int m_intent;
+		/** Transformation flags */
+		private final int m_flags;
+		/** Precalculated hash code */
+		private final int m_hash;
+
+		private Key(long context, byte[] srcId, byte[] dstId, int inputFormat, int outputFormat, int intent, int flags) {
+			m_context = context;
+			m_srcId = srcId;
+			m_dstId = dstId;
+			m_inputFormat = inputFormat;
+			m_outputFormat = outputFormat;
+			m_intent = intent;
+			m_flags = flags;
+			int hash = Long.hashCode(context);
+			hash = 31 * hash + Arrays.hashCode(srcId);
+			hash = 31 * hash + Arrays.hashCode(dstId);
+			hash = 31 * hash + inputFormat;
+			hash = 31 * hash + outputFormat;
+			hash = 31 * hash + intent;
+			hash = 31 * hash + flags;
+			m_hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return m_hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return m_context == other.m_context
+					&& m_inputFormat == other.m_inputFormat
+					&& m_outputFormat == other.m_outputFormat
+					&& m_intent == other.m_intent
+					&& m_flags == other.m_flags
+					&& Arrays.equals(m_srcId, other.m_srcId)
+					&& Arrays.equals(m_dstId, other.m_dstId);
+		}
+	}
+}
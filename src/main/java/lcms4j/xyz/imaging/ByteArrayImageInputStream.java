@@ -0,0 +1,60 @@
+package lcms4j.xyz.imaging;
+
+import java.io.IOException;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * <code>ImageInputStream</code> that reads directly from a byte array, without copying or caching its contents.
+ */
+class ByteArrayImageInputStream extends ImageInputStreamImpl {
+	/** Data of the stream. */
+	private final byte[] m_data;
+	/** Index of the first byte of the stream. */
+	private final int m_offset;
+	/** Number of bytes of the stream. */
+	private final int m_length;
+
+	/**
+	 * Creates a stream reading a region of a byte array.
+	 * @param data Byte array.
+	 * @param offset Index of the first byte of the stream.
+	 * @param length Number of bytes of the stream.
+	 */
+	ByteArrayImageInputStream(byte[] data, int offset, int length) {
+		m_data = data;
+		m_offset = offset;
+		m_length = length;
+	}
+
+	@Override
+	public int read() throws IOException {
+		checkClosed();
+		bitOffset = 0;
+		if (streamPos >= m_length) {
+			return -1;
+		}
+		return m_data[m_offset + (int) streamPos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		checkClosed();
+		bitOffset = 0;
+		if (len == 0) {
+			return 0;
+		}
+		if (streamPos >= m_length) {
+			return -1;
+		}
+		int count = (int) Math.min(len, m_length - streamPos);
+		System.arraycopy(m_data, m_offset + (int) streamPos, b, off, count);
+		streamPos += count;
+		return count;
+	}
+
+	@Override
+	public long length() {
+		return m_length;
+	}
+}
@@ -0,0 +1,54 @@
+package lcms4j.xyz.imaging;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * <code>InputStream</code> that reads directly from a byte buffer, without copying its contents.
+ */
+class ByteBufferInputStream extends InputStream {
+	/** Data of the stream, from its position to its limit. */
+	private final ByteBuffer m_data;
+
+	/**
+	 * Creates a stream reading the bytes of a buffer between its position and its limit. The position of the
+	 * buffer is not modified.
+	 * @param data Byte buffer.
+	 */
+	ByteBufferInputStream(ByteBuffer data) {
+		m_data = data.duplicate();
+	}
+
+	@Override
+	public int read() {
+		if (!m_data.hasRemaining()) {
+			return -1;
+		}
+		return m_data.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		if (!m_data.hasRemaining()) {
+			return -1;
+		}
+		int count = Math.min(len, m_data.remaining());
+		m_data.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) {
+		int count = (int) Math.max(0, Math.min(n, m_data.remaining()));
+		m_data.position(m_data.position() + count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return m_data.remaining();
+	}
+}
@@ -0,0 +1,133 @@
+package lcms4j.xyz.imaging;
+
+import java.awt.color.ICC_Profile;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+/**
+ * ICC profile data embedded in image files, shared by all the metadata objects of images embedding the same
+ * profile.<br><br>
+ * Profile data is interned in a process-wide index keyed by its contents, so that images embedding the same profile
+ * (for instance, every photo taken by a camera) keep a single copy of the profile bytes and a single parsed
+ * <code>ICC_Profile</code>. Entries of the index are weakly referenced, and are discarded once no metadata object
+ * uses them.
+ */
+final class IccProfileData {
+	/** Offset of the profile ID (MD5 of the profile) in the ICC profile header. */
+	private static final int PROFILE_ID_OFFSET = 84;
+	/** Length of the profile ID. */
+	private static final int PROFILE_ID_LENGTH = 16;
+
+	/** Interned profile data, keyed by its contents. */
+	private static final WeakHashMap<IccProfileData, WeakReference<IccProfileData>> s_index = new WeakHashMap<>();
+
+	/** Profile bytes. */
+	private final byte[] m_data;
+	/** Hash code of the profile bytes. */
+	private final int m_hash;
+	/** Parsed profile, or <code>null</code> if not parsed yet. */
+	private ICC_Profile m_profile = null;
+	/** <code>true</code> if the profile bytes were parsed and are not a valid profile. */
+	private boolean m_invalid = false;
+
+	/**
+	 * Creates profile data.
+	 * @param data Profile bytes.
+	 */
+	private IccProfileData(byte[] data) {
+		m_data = data;
+		m_hash = hash(data);
+	}
+
+	/**
+	 * Gets the shared instance of some ICC profile data.
+	 * @param data Profile bytes. They are kept, not copied, and must not be modified afterwards.
+	 * @return Shared profile data with the same contents.
+	 */
+	static IccProfileData getInstance(byte[] data) {
+		IccProfileData key = new IccProfileData(data);
+		synchronized (s_index) {
+			WeakReference<IccProfileData> reference = s_index.get(key);
+			IccProfileData shared = (reference == null ? null : reference.get());
+			if (shared == null) {
+				s_index.put(key, new WeakReference<>(key));
+				shared = key;
+			}
+			return shared;
+		}
+	}
+
+	/**
+	 * Gets the number of distinct profiles currently shared.
+	 * @return Number of shared profiles.
+	 */
+	static int getCount() {
+		synchronized (s_index) {
+			return s_index.size();
+		}
+	}
+
+	/**
+	 * Gets the parsed profile. Profile bytes are parsed only once, and the same profile object is returned
+	 * to all its users, which must not modify it.
+	 * @return Parsed profile, or <code>null</code> if the profile bytes are not a valid profile.
+	 */
+	synchronized ICC_Profile getProfile() {
+		if (m_profile == null && !m_invalid) {
+			try {
+				m_profile = ICC_Profile.getInstance(m_data);
+			} catch (IllegalArgumentException e) {
+				m_invalid = true;
+			}
+		}
+		return m_profile;
+	}
+
+	/**
+	 * Gets the size of the profile bytes.
+	 * @return Size of the profile (bytes).
+	 */
+	int getSize() {
+		return m_data.length;
+	}
+
+	/**
+	 * Computes the hash code of some profile bytes. The profile ID stored in the header, when present, identifies
+	 * the profile contents, so only the ID is hashed. Otherwise, all the bytes are hashed.
+	 * @param data Profile bytes.
+	 * @return Hash code.
+	 */
+	private static int hash(byte[] data) {
+		if (data.length >= PROFILE_ID_OFFSET + PROFILE_ID_LENGTH) {
+			int hash = 0;
+			boolean hasId = false;
+			for (int i = PROFILE_ID_OFFSET; i < PROFILE_ID_OFFSET + PROFILE_ID_LENGTH; i++) {
+				hash = 31 * hash + data[i];
+				hasId |= (data[i] != 0);
+			}
+			if (hasId) {
+				return 31 * hash + data.length;
+			}
+		}
+		return Arrays.hashCode(data);
+	}
+
+	@Override
+	public int hashCode() {
+		return m_hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof IccProfileData)) {
+			return false;
+		}
+		IccProfileData other = (IccProfileData) obj;
+		// The profile ID is not trusted alone: profiles with the same ID must also have the same bytes
+		return m_hash == other.m_hash && Arrays.equals(m_data, other.m_data);
+	}
+}
@@ -0,0 +1,100 @@
+package lcms4j.xyz.imaging;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * Image file format known by {@link ImageMetadata}: the signature that identifies files of the format from their
+ * first bytes, and the parser that reads their metadata.<br><br>
+ * Formats are registered with {@link ImageMetadata#registerFormat(ImageFormat)}, and detected by looking up the
+ * first byte of the file header, so detection time does not grow with the number of registered formats.
+ */
+final class ImageFormat {
+	/** Signature value matching any byte. */
+	static final int ANY_BYTE = -1;
+
+	/**
+	 * Reader of the metadata of images of a format.
+	 */
+	interface Parser {
+		/**
+		 * Reads the metadata of an image. When the file is known, the bytes may be only the first bytes of the
+		 * file: parsers that run past the end of the bytes return <code>null</code>, and are called again with twice
+		 * as many. Images that are not valid give a failed metadata object at once, without reading more bytes.
+		 * @param data Bytes of the image file, between the position and the limit of the buffer.
+		 *        The position of the buffer must not be modified.
+		 * @param file Image file the bytes were read from, or <code>null</code> if unknown.
+		 * @return Metadata object, or <code>null</code> if the bytes end before the image data.
+		 */
+		ImageMetadata parse(ByteBuffer data, File file);
+	}
+
+	/** Image type of the format. */
+	private final ImageType m_imageType;
+	/** Signature bytes at the start of image files, with <code>ANY_BYTE</code> for bytes that may take any value. */
+	private final int[] m_signature;
+	/** Metadata parser. */
+	private final Parser m_parser;
+
+	/**
+	 * Creates an image format.
+	 * @param imageType Image type of the format.
+	 * @param signature Signature bytes at the start of image files, with <code>ANY_BYTE</code> for bytes that may
+	 *        take any value. The first byte must be known, and the signature must not be longer than
+	 *        <code>ImageMetadata.HEADER_SIZE</code>.
+	 * @param parser Metadata parser.
+	 */
+	ImageFormat(ImageType imageType, int[] signature, Parser parser) {
+		if (signature.length == 0 || signature.length > ImageMetadata.HEADER_SIZE || signature[0] == ANY_BYTE) {
+			throw new IllegalArgumentException("Invalid signature for image type " + imageType);
+		}
+		m_imageType = imageType;
+		m_signature = signature.clone();
+		m_parser = parser;
+	}
+
+	/**
+	 * Gets the image type of the format.
+	 * @return Image type.
+	 */
+	ImageType getImageType() {
+		return m_imageType;
+	}
+
+	/**
+	 * Gets the first byte of the signature of the format.
+	 * @return First signature byte.
+	 */
+	int getFirstByte() {
+		return m_signature[0];
+	}
+
+	/**
+	 * Tells whether an image file header matches the signature of the format.
+	 * @param header First bytes of the image file, between the position and the limit of the buffer.
+	 * @return <code>true</code> if the header matches, <code>false</code> otherwise.
+	 */
+	boolean matches(ByteBuffer header) {
+		if (header.remaining() < m_signature.length) {
+			return false;
+		}
+		int start = header.position();
+		for (int i = 0; i < m_signature.length; i++) {
+			if (m_signature[i] != ANY_BYTE && m_signature[i] != (header.get(start + i) & 0xFF)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the metadata of an image of this format.
+	 * @param data Bytes of the image file, or only its first bytes if the file is known, between the position and
+	 *        the limit of the buffer. The position of the buffer is not modified.
+	 * @param file Image file the bytes were read from, or <code>null</code> if unknown.
+	 * @return Metadata object, or <code>null</code> if the bytes end before the image data.
+	 */
+	ImageMetadata parse(ByteBuffer data, File file) {
+		return m_parser.parse(data, file);
+	}
+}
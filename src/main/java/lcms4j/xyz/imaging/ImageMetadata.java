@@ -3,10 +3,16 @@ package lcms4j.xyz.imaging;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.color.ICC_Profile;
 import java.io.*;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
@@ -34,6 +40,12 @@ import java.util.Iterator;
  * </pre>
  */
 public class ImageMetadata {
+	/** Number of bytes at the start of image files inspected for detecting their type. */
+	static final int HEADER_SIZE = 64;
+	/** Number of bytes first read from image files for parsing their metadata. */
+	static final int PREFIX_SIZE = 64 * 1024;
+	/** Maximum number of bytes read from image files for parsing their metadata. */
+	static final int MAX_PREFIX_SIZE = 64 * 1024 * 1024;
 	/** PNG signature bytes. */
 	private static final int[] PNG_SIGNATURE = {137, 80, 78, 71, 13, 10, 26, 10};
 	/** JPEG signature bytes. */
@@ -44,15 +56,22 @@ public class ImageMetadata {
 	private static final int[] TIFF_LE_SIGNATURE = {0x49, 0x49, 0x2A, 0x00};
 	/** TIFF (big-endian) signature bytes. */
 	private static final int[] TIFF_BE_SIGNATURE = {0x4D, 0x4D, 0x00, 0x2A};
+	/** GIF signature bytes ("GIF87a" or "GIF89a"). */
+	private static final int[] GIF_SIGNATURE = {0x47, 0x49, 0x46, 0x38, ImageFormat.ANY_BYTE, 0x61};
+	/** WebP signature bytes ("RIFF", file size, "WEBP"). */
+	private static final int[] WEBP_SIGNATURE = {0x52, 0x49, 0x46, 0x46, ImageFormat.ANY_BYTE, ImageFormat.ANY_BYTE,
+			ImageFormat.ANY_BYTE, ImageFormat.ANY_BYTE, 0x57, 0x45, 0x42, 0x50};
 
-	/** List of known file signatures. */
-	private static final HashMap<ImageType, int[]> s_signatures = new HashMap<>();
+	/** Known image formats, indexed by the first byte of their signature. */
+	private static final ImageFormat[][] s_formats = new ImageFormat[256][0];
 	static {
-		s_signatures.put(ImageType.PNG, PNG_SIGNATURE);
-		s_signatures.put(ImageType.JPEG, JPEG_SIGNATURE);
-		s_signatures.put(ImageType.BMP, BMP_SIGNATURE);
-		s_signatures.put(ImageType.TIFF_LE, TIFF_LE_SIGNATURE);
-		s_signatures.put(ImageType.TIFF_BE, TIFF_BE_SIGNATURE);
+		registerFormat(new ImageFormat(ImageType.PNG, PNG_SIGNATURE, ImageMetadata::parsePng));
+		registerFormat(new ImageFormat(ImageType.JPEG, JPEG_SIGNATURE, ImageMetadata::parseJpeg));
+		registerFormat(new ImageFormat(ImageType.BMP, BMP_SIGNATURE, ImageMetadata::parseBmp));
+		registerFormat(new ImageFormat(ImageType.TIFF_LE, TIFF_LE_SIGNATURE, (data, file) -> parseImageIO(ImageType.TIFF_LE, data, file)));
+		registerFormat(new ImageFormat(ImageType.TIFF_BE, TIFF_BE_SIGNATURE, (data, file) -> parseImageIO(ImageType.TIFF_BE, data, file)));
+		registerFormat(new ImageFormat(ImageType.GIF, GIF_SIGNATURE, (data, file) -> parseGif(data)));
+		registerFormat(new ImageFormat(ImageType.WEBP, WEBP_SIGNATURE, (data, file) -> parseWebp(data)));
 	}
 
 	/** Detected image type. */
@@ -61,6 +80,12 @@ public class ImageMetadata {
 	private int m_width;
 	/** Image height (px). */
 	private int m_height;
+	/** <code>true</code> if this object is shared by {@link ImageMetadataCache}, and can not be loaded again. */
+	private volatile boolean m_frozen = false;
+	/** <code>true</code> if the image file could not be read, or its type or metadata could not be parsed. */
+	private boolean m_failed = false;
+	/** <code>true</code> if the bytes last parsed into this object ended before the image data. */
+	private boolean m_truncated = false;
 	
 	/**
 	 * Generates an object of the right type for getting metadata
@@ -74,66 +99,333 @@ public class ImageMetadata {
 
 	/**
 	 * Generates an object of the right type for getting metadata
-	 * from an image file.
+	 * from an image file. If {@link ImageMetadataCache} is enabled, metadata of files
+	 * that have not changed since they were last parsed is taken from the cache.
 	 * @param file Image file.
 	 * @return Metadata object.
 	 */
 	public static ImageMetadata getInstance(File file) {
+		if (ImageMetadataCache.getMaxSize() > 0) {
+			return ImageMetadataCache.get(file);
+		}
+		return readInstance(file);
+	}
+
+	/**
+	 * Generates an object of the right type for getting metadata
+	 * from an image file, always parsing the file.<br>
+	 * Only the first bytes of the file are read, starting with {@link #PREFIX_SIZE} bytes and doubling them while
+	 * the parser of the image format runs past their end before reaching the image data (the <i>SOS</i> segment
+	 * of JPEG images, or the first <i>IDAT</i> chunk of PNG images). Malformed images fail without reading more. TIFF images, and images of unknown formats, are read by their
+	 * <code>ImageIO</code> reader through the same channel.
+	 * The file is not mapped into memory, so files of any size can be read, and it is closed on return.
+	 * @param file Image file.
+	 * @return Metadata object.
+	 */
+	static ImageMetadata readInstance(File file) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer data = readPrefix(channel, null);
+			ImageFormat format = getImageFormat(data);
+			if (format == null) {
+				ImageMetadata md = new ImageMetadata();
+				md.loadPixelSize(new MemoryCacheImageInputStream(Channels.newInputStream(channel)));
+				md.m_failed = true;
+				return md;
+			}
+			ImageMetadata md = format.parse(data, file);
+			while (md == null && (data = readPrefix(channel, data)) != null) {
+				md = format.parse(data, file);
+			}
+			return (md == null ? getInvalidInstance(format.getImageType(), file) : md);
+		} catch (Exception e) {
+			System.err.println("Unable to read file: " + file.getAbsolutePath() + ": " + e.getMessage());
+		}
 		ImageMetadata md = new ImageMetadata();
-		md.setImageType(getImageType(file));
-		switch (md.getImageType()) {
-			case JPEG:
-				JPEGMetadata jpeg = new JPEGMetadata();
-				if (jpeg.load(file)) {
-					md = jpeg;
-				}
-				break;
-			case PNG:
-				PNGMetadata png = new PNGMetadata();
-				if (png.load(file)) {
-					md = png;
-				}
-				break;
-			default:
-				md.loadPixelSize(file);
-				break;				
+		md.m_failed = true;
+		return md;
+	}
+
+	/**
+	 * Generates an object of the right type for getting metadata
+	 * from the bytes of an image file already in memory.
+	 * @param data Complete bytes of the image file.
+	 * @return Metadata object.
+	 */
+	public static ImageMetadata getInstance(byte[] data) {
+		return getInstance(ByteBuffer.wrap(data), null);
+	}
+
+	/**
+	 * Generates an object of the right type for getting metadata
+	 * from the bytes of an image file already in memory.
+	 * @param data Complete bytes of the image file, between the position and the limit of the buffer.
+	 *        The position of the buffer is not modified.
+	 * @return Metadata object.
+	 */
+	public static ImageMetadata getInstance(ByteBuffer data) {
+		return getInstance(data, null);
+	}
+
+	/**
+	 * Generates an object of the right type for getting metadata
+	 * from an image file read from a stream.<br>
+	 * The stream is read up to its end. If it supports marks, it is reset afterwards to the position
+	 * it had when this method was called, so the image can be read from the stream again.
+	 * @param is Stream positioned at the start of the image file. The stream is not closed.
+	 * @return Metadata object.
+	 * @throws IOException If the stream can not be read or reset.
+	 */
+	public static ImageMetadata getInstance(InputStream is) throws IOException {
+		boolean reset = is.markSupported();
+		if (reset) {
+			is.mark(Integer.MAX_VALUE);
+		}
+		byte[] data = is.readAllBytes();
+		if (reset) {
+			is.reset();
+		}
+		return getInstance(data);
+	}
+
+	/**
+	 * Generates an object of the right type for getting metadata
+	 * from the bytes of an image file already in memory.
+	 * @param data Complete bytes of the image file, between the position and the limit of the buffer.
+	 *        The position of the buffer is not modified.
+	 * @param file Image file the bytes were read from, or <code>null</code> if unknown.
+	 * @return Metadata object.
+	 */
+	static ImageMetadata getInstance(ByteBuffer data, File file) {
+		ImageFormat format = getImageFormat(data);
+		if (format == null) {
+			ImageMetadata md = new ImageMetadata();
+			md.loadPixelSize(new MemoryCacheImageInputStream(new ByteBufferInputStream(data)));
+			md.m_failed = true;
+			return md;
+		}
+		ImageMetadata md = format.parse(data, file);
+		return (md == null ? getInvalidInstance(format.getImageType(), file) : md);
+	}
+
+	/**
+	 * Generates the metadata object of an image of a known type, but without valid metadata.
+	 * @param imageType Detected image type.
+	 * @param file Image file, or <code>null</code> if unknown.
+	 * @return Metadata object, only with the image type.
+	 */
+	private static ImageMetadata getInvalidInstance(ImageType imageType, File file) {
+		if (file != null) {
+			System.err.println("Error while loading " + imageType + " metadata: " + file.getAbsolutePath());
 		}
+		ImageMetadata md = new ImageMetadata();
+		md.setImageType(imageType);
+		md.m_failed = true;
 		return md;
 	}
+
+	/**
+	 * Reads the first bytes of a file into memory, twice as many as in a previous read.
+	 * @param channel Channel of the file.
+	 * @param prefix First bytes previously read from the file, from position <code>0</code>, or <code>null</code>
+	 *        for reading the first {@link #PREFIX_SIZE} bytes.
+	 * @return Buffer holding the first bytes of the file, from position <code>0</code>, or <code>null</code> if the
+	 *         previous bytes were the whole file or already reached {@link #MAX_PREFIX_SIZE} bytes.
+	 * @throws IOException If the file can not be read.
+	 */
+	static ByteBuffer readPrefix(FileChannel channel, ByteBuffer prefix) throws IOException {
+		int length = (prefix == null ? 0 : prefix.limit());
+		long size = Math.min(channel.size(), prefix == null ? PREFIX_SIZE : Math.min(2L * length, MAX_PREFIX_SIZE));
+		if (prefix != null && size <= length) {
+			return null;
+		}
+		ByteBuffer data = ByteBuffer.allocate((int) size);
+		if (prefix != null) {
+			data.put(prefix.duplicate().rewind());
+		}
+		while (data.hasRemaining() && channel.read(data, data.position()) >= 0);
+		data.flip();
+		return (prefix != null && data.limit() <= length ? null : data);
+	}
+
+	/**
+	 * Registers an image format, so that image files of that format are detected and their metadata is read
+	 * by its parser. Formats must be registered while this class is initialized.
+	 * @param format Image format.
+	 */
+	static void registerFormat(ImageFormat format) {
+		ImageFormat[] formats = s_formats[format.getFirstByte()];
+		ImageFormat[] updated = Arrays.copyOf(formats, formats.length + 1);
+		updated[formats.length] = format;
+		s_formats[format.getFirstByte()] = updated;
+	}
+
+	/**
+	 * Detects the format of an image from its first bytes. Only the formats whose signature starts with
+	 * the first byte of the header are checked.
+	 * @param header First bytes of the image file, between the position and the limit of the buffer.
+	 * @return Detected image format, or <code>null</code> if not able to detect.
+	 */
+	private static ImageFormat getImageFormat(ByteBuffer header) {
+		if (!header.hasRemaining()) {
+			return null;
+		}
+		for (ImageFormat format : s_formats[header.get(header.position()) & 0xFF]) {
+			if (format.matches(header)) {
+				return format;
+			}
+		}
+		return null;
+	}
 		
 	/**
-	 * Detects image type.
+	 * Detects image type. Only the first bytes of the file are read.
 	 * @param file File under test.
 	 * @return Detected image type, or <code>ImageType.UNKNOWN</code> if not able to detect.
 	 */
 	public static ImageType getImageType(File file) {
-		ImageType imageType = ImageType.UNKNOWN;
-		ArrayList<ImageType> discardedTypes = new ArrayList<>();
-		try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(file))) {
-			int pos = 0;
-			int b;
-			while (discardedTypes.size() < s_signatures.size() && imageType == ImageType.UNKNOWN && (b = is.read()) != -1) {
-				for (ImageType type : s_signatures.keySet()) {
-					if (!discardedTypes.contains(type)) {
-						if (s_signatures.get(type)[pos] == b) {
-							if ((pos+1) == s_signatures.get(type).length) {
-								imageType = type;
-							}
-						} else {
-							discardedTypes.add(type);
-						}						
-					}
-				}
-				pos++;
-			}
+		try (FileInputStream is = new FileInputStream(file)) {
+			return getImageType(ByteBuffer.wrap(is.readNBytes(HEADER_SIZE)));
 		} catch (Exception e) {
 			System.err.println("Unable to read file: " + file.getAbsolutePath() + ": " + e.getMessage());
 		}
-		return imageType;
+		return ImageType.UNKNOWN;
+	}
+
+	/**
+	 * Detects image type from the first bytes of an image file.
+	 * @param header First bytes of the image file, between the position and the limit of the buffer.
+	 *        The position of the buffer is not modified.
+	 * @return Detected image type, or <code>ImageType.UNKNOWN</code> if not able to detect.
+	 */
+	public static ImageType getImageType(ByteBuffer header) {
+		ImageFormat format = getImageFormat(header);
+		return format == null ? ImageType.UNKNOWN : format.getImageType();
+	}
+
+	/**
+	 * Reads the metadata of a PNG image, from its chunks before the image data.
+	 * @param data Bytes of the image file, or only its first bytes.
+	 * @param file Image file the bytes were read from, or <code>null</code> if unknown.
+	 * @return Metadata object (failed if the image is not valid), or <code>null</code> if the bytes end before the
+	 *         image data.
+	 */
+	private static ImageMetadata parsePng(ByteBuffer data, File file) {
+		PNGMetadata png = new PNGMetadata();
+		if (png.loadHeaders(data)) {
+			return png;
+		}
+		return png.isTruncated() ? null : getInvalidInstance(ImageType.PNG, file);
 	}
 
 	/**
-	 * Gets ICC profile embedded in an image file.
+	 * Reads the metadata of a JPEG image, from its marker segments before the image data.
+	 * @param data Bytes of the image file, or only its first bytes.
+	 * @param file Image file the bytes were read from, or <code>null</code> if unknown.
+	 * @return Metadata object (failed if the image is not valid), or <code>null</code> if the bytes end before the
+	 *         image data.
+	 */
+	private static ImageMetadata parseJpeg(ByteBuffer data, File file) {
+		JPEGMetadata jpeg = new JPEGMetadata();
+		if (jpeg.load(data.slice(), file)) {
+			return jpeg;
+		}
+		return jpeg.isTruncated() ? null : getInvalidInstance(ImageType.JPEG, file);
+	}
+
+	/**
+	 * Reads the pixel dimensions of a BMP image from its <i>BITMAPINFOHEADER</i> (or <i>BITMAPCOREHEADER</i>).
+	 * @param data Bytes of the image file, or only its first bytes.
+	 * @param file Image file the bytes were read from, or <code>null</code> if unknown.
+	 * @return Metadata object.
+	 */
+	private static ImageMetadata parseBmp(ByteBuffer data, File file) {
+		ImageMetadata md = new ImageMetadata();
+		md.setImageType(ImageType.BMP);
+		ByteBuffer header = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (header.remaining() >= 26 && header.getInt(14) == 12) {
+			// OS/2 BITMAPCOREHEADER, 16 bits each
+			md.setPixelSize(header.getShort(18) & 0xFFFF, header.getShort(20) & 0xFFFF);
+		} else if (header.remaining() >= 26) {
+			// Negative height for top-down bitmaps
+			md.setPixelSize(Math.abs(header.getInt(18)), Math.abs(header.getInt(22)));
+		}
+		return md;
+	}
+
+	/**
+	 * Reads the pixel dimensions of an image with the ImageIO reader of its format. The reader reads the file,
+	 * if known, as the metadata of these formats may be anywhere in the file.
+	 * @param imageType Image type.
+	 * @param data Bytes of the image file, or only its first bytes if the file is known.
+	 * @param file Image file the bytes were read from, or <code>null</code> if unknown.
+	 * @return Metadata object.
+	 */
+	private static ImageMetadata parseImageIO(ImageType imageType, ByteBuffer data, File file) {
+		ImageMetadata md = new ImageMetadata();
+		md.setImageType(imageType);
+		if (file != null) {
+			md.loadPixelSize(file);
+		} else {
+			md.loadPixelSize(new MemoryCacheImageInputStream(new ByteBufferInputStream(data)));
+		}
+		return md;
+	}
+
+	/**
+	 * Reads the pixel dimensions of a GIF image from its logical screen descriptor.
+	 * @param data Bytes of the image file, or only its first bytes.
+	 * @return Metadata object.
+	 */
+	private static ImageMetadata parseGif(ByteBuffer data) {
+		ImageMetadata md = new ImageMetadata();
+		md.setImageType(ImageType.GIF);
+		ByteBuffer header = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (header.remaining() >= 10) {
+			md.setPixelSize(header.getShort(6) & 0xFFFF, header.getShort(8) & 0xFFFF);
+		}
+		return md;
+	}
+
+	/**
+	 * Reads the pixel dimensions of a WebP image from the header of its first chunk
+	 * (<i>VP8X</i> extended, <i>VP8 </i> lossy or <i>VP8L</i> lossless).
+	 * @param data Bytes of the image file, or only its first bytes.
+	 * @return Metadata object.
+	 */
+	private static ImageMetadata parseWebp(ByteBuffer data) {
+		ImageMetadata md = new ImageMetadata();
+		md.setImageType(ImageType.WEBP);
+		ByteBuffer header = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (header.remaining() < 30) {
+			return md;
+		}
+		byte[] chunk = new byte[4];
+		header.position(12);
+		header.get(chunk);
+		switch (new String(chunk, StandardCharsets.US_ASCII)) {
+			case "VP8X":
+				// Canvas size minus one, 24 bits each
+				md.setPixelSize(1 + ((header.getShort(24) & 0xFFFF) | (header.get(26) & 0xFF) << 16),
+						1 + ((header.getShort(27) & 0xFFFF) | (header.get(29) & 0xFF) << 16));
+				break;
+			case "VP8 ":
+				// 14 bits each, after the frame tag and start code
+				md.setPixelSize(header.getShort(26) & 0x3FFF, header.getShort(28) & 0x3FFF);
+				break;
+			case "VP8L":
+				// Size minus one, 14 bits each, after the signature byte
+				int bits = header.getInt(21);
+				md.setPixelSize(1 + (bits & 0x3FFF), 1 + ((bits >>> 14) & 0x3FFF));
+				break;
+			default:
+				break;
+		}
+		return md;
+	}
+
+	/**
+	 * Gets ICC profile embedded in an image file.<br>
+	 * The returned profile is shared, and must not be modified (see {@link #getIccProfile()}).
 	 * @param imagePath Path to image file.
 	 * @return Embedded ICC Profile, or <code>null</code> if not detected. 
 	 */
@@ -142,7 +434,8 @@ public class ImageMetadata {
 	}
 	
 	/**
-	 * Gets ICC profile embedded in an image file.
+	 * Gets ICC profile embedded in an image file.<br>
+	 * The returned profile is shared, and must not be modified (see {@link #getIccProfile()}).
 	 * @param imageFile Image file.
 	 * @return Embedded ICC Profile, or <code>null</code> if not detected. 
 	 */
@@ -151,6 +444,49 @@ public class ImageMetadata {
 		return md.getIccProfile();
 	}
 
+	/**
+	 * Prevents metadata from being loaded into this object again, as it is shared by {@link ImageMetadataCache}.
+	 */
+	void freeze() {
+		m_frozen = true;
+	}
+
+	/**
+	 * Tells whether parsing of the image file failed, so this object only holds default metadata (and maybe the
+	 * detected image type). Failures may be transient, for instance while the file is still being written.
+	 * @return <code>true</code> if the file could not be read, or its type or metadata could not be parsed.
+	 */
+	boolean isFailed() {
+		return m_failed;
+	}
+
+	/**
+	 * Tells whether the bytes last parsed into this object ended before the image data, so that parsing may
+	 * succeed with more bytes of the image file. Malformed images are not truncated.
+	 * @return <code>true</code> if parsing ran past the end of the bytes.
+	 */
+	boolean isTruncated() {
+		return m_truncated;
+	}
+
+	/**
+	 * Sets whether the bytes last parsed into this object ended before the image data.
+	 * @param truncated <code>true</code> if parsing ran past the end of the bytes.
+	 */
+	void setTruncated(boolean truncated) {
+		m_truncated = truncated;
+	}
+
+	/**
+	 * Checks that metadata can be loaded into this object.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
+	 */
+	void checkNotFrozen() {
+		if (m_frozen) {
+			throw new IllegalStateException("Cached metadata can not be loaded again");
+		}
+	}
+
 	/**
 	 * Gets the detected image type.
 	 * @return Detected image type.
@@ -183,15 +519,35 @@ public class ImageMetadata {
 		return m_height;
 	}
 
+	/**
+	 * Stores pixel dimensions of the image.
+	 * @param width Image width (px).
+	 * @param height Image height (px).
+	 */
+	protected void setPixelSize(int width, int height) {
+		m_width = width;
+		m_height = height;
+	}
+
 	/**
 	 * Detects and stores pixel dimensions of an image file.
 	 * @param imageFile Image file under analysis.
 	 */
 	protected void loadPixelSize(File imageFile) {
-		ImageInputStream is = null;
+		try (ImageInputStream is = ImageIO.createImageInputStream(imageFile)) {
+			loadPixelSize(is);
+		} catch (Exception e) {
+			/* Ignore */
+		}
+	}
+
+	/**
+	 * Detects and stores pixel dimensions of an image read from a stream.
+	 * @param is Stream positioned at the start of the image.
+	 */
+	protected void loadPixelSize(ImageInputStream is) {
 		ImageReader reader = null;
 		try {
-			is = ImageIO.createImageInputStream(imageFile);
 		    Iterator<ImageReader> readers = ImageIO.getImageReaders(is);
 		    if (readers.hasNext()) {
 		        reader = readers.next();
@@ -200,10 +556,8 @@ public class ImageMetadata {
 		        m_height = reader.getHeight(0);
 	            reader.dispose();
 		    }
-		    is.close();
 		} catch (Exception e) {
 			if (reader != null) try {reader.dispose();} catch (Exception ex) {/* Ignore */}
-			if (is != null) try {is.close();} catch (Exception ex) {/* Ignore */}
 		}		
 	}
 
@@ -256,13 +610,24 @@ public class ImageMetadata {
 	}
 	
 	/**
-	 * Gets the embedded ICC profile.
+	 * Gets the embedded ICC profile.<br>
+	 * The returned profile is shared by the metadata of all the images embedding the same profile, so it must
+	 * not be modified (for instance, with <code>ICC_Profile.setData()</code>). Modify a copy instead, created with
+	 * <code>ICC_Profile.getInstance(profile.getData())</code>.
 	 * @return Embedded ICC Profile, or <code>null</code> if not detected. 
 	 */
 	public ICC_Profile getIccProfile() {
 		return null;
 	}
 
+	/**
+	 * Gets the size of the embedded ICC profile data kept by this object.
+	 * @return Size of ICC profile data (bytes), or <code>0</code> if not detected.
+	 */
+	int getIccProfileSize() {
+		return 0;
+	}
+
 	/**
 	 * Gets orientation of image pixels.
 	 * @return Orientation of image pixels.
@@ -0,0 +1,173 @@
+package lcms4j.xyz.imaging;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Process-wide cache of image file metadata.<br><br>
+ * Metadata of the same image file is often requested several times (for instance, to choose how to process it,
+ * and then to process it). Once enabled by {@link #setMaxSize(long) setMaxSize()}, every call to
+ * {@link ImageMetadata#getInstance(File)} goes through this cache, which keeps the parsed metadata keyed by the
+ * canonical path, length and last modification time of the file. Requests for a file that has not changed since it
+ * was parsed return the cached metadata, including the embedded ICC profile data, without reading the file again.<br><br>
+ * Metadata of files that can not be read or parsed is not cached, and those files are parsed again on every request.<br><br>
+ * Cached metadata objects are shared among all their users, and can not be loaded again: their <code>load</code>
+ * methods throw <code>IllegalStateException</code>. They are evicted in least
+ * recently used order whenever the estimated size of all cached metadata exceeds the size budget of the cache.
+ * Caching is disabled by default.
+ */
+public final class ImageMetadataCache {
+	/** Estimated size of cached metadata, not including ICC profile data (bytes) */
+	private static final long ENTRY_OVERHEAD = 1024;
+	/** Cached metadata, keyed by canonical path of the image file, in least recently used order */
+	private static final LinkedHashMap<String, Entry> s_entries = new LinkedHashMap<>(16, 0.75f, true);
+	/** Size budget of the cache (bytes) */
+	private static long s_maxSize = 0;
+	/** Estimated size of all cached metadata (bytes) */
+	private static long s_size = 0;
+
+	/**
+	 * Static utility class, not to be instantiated.
+	 */
+	private ImageMetadataCache() {
+	}
+
+	/**
+	 * Gets the metadata of an image file from the cache, parsing the file if it is not cached or has changed
+	 * since it was cached.
+	 *
+	 * @param file Image file.
+	 * @return Metadata object.
+	 */
+	static ImageMetadata get(File file) {
+		String path;
+		long length;
+		long lastModified;
+		try {
+			if (!file.isFile()) {
+				return ImageMetadata.readInstance(file);
+			}
+			path = file.getCanonicalPath();
+			length = file.length();
+			lastModified = file.lastModified();
+		} catch (IOException | SecurityException e) {
+			// Not cacheable
+			return ImageMetadata.readInstance(file);
+		}
+		synchronized (s_entries) {
+			Entry entry = s_entries.get(path);
+			if (entry != null && entry.m_length == length && entry.m_lastModified == lastModified) {
+				return entry.m_metadata;
+			}
+		}
+		// File is parsed without locking the cache, as it may take a while
+		ImageMetadata metadata = ImageMetadata.readInstance(file);
+		if (metadata.isFailed()) {
+			// Not cached, so that the file is parsed again on next request
+			return metadata;
+		}
+		metadata.freeze();
+		Entry entry = new Entry(metadata, length, lastModified);
+		synchronized (s_entries) {
+			// Metadata of a previous version of the file is replaced
+			Entry previous = s_entries.put(path, entry);
+			if (previous != null) {
+				s_size -= previous.m_size;
+			}
+			s_size += entry.m_size;
+			evict();
+		}
+		return entry.m_metadata;
+	}
+
+	/**
+	 * Sets the size budget of the cache. Metadata is evicted until the estimated size of all cached metadata
+	 * fits the new budget.
+	 *
+	 * @param maxSize Size budget (bytes). <code>0</code> disables caching.
+	 */
+	public static void setMaxSize(long maxSize) {
+		synchronized (s_entries) {
+			s_maxSize = Math.max(0, maxSize);
+			evict();
+		}
+	}
+
+	/**
+	 * Gets the size budget of the cache.
+	 *
+	 * @return Size budget (bytes). <code>0</code> if caching is disabled.
+	 */
+	public static long getMaxSize() {
+		synchronized (s_entries) {
+			return s_maxSize;
+		}
+	}
+
+	/**
+	 * Gets the estimated size of all cached metadata.
+	 *
+	 * @return Estimated size (bytes)
+	 */
+	public static long getSize() {
+		synchronized (s_entries) {
+			return s_size;
+		}
+	}
+
+	/**
+	 * Gets the number of cached metadata objects.
+	 *
+	 * @return Number of cached metadata objects
+	 */
+	public static int getCount() {
+		synchronized (s_entries) {
+			return s_entries.size();
+		}
+	}
+
+	/**
+	 * Removes all metadata from the cache.
+	 */
+	public static void clear() {
+		synchronized (s_entries) {
+			s_entries.clear();
+			s_size = 0;
+		}
+	}
+
+	/**
+	 * Evicts least recently used metadata until the cache fits its size budget. Must be called holding the lock
+	 * of the cache.
+	 */
+	private static void evict() {
+		Iterator<Entry> iterator = s_entries.values().iterator();
+		while (s_size > s_maxSize && iterator.hasNext()) {
+			s_size -= iterator.next().m_size;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Cached metadata of an image file.
+	 */
+	private static final class Entry {
+		/** Metadata of the image file */
+		private final ImageMetadata m_metadata;
+		/** Length of the image file when it was parsed (bytes) */
+		private final long m_length;
+		/** Last modification time of the image file when it was parsed */
+		private final long m_lastModified;
+		/** Estimated size of the metadata, including ICC profile data (bytes) */
+		private final long m_size;
+
+		private Entry(ImageMetadata metadata, long length, long lastModified) {
+			m_metadata = metadata;
+			m_length = length;
+			m_lastModified = lastModified;
+			m_size = ENTRY_OVERHEAD + metadata.getIccProfileSize();
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package lcms4j.xyz.imaging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * An image file read into memory once, and shared by all the steps of its processing.<br>
+ * <br>
+ * Reading metadata, embedded ICC profile and pixels of an image file usually opens and parses the file
+ * several times. An <code>ImageSource</code> reads the bytes of the file only once: metadata is parsed from
+ * them the first time it is requested, and image readers decode pixels from the same bytes.<br>
+ * <br>
+ * Sources can also be created from images that are already in memory (arrays, buffers or streams), so images
+ * received from other sources than files are processed without writing them to disk.
+ */
+public class ImageSource {
+	/** Image file, or <code>null</code> if not read from a file. */
+	private final File m_file;
+	/** Array holding the complete bytes of the image file. */
+	private final byte[] m_data;
+	/** Index of the first byte of the image file in the array. */
+	private final int m_offset;
+	/** Size of the image file (bytes). */
+	private final int m_length;
+	/** Metadata of the image, parsed on first use. */
+	private ImageMetadata m_metadata = null;
+
+	/**
+	 * Reads an image file into memory.
+	 * @param file Image file.
+	 * @throws IOException If the file can not be read.
+	 */
+	public ImageSource(File file) throws IOException {
+		m_file = file;
+		m_data = Files.readAllBytes(file.toPath());
+		m_offset = 0;
+		m_length = m_data.length;
+	}
+
+	/**
+	 * Creates a source from the complete bytes of an image file. The array is used directly, not copied, so it
+	 * must not be modified while the source is in use.
+	 * @param data Complete bytes of the image file.
+	 */
+	public ImageSource(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	/**
+	 * Creates a source from the complete bytes of an image file, stored in a region of an array. The array is used
+	 * directly, not copied, so it must not be modified while the source is in use.
+	 * @param data Array holding the complete bytes of the image file.
+	 * @param offset Index of the first byte of the image file in the array.
+	 * @param length Size of the image file (bytes).
+	 * @throws IndexOutOfBoundsException If the region exceeds the bounds of the array.
+	 */
+	public ImageSource(byte[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > data.length - length) {
+			throw new IndexOutOfBoundsException("Image data exceeds array bounds");
+		}
+		m_file = null;
+		m_data = data;
+		m_offset = offset;
+		m_length = length;
+	}
+
+	/**
+	 * Creates a source from the complete bytes of an image file, stored between the position and the limit of a
+	 * buffer. The position of the buffer is not modified. Buffers backed by an accessible array are used directly,
+	 * and must not be modified while the source is in use; the bytes of other buffers (for instance, direct
+	 * buffers) are copied.
+	 * @param data Buffer holding the complete bytes of the image file.
+	 */
+	public ImageSource(ByteBuffer data) {
+		m_file = null;
+		m_length = data.remaining();
+		if (data.hasArray()) {
+			m_data = data.array();
+			m_offset = data.arrayOffset() + data.position();
+		} else {
+			m_data = new byte[m_length];
+			m_offset = 0;
+			data.duplicate().get(m_data);
+		}
+	}
+
+	/**
+	 * Reads the complete bytes of an image file from a stream, up to its end. The stream is not closed.
+	 * @param is Stream positioned at the start of the image file.
+	 * @throws IOException If the stream can not be read.
+	 */
+	public ImageSource(InputStream is) throws IOException {
+		m_file = null;
+		m_data = is.readAllBytes();
+		m_offset = 0;
+		m_length = m_data.length;
+	}
+
+	/**
+	 * Gets the image file.
+	 * @return Image file, or <code>null</code> if not read from a file.
+	 */
+	public File getFile() {
+		return m_file;
+	}
+
+	/**
+	 * Gets the size of the image file.
+	 * @return Size of the image file (bytes).
+	 */
+	public int getLength() {
+		return m_length;
+	}
+
+	/**
+	 * Gets the metadata of the image, parsing it the first time it is requested.
+	 * @return Metadata object.
+	 */
+	public synchronized ImageMetadata getMetadata() {
+		if (m_metadata == null) {
+			m_metadata = ImageMetadata.getInstance(ByteBuffer.wrap(m_data, m_offset, m_length), m_file);
+		}
+		return m_metadata;
+	}
+
+	/**
+	 * Gets the detected image type.
+	 * @return Detected image type.
+	 */
+	public ImageType getImageType() {
+		return getMetadata().getImageType();
+	}
+
+	/**
+	 * Creates a new stream for reading the image with <code>ImageIO</code> readers. Streams read the bytes
+	 * of the image in memory, and do not need to be closed.
+	 * @return A new stream positioned at the beginning of the image.
+	 */
+	public ImageInputStream createImageInputStream() {
+		return new ByteArrayImageInputStream(m_data, m_offset, m_length);
+	}
+}
@@ -9,7 +9,9 @@ public enum ImageType {
 	JPEG("JPEG"),
 	BMP("BMP"),
 	TIFF_LE("TIFF_LE"),
-	TIFF_BE("TIFF_BE");
+	TIFF_BE("TIFF_BE"),
+	GIF("GIF"),
+	WEBP("WEBP");
 	
 	private final String m_description;
 	
@@ -7,12 +7,22 @@ import javax.imageio.ImageWriteParam;
 import javax.imageio.metadata.IIOMetadata;
 import javax.imageio.metadata.IIOMetadataNode;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.color.ICC_Profile;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
- * Utility class for writing images to disk.
+ * Utility class for writing images to disk or to streams.<br>
+ * <br>
+ * Images are encoded in memory, and metadata is embedded while the encoded image is written to its destination,
+ * so neither temporary files nor a second pass over the written file are needed.
  *
  */
 public class ImageWriter {
@@ -28,13 +38,33 @@ public class ImageWriter {
 	 * @return <code>true</code> on success, <code>false</code> on error
 	 */
 	public static boolean writeJpeg(BufferedImage image, File file, float quality, int dpi, ICC_Profile profile) {
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+			return writeJpeg(image, os, quality, dpi, profile);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes an image to a stream in JPEG format.
+	 * 
+	 * @param image Image to write.
+	 * @param os Destination stream. The stream is not closed.
+	 * @param quality JPEG compression quality: <code>0</code> (minimum quality) to <code>1</code> maximum. 
+	 * @param dpi Resolution to be included in JPEG metadata (dots per inch)
+	 * @param profile ICC profile to be embedded in JPEG metadata (maybe <code>null</code>)
+	 * @return <code>true</code> on success, <code>false</code> on error
+	 */
+	public static boolean writeJpeg(BufferedImage image, OutputStream os, float quality, int dpi, ICC_Profile profile) {
 
+		// Images with a profile are encoded in memory, so the profile can be inserted after the start marker
+		ByteArrayOutputStream encoded = (profile == null ? null : new ByteArrayOutputStream());
 		javax.imageio.ImageWriter writer = null;
-		try (ImageOutputStream os = ImageIO.createImageOutputStream(file)) {
+		try (ImageOutputStream ios = new MemoryCacheImageOutputStream(profile == null ? os : encoded)) {
 
 			// Create JPEG writer
 			writer = ImageIO.getImageWritersByFormatName("JPEG").next();
-			writer.setOutput(os);
+			writer.setOutput(ios);
 
 			// Set quality
 			ImageWriteParam params = writer.getDefaultWriteParam();
@@ -63,7 +93,12 @@ public class ImageWriter {
 
 		// Embed ICC profile
 		if (profile != null)  {
-			if (!JPEGMetadata.embedIccProfile(profile, file.getAbsolutePath())) {
+			try {
+				byte[] jpeg = encoded.toByteArray();
+				os.write(jpeg, 0, 2);
+				JPEGMetadata.writeIccMarkers(os, profile);
+				os.write(jpeg, 2, jpeg.length - 2);
+			} catch (IOException e) {
 				return false;
 			}
 		}
@@ -82,10 +117,29 @@ public class ImageWriter {
 	 * @return <code>true</code> on success, <code>false</code> on error
 	 */
 	public static boolean writePng(BufferedImage image, File file, double dpi, ICC_Profile profile) {
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+			return writePng(image, os, dpi, profile);
+		} catch (IOException e) {
+			System.err.println("PNG write error: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Writes an image to a stream in PNG format.
+	 * 
+	 * @param image Image to write.
+	 * @param os Destination stream. The stream is not closed.
+	 * @param dpi Resolution to be included in PNG metadata (dots per inch), <code>0</code> for none.
+	 * @param profile ICC profile to be embedded in PNG metadata (maybe <code>null</code>)
+	 * @return <code>true</code> on success, <code>false</code> on error
+	 */
+	public static boolean writePng(BufferedImage image, OutputStream os, double dpi, ICC_Profile profile) {
 
 		// Write PNG Image
-		try  {
-			if (!ImageIO.write(image, "PNG", file)) {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (ImageOutputStream ios = new MemoryCacheImageOutputStream(encoded)) {
+			if (!ImageIO.write(image, "PNG", ios)) {
 				throw new Exception("No suitable writer found for PNG format.");
 			}
 		} catch (Exception e) {
@@ -95,7 +149,9 @@ public class ImageWriter {
 
 		// Embed Metadata
 		if (dpi < 0) dpi = 0;
-		if (!PNGMetadata.embedMetadata(file.getAbsolutePath(), profile, dpi)) {
+		try {
+			PNGMetadata.embedMetadata(new ByteArrayInputStream(encoded.toByteArray()), os, profile, dpi);
+		} catch (Exception e) {
 			System.err.println("Unable to embed PNG metadata.");
 			return false;
 		}
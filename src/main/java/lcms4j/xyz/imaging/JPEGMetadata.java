@@ -14,10 +14,18 @@ import javax.xml.xpath.XPathFactory;
 import java.awt.*;
 import java.awt.color.ICC_Profile;
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
 
 /**
@@ -37,6 +45,8 @@ public class JPEGMetadata extends ImageMetadata {
 			
 	/** JPEG file name */
 	private String m_filename;
+	/** Bytes of the JPEG image, if not read from a file (for reading the embedded thumbnail) */
+	private ByteBuffer m_data;
 	
 	/** Metadata: Image orientation */
 	private long m_orientation = EXIF_ORIENTATION_UP;
@@ -50,10 +60,8 @@ public class JPEGMetadata extends ImageMetadata {
 	private long m_thumbPos = 0;
 	/** Metadata: Thumbnail size in bytes */
 	private long m_thumbSize = 0;
-	/** Metadata: ICC profile fragments offsets */ 
-	private Vector<Long> m_iccPositions = null;
-	/** Metadata: ICC profile fragments sizes */ 
-	private Vector<Long> m_iccSizes = null;
+	/** Metadata: Embedded ICC profile data, shared with other images embedding the same profile */
+	private IccProfileData m_iccProfile = null;
 	/** Tells whether image contains a JFIF marker. */
 	private boolean m_isJFIF = false;
 	/** Tells whether image contains an EXIF marker. */
@@ -98,6 +106,8 @@ public class JPEGMetadata extends ImageMetadata {
 	private static final byte JPEG_MARKER_APP13 = (byte)0xED;
 	private static final byte JPEG_MARKER_APP14 = (byte)0xEE;
 	private static final byte JPEG_MARKER_APP15 = (byte)0xEF;	
+	private static final byte JPEG_MARKER_SOS   = (byte)0xDA;
+	private static final byte JPEG_MARKER_EOI   = (byte)0xD9;
 	private static final byte[] SOI = {(byte) 0xFF,(byte) 0xD8};
 	/** Identification string for APP2 ICC Profile segments */
 	private static final byte[] ICC_TAG = {'I','C','C','_','P','R','O','F','I','L','E',0};
@@ -126,28 +136,80 @@ public class JPEGMetadata extends ImageMetadata {
 		}
 	}
 
-
 	/**
-	 * Loads metadata from a JPEG file.
+	 * Loads metadata from a JPEG file, without decoding the image. Only the first bytes of the file are read, as
+	 * many as needed for parsing its marker segments up to the image data.
 	 * @param jpegFile Path to JPEG file.
 	 * @return <code>true</code> on successful metadata load, <code>false</code> on error.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
 	 */
 	public boolean load(File jpegFile) {
-		m_filename = jpegFile.getAbsolutePath();
-        boolean result = readMetadata();
+		boolean result = false;
+		try (FileChannel channel = FileChannel.open(jpegFile.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer data = readPrefix(channel, null);
+			while (data != null && !(result = load(data, jpegFile)) && isTruncated()) {
+				data = readPrefix(channel, data);
+			}
+		} catch (IOException e) {
+			result = false;
+		}
 		if (!result) {
 			System.err.println("Error while loading JPEG metadata: " + jpegFile.getAbsolutePath());
-		} else {
-			loadPixelSize(jpegFile);
-			loadNumBands(m_filename);
-			if (m_dpiX == 0 || m_dpiY == 0) {
-				loadDpi(m_filename);
-			}
 		}
 		return result;
 	}
 
-	
+	/**
+	 * Loads metadata from the bytes of a JPEG image. The array is kept, not copied, for reading the embedded thumbnail.
+	 * @param data Bytes of the JPEG image.
+	 * @return <code>true</code> on successful metadata load, <code>false</code> on error.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
+	 */
+	public boolean load(byte[] data) {
+		return load(ByteBuffer.wrap(data), null);
+	}
+
+	/**
+	 * Loads metadata from the bytes of a JPEG image. The buffer is kept, not copied, for reading the embedded thumbnail.
+	 * @param data Bytes of the JPEG image, between the position and the limit of the buffer.
+	 *        The position of the buffer is not modified.
+	 * @return <code>true</code> on successful metadata load, <code>false</code> on error.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
+	 */
+	public boolean load(ByteBuffer data) {
+		return load(data.slice(), null);
+	}
+
+	/**
+	 * Loads metadata from a JPEG stream. The stream is read up to its end, and it is not closed.
+	 * @param is Stream positioned at the start of the JPEG image.
+	 * @return <code>true</code> on successful metadata load, <code>false</code> on error.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
+	 */
+	public boolean load(InputStream is) {
+		checkNotFrozen();
+		try {
+			return load(is.readAllBytes());
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Loads metadata from the bytes of a JPEG image.
+	 * @param data Bytes of the JPEG image, from position <code>0</code>.
+	 * @param jpegFile JPEG file the bytes were read from, for reading the embedded thumbnail later. If <code>null</code>,
+	 *        the thumbnail is read from the bytes, which are kept by this object.
+	 * @return <code>true</code> on successful metadata load, <code>false</code> on error.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
+	 */
+	boolean load(ByteBuffer data, File jpegFile) {
+		checkNotFrozen();
+		m_filename = (jpegFile == null ? null : jpegFile.getAbsolutePath());
+		m_data = (jpegFile == null ? data : null);
+		return readMetadata(data);
+	}
+
 	/**
 	 * Saves JPEG thumbnail to file.
 	 *
@@ -155,7 +217,7 @@ public class JPEGMetadata extends ImageMetadata {
 	 * @return <code>true</code> on success, <code>false</code> on error
 	 */
 	public boolean saveThumbnail(String thumbnail) {
-		if (m_thumbPos!=0 && m_thumbSize!=0) {
+		if (m_thumbPos!=0 && m_thumbSize!=0 && m_filename!=null) {
 			try {
 				FileInputStream fis = new FileInputStream(m_filename);
 				FileOutputStream fos = new FileOutputStream(thumbnail);
@@ -179,13 +241,24 @@ public class JPEGMetadata extends ImageMetadata {
 	 */
 	@Override
 	public ByteArrayInputStream getThumbnailAsInputStream() {
-		if (m_thumbPos!=0 && m_thumbSize!=0) {
+		if (m_thumbPos!=0 && m_thumbSize!=0 && m_filename==null && m_data!=null) {
+			if (m_thumbPos + m_thumbSize > m_data.limit()) {
+				return null;
+			}
 			byte[] buffer = new byte[(int)m_thumbSize];
-			try {
-				FileInputStream fis = new FileInputStream(m_filename);
-				fis.getChannel().position(m_thumbPos);
-				//fis.read(buffer); // fixme: what should I do here?
-				fis.close();
+			ByteBuffer source = m_data.duplicate();
+			source.position((int)m_thumbPos);
+			source.get(buffer);
+			return new ByteArrayInputStream(buffer);
+		} else if (m_thumbPos!=0 && m_thumbSize!=0 && m_filename!=null) {
+			byte[] buffer = new byte[(int)m_thumbSize];
+			try (FileChannel channel = FileChannel.open(Paths.get(m_filename), StandardOpenOption.READ)) {
+				ByteBuffer target = ByteBuffer.wrap(buffer);
+				while (target.hasRemaining()) {
+					if (channel.read(target, m_thumbPos + target.position()) < 0) {
+						return null;
+					}
+				}
 				return new ByteArrayInputStream(buffer);
 			} catch (IOException e) {
 				return null;
@@ -207,291 +280,327 @@ public class JPEGMetadata extends ImageMetadata {
 	
 	
 	/**
-	 * Reads metadata from JPEG file and stores it.
+	 * Reads metadata from the bytes of a JPEG image and stores it, walking its marker segments once.<br>
+	 * <br>
+	 * APPn segments give the JFIF and EXIF data (orientation, resolution, color space and thumbnail), the ICC
+	 * profile and the Adobe color transform; the first SOFn segment gives pixel size and number of bands. ICC
+	 * profile segments are copied, so the embedded profile can be built later without reading the image again.
+	 * Metadata previously stored is cleared first.<br>
+	 * <br>
+	 * Segments must be whole inside the bytes before they are parsed, so that failures are told apart: bytes that end
+	 * before the image data set {@link #isTruncated()}, while malformed images (no start marker, missing markers
+	 * or bad segments) do not.
+	 * @param data Bytes of the JPEG image, from position <code>0</code>. Its position and byte order are not used.
+	 * @return <code>true</code> on success, <code>false</code> on error, or if the bytes end before the image data.
 	 */
-	private boolean readMetadata() {
-		// Read buffer
-		byte[] buffer;
-
-		try (FileInputStream fis = new FileInputStream(m_filename)) {
+	private boolean readMetadata(ByteBuffer data) {
+		ByteBuffer buffer = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+		setPixelSize(0, 0);
+		m_orientation = EXIF_ORIENTATION_UP;
+		m_exifColorSpace = 0;
+		m_adobeApp14Found = false;
+		m_adobeTransform = ADOBE_TRANSFORM_UNKNOWN;
+		m_thumbPos = 0;
+		m_thumbSize = 0;
+		m_iccProfile = null;
+		m_isJFIF = false;
+		m_isEXIF = false;
+		m_numBands = 0;
+		m_dpiX = 0;
+		m_dpiY = 0;
+		setTruncated(false);
+		try {
 
-			// Read start marker
-			if (!Arrays.equals(SOI, readBytes(fis, 2))) {
-				throw new Exception("Not a JPEG image (SOI marker not found).");
+			// Check start marker
+			if (buffer.limit() < 2) {
+				setTruncated(true);
+				return false;
+			}
+			if (buffer.get(0) != SOI[0] || buffer.get(1) != SOI[1]) {
+				return false;
 			}
 
-			// Detect markers
-			long markerLength;
-			long markerStart;
-			boolean finished = false;
-			m_iccPositions = new Vector<Long>();
-			m_iccSizes = new Vector<Long>();
-			while (!finished) {
-				buffer = readBytes(fis, 2);
-				if (buffer[0] != (byte)0xFF) {
-					throw new Exception("Invalid marker");
+			// Walk marker segments up to the frame header
+			int position = 2;
+			boolean firstSegment = true;
+			boolean frameFound = false;
+			boolean jfifFirst = false;
+			int jfifDensityX = 0;
+			int jfifDensityY = 0;
+			List<int[]> iccChunks = new ArrayList<>();
+			while (!frameFound) {
+				if (position + 2 > buffer.limit()) {
+					setTruncated(true);
+					return false;
 				}
-				switch (buffer[1]) {
-					case (byte)0xFF:
-						// Padding
-						break;
-
+				if (buffer.get(position) != (byte)0xFF) {
+					return false;
+				}
+				byte marker = buffer.get(position + 1);
+				if (marker == (byte)0xFF) {
+					// Fill byte
+					position++;
+					continue;
+				}
+				position += 2;
+				if (marker == JPEG_MARKER_SOS || marker == JPEG_MARKER_EOI) {
+					break;
+				}
+				if ((marker & 0xF8) == 0xD0 || marker == 0x01) {
+					// Restart and TEM markers have no segment
+					continue;
+				}
+				if (position + 2 > buffer.limit()) {
+					setTruncated(true);
+					return false;
+				}
+				int segmentLength = buffer.getShort(position) & 0xFFFF;
+				if (segmentLength < 2) {
+					return false;
+				}
+				int segment = position + 2;
+				int segmentEnd = position + segmentLength;
+				if (segmentEnd > buffer.limit()) {
+					setTruncated(true);
+					return false;
+				}
+				switch (marker) {
 					case JPEG_MARKER_APP0:
-						markerStart = fis.getChannel().position();
-						buffer = readBytes(fis, 2);
-						markerLength = (0xFF & buffer[0])*256 + (0xFF & buffer[1]);
-						if (Arrays.equals(JFIF_TAG, readBytes(fis, 5))) {
+						if (startsWith(buffer, segment, segmentEnd, JFIF_TAG)) {
 							if (!m_isEXIF) {
 								m_isJFIF = true;
 							}
+							// Densities are only valid in a JFIF segment that follows the start marker
+							if (firstSegment && segmentEnd - segment >= 12) {
+								jfifFirst = true;
+								jfifDensityX = buffer.getShort(segment + 8) & 0xFFFF;
+								jfifDensityY = buffer.getShort(segment + 10) & 0xFFFF;
+							}
 						}
-						fis.getChannel().position(markerStart+markerLength);
 						break;
 
 					case JPEG_MARKER_APP1:
-						markerStart = fis.getChannel().position();
-						buffer = readBytes(fis, 2);
-						markerLength = (0xFF & buffer[0])*256 + (0xFF & buffer[1]);
-						if (Arrays.equals(EXIF_TAG, readBytes(fis, 6))) {
+						if (startsWith(buffer, segment, segmentEnd, EXIF_TAG)) {
 							m_isEXIF = true;
-							long exifStart;
-							exifStart = fis.getChannel().position();
-							// Read TIFF header
-							buffer = readBytes(fis, 8);
-							boolean littleEndian = (buffer[0] == (byte) 0x49);
-							//long tag42 = exifReadWord(subArray(buffer,2,4), littleEndian);
-							long offsetIFD0 =  exifReadLong(subArray(buffer,4,8),littleEndian);
-
-							// Read TIFF parameters (IFD0)
-							fis.getChannel().position(exifStart+offsetIFD0);
-							long IFD0count = exifReadWord(readBytes(fis, 2), littleEndian);
-							long exifIFDoffset = 0;
-							long whitePointOffset = 0;
-							long primariesOffset = 0;
-							for (int i=0; i<IFD0count; i++) {
-								buffer = readBytes(fis, 12);
-								long exifTag = exifReadWord(subArray(buffer,0,2),littleEndian);
-								long exifType = exifReadWord(subArray(buffer,2,4),littleEndian);
-								long exifCount = exifReadLong(subArray(buffer,4,8),littleEndian);
-								long exifValueOffset = exifReadValue(subArray(buffer,8,12),littleEndian,exifType,exifCount);
-								if (exifTag == 0x0112) {
-									m_orientation = exifValueOffset;
-
-								} else if (exifTag == 0x8769) {
-									exifIFDoffset = exifValueOffset;
-
-								} else if (exifTag == 0x13e) {
-									whitePointOffset = exifValueOffset;
-
-								} else if (exifTag == 0x13f) {
-									primariesOffset = exifValueOffset;
-
-								} else if (exifTag == 0x011A || exifTag == 0x011B) {
-									// X Resolution / Y Resolution
-									long currentPos = fis.getChannel().position();
-									fis.getChannel().position(exifStart + exifValueOffset);
-									long numerator = exifReadLong(readBytes(fis, 4), littleEndian);
-									long denominator = exifReadLong(readBytes(fis, 4), littleEndian);
-									double dpi = (double)numerator/(double)denominator;
-									if (exifTag == 0x011A) {
-										m_dpiX = dpi;
-									} else {
-										m_dpiY = dpi;
-									}
-									fis.getChannel().position(currentPos);
-								}
-							}
-							// Read IFD1 offset
-							long IFD1offset =  exifReadLong(readBytes(fis, 4), littleEndian);
-
-							// Read EXIF parameters
-							if (exifIFDoffset != 0) {
-								fis.getChannel().position(exifStart+exifIFDoffset);
-								long ExifIFDcount = exifReadWord(readBytes(fis, 2), littleEndian);
-								for (int i=0; i<ExifIFDcount; i++) {
-									buffer = readBytes(fis, 12);
-									long exifTag = exifReadWord(buffer,littleEndian);
-									long exifType = exifReadWord(subArray(buffer,2,4),littleEndian);
-									long exifCount = exifReadLong(subArray(buffer,4,8),littleEndian);
-									long exifValueOffset = exifReadValue(subArray(buffer,8,12),littleEndian,exifType,exifCount);
-									if (exifTag == 0xA001) { // ColorSpace
-										m_exifColorSpace = exifValueOffset;
-									}
-								}
-							}
-
-							// Check AdobeRGB white point and primaries
-							if (m_exifColorSpace == EXIF_CS_UNKNOWN) {
-								long rationals[] = new long[16];
-								for (int r=0; r<16; r++) rationals[r] = 0;
-
-								if (whitePointOffset != 0) {
-									fis.getChannel().position(exifStart+whitePointOffset);
-									buffer = readBytes(fis, 16);
-									for (int wp=0; wp<4; wp++) {
-										rationals[wp] = exifReadLong(subArray(buffer,wp*4,wp*4+4),littleEndian);
-									}
-								}
-
-								if (primariesOffset != 0) {
-									fis.getChannel().position(exifStart+primariesOffset);
-									buffer = readBytes(fis, 48);
-									for (int p=0; p<12; p++) {
-										rationals[4+p] = exifReadLong(subArray(buffer,p*4,p*4+4),littleEndian);
-									}
-								}
-
-								long adobeRGBrationals[] = {313,1000,329,1000,64,100,33,100,21,100,71,100,15,100,6,100};
-								boolean isAdobeRGB = true;
-								for (int cmp=0; cmp<16; cmp++) {
-									if (rationals[cmp] != adobeRGBrationals[cmp]) {
-										isAdobeRGB = false;
-										break;
-									}
-								}
-								if (isAdobeRGB) {
-									m_exifColorSpace = EXIF_CS_ADOBERGB;
-								}
-							}
-
-							// Read thumbnail data (IFD1)
-							if (IFD1offset != 0) {
-								fis.getChannel().position(exifStart+IFD1offset);
-								long ExifIFD1count = exifReadWord(readBytes(fis, 2), littleEndian);
-								for (int i=0; i<ExifIFD1count; i++) {
-									buffer = readBytes(fis, 12);
-									long exifTag = exifReadWord(buffer,littleEndian);
-									long exifType = exifReadWord(subArray(buffer,2,4),littleEndian);
-									long exifCount = exifReadLong(subArray(buffer,4,8),littleEndian);
-									long exifValueOffset = exifReadValue(subArray(buffer,8,12),littleEndian,exifType,exifCount);
-									if (exifTag == 0x0201) { // JPEGInterchangeFormat (thumb offset)
-										m_thumbPos = exifStart+exifValueOffset;
-									} else if (exifTag == 0x0202) { // JPEGInterchangeFormatLength (thumb length)
-										m_thumbSize = exifValueOffset;
-									}
-								}
-							}
+							readExif(buffer, segment + EXIF_TAG.length);
 						}
-						fis.getChannel().position(markerStart+markerLength);
 						break;
 
 					case JPEG_MARKER_APP2:
-						markerStart = fis.getChannel().position();
-						buffer = readBytes(fis, 2);
-						markerLength = (0xFF & buffer[0])*256 + (0xFF & buffer[1]);
-						if (Arrays.equals(ICC_TAG, readBytes(fis, 12))) {
-							readBytes(fis, 2);
-							long chunkSize = markerLength-2-12-2;
-							m_iccPositions.add(fis.getChannel().position());
-							m_iccSizes.add(chunkSize);
+						if (startsWith(buffer, segment, segmentEnd, ICC_TAG)) {
+							// Skip chunk sequence number and count
+							int chunkStart = segment + ICC_TAG.length + 2;
+							if (chunkStart > segmentEnd) {
+								return false;
+							}
+							iccChunks.add(new int[] {chunkStart, segmentEnd - chunkStart});
 						}
-						fis.getChannel().position(markerStart+markerLength);
 						break;
 
 					case JPEG_MARKER_APP14:
-						markerStart = fis.getChannel().position();
-						buffer = readBytes(fis, 2);
-						markerLength = ((0xFF & buffer[0]) << 8) + (0xFF & buffer[1]);
-						if (Arrays.equals(ADOBE_TAG, readBytes(fis, 6))) {
-							buffer = readBytes(fis, 6);
+						if (startsWith(buffer, segment, segmentEnd, ADOBE_TAG)) {
 							m_adobeApp14Found = true;
-							m_adobeTransform = buffer[5];
+							m_adobeTransform = buffer.get(segment + 11);
 						}
-						fis.getChannel().position(markerStart+markerLength);
-						break;
-
-					case JPEG_MARKER_APP3:
-					case JPEG_MARKER_APP4:
-					case JPEG_MARKER_APP5:
-					case JPEG_MARKER_APP6:
-					case JPEG_MARKER_APP7:
-					case JPEG_MARKER_APP8:
-					case JPEG_MARKER_APP9:
-					case JPEG_MARKER_APP10:
-					case JPEG_MARKER_APP11:
-					case JPEG_MARKER_APP12:
-					case JPEG_MARKER_APP13:
-					case JPEG_MARKER_APP15:
-						buffer = readBytes(fis, 2);
-						markerLength = (0xFF & buffer[0])*256 + (0xFF & buffer[1]);
-						fis.skip(markerLength-2);
 						break;
 
 					default:
-						finished = true;
+						if (isFrameMarker(marker)) {
+							setPixelSize(buffer.getShort(segment + 3) & 0xFFFF, buffer.getShort(segment + 1) & 0xFFFF);
+							m_numBands = buffer.get(segment + 5) & 0xFF;
+							frameFound = true;
+						}
 						break;
 				}
+				firstSegment = false;
+				position = segmentEnd;
+			}
+			if (!frameFound) {
+				// Number of bands unknown
+				m_numBands = 4;
 			}
 
-		} catch (Exception e) {
+			// Join profile chunks, in file order
+			if (!iccChunks.isEmpty()) {
+				int profileSize = 0;
+				for (int[] chunk : iccChunks) {
+					profileSize += chunk[1];
+				}
+				byte[] profileData = new byte[profileSize];
+				int currentPosition = 0;
+				ByteBuffer source = buffer.duplicate();
+				for (int[] chunk : iccChunks) {
+					source.position(chunk[0]);
+					source.get(profileData, currentPosition, chunk[1]);
+					currentPosition += chunk[1];
+				}
+				m_iccProfile = IccProfileData.getInstance(profileData);
+			}
+
+			// JFIF resolution, if not found in EXIF data
+			if ((m_dpiX == 0 || m_dpiY == 0) && jfifFirst) {
+				m_dpiX = jfifDensityX;
+				m_dpiY = jfifDensityY;
+			}
+
+		} catch (IndexOutOfBoundsException | BufferUnderflowException e) {
 			return false;
 		}
 
 		return true;
 	}
-	
-	
+
 	/**
-	 * Gets embedded ICC color profile.
-	 * @return Embedded ICC color profile, or <code>null</code> if not detected.
+	 * Reads EXIF data of an APP1 segment: orientation, resolution, color space and position of the embedded thumbnail.
+	 * @param buffer Bytes of the JPEG image.
+	 * @param exifStart Position of the TIFF header of EXIF data.
 	 */
-	@Override
-	public ICC_Profile getIccProfile() {
-		
-		// Check initializations
-		if ((m_iccPositions == null) || (m_iccSizes == null)) {
-			System.err.println("Metadata still not loaded.");
-			return null;
+	private void readExif(ByteBuffer buffer, int exifStart) {
+		// Read TIFF header
+		ByteBuffer exif = buffer.duplicate();
+		exif.position(exifStart);
+		exif = exif.slice();
+		exif.order(exif.get(0) == (byte) 0x49 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		int offsetIFD0 = (int) exifReadLong(exif, 4);
+
+		// Read TIFF parameters (IFD0)
+		int IFD0count = exifReadWord(exif, offsetIFD0);
+		long exifIFDoffset = 0;
+		long whitePointOffset = 0;
+		long primariesOffset = 0;
+		for (int i=0; i<IFD0count; i++) {
+			int entry = offsetIFD0 + 2 + i * 12;
+			int exifTag = exifReadWord(exif, entry);
+			long exifValueOffset = exifReadValue(exif, entry);
+			if (exifTag == 0x0112) {
+				m_orientation = exifValueOffset;
+
+			} else if (exifTag == 0x8769) {
+				exifIFDoffset = exifValueOffset;
+
+			} else if (exifTag == 0x13e) {
+				whitePointOffset = exifValueOffset;
+
+			} else if (exifTag == 0x13f) {
+				primariesOffset = exifValueOffset;
+
+			} else if (exifTag == 0x011A || exifTag == 0x011B) {
+				// X Resolution / Y Resolution
+				long numerator = exifReadLong(exif, (int) exifValueOffset);
+				long denominator = exifReadLong(exif, (int) exifValueOffset + 4);
+				double dpi = (double)numerator/(double)denominator;
+				if (exifTag == 0x011A) {
+					m_dpiX = dpi;
+				} else {
+					m_dpiY = dpi;
+				}
+			}
 		}
-		if ((m_iccPositions.size() != m_iccSizes.size()) || (m_iccPositions.isEmpty())) {
-			return null;
+		// Read IFD1 offset
+		long IFD1offset = exifReadLong(exif, offsetIFD0 + 2 + IFD0count * 12);
+
+		// Read EXIF parameters
+		if (exifIFDoffset != 0) {
+			int ExifIFDcount = exifReadWord(exif, (int) exifIFDoffset);
+			for (int i=0; i<ExifIFDcount; i++) {
+				int entry = (int) exifIFDoffset + 2 + i * 12;
+				if (exifReadWord(exif, entry) == 0xA001) { // ColorSpace
+					m_exifColorSpace = exifReadValue(exif, entry);
+				}
+			}
 		}
-		
-		// Prepare buffer for color profile
-		long profileSize = 0;
-		for (long chunkSize : m_iccSizes) {
-			profileSize += chunkSize;
+
+		// Check AdobeRGB white point and primaries
+		if (m_exifColorSpace == EXIF_CS_UNKNOWN) {
+			long rationals[] = new long[16];
+
+			if (whitePointOffset != 0) {
+				for (int wp=0; wp<4; wp++) {
+					rationals[wp] = exifReadLong(exif, (int) whitePointOffset + wp*4);
+				}
+			}
+
+			if (primariesOffset != 0) {
+				for (int p=0; p<12; p++) {
+					rationals[4+p] = exifReadLong(exif, (int) primariesOffset + p*4);
+				}
+			}
+
+			long adobeRGBrationals[] = {313,1000,329,1000,64,100,33,100,21,100,71,100,15,100,6,100};
+			if (Arrays.equals(rationals, adobeRGBrationals)) {
+				m_exifColorSpace = EXIF_CS_ADOBERGB;
+			}
 		}
-		byte[] profileData = new byte[(int)profileSize];
 
-		// Load profile segments into buffer
-		FileInputStream is = null;
-		int currentPosition = 0;
-		try {
-			is = new FileInputStream(new File(m_filename));
-			for (int i=0; i<m_iccPositions.size(); i++) {
-				long chunkPosition = m_iccPositions.get(i);
-				long chunkSize = m_iccSizes.get(i);
-				is.getChannel().position(chunkPosition);
-				int readBytes = is.read(profileData,currentPosition,(int)chunkSize);
-				if (readBytes != chunkSize) {
-					System.err.println("Unable to read bytes for segment #"+i+" of ICC profile.");
-					is.close();
-					return null;
+		// Read thumbnail data (IFD1)
+		if (IFD1offset != 0) {
+			int ExifIFD1count = exifReadWord(exif, (int) IFD1offset);
+			for (int i=0; i<ExifIFD1count; i++) {
+				int entry = (int) IFD1offset + 2 + i * 12;
+				int exifTag = exifReadWord(exif, entry);
+				long exifValueOffset = exifReadValue(exif, entry);
+				if (exifTag == 0x0201) { // JPEGInterchangeFormat (thumb offset)
+					m_thumbPos = exifStart+exifValueOffset;
+				} else if (exifTag == 0x0202) { // JPEGInterchangeFormatLength (thumb length)
+					m_thumbSize = exifValueOffset;
 				}
-				currentPosition += readBytes;
 			}
-			is.close();
-		} catch (Exception e) {
-			try {
-                assert is != null;
-                is.close();} catch (Exception ex) {/*Ignore*/}
-			System.err.println("Error: Returning with null value - " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Tells whether a segment starts with an identification string.
+	 * @param buffer Bytes of the JPEG image.
+	 * @param segment Position of the segment data.
+	 * @param segmentEnd Position of the end of the segment.
+	 * @param tag Identification string.
+	 * @return <code>true</code> if the segment starts with the identification string.
+	 */
+	private static boolean startsWith(ByteBuffer buffer, int segment, int segmentEnd, byte[] tag) {
+		if (segmentEnd - segment < tag.length) {
+			return false;
+		}
+		for (int i=0; i<tag.length; i++) {
+			if (buffer.get(segment + i) != tag[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tells whether a marker starts a frame header (SOF0..SOF15, excluding DHT, JPG and DAC).
+	 * @param marker Marker code.
+	 * @return <code>true</code> for start of frame markers.
+	 */
+	private static boolean isFrameMarker(byte marker) {
+		int code = marker & 0xFF;
+		return code >= 0xC0 && code <= 0xCF && code != 0xC4 && code != 0xC8 && code != 0xCC;
+	}
+	
+	
+	/**
+	 * Gets embedded ICC color profile.<br>
+	 * The returned profile is shared, and must not be modified (see {@link ImageMetadata#getIccProfile()}).
+	 * @return Embedded ICC color profile, or <code>null</code> if not detected.
+	 */
+	@Override
+	public ICC_Profile getIccProfile() {
+		if (m_iccProfile == null) {
 			return null;
 		}
-		
-		// Load profile from buffer
-		ICC_Profile profile = null;
-		try {
-			profile = ICC_Profile.getInstance(profileData);
-		} catch (IllegalArgumentException e) {
+		ICC_Profile profile = m_iccProfile.getProfile();
+		if (profile == null) {
 			System.err.println("Invalid embedded profile.");
-			return null;
 		}
-		
 		return profile;
 	}
 	
+	@Override
+	int getIccProfileSize() {
+		return (m_iccProfile == null ? 0 : m_iccProfile.getSize());
+	}
+
 	/**
 	 * Compares two byte arrays
 	 * 
@@ -520,51 +629,42 @@ public class JPEGMetadata extends ImageMetadata {
 	
 	/**
 	 * Helper function for reading Exif data.<br>
-	 * Reads a word value from a memory buffer.
+	 * Reads a word value from Exif data.
 	 * 
-	 * @param buffer Memory buffer to read
-	 * @param littleEndian <code>true</code> if buffer is little endian encoded
+	 * @param exif Exif data, starting at the TIFF header and in its byte order
+	 * @param offset Offset of the value from the TIFF header
 	 * @return Word value
 	 */
-	long exifReadWord(byte[] buffer, boolean littleEndian) {
-		if (littleEndian) {
-			return (0xFF & buffer[1])*256 + (0xFF & buffer[0]);
-		} else {
-			return (0xFF & buffer[0])*256 + (0xFF & buffer[1]);
-		}
+	private static int exifReadWord(ByteBuffer exif, int offset) {
+		return exif.getShort(offset) & 0xFFFF;
 	}
 
 	/**
 	 * Helper function for reading Exif data.<br>
-	 * Reads a long value from a memory buffer.
+	 * Reads a long value from Exif data.
 	 * 
-	 * @param buffer Memory buffer to read
-	 * @param littleEndian <code>true</code> if buffer is little endian encoded
+	 * @param exif Exif data, starting at the TIFF header and in its byte order
+	 * @param offset Offset of the value from the TIFF header
 	 * @return Long value
 	 */
-	long exifReadLong(byte[] buffer, boolean littleEndian) {
-		if (littleEndian) {
-			return ((long) (0xFF & buffer[3]) << 24) | ((0xFF & buffer[2]) << 16) | ((0xFF & buffer[1]) << 8) | (0xFF & buffer[0]);
-		} else {
-			return ((long) (0xFF & buffer[0]) << 24) | ((0xFF & buffer[1]) << 16) | ((0xFF & buffer[2]) << 8) | (0xFF & buffer[3]);
-		}
-
+	private static long exifReadLong(ByteBuffer exif, int offset) {
+		return exif.getInt(offset) & 0xFFFFFFFFL;
 	}
 
 	/**
-	 * Helper function for reading Exif values.
+	 * Helper function for reading Exif values.<br>
+	 * Reads the value (or offset of the value) of an IFD entry.
 	 * 
-	 * @param buffer Data buffer where Exif value is stored
-	 * @param littleEndian <code>true</code> if buffer is little endian encoded
-	 * @param typeL Exif data type id
-	 * @param sizeL Exif data length
+	 * @param exif Exif data, starting at the TIFF header and in its byte order
+	 * @param entry Offset of the 12 byte IFD entry from the TIFF header
 	 * @return Exif value
 	 */
-	long exifReadValue(byte[] buffer, boolean littleEndian, long typeL, long sizeL) {
+	private static long exifReadValue(ByteBuffer exif, int entry) {
 
 		long value = 0;
-		int type = (int) typeL;
-		int size = (int) sizeL;
+		int type = exifReadWord(exif, entry + 2);
+		int size = (int) exifReadLong(exif, entry + 4);
+		int offset = entry + 8;
 
 		// Get data size in bytes
 		int totalsize;
@@ -588,49 +688,28 @@ public class JPEGMetadata extends ImageMetadata {
 		// Get data on corresponding bytes
 		switch (totalsize) {
 			case 1:
-				value = (0xFF & buffer[0]);
+				value = (0xFF & exif.get(offset));
 				break;
 
 			case 2:
-				value = exifReadWord(buffer,littleEndian);
+				value = exifReadWord(exif, offset);
 				break;
 
 			case 3:
-				if (littleEndian) {
-					value = ((0xFF & buffer[2]) << 16) | ((0xFF & buffer[1]) << 8) | (0xFF & buffer[0]);
+				if (exif.order() == ByteOrder.LITTLE_ENDIAN) {
+					value = ((0xFF & exif.get(offset + 2)) << 16) | ((0xFF & exif.get(offset + 1)) << 8) | (0xFF & exif.get(offset));
 				} else {
-					value = ((0xFF & buffer[0]) << 16) | ((0xFF & buffer[1]) << 8) | (0xFF & buffer[2]);
+					value = ((0xFF & exif.get(offset)) << 16) | ((0xFF & exif.get(offset + 1)) << 8) | (0xFF & exif.get(offset + 2));
 				}
 				break;
 
 			case 4:
-				value = exifReadLong(buffer,littleEndian);
+				value = exifReadLong(exif, offset);
 				break;
 		}
 
 		return value;
 	}
-
-	/**
-	 * Generates a sub-array from a byte array
-	 * 
-	 * @param buffer Original byte array
-	 * @param start Start index for sub-array
-	 * @param end End index for sub-array
-	 * @return New sub-array, of length <code>end-start</code>
-	 */
-	private byte[] subArray(byte[] buffer, int start, int end) {
-		int newLength = end-start;
-		byte[] newBuffer = new byte[newLength];
-		for (int i=0; i<newLength; i++) {
-			if (start+i < buffer.length) {
-				newBuffer[i] = buffer[start+i];
-			} else {
-				newBuffer[i] = 0;
-			}
-		}
-		return newBuffer;
-	}
 	
 
 	/**
@@ -694,7 +773,8 @@ public class JPEGMetadata extends ImageMetadata {
 	}
 	
 	/**
-	 * Extract ICC Profile embedded in a JPEG file
+	 * Extract ICC Profile embedded in a JPEG file.<br>
+	 * The returned profile is shared, and must not be modified (see {@link ImageMetadata#getIccProfile()}).
 	 * @param imagePath Path to JPEG file
 	 * @return Embedded ICC Profile, or <code>null</code> if not found
 	 */
@@ -807,24 +887,7 @@ public class JPEGMetadata extends ImageMetadata {
 			fis.getChannel().transferTo(0, 2, os.getChannel());
 
 			// Insert new APP2 markers
-			byte[] profileData = iccProfile.getData();
-			int remainingIccBytes = profileData.length;
-			int iccChunks = remainingIccBytes / 65519 + ((remainingIccBytes % 65519 > 0) ? 1 : 0);
-			int chunkCount = 1;
-			while (remainingIccBytes > 0) {
-				int bytesToWrite = Math.min(65519, remainingIccBytes);
-				os.write(0xFF);
-				os.write(JPEG_MARKER_APP2);
-				markerLength = 2+12+2+bytesToWrite;
-				os.write((byte)((markerLength & 0xFF00) >> 8));
-				os.write((byte)(markerLength & 0xFF));
-				os.write(ICC_TAG);
-				os.write((byte)(chunkCount & 0xFF));
-				os.write((byte)(iccChunks & 0xFF));
-				os.write(profileData, profileData.length - remainingIccBytes, bytesToWrite);
-				chunkCount++;
-				remainingIccBytes -= bytesToWrite;
-			}
+			writeIccMarkers(os, iccProfile);
 
 			// TODO: Copy rest of original JPEG, skipping old APP2 markers
 			fis.getChannel().transferTo(2, fis.getChannel().size()-2, os.getChannel());
@@ -849,6 +912,33 @@ public class JPEGMetadata extends ImageMetadata {
 		return true;
 	}
 	
+	/**
+	 * Writes an ICC profile as a sequence of APP2 marker segments.
+	 * @param os Stream where to write, positioned after the start marker of a JPEG image.
+	 * @param iccProfile ICC Profile to embed
+	 * @throws IOException If the segments can not be written.
+	 */
+	static void writeIccMarkers(OutputStream os, ICC_Profile iccProfile) throws IOException {
+		byte[] profileData = iccProfile.getData();
+		int remainingIccBytes = profileData.length;
+		int iccChunks = remainingIccBytes / 65519 + ((remainingIccBytes % 65519 > 0) ? 1 : 0);
+		int chunkCount = 1;
+		while (remainingIccBytes > 0) {
+			int bytesToWrite = Math.min(65519, remainingIccBytes);
+			os.write(0xFF);
+			os.write(JPEG_MARKER_APP2);
+			int markerLength = 2+12+2+bytesToWrite;
+			os.write((byte)((markerLength & 0xFF00) >> 8));
+			os.write((byte)(markerLength & 0xFF));
+			os.write(ICC_TAG);
+			os.write((byte)(chunkCount & 0xFF));
+			os.write((byte)(iccChunks & 0xFF));
+			os.write(profileData, profileData.length - remainingIccBytes, bytesToWrite);
+			chunkCount++;
+			remainingIccBytes -= bytesToWrite;
+		}
+	}
+
 	/**
 	 * Get horizontal DPI resolution from metadata of a given file.
 	 * 
@@ -919,84 +1009,6 @@ public class JPEGMetadata extends ImageMetadata {
 	}
 	
 
-	/**
-	 * Stores pixel density / resolution embedded in JPEG metadata.
-	 * @param filename Path to JPEG file.
-	 */
-	private void loadDpi(String filename) {
-		ImageReader reader = null;
-		try (ImageInputStream iis = ImageIO.createImageInputStream(new File(filename))) {
-			// Get metadata from file
-			reader = ImageIO.getImageReaders(iis).next();
-			reader.setInput(iis, true);
-			IIOMetadata metadata = reader.getImageMetadata(0);
-
-			// Locate dpi			
-            String[] names = metadata.getMetadataFormatNames();
-            for (String name : names) {
-                Node node = metadata.getAsTree(name);
-                String dpiString = (String) queryXPath(node, "JPEGvariety/app0JFIF/@Xdensity", XPathConstants.STRING);
-                if (dpiString != null) {
-                	m_dpiX = Double.parseDouble(dpiString);
-                }
-                dpiString = (String) queryXPath(node, "JPEGvariety/app0JFIF/@Ydensity", XPathConstants.STRING);
-                if (dpiString != null) {
-                	m_dpiY = Double.parseDouble(dpiString);
-                }
-                if (m_dpiX != 0 && m_dpiY != 0) {
-                	break;
-                }
-                dpiString = (String) queryXPath(node, "Dimension/HorizontalPixelSize/@value", XPathConstants.STRING);
-                if (dpiString != null) {
-                	m_dpiX = Math.round(25.4 / Double.parseDouble(dpiString));
-                }
-                dpiString = (String) queryXPath(node, "Dimension/VerticalPixelSize/@value", XPathConstants.STRING);
-                if (dpiString != null) {
-                	m_dpiY = Math.round(25.4 / Double.parseDouble(dpiString));
-                }
-                if (m_dpiX != 0 && m_dpiY != 0) {
-                	break;
-                }
-            }
-            
-            reader.dispose();
-            
-        } catch (Exception e) {
-        	try {
-                assert reader != null;
-                reader.dispose();} catch (Exception ex) {/*Ignore*/}
-        }		
-	}
-    
-    
-	/**
-	 * Detects number of channels in JPEG file.
-	 * @param filePath Path to JPEG file.
-	 */
-	private void loadNumBands(String filePath) {		
-		ImageInputStream in = null;
-		try {
-			in = ImageIO.createImageInputStream(new File(filePath));
-		    Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("JPEG");
-		    boolean done = false;
-		    while (readers.hasNext() && !done) {
-		        ImageReader reader = readers.next();
-		        try {
-		            reader.setInput(in);
-		            m_numBands = reader.getImageTypes(0).next().getNumBands();
-		            done = true;
-		        } finally {
-		            reader.dispose();
-		        }
-		    }
-		    in.close();
-		} catch (Exception e) {
-		    try {
-                assert in != null;
-                in.close();} catch (Exception ex) {/*Ignore*/}
-		    m_numBands = 4;
-		}
-	}
 	
 	
 	/** 
@@ -2,6 +2,7 @@ package lcms4j.xyz.imaging;
 
 import java.awt.color.ICC_Profile;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Arrays;
@@ -23,8 +24,8 @@ public class PNGMetadata extends ImageMetadata {
 	private int m_bitDepth;
 	/** PNG color type identifier. */
 	private int m_colourType;
-	/** Embedded color profile bytes. */
-	private byte[] m_iccProfileData;
+	/** Embedded color profile data, shared with other images embedding the same profile. */
+	private IccProfileData m_iccProfile;
 	/** Horizontal resolution (dpi). */
 	private double m_dpiX;
 	/** Vertical resolution (dpi). */
@@ -34,11 +35,49 @@ public class PNGMetadata extends ImageMetadata {
 	 * Loads metadata from a PNG file.
 	 * @param pngFile Path to PNG file.
 	 * @return <code>true</code> if metadata is correctly loaded, <code>false</code> on error.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
 	 */
 	public boolean load(File pngFile) {
 		try (BufferedInputStream is = new BufferedInputStream(new FileInputStream(pngFile))) {
-			readHeader(is);
-			while (readNextChunk(is));
+			return load(is);
+		} catch (IOException e) {
+			System.err.println("Error while reading PNG metadata: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Loads metadata from the bytes of a PNG image.
+	 * @param data Bytes of the PNG image.
+	 * @return <code>true</code> if metadata is correctly loaded, <code>false</code> on error.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
+	 */
+	public boolean load(byte[] data) {
+		return load(new ByteArrayInputStream(data));
+	}
+
+	/**
+	 * Loads metadata from the bytes of a PNG image.
+	 * @param data Bytes of the PNG image, between the position and the limit of the buffer.
+	 *        The position of the buffer is not modified.
+	 * @return <code>true</code> if metadata is correctly loaded, <code>false</code> on error.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
+	 */
+	public boolean load(ByteBuffer data) {
+		return load(new ByteBufferInputStream(data));
+	}
+
+	/**
+	 * Loads metadata from a PNG stream. Chunks are read up to the first image data chunk or the end of the stream,
+	 * and the stream is not closed.
+	 * @param is Stream positioned at the start of the PNG image.
+	 * @return <code>true</code> if metadata is correctly loaded, <code>false</code> on error.
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
+	 */
+	public boolean load(InputStream is) {
+		checkNotFrozen();
+		try {
+			readChunks(is);
 		} catch (Exception e) {
 			System.err.println("Error while reading PNG metadata: " + e.getMessage());
 			return false;
@@ -46,6 +85,46 @@ public class PNGMetadata extends ImageMetadata {
 		return true;
 	}
 
+	/**
+	 * Loads metadata from the first bytes of a PNG image, which must hold all the chunks before the image data.
+	 * @param data First bytes of the PNG image, between the position and the limit of the buffer.
+	 *        The position of the buffer is not modified.
+	 * @return <code>true</code> if metadata is correctly loaded, <code>false</code> if the bytes are not a valid
+	 *         PNG image or end before the first image data chunk (see {@link #isTruncated()}).
+	 * @throws IllegalStateException If this object is shared by {@link ImageMetadataCache}.
+	 */
+	boolean loadHeaders(ByteBuffer data) {
+		checkNotFrozen();
+		ByteBufferInputStream is = new ByteBufferInputStream(data);
+		try {
+			boolean result = readChunks(is);
+			setTruncated(!result);
+			return result;
+		} catch (Exception e) {
+			// Errors after all the bytes were read come from a chunk cut by their end
+			setTruncated(is.available() == 0);
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the PNG header and the chunks that follow it, up to the first image data chunk.
+	 * @param is Stream positioned at the start of the PNG image.
+	 * @return <code>true</code> if the first image data chunk was found, <code>false</code> if the stream has
+	 *         reached end before it.
+	 * @throws Exception If unable to read, or file is not a valid PNG file.
+	 */
+	private boolean readChunks(InputStream is) throws Exception {
+		readHeader(is);
+		String type;
+		while ((type = readNextChunk(is)) != null) {
+			if (type.equals("IDAT")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Reads a PNG file reader.
 	 * @param is Stream for reading PNG header bytes.
@@ -60,22 +139,25 @@ public class PNGMetadata extends ImageMetadata {
 	}
 
 	/**
-	 * Reads the next chunk of PNG metadata and stores found data.
+	 * Reads the next chunk of PNG metadata and stores found data. Data of image data chunks is not read.
 	 * @param is Stream for reading PNG chunks.
-	 * @return <code>true</code> on successful read, <code>false</code> if stream has reached end.
+	 * @return Type of the chunk read, or <code>null</code> if stream has reached end.
 	 * @throws Exception On any error.
 	 */
-	private boolean readNextChunk(InputStream is) throws Exception {
+	private String readNextChunk(InputStream is) throws Exception {
 		// Get data length
 		byte[] dataLengthBytes = new byte[4];
 		int count = is.read(dataLengthBytes);
 		if (count == -1) {
-			return false;
+			return null;
 		}
 		if (count != dataLengthBytes.length) {
 			throw new Exception("Can't read chunk data length");
 		}
 		int dataLength = readInteger(dataLengthBytes);
+		if (dataLength < 0) {
+			throw new Exception("Bad chunk data length");
+		}
 		// Get chunk type
 		byte[] typeBytes = new byte[4];
 		if (is.read(typeBytes) != typeBytes.length) {
@@ -93,10 +175,19 @@ public class PNGMetadata extends ImageMetadata {
             case "pHYs":
                 parsePhys(is, dataLength);
                 break;
+            case "IDAT":
+                return type;
             default:
                 int skipped = 0;
                 while (skipped != dataLength) {
-                    skipped += (int) is.skip(dataLength - skipped);
+                    long skip = is.skip(dataLength - skipped);
+                    if (skip <= 0) {
+                        if (is.read() == -1) {
+                            throw new Exception("Can't read chunk data");
+                        }
+                        skip = 1;
+                    }
+                    skipped += (int) skip;
                 }
                 break;
         }
@@ -105,7 +196,7 @@ public class PNGMetadata extends ImageMetadata {
 		if (is.read(crc) != crc.length) {
 			throw new Exception("Can't read chunk CRC");
 		}
-		return true;
+		return type;
 	}
 
 	/**
@@ -147,8 +238,7 @@ public class PNGMetadata extends ImageMetadata {
 		}
 		// Read ICC data
 		int dataLength = length - nameLength - 1;
-		m_iccProfileData = readBytes(is, dataLength);
-		m_iccProfileData = decompress(m_iccProfileData);
+		m_iccProfile = IccProfileData.getInstance(decompress(readBytes(is, dataLength)));
 	}
 
 	/**
@@ -266,81 +356,7 @@ public class PNGMetadata extends ImageMetadata {
 				BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(tempFile));
 			)
 		{
-			// Header
-			byte[] header = readBytes(is, 8);
-			os.write(header);
-			// Chunks
-			boolean headerRead = false;
-			boolean iccWritten = false;
-			boolean physWritten = false;
-			do {
-				// Read chunk length
-				byte[] dataLengthBytes = new byte[4];
-				int count = is.read(dataLengthBytes);
-				if (count == -1) {
-					break;
-				}
-				if (count != dataLengthBytes.length) {
-					throw new Exception("Can't read chunk data length");
-				}
-				int dataLength = readInteger(dataLengthBytes);
-				// Read type
-				byte[] type = readBytes(is, 4);
-				String typeStr = new String(type, StandardCharsets.US_ASCII);
-				// Read data
-				byte[] data = null;
-				if (dataLength > 0) {
-					data = readBytes(is, dataLength);
-				}
-				// Read CRC
-				byte[] crc = readBytes(is, 4);
-				// Copy chunk to output file, skip chunks to be modified
-				boolean skipChunk = false;
-				skipChunk |= (typeStr.equals("iCCP") && iccProfile != null);
-				skipChunk |= (typeStr.equals("pHYs") && dpi > 0);
-				if (!skipChunk) {
-					os.write(dataLengthBytes);
-					os.write(type);
-					if (dataLength > 0) {
-						os.write(data);
-					}
-					os.write(crc);
-				}
-				// Register header read
-				if (typeStr.equals("IHDR")) {
-					headerRead = true;
-				}
-				// Add new ICC profile chunk
-				if (headerRead && iccProfile != null && !iccWritten) {
-					byte[] profileData = compress(iccProfile.getData());
-					String profileName = "ICC Profile";
-					byte[] namebytes = profileName.getBytes(StandardCharsets.ISO_8859_1);
-					byte[] chunkData = new byte[profileName.length() + 1 + 1 + profileData.length];
-
-					System.arraycopy(namebytes, 0, chunkData, 0, namebytes.length);
-					chunkData[namebytes.length] = 0;
-					chunkData[namebytes.length + 1] = 0;
-					System.arraycopy(profileData, 0, chunkData, namebytes.length + 2, profileData.length);
-					
-					writeChunk(os, "iCCP", chunkData);					
-					iccWritten = true;
-				}
-				// Add new resolution data chunk
-				if (headerRead && dpi > 0 && !physWritten) {
-					int pixelsPerMeter = (int) Math.round(dpi * 100.0 / 2.54);
-					
-					byte[] chunkData = new byte[9];
-					chunkData[0] = (byte) ((pixelsPerMeter & 0xFF000000) >> 24);
-					chunkData[1] = (byte) ((pixelsPerMeter & 0x00FF0000) >> 16);
-					chunkData[2] = (byte) ((pixelsPerMeter & 0x0000FF00) >> 8);
-					chunkData[3] = (byte) (pixelsPerMeter & 0x000000FF);
-					System.arraycopy(chunkData, 0, chunkData, 4, 4);
-					chunkData[8] = 1;
-
-					writeChunk(os, "pHYs", chunkData);					
-					physWritten = true;
-				}
-			} while (true);
+			embedMetadata(is, os, iccProfile, dpi);
 		} catch (Exception e) {
 			System.err.println("Can't generate file with embedded metadata: " + e.getMessage());
 			//tempFile.delete(); // fixme: delete is ignored
@@ -359,6 +375,108 @@ public class PNGMetadata extends ImageMetadata {
 		return true;
 	}
 
+	/**
+	 * Copies a PNG image from a stream to another, adding or replacing metadata chunks.
+	 * @param is Stream positioned at the start of the original PNG image.
+	 * @param os Stream where the PNG image with embedded metadata is written. 
+	 * @param iccProfile ICC profile to embed, or <code>null</code> for none.
+	 * @param dpi Resolution to embed (dots per inch), or <code>0</code> for none.
+	 * @throws Exception On error.
+	 */
+	static void embedMetadata(InputStream is, OutputStream os, ICC_Profile iccProfile, double dpi) throws Exception {
+		// Header
+		byte[] header = readBytes(is, 8);
+		os.write(header);
+		// Chunks
+		boolean headerRead = false;
+		boolean iccWritten = false;
+		boolean physWritten = false;
+		do {
+			// Read chunk length
+			byte[] dataLengthBytes = new byte[4];
+			int count = is.read(dataLengthBytes);
+			if (count == -1) {
+				break;
+			}
+			if (count != dataLengthBytes.length) {
+				throw new Exception("Can't read chunk data length");
+			}
+			int dataLength = readInteger(dataLengthBytes);
+			// Read type
+			byte[] type = readBytes(is, 4);
+			String typeStr = new String(type, StandardCharsets.US_ASCII);
+			// Read data
+			byte[] data = null;
+			if (dataLength > 0) {
+				data = readBytes(is, dataLength);
+			}
+			// Read CRC
+			byte[] crc = readBytes(is, 4);
+			// Copy chunk to output file, skip chunks to be modified
+			boolean skipChunk = false;
+			skipChunk |= (typeStr.equals("iCCP") && iccProfile != null);
+			skipChunk |= (typeStr.equals("pHYs") && dpi > 0);
+			if (!skipChunk) {
+				os.write(dataLengthBytes);
+				os.write(type);
+				if (dataLength > 0) {
+					os.write(data);
+				}
+				os.write(crc);
+			}
+			// Register header read
+			if (typeStr.equals("IHDR")) {
+				headerRead = true;
+			}
+			// Add new ICC profile chunk
+			if (headerRead && iccProfile != null && !iccWritten) {
+				writeChunk(os, "iCCP", getIccChunkData(iccProfile));					
+				iccWritten = true;
+			}
+			// Add new resolution data chunk
+			if (headerRead && dpi > 0 && !physWritten) {
+				writeChunk(os, "pHYs", getPhysChunkData(dpi));					
+				physWritten = true;
+			}
+		} while (true);
+	}
+
+	/**
+	 * Generates the data of an <i>iCCP</i> chunk.
+	 * @param iccProfile ICC profile to embed.
+	 * @return Chunk data.
+	 */
+	static byte[] getIccChunkData(ICC_Profile iccProfile) {
+		byte[] profileData = compress(iccProfile.getData());
+		String profileName = "ICC Profile";
+		byte[] namebytes = profileName.getBytes(StandardCharsets.ISO_8859_1);
+		byte[] chunkData = new byte[profileName.length() + 1 + 1 + profileData.length];
+
+		System.arraycopy(namebytes, 0, chunkData, 0, namebytes.length);
+		chunkData[namebytes.length] = 0;
+		chunkData[namebytes.length + 1] = 0;
+		System.arraycopy(profileData, 0, chunkData, namebytes.length + 2, profileData.length);
+		return chunkData;
+	}
+
+	/**
+	 * Generates the data of a <i>pHYs</i> chunk.
+	 * @param dpi Resolution to embed (dots per inch).
+	 * @return Chunk data.
+	 */
+	static byte[] getPhysChunkData(double dpi) {
+		int pixelsPerMeter = (int) Math.round(dpi * 100.0 / 2.54);
+		
+		byte[] chunkData = new byte[9];
+		chunkData[0] = (byte) ((pixelsPerMeter & 0xFF000000) >> 24);
+		chunkData[1] = (byte) ((pixelsPerMeter & 0x00FF0000) >> 16);
+		chunkData[2] = (byte) ((pixelsPerMeter & 0x0000FF00) >> 8);
+		chunkData[3] = (byte) (pixelsPerMeter & 0x000000FF);
+		System.arraycopy(chunkData, 0, chunkData, 4, 4);
+		chunkData[8] = 1;
+		return chunkData;
+	}
+
 	/**
 	 * Writes a PNG chunk to a stream.
 	 * @param os Stream where to write. 
@@ -366,7 +484,7 @@ public class PNGMetadata extends ImageMetadata {
 	 * @param chunkData Chunk data.
 	 * @throws Exception On error.
 	 */
-	private static void writeChunk(OutputStream os, String chunkType, byte[] chunkData) throws Exception {
+	static void writeChunk(OutputStream os, String chunkType, byte[] chunkData) throws Exception {
 		int length = chunkData.length;
 		os.write((length & 0xFF000000) >> 24);
 		os.write((length & 0x00FF0000) >> 16);
@@ -391,15 +509,19 @@ public class PNGMetadata extends ImageMetadata {
 		os.write((int)((crcValue & 0x00000000000000FF)));
 	}
 
+	/**
+	 * Gets the embedded ICC profile.<br>
+	 * The returned profile is shared, and must not be modified (see {@link ImageMetadata#getIccProfile()}).
+	 * @return Embedded ICC Profile, or <code>null</code> if not detected.
+	 */
 	@Override
 	public ICC_Profile getIccProfile() {
-		ICC_Profile profile = null;
-		try {
-			profile = ICC_Profile.getInstance(m_iccProfileData);
-		} catch (Exception e) {
-			/* Ignore */
-		}
-		return profile;
+		return (m_iccProfile == null ? null : m_iccProfile.getProfile());
+	}
+
+	@Override
+	int getIccProfileSize() {
+		return (m_iccProfile == null ? 0 : m_iccProfile.getSize());
 	}
 
 	@Override
@@ -0,0 +1,336 @@
+package lcms4j.xyz.imaging;
+
+import java.awt.color.ICC_Profile;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes PNG files incrementally, a few rows at a time.<br>
+ * <br>
+ * Unlike <code>ImageIO</code>, which needs the whole image in memory, rows are filtered and compressed as soon
+ * as they are written, so memory usage depends only on the width of the image. ICC profile and resolution are
+ * written before image data, so files do not need to be rewritten to embed them.
+ */
+public class PNGStreamWriter implements Closeable {
+	/** PNG color type for grayscale images. */
+	public static final int COLOUR_TYPE_GRAY = 0;
+	/** PNG color type for RGB images. */
+	public static final int COLOUR_TYPE_RGB = 2;
+	/** PNG color type for grayscale images with alpha channel. */
+	public static final int COLOUR_TYPE_GRAY_ALPHA = 4;
+	/** PNG color type for RGB images with alpha channel. */
+	public static final int COLOUR_TYPE_RGBA = 6;
+	/** Maximum size of IDAT chunks (bytes). */
+	private static final int IDAT_SIZE = 65536;
+
+	/** Output stream of the PNG file. */
+	private final OutputStream m_os;
+	/** Compressed stream of image data. */
+	private final DeflaterOutputStream m_idat;
+	/** Compressor of image data. It is ended on close, as <code>m_idat</code> only ends compressors it creates. */
+	private final Deflater m_deflater;
+	/** Image width (px). */
+	private final int m_width;
+	/** Image height (px). */
+	private final int m_height;
+	/** Color bit depth (8 or 16). */
+	private final int m_bitDepth;
+	/** Number of channels of each pixel. */
+	private final int m_channels;
+	/** Number of bytes of each pixel. */
+	private final int m_bytesPerPixel;
+	/** Unfiltered bytes of the previous row. */
+	private byte[] m_previous;
+	/** Unfiltered bytes of the current row. */
+	private byte[] m_current;
+	/** Filtered bytes of the current row, for each filter type (with the filter type as first byte). */
+	private final byte[][] m_filtered = new byte[5][];
+	/** Number of rows written. */
+	private int m_rows = 0;
+
+	/**
+	 * Creates a PNG file and writes its header and metadata.
+	 * @param file Destination file.
+	 * @param width Image width (px).
+	 * @param height Image height (px).
+	 * @param bitDepth Color bit depth (8 or 16).
+	 * @param colourType PNG color type (<code>COLOUR_TYPE_*</code>).
+	 * @param dpi Resolution to embed (dots per inch), or <code>0</code> for none.
+	 * @param profile ICC profile to embed, or <code>null</code> for none.
+	 * @throws IOException If the file can not be written.
+	 * @throws IllegalArgumentException If any image parameter is not valid.
+	 */
+	public PNGStreamWriter(File file, int width, int height, int bitDepth, int colourType, double dpi, ICC_Profile profile) throws IOException {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+		}
+		if (bitDepth != 8 && bitDepth != 16) {
+			throw new IllegalArgumentException("Unsupported bit depth: " + bitDepth);
+		}
+		switch (colourType) {
+			case COLOUR_TYPE_GRAY: m_channels = 1; break;
+			case COLOUR_TYPE_RGB: m_channels = 3; break;
+			case COLOUR_TYPE_GRAY_ALPHA: m_channels = 2; break;
+			case COLOUR_TYPE_RGBA: m_channels = 4; break;
+			default: throw new IllegalArgumentException("Unsupported color type: " + colourType);
+		}
+		m_width = width;
+		m_height = height;
+		m_bitDepth = bitDepth;
+		m_bytesPerPixel = m_channels * bitDepth / 8;
+		int rowSize = width * m_bytesPerPixel;
+		m_previous = new byte[rowSize];
+		m_current = new byte[rowSize];
+		for (int i=0; i<m_filtered.length; i++) {
+			m_filtered[i] = new byte[rowSize + 1];
+			m_filtered[i][0] = (byte) i;
+		}
+
+		m_os = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			m_os.write(new byte[] {(byte)137, 80, 78, 71, 13, 10, 26, 10});
+			byte[] ihdr = new byte[13];
+			writeInteger(ihdr, 0, width);
+			writeInteger(ihdr, 4, height);
+			ihdr[8] = (byte) bitDepth;
+			ihdr[9] = (byte) colourType;
+			writeChunk("IHDR", ihdr);
+			if (profile != null) {
+				writeChunk("iCCP", PNGMetadata.getIccChunkData(profile));
+			}
+			if (dpi > 0) {
+				writeChunk("pHYs", PNGMetadata.getPhysChunkData(dpi));
+			}
+		} catch (IOException e) {
+			m_os.close();
+			throw e;
+		}
+		m_deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		m_idat = new DeflaterOutputStream(new IdatOutputStream(), m_deflater, IDAT_SIZE);
+	}
+
+	/**
+	 * Writes the next rows of the image.
+	 * @param raster Raster with the pixel data of the rows, with interleaved 8-bit or 16-bit samples in
+	 *        PNG channel order (for instance, R, G, B and A).
+	 * @param rows Number of rows of the raster to write, starting at its first row.
+	 * @throws IOException If the file can not be written.
+	 * @throws IllegalArgumentException If the raster does not fit the image.
+	 */
+	public void writeRows(Raster raster, int rows) throws IOException {
+		if (raster.getWidth() < m_width || raster.getHeight() < rows || raster.getNumBands() != m_channels
+				|| !(raster.getSampleModel() instanceof ComponentSampleModel)) {
+			throw new IllegalArgumentException("Raster does not fit PNG image");
+		}
+		if (m_rows + rows > m_height) {
+			throw new IllegalArgumentException("Too many rows for PNG image");
+		}
+		ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+		DataBuffer db = raster.getDataBuffer();
+		int pixelStride = sm.getPixelStride();
+		int scanlineStride = sm.getScanlineStride();
+		int[] bandOffsets = sm.getBandOffsets();
+		int[] bankIndices = sm.getBankIndices();
+		for (int b=0; b<m_channels; b++) {
+			if (bankIndices[b] != 0) {
+				throw new IllegalArgumentException("Raster does not fit PNG image");
+			}
+		}
+		int offset = db.getOffset()
+				+ (raster.getMinY() - raster.getSampleModelTranslateY()) * scanlineStride
+				+ (raster.getMinX() - raster.getSampleModelTranslateX()) * pixelStride;
+		for (int y=0; y<rows; y++) {
+			int lineOffset = offset + y * scanlineStride;
+			int i = 0;
+			if (m_bitDepth == 8 && db instanceof DataBufferByte) {
+				byte[] data = ((DataBufferByte) db).getData();
+				for (int x=0; x<m_width; x++) {
+					int pixelOffset = lineOffset + x * pixelStride;
+					for (int b=0; b<m_channels; b++) {
+						m_current[i++] = data[pixelOffset + bandOffsets[b]];
+					}
+				}
+			} else if (m_bitDepth == 16 && db instanceof DataBufferUShort) {
+				short[] data = ((DataBufferUShort) db).getData();
+				for (int x=0; x<m_width; x++) {
+					int pixelOffset = lineOffset + x * pixelStride;
+					for (int b=0; b<m_channels; b++) {
+						short sample = data[pixelOffset + bandOffsets[b]];
+						m_current[i++] = (byte) (sample >> 8);
+						m_current[i++] = (byte) sample;
+					}
+				}
+			} else {
+				throw new IllegalArgumentException("Raster data type does not fit PNG bit depth");
+			}
+			writeRow();
+		}
+	}
+
+	/**
+	 * Filters and compresses the current row, and makes it the previous row.
+	 * @throws IOException If the file can not be written.
+	 */
+	private void writeRow() throws IOException {
+		// Adaptive filtering: filter with the minimum sum of absolute differences
+		int bpp = m_bytesPerPixel;
+		long[] sums = new long[5];
+		for (int i=0; i<m_current.length; i++) {
+			int raw = m_current[i] & 0xFF;
+			int left = (i >= bpp ? m_current[i - bpp] & 0xFF : 0);
+			int up = m_previous[i] & 0xFF;
+			int upLeft = (i >= bpp ? m_previous[i - bpp] & 0xFF : 0);
+			byte none = (byte) raw;
+			byte sub = (byte) (raw - left);
+			byte upFilter = (byte) (raw - up);
+			byte average = (byte) (raw - ((left + up) >> 1));
+			byte paeth = (byte) (raw - paethPredictor(left, up, upLeft));
+			m_filtered[0][i + 1] = none;
+			m_filtered[1][i + 1] = sub;
+			m_filtered[2][i + 1] = upFilter;
+			m_filtered[3][i + 1] = average;
+			m_filtered[4][i + 1] = paeth;
+			sums[0] += Math.abs(none);
+			sums[1] += Math.abs(sub);
+			sums[2] += Math.abs(upFilter);
+			sums[3] += Math.abs(average);
+			sums[4] += Math.abs(paeth);
+		}
+		int best = 0;
+		for (int f=1; f<sums.length; f++) {
+			if (sums[f] < sums[best]) {
+				best = f;
+			}
+		}
+		m_idat.write(m_filtered[best]);
+		byte[] swap = m_previous;
+		m_previous = m_current;
+		m_current = swap;
+		m_rows++;
+	}
+
+	/**
+	 * Paeth predictor of PNG filter type 4.
+	 * @param a Left byte.
+	 * @param b Upper byte.
+	 * @param c Upper left byte.
+	 * @return Predicted byte.
+	 */
+	private static int paethPredictor(int a, int b, int c) {
+		int p = a + b - c;
+		int pa = Math.abs(p - a);
+		int pb = Math.abs(p - b);
+		int pc = Math.abs(p - c);
+		if (pa <= pb && pa <= pc) {
+			return a;
+		}
+		return (pb <= pc ? b : c);
+	}
+
+	/**
+	 * Finishes image data and closes the file.
+	 * @throws IOException If the file can not be written, or not all rows of the image have been written.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			m_idat.close();
+			writeChunk("IEND", new byte[0]);
+		} finally {
+			m_deflater.end();
+			m_os.close();
+		}
+		if (m_rows != m_height) {
+			throw new IOException("Incomplete PNG image: " + m_rows + " of " + m_height + " rows written");
+		}
+	}
+
+	/**
+	 * Writes a chunk to the file.
+	 * @param chunkType Chunk type.
+	 * @param chunkData Chunk data.
+	 * @throws IOException If the file can not be written.
+	 */
+	private void writeChunk(String chunkType, byte[] chunkData) throws IOException {
+		try {
+			PNGMetadata.writeChunk(m_os, chunkType, chunkData);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes a 4-byte big endian integer into a buffer.
+	 * @param buffer Destination buffer.
+	 * @param offset Position of the first byte.
+	 * @param value Value to write.
+	 */
+	private static void writeInteger(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >> 24);
+		buffer[offset + 1] = (byte) (value >> 16);
+		buffer[offset + 2] = (byte) (value >> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+	/**
+	 * Stream that splits compressed image data into IDAT chunks.
+	 */
+	private class IdatOutputStream extends OutputStream {
+		/** Data of the next chunk. */
+		private final byte[] m_buffer = new byte[IDAT_SIZE];
+		/** Number of bytes in the buffer. */
+		private int m_count = 0;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (m_count == m_buffer.length) {
+				flushChunk();
+			}
+			m_buffer[m_count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (m_count == m_buffer.length) {
+					flushChunk();
+				}
+				int n = Math.min(len, m_buffer.length - m_count);
+				System.arraycopy(b, off, m_buffer, m_count, n);
+				m_count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (m_count > 0) {
+				flushChunk();
+			}
+		}
+
+		/**
+		 * Writes buffered data as an IDAT chunk.
+		 * @throws IOException If the file can not be written.
+		 */
+		private void flushChunk() throws IOException {
+			writeChunk("IDAT", Arrays.copyOf(m_buffer, m_count));
+			m_count = 0;
+		}
+	}
+}
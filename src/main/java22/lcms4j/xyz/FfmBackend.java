@@ -0,0 +1,401 @@
+package lcms4j.xyz;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Access to LittleCMS library through <code>java.lang.foreign</code>, with no JNI shared object.<br><br>
+ * Selected with <code>-Dlcms4j.backend=ffm</code> on Java 22 or later (add <code>--enable-native-access</code> to
+ * silence the restricted method warnings). LittleCMS shared library is looked up by its usual names in the system
+ * library path, or at the path given in the <code>lcms4j.lcms2.library</code> system property.<br><br>
+ * Pixel arrays and buffers are passed in place to critical downcalls, so transforms copy no pixels, like the
+ * <code>GetPrimitiveArrayCritical</code> calls of the JNI backend. Strings and profile data are copied to confined
+ * arenas, freed as soon as each call returns.
+ */
+final class FfmBackend implements NativeBackend {
+	/** Usual names of LittleCMS shared library. */
+	private static final String[] LIBRARY_NAMES = {
+			System.mapLibraryName("lcms2"), "liblcms2.so.2", "liblcms2.2.dylib", "liblcms2-2.dll"
+	};
+	/** Info type of profile descriptions (<code>cmsInfoDescription</code>). */
+	private static final int INFO_DESCRIPTION = 0;
+	/** Size of the buffer for profile descriptions. */
+	private static final int INFO_SIZE = 512;
+
+	private static final Linker LINKER = Linker.nativeLinker();
+	private static final SymbolLookup LIBRARY = findLibrary();
+
+	private static final MethodHandle CREATE_CONTEXT = downcall("cmsCreateContext", FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS));
+	private static final MethodHandle DELETE_CONTEXT = downcall("cmsDeleteContext", FunctionDescriptor.ofVoid(ADDRESS));
+	private static final MethodHandle OPEN_PROFILE_FROM_FILE = downcall("cmsOpenProfileFromFile", FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS));
+	private static final MethodHandle OPEN_PROFILE_FROM_FILE_THR = downcall("cmsOpenProfileFromFileTHR", FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+	private static final MethodHandle OPEN_PROFILE_FROM_MEM = downcall("cmsOpenProfileFromMem", FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_INT));
+	private static final MethodHandle OPEN_PROFILE_FROM_MEM_THR = downcall("cmsOpenProfileFromMemTHR", FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS, JAVA_INT));
+	private static final MethodHandle CLOSE_PROFILE = downcall("cmsCloseProfile", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+	private static final MethodHandle GET_PROFILE_INFO_ASCII = downcall("cmsGetProfileInfoASCII",
+			FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS, ADDRESS, JAVA_INT));
+	private static final MethodHandle SAVE_PROFILE_TO_MEM = downcall("cmsSaveProfileToMem", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS));
+	private static final MethodHandle GET_COLOR_SPACE = downcall("cmsGetColorSpace", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+	private static final MethodHandle GET_DEVICE_CLASS = downcall("cmsGetDeviceClass", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+	private static final MethodHandle CHANNELS_OF = downcall("cmsChannelsOf", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+	private static final MethodHandle CREATE_TRANSFORM = downcall("cmsCreateTransform",
+			FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT));
+	private static final MethodHandle CREATE_TRANSFORM_THR = downcall("cmsCreateTransformTHR",
+			FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS, JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT));
+	private static final MethodHandle DELETE_TRANSFORM = downcall("cmsDeleteTransform", FunctionDescriptor.ofVoid(ADDRESS));
+	// Transforms never call back into Java, so they can take heap segments and skip the thread state transitions
+	private static final MethodHandle DO_TRANSFORM = downcall("cmsDoTransform",
+			FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, ADDRESS, JAVA_INT), Linker.Option.critical(true));
+	private static final MethodHandle DO_TRANSFORM_LINE_STRIDE = downcall("cmsDoTransformLineStride",
+			FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT), Linker.Option.critical(true));
+	private static final MethodHandle CREATE_SRGB_PROFILE = downcall("cmsCreate_sRGBProfile", FunctionDescriptor.of(ADDRESS));
+	private static final MethodHandle CREATE_SRGB_PROFILE_THR = downcall("cmsCreate_sRGBProfileTHR", FunctionDescriptor.of(ADDRESS, ADDRESS));
+	private static final MethodHandle BUILD_GAMMA = downcall("cmsBuildGamma", FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_DOUBLE));
+	private static final MethodHandle FREE_TONE_CURVE = downcall("cmsFreeToneCurve", FunctionDescriptor.ofVoid(ADDRESS));
+	private static final MethodHandle D50_XYY = downcall("cmsD50_xyY", FunctionDescriptor.of(ADDRESS));
+	private static final MethodHandle CREATE_GRAY_PROFILE = downcall("cmsCreateGrayProfile", FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS));
+	private static final MethodHandle CREATE_GRAY_PROFILE_THR = downcall("cmsCreateGrayProfileTHR", FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+
+	/**
+	 * Looks up LittleCMS shared library. It stays loaded until the JVM exits.
+	 * @return Symbols of LittleCMS library.
+	 * @throws IllegalArgumentException If the library is not found.
+	 */
+	private static SymbolLookup findLibrary() {
+		String library = System.getProperty(LCMS4J.LIBRARY_PROPERTY);
+		if (library != null) {
+			return library.contains("/") || library.contains("\\")
+					? SymbolLookup.libraryLookup(Path.of(library), Arena.global())
+					: SymbolLookup.libraryLookup(library, Arena.global());
+		}
+		IllegalArgumentException notFound = null;
+		for (String name : LIBRARY_NAMES) {
+			try {
+				return SymbolLookup.libraryLookup(name, Arena.global());
+			} catch (IllegalArgumentException e) {
+				notFound = e;
+			}
+		}
+		throw notFound;
+	}
+
+	/**
+	 * Creates the method handle of a LittleCMS function.
+	 * @param name Function name.
+	 * @param descriptor Function signature.
+	 * @param options Linker options.
+	 * @return Downcall method handle.
+	 * @throws UnsatisfiedLinkError If the function is not found in the library.
+	 */
+	private static MethodHandle downcall(String name, FunctionDescriptor descriptor, Linker.Option... options) {
+		MemorySegment symbol = LIBRARY.find(name).orElseThrow(() -> new UnsatisfiedLinkError("LittleCMS function not found: " + name));
+		return LINKER.downcallHandle(symbol, descriptor, options);
+	}
+
+	/**
+	 * Gets the pointer of a native handle.
+	 * @param handle Native handle, as returned to Java callers.
+	 * @return Pointer segment.
+	 */
+	private static MemorySegment pointer(long handle) {
+		return MemorySegment.ofAddress(handle);
+	}
+
+	/**
+	 * Gets the segment of a primitive array.
+	 * @param array Primitive array.
+	 * @param offset Offset (in bytes) of the segment start.
+	 * @return Heap segment starting at <code>offset</code>.
+	 * @throws IllegalArgumentException If <code>array</code> is not a primitive array.
+	 */
+	private static MemorySegment segmentOf(Object array, int offset) {
+		MemorySegment segment;
+		if (array instanceof byte[] bytes) {
+			segment = MemorySegment.ofArray(bytes);
+		} else if (array instanceof short[] shorts) {
+			segment = MemorySegment.ofArray(shorts);
+		} else if (array instanceof char[] chars) {
+			segment = MemorySegment.ofArray(chars);
+		} else if (array instanceof int[] ints) {
+			segment = MemorySegment.ofArray(ints);
+		} else if (array instanceof float[] floats) {
+			segment = MemorySegment.ofArray(floats);
+		} else if (array instanceof long[] longs) {
+			segment = MemorySegment.ofArray(longs);
+		} else if (array instanceof double[] doubles) {
+			segment = MemorySegment.ofArray(doubles);
+		} else {
+			throw new IllegalArgumentException("Pixel data must be a primitive array");
+		}
+		return segment.asSlice(offset);
+	}
+
+	/**
+	 * Gets the segment of a byte buffer, ignoring its position and limit as the JNI backend does.
+	 * @param buffer Byte buffer.
+	 * @param offset Offset (in bytes) of the segment start inside the buffer.
+	 * @return Segment starting at <code>offset</code>.
+	 */
+	private static MemorySegment segmentOf(ByteBuffer buffer, int offset) {
+		return MemorySegment.ofBuffer(buffer.duplicate().clear()).asSlice(offset);
+	}
+
+	/**
+	 * Converts an exception thrown by a method handle.
+	 * @param e Exception thrown.
+	 * @return Unchecked exception to be thrown.
+	 */
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException runtime) {
+			return runtime;
+		}
+		if (e instanceof Error error) {
+			throw error;
+		}
+		return new IllegalStateException(e);
+	}
+
+	@Override
+	public String getName() {
+		return "ffm";
+	}
+
+	@Override
+	public long cmsCreateContext() {
+		try {
+			return ((MemorySegment) CREATE_CONTEXT.invokeExact(MemorySegment.NULL, MemorySegment.NULL)).address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public void cmsDeleteContext(long hContext) {
+		try {
+			DELETE_CONTEXT.invokeExact(pointer(hContext));
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsOpenProfileFromFile(String filename, String mode) {
+		try (Arena arena = Arena.ofConfined()) {
+			return ((MemorySegment) OPEN_PROFILE_FROM_FILE.invokeExact(arena.allocateFrom(filename), arena.allocateFrom(mode))).address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsOpenProfileFromFileTHR(long hContext, String filename, String mode) {
+		try (Arena arena = Arena.ofConfined()) {
+			return ((MemorySegment) OPEN_PROFILE_FROM_FILE_THR.invokeExact(pointer(hContext), arena.allocateFrom(filename), arena.allocateFrom(mode))).address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsOpenProfileFromMem(byte[] buffer) {
+		try (Arena arena = Arena.ofConfined()) {
+			return ((MemorySegment) OPEN_PROFILE_FROM_MEM.invokeExact(arena.allocateFrom(JAVA_BYTE, buffer), buffer.length)).address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsOpenProfileFromMemTHR(long hContext, byte[] buffer) {
+		try (Arena arena = Arena.ofConfined()) {
+			return ((MemorySegment) OPEN_PROFILE_FROM_MEM_THR.invokeExact(pointer(hContext), arena.allocateFrom(JAVA_BYTE, buffer), buffer.length)).address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public boolean cmsCloseProfile(long hProfile) {
+		try {
+			return (int) CLOSE_PROFILE.invokeExact(pointer(hProfile)) != 0;
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public String cmsGetProfileInfoASCII(long hProfile) {
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment text = arena.allocate(INFO_SIZE);
+			int size = (int) GET_PROFILE_INFO_ASCII.invokeExact(pointer(hProfile), INFO_DESCRIPTION, arena.allocateFrom("en"), arena.allocateFrom("EN"), text, INFO_SIZE);
+			return (size == 0 ? "" : text.getString(0));
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public byte[] cmsSaveProfileToMem(long hProfile) {
+		try (Arena arena = Arena.ofConfined()) {
+			// Get required buffer size
+			MemorySegment size = arena.allocate(JAVA_INT);
+			if ((int) SAVE_PROFILE_TO_MEM.invokeExact(pointer(hProfile), MemorySegment.NULL, size) == 0) {
+				return new byte[0];
+			}
+
+			// Save data
+			MemorySegment data = arena.allocate(Integer.toUnsignedLong(size.get(JAVA_INT, 0)));
+			if ((int) SAVE_PROFILE_TO_MEM.invokeExact(pointer(hProfile), data, size) == 0) {
+				return new byte[0];
+			}
+			return data.toArray(JAVA_BYTE);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public int cmsGetColorSpace(long hProfile) {
+		try {
+			return (int) GET_COLOR_SPACE.invokeExact(pointer(hProfile));
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public int cmsGetDeviceClass(long hProfile) {
+		try {
+			return (int) GET_DEVICE_CLASS.invokeExact(pointer(hProfile));
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public int cmsChannelsOf(int colorSpace) {
+		try {
+			return (int) CHANNELS_OF.invokeExact(colorSpace);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsCreateTransform(long hInputProfile, int inputFormat, long hOutputProfile, int outputFormat, int intent, int flags) {
+		try {
+			return ((MemorySegment) CREATE_TRANSFORM.invokeExact(pointer(hInputProfile), inputFormat, pointer(hOutputProfile), outputFormat, intent, flags)).address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsCreateTransformTHR(long hContext, long hInputProfile, int inputFormat, long hOutputProfile, int outputFormat, int intent, int flags) {
+		try {
+			return ((MemorySegment) CREATE_TRANSFORM_THR.invokeExact(pointer(hContext), pointer(hInputProfile), inputFormat, pointer(hOutputProfile), outputFormat, intent, flags)).address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public void cmsDeleteTransform(long hTransform) {
+		try {
+			DELETE_TRANSFORM.invokeExact(pointer(hTransform));
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public void cmsDoTransform(long hTransform, byte[] inputBuffer, byte[] outputBuffer, int size) {
+		try {
+			DO_TRANSFORM.invokeExact(pointer(hTransform), MemorySegment.ofArray(inputBuffer), MemorySegment.ofArray(outputBuffer), size);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public void cmsDoTransformDirect(long hTransform, ByteBuffer inputBuffer, int inputOffset, ByteBuffer outputBuffer, int outputOffset, int size) {
+		try {
+			DO_TRANSFORM.invokeExact(pointer(hTransform), segmentOf(inputBuffer, inputOffset), segmentOf(outputBuffer, outputOffset), size);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public void cmsDoTransformArray(long hTransform, Object inputBuffer, int inputOffset, Object outputBuffer, int outputOffset, int size) {
+		try {
+			DO_TRANSFORM.invokeExact(pointer(hTransform), segmentOf(inputBuffer, inputOffset), segmentOf(outputBuffer, outputOffset), size);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public void cmsDoTransformLineStride(long hTransform, Object inputBuffer, int inputOffset, Object outputBuffer, int outputOffset,
+			int pixelsPerLine, int lineCount, int bytesPerLineIn, int bytesPerLineOut, int bytesPerPlaneIn, int bytesPerPlaneOut) {
+		try {
+			DO_TRANSFORM_LINE_STRIDE.invokeExact(pointer(hTransform), segmentOf(inputBuffer, inputOffset), segmentOf(outputBuffer, outputOffset),
+					pixelsPerLine, lineCount, bytesPerLineIn, bytesPerLineOut, bytesPerPlaneIn, bytesPerPlaneOut);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsCreate_sRGBProfile() {
+		try {
+			return ((MemorySegment) CREATE_SRGB_PROFILE.invokeExact()).address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsCreate_sRGBProfileTHR(long hContext) {
+		try {
+			return ((MemorySegment) CREATE_SRGB_PROFILE_THR.invokeExact(pointer(hContext))).address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsCreateGrayProfile(double gamma) {
+		try {
+			MemorySegment gammaCurve = (MemorySegment) BUILD_GAMMA.invokeExact(MemorySegment.NULL, gamma);
+			MemorySegment hProfile = (MemorySegment) CREATE_GRAY_PROFILE.invokeExact((MemorySegment) D50_XYY.invokeExact(), gammaCurve);
+			FREE_TONE_CURVE.invokeExact(gammaCurve);
+			return hProfile.address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	@Override
+	public long cmsCreateGrayProfileTHR(long hContext, double gamma) {
+		try {
+			MemorySegment gammaCurve = (MemorySegment) BUILD_GAMMA.invokeExact(pointer(hContext), gamma);
+			MemorySegment hProfile = (MemorySegment) CREATE_GRAY_PROFILE_THR.invokeExact(pointer(hContext), (MemorySegment) D50_XYY.invokeExact(), gammaCurve);
+			FREE_TONE_CURVE.invokeExact(gammaCurve);
+			return hProfile.address();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+}
@@ -1,4 +1,35 @@
 package lcms4j.xyz;
 
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LCMS4J} class
+ */
 public class LCMS4JTest {
+
+	/**
+	 * Test method for {@link LCMS4J#getBackend()}.
+	 */
+	@Test
+	public void testGetBackend() {
+		assertEquals(System.getProperty(LCMS4J.BACKEND_PROPERTY, "jni"), LCMS4J.getBackend());
+
+		// Built-in profiles are available through any backend
+		long hProfile = LCMS4J.cmsCreate_sRGBProfile();
+		assertTrue(hProfile != 0);
+		try {
+			assertEquals("sRGB built-in", LCMS4J.cmsGetProfileInfoASCII(hProfile));
+			assertEquals(3, LCMS4J.cmsChannelsOf(LCMS4J.cmsGetColorSpace(hProfile)));
+			byte[] data = LCMS4J.cmsSaveProfileToMem(hProfile);
+			assertTrue(data.length > 128);
+			long hCopy = LCMS4J.cmsOpenProfileFromMem(data);
+			assertTrue(hCopy != 0);
+			assertEquals(LCMS4J.cmsGetDeviceClass(hProfile), LCMS4J.cmsGetDeviceClass(hCopy));
+			assertTrue(LCMS4J.cmsCloseProfile(hCopy));
+		} finally {
+			LCMS4J.cmsCloseProfile(hProfile);
+		}
+	}
 }
@@ -0,0 +1,70 @@
+package lcms4j.xyz.controls;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import lcms4j.xyz.LCMS4J;
+
+/**
+ * Tests for {@link IccContext} class
+ */
+public class IccContextTest {
+
+	/**
+	 * Test method for profiles and transforms created inside an {@link IccContext}.
+	 * @throws LCMS4JException On unexpected error.
+	 */
+	@Test
+	public void testContextIsolation() throws LCMS4JException {
+		byte[] input = {(byte) 255, 0, 0, 0, (byte) 255, 0, 12, 34, 56};
+		byte[] expected = new byte[input.length];
+		IccProfile srgb = new IccProfile(IccProfile.PROFILE_SRGB);
+		IccProfile adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+		assertNull(srgb.getContext());
+		IccTransform global = new IccTransform(srgb, LCMS4J.TYPE_RGB_8, adobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		global.transform(input, expected, 3);
+
+		IccContext first = new IccContext();
+		IccContext second = new IccContext();
+		try {
+			assertTrue(first.getHandle() != 0);
+			assertTrue(first.getHandle() != second.getHandle());
+
+			// Same results inside any context, and transforms take the context of their source profile
+			IccProfile firstSrgb = new IccProfile(first, IccProfile.PROFILE_SRGB);
+			IccProfile firstAdobe = new IccProfile(first, IccProfile.PROFILE_ADOBERGB);
+			assertSame(first, firstSrgb.getContext());
+			IccTransform firstTransform = new IccTransform(firstSrgb, LCMS4J.TYPE_RGB_8, firstAdobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+			byte[] output = new byte[input.length];
+			firstTransform.transform(input, output, 3);
+			assertArrayEquals(expected, output);
+
+			IccProfile secondSrgb = new IccProfile(second, srgb.getICC_Profile().getData());
+			IccProfile secondAdobe = new IccProfile(second, adobe.getICC_Profile().getData());
+			IccTransform secondTransform = new IccTransform(second, secondSrgb, LCMS4J.TYPE_RGB_8, secondAdobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+
+			// Disposing a context does not affect other contexts, nor the global context
+			firstTransform.dispose();
+			firstAdobe.dispose();
+			firstSrgb.dispose();
+			first.dispose();
+			assertEquals(0, first.getHandle());
+			output = new byte[input.length];
+			secondTransform.transform(input, output, 3);
+			assertArrayEquals(expected, output);
+			output = new byte[input.length];
+			global.transform(input, output, 3);
+			assertArrayEquals(expected, output);
+			secondTransform.dispose();
+			secondAdobe.dispose();
+			secondSrgb.dispose();
+		} finally {
+			first.dispose();
+			second.dispose();
+			global.dispose();
+			adobe.dispose();
+			srgb.dispose();
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package lcms4j.xyz.controls;
+
+import static org.junit.Assert.*;
+
+import java.awt.color.ICC_Profile;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link IccProfileRegistry} class
+ */
+public class IccProfileRegistryTest {
+
+	/**
+	 * Test method for {@link IccProfileRegistry#getProfile(IccContext, ICC_Profile)}.
+	 */
+	@Test
+	public void testGetProfile() {
+		IccProfile adobe = null;
+		long maxSize = IccProfileRegistry.getMaxSize();
+		try {
+			IccProfileRegistry.clear();
+			adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			ICC_Profile data = adobe.getICC_Profile();
+
+			// Same profile data share a single native profile
+			IccProfile p1 = IccProfileRegistry.getProfile(null, data);
+			IccProfile p2 = IccProfileRegistry.getProfile(null, data.getData());
+			assertEquals(1, IccProfileRegistry.getCount());
+			assertEquals(p1.getHandle(), p2.getHandle());
+			assertArrayEquals(p1.getProfileId(), p2.getProfileId());
+			assertEquals("Adobe RGB (1998)", p2.getProfileInfo());
+
+			// Shared native profile remains valid while in use
+			p1.dispose();
+			assertEquals(0, p1.getHandle());
+			assertEquals("Adobe RGB (1998)", p2.getProfileInfo());
+
+			// Profiles not in use are evicted
+			IccProfileRegistry.setMaxSize(1);
+			assertEquals(1, IccProfileRegistry.getCount());
+			p2.dispose();
+			assertEquals(0, IccProfileRegistry.getCount());
+		} catch (LCMS4JException e) {
+			fail("LCMS4J Exception: " + e.getMessage());
+		} finally {
+			IccProfileRegistry.setMaxSize(maxSize);
+			if (adobe != null) adobe.dispose();
+		}
+	}
+}
@@ -2,6 +2,9 @@ package lcms4j.xyz.controls;
 
 import static org.junit.Assert.*;
 
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_Profile;
+
 import org.junit.Test;
 
 /**
@@ -23,4 +26,25 @@ public class IccProfileTest {
 			return;
 		}
 	}
+
+	/**
+	 * Test method for {@link IccProfile#getColorSpaceType()}.
+	 */
+	@Test
+	public void testGetColorSpaceType() {
+		try {
+			IccProfile profile = new IccProfile(IccProfile.PROFILE_FOGRA39);
+			assertEquals(ICC_Profile.icSigCmykData, profile.getColorSpace());
+			assertEquals(ColorSpace.TYPE_CMYK, profile.getColorSpaceType());
+			assertEquals(ICC_Profile.icSigOutputClass, profile.getDeviceClass());
+			assertEquals(4, profile.getNumChannels());
+			assertEquals(profile.getICC_Profile().getColorSpaceType(), profile.getColorSpaceType());
+			profile.dispose();
+			assertEquals(-1, profile.getColorSpaceType());
+			assertNull(profile.getData());
+		} catch (LCMS4JException e) {
+			fail("Exception loading Fogra39 Icc Profile: "+e.getMessage());
+			return;
+		}
+	}
 }
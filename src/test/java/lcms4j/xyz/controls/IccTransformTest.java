@@ -0,0 +1,426 @@
+package lcms4j.xyz.controls;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import lcms4j.xyz.LCMS4J;
+
+/**
+ * Tests for {@link IccTransform} class
+ */
+public class IccTransformTest {
+
+	/**
+	 * Creates sample 8-bit RGB pixel data.
+	 * @param pixels Number of pixels.
+	 * @return Pixel data.
+	 */
+	private static byte[] samplePixels(int pixels) {
+		byte[] data = new byte[pixels * 3];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 37);
+		}
+		return data;
+	}
+
+	/**
+	 * Test method for {@link IccTransform#transform(ByteBuffer, ByteBuffer, int)}.
+	 * @throws LCMS4JException On unexpected error.
+	 */
+	@Test
+	public void testTransformDirectBuffer() throws LCMS4JException {
+		IccProfile srgb = new IccProfile(IccProfile.PROFILE_SRGB);
+		IccProfile adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+		IccTransform transform = new IccTransform(srgb, LCMS4J.TYPE_RGB_8, adobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		try {
+			int pixels = 20;
+			byte[] input = samplePixels(pixels);
+			byte[] expected = new byte[input.length];
+			transform.transform(input, expected, pixels);
+
+			// Same result as byte arrays, from the positions of the buffers, which are not modified
+			ByteBuffer in = ByteBuffer.allocateDirect(input.length + 5);
+			in.position(5);
+			in.put(input);
+			in.position(5);
+			ByteBuffer out = ByteBuffer.allocateDirect(input.length + 2);
+			out.position(2);
+			transform.transform(in, out, pixels);
+			assertEquals(5, in.position());
+			assertEquals(2, out.position());
+			byte[] result = new byte[input.length];
+			out.get(result);
+			assertArrayEquals(expected, result);
+
+			// Heap, read-only and too small buffers are rejected
+			in.position(5);
+			out.position(2);
+			try {
+				transform.transform(ByteBuffer.wrap(input), out, pixels);
+				fail("Heap input buffer not detected");
+			} catch (IllegalArgumentException e) {
+				/* Expected */
+			}
+			try {
+				transform.transform(in, out.asReadOnlyBuffer(), pixels);
+				fail("Read-only output buffer not detected");
+			} catch (IllegalArgumentException e) {
+				/* Expected */
+			}
+			try {
+				transform.transform(in, out, pixels + 1);
+				fail("Too small buffers not detected");
+			} catch (IllegalArgumentException e) {
+				/* Expected */
+			}
+			try {
+				transform.transform(in, out, -1);
+				fail("Negative number of pixels not detected");
+			} catch (IllegalArgumentException e) {
+				/* Expected */
+			}
+		} finally {
+			transform.dispose();
+			adobe.dispose();
+			srgb.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransform#transform(byte[], int, byte[], int, int)}.
+	 * @throws LCMS4JException On unexpected error.
+	 */
+	@Test
+	public void testTransformOffset() throws LCMS4JException {
+		IccProfile srgb = new IccProfile(IccProfile.PROFILE_SRGB);
+		IccProfile adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+		IccTransform transform = new IccTransform(srgb, LCMS4J.TYPE_RGB_8, adobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		try {
+			int pixels = 10;
+			byte[] input = samplePixels(pixels);
+			byte[] expected = new byte[input.length];
+			transform.transform(input, expected, pixels);
+
+			// Pixels 2..5 of the input into an output array at offset 1, leaving other bytes untouched
+			byte[] output = new byte[1 + 4 * 3 + 1];
+			transform.transform(input, 2 * 3, output, 1, 4);
+			assertEquals(0, output[0]);
+			assertEquals(0, output[output.length - 1]);
+			for (int i = 0; i < 4 * 3; i++) {
+				assertEquals(expected[2 * 3 + i], output[1 + i]);
+			}
+
+			// Pixels out of the bounds of any array
+			int[][] invalid = {{-1, 0, 1}, {0, -1, 1}, {1, 0, pixels}, {0, 1, pixels}, {0, 0, -1}};
+			for (int[] args : invalid) {
+				try {
+					transform.transform(input, args[0], new byte[input.length], args[1], args[2]);
+					fail("Pixels out of bounds not detected: offsets " + args[0] + ", " + args[1] + ", " + args[2] + " pixels");
+				} catch (IndexOutOfBoundsException e) {
+					/* Expected */
+				}
+			}
+		} finally {
+			transform.dispose();
+			adobe.dispose();
+			srgb.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransform#transform(byte[], int, byte[], int, int, int, int, int)}.
+	 * @throws LCMS4JException On unexpected error.
+	 */
+	@Test
+	public void testTransformStride() throws LCMS4JException {
+		IccProfile srgb = new IccProfile(IccProfile.PROFILE_SRGB);
+		IccProfile adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+		IccTransform transform = new IccTransform(srgb, LCMS4J.TYPE_RGB_8, adobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		try {
+			// 3x4 pixels, from a padded input raster into a region of interest of a bigger output raster
+			int width = 3;
+			int height = 4;
+			int inputStride = width * 3 + 2;
+			int outputStride = width * 3 + 7;
+			byte[] packed = samplePixels(width * height);
+			byte[] expected = new byte[packed.length];
+			transform.transform(packed, expected, width * height);
+			byte[] input = new byte[inputStride * height];
+			for (int y = 0; y < height; y++) {
+				System.arraycopy(packed, y * width * 3, input, y * inputStride, width * 3);
+			}
+			byte[] output = new byte[5 + outputStride * height];
+			transform.transform(input, 0, output, 5, width, height, inputStride, outputStride);
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < outputStride; x++) {
+					byte value = output[5 + y * outputStride + x];
+					assertEquals(x < width * 3 ? expected[y * width * 3 + x] : 0, value);
+				}
+			}
+
+			// Stride smaller than a line, and last line out of bounds (padding of the last line is not required)
+			try {
+				transform.transform(input, 0, output, 0, width, height, width * 3 - 1, outputStride);
+				fail("Stride smaller than a line not detected");
+			} catch (IllegalArgumentException e) {
+				/* Expected */
+			}
+			transform.transform(input, 2, output, 0, width, height, inputStride, outputStride);
+			try {
+				transform.transform(input, 3, output, 0, width, height, inputStride, outputStride);
+				fail("Lines out of bounds not detected");
+			} catch (IndexOutOfBoundsException e) {
+				/* Expected */
+			}
+		} finally {
+			transform.dispose();
+			adobe.dispose();
+			srgb.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransform#transform(short[], int, short[], int, int)} and
+	 * {@link IccTransform#transform(float[], int, float[], int, int)}.
+	 * @throws LCMS4JException On unexpected error.
+	 */
+	@Test
+	public void testTransformHighBitDepth() throws LCMS4JException {
+		IccProfile srgb = new IccProfile(IccProfile.PROFILE_SRGB);
+		IccProfile adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+		IccTransform transform8 = new IccTransform(srgb, LCMS4J.TYPE_RGB_8, adobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		IccTransform transform16 = new IccTransform(srgb, LCMS4J.TYPE_RGB_16, adobe, LCMS4J.TYPE_RGB_16, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		IccTransform forward = new IccTransform(srgb, LCMS4J.TYPE_RGB_FLT, adobe, LCMS4J.TYPE_RGB_FLT, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		IccTransform backward = new IccTransform(adobe, LCMS4J.TYPE_RGB_FLT, srgb, LCMS4J.TYPE_RGB_FLT, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		try {
+			// sRGB red is (219, 0, 0) in Adobe RGB
+			byte[] output8 = new byte[3];
+			transform8.transform(new byte[] {(byte) 255, 0, 0}, output8, 1);
+			assertArrayEquals(new byte[] {(byte) 219, 0, 0}, output8);
+			short[] output16 = new short[4];
+			transform16.transform(new short[] {0, (short) 65535, 0, 0}, 1, output16, 1, 1);
+			assertEquals(0, output16[0]);
+			assertEquals(219 * 257, output16[1] & 0xFFFF, 257);
+			assertEquals(0, output16[2] & 0xFFFF, 257);
+			assertEquals(0, output16[3] & 0xFFFF, 257);
+
+			// 16-bit stride overload gives the same results
+			short[] input16 = new short[2 * 4 * 3];
+			for (int i = 0; i < input16.length; i++) {
+				input16[i] = (short) (i * 2731);
+			}
+			short[] expected16 = new short[input16.length];
+			transform16.transform(input16, 0, expected16, 0, 8);
+			short[] strided16 = new short[input16.length];
+			transform16.transform(input16, 0, strided16, 0, 4, 2, 4 * 3, 4 * 3);
+			assertArrayEquals(expected16, strided16);
+
+			// Float values survive a round trip
+			float[] input = {1f, 0f, 0f, 0.25f, 0.5f, 0.75f, 0.5f, 0.5f, 0.5f};
+			float[] converted = new float[input.length];
+			forward.transform(input, 0, converted, 0, 3);
+			assertEquals(219 / 255f, converted[0], 1 / 255f);
+			float[] roundTrip = new float[input.length];
+			backward.transform(converted, 0, roundTrip, 0, 3);
+			for (int i = 0; i < input.length; i++) {
+				assertEquals(input[i], roundTrip[i], 1e-3f);
+			}
+		} finally {
+			backward.dispose();
+			forward.dispose();
+			transform16.dispose();
+			transform8.dispose();
+			adobe.dispose();
+			srgb.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransform#transform(byte[], byte[], int)} with alpha channels copied by
+	 * <code>LCMS4J.CMSFLAGS_COPY_ALPHA</code>.
+	 * @throws LCMS4JException On unexpected error.
+	 */
+	@Test
+	public void testTransformCopyAlpha() throws LCMS4JException {
+		IccProfile srgb = new IccProfile(IccProfile.PROFILE_SRGB);
+		IccProfile adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+		IccTransform rgb = new IccTransform(srgb, LCMS4J.TYPE_RGB_8, adobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		IccTransform rgba = new IccTransform(srgb, LCMS4J.TYPE_RGBA_8, adobe, LCMS4J.TYPE_RGBA_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, LCMS4J.CMSFLAGS_COPY_ALPHA);
+		try {
+			int pixels = 16;
+			byte[] colors = samplePixels(pixels);
+			byte[] expected = new byte[colors.length];
+			rgb.transform(colors, expected, pixels);
+			byte[] input = new byte[pixels * 4];
+			for (int i = 0; i < pixels; i++) {
+				System.arraycopy(colors, i * 3, input, i * 4, 3);
+				input[i * 4 + 3] = (byte) (i * 17);
+			}
+			byte[] output = new byte[input.length];
+			rgba.transform(input, output, pixels);
+			for (int i = 0; i < pixels; i++) {
+				for (int c = 0; c < 3; c++) {
+					assertEquals(expected[i * 3 + c], output[i * 4 + c]);
+				}
+				assertEquals((byte) (i * 17), output[i * 4 + 3]);
+			}
+		} finally {
+			rgba.dispose();
+			rgb.dispose();
+			adobe.dispose();
+			srgb.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransform#transform(byte[], int, byte[], int, int, int, int, int)} with planar formats.
+	 * @throws LCMS4JException On unexpected error.
+	 */
+	@Test
+	public void testTransformStridePlanar() throws LCMS4JException {
+		IccProfile srgb = new IccProfile(IccProfile.PROFILE_SRGB);
+		IccProfile adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+		IccTransform chunky = new IccTransform(srgb, LCMS4J.TYPE_RGB_8, adobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		IccTransform planar = new IccTransform(srgb, LCMS4J.TYPE_RGB_8_PLANAR, adobe, LCMS4J.TYPE_RGB_8_PLANAR, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		try {
+			// 3x2 pixels, with lines of 4 bytes in each plane, after 1 byte of offset
+			int width = 3;
+			int height = 2;
+			int stride = 4;
+			int plane = stride * height;
+			byte[] input = new byte[1 + 3 * plane];
+			byte[] chunkyInput = new byte[width * height * 3];
+			for (int i = 0; i < chunkyInput.length; i++) {
+				chunkyInput[i] = (byte) (i * 37);
+				int pixel = i / 3;
+				input[1 + (i % 3) * plane + (pixel / width) * stride + pixel % width] = chunkyInput[i];
+			}
+			byte[] output = new byte[input.length];
+			planar.transform(input, 1, output, 1, width, height, stride, stride);
+			byte[] chunkyOutput = new byte[chunkyInput.length];
+			chunky.transform(chunkyInput, chunkyOutput, width * height);
+			for (int i = 0; i < chunkyOutput.length; i++) {
+				int pixel = i / 3;
+				assertEquals(chunkyOutput[i], output[1 + (i % 3) * plane + (pixel / width) * stride + pixel % width]);
+			}
+
+			// Last plane exceeds the array, although a chunky block of the same size would fit
+			byte[] small = new byte[1 + 2 * plane + (height - 1) * stride + width - 1];
+			try {
+				planar.transform(small, 1, output, 1, width, height, stride, stride);
+				fail("Input planes out of bounds not detected");
+			} catch (IndexOutOfBoundsException e) {
+				/* Expected */
+			}
+			try {
+				planar.transform(input, 1, small, 1, width, height, stride, stride);
+				fail("Output planes out of bounds not detected");
+			} catch (IndexOutOfBoundsException e) {
+				/* Expected */
+			}
+
+			// Stride of a plane only needs to hold a line of one channel
+			try {
+				planar.transform(input, 0, output, 0, width, height, width - 1, width - 1);
+				fail("Stride smaller than a line not detected");
+			} catch (IllegalArgumentException e) {
+				/* Expected */
+			}
+			planar.transform(new byte[3 * width * height], 0, new byte[3 * width * height], 0, width, height, width, width);
+		} finally {
+			planar.dispose();
+			chunky.dispose();
+			adobe.dispose();
+			srgb.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransform#transform(byte[], int, byte[], int, int, int, int, int)} with blocks of
+	 * pixel data bigger than {@link IccTransform#MAX_CALL_BYTES}, transformed by several native calls.
+	 * @throws LCMS4JException On unexpected error.
+	 */
+	@Test
+	public void testTransformStrideSplit() throws LCMS4JException {
+		IccProfile srgb = new IccProfile(IccProfile.PROFILE_SRGB);
+		IccProfile adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+		IccTransform chunky = new IccTransform(srgb, LCMS4J.TYPE_RGB_8, adobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		IccTransform planar = new IccTransform(srgb, LCMS4J.TYPE_RGB_8_PLANAR, adobe, LCMS4J.TYPE_RGB_8_PLANAR, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		try {
+			int width = 1000;
+			int height = 3 * IccTransform.MAX_CALL_BYTES / (3 * width) + 7;
+			byte[] chunkyInput = samplePixels(width * height);
+			byte[] chunkyOutput = new byte[chunkyInput.length];
+			chunky.transform(chunkyInput, chunkyOutput, width * height);
+
+			// Chunky lines with padding, after 2 bytes of offset
+			int stride = 3 * width + 5;
+			byte[] input = new byte[2 + stride * height];
+			for (int y = 0; y < height; y++) {
+				System.arraycopy(chunkyInput, y * 3 * width, input, 2 + y * stride, 3 * width);
+			}
+			byte[] output = new byte[input.length];
+			chunky.transform(input, 2, output, 2, width, height, stride, stride);
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < 3 * width; x++) {
+					assertEquals(chunkyOutput[y * 3 * width + x], output[2 + y * stride + x]);
+				}
+			}
+
+			// Planar lines, with planes of all the lines
+			int plane = width * height;
+			input = new byte[3 * plane];
+			for (int i = 0; i < chunkyInput.length; i++) {
+				input[(i % 3) * plane + i / 3] = chunkyInput[i];
+			}
+			output = new byte[input.length];
+			planar.transform(input, 0, output, 0, width, height, width, width);
+			for (int i = 0; i < chunkyOutput.length; i++) {
+				assertEquals(chunkyOutput[i], output[(i % 3) * plane + i / 3]);
+			}
+		} finally {
+			planar.dispose();
+			chunky.dispose();
+			adobe.dispose();
+			srgb.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransform#transform(byte[], int, byte[], int, int)} with planar pixel data bigger
+	 * than {@link IccTransform#MAX_CALL_BYTES}, transformed by several native calls.
+	 * @throws LCMS4JException On unexpected error.
+	 */
+	@Test
+	public void testTransformPlanarSplit() throws LCMS4JException {
+		IccProfile srgb = new IccProfile(IccProfile.PROFILE_SRGB);
+		IccProfile adobe = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+		IccTransform chunky = new IccTransform(srgb, LCMS4J.TYPE_RGB_8, adobe, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		IccTransform planar = new IccTransform(srgb, LCMS4J.TYPE_RGB_8_PLANAR, adobe, LCMS4J.TYPE_RGB_8_PLANAR, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+		try {
+			int pixels = IccTransform.MAX_CALL_BYTES / 3 + 1234;
+			byte[] chunkyInput = samplePixels(pixels);
+			byte[] chunkyOutput = new byte[chunkyInput.length];
+			chunky.transform(chunkyInput, chunkyOutput, pixels);
+
+			// Planes of all the pixels, after 3 bytes of offset
+			byte[] input = new byte[3 + 3 * pixels];
+			for (int i = 0; i < chunkyInput.length; i++) {
+				input[3 + (i % 3) * pixels + i / 3] = chunkyInput[i];
+			}
+			byte[] output = new byte[input.length];
+			planar.transform(input, 3, output, 3, pixels);
+			for (int i = 0; i < chunkyOutput.length; i++) {
+				assertEquals(chunkyOutput[i], output[3 + (i % 3) * pixels + i / 3]);
+			}
+		} finally {
+			planar.dispose();
+			chunky.dispose();
+			adobe.dispose();
+			srgb.dispose();
+		}
+	}
+}
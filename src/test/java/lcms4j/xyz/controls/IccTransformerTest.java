@@ -1,19 +1,37 @@
 package lcms4j.xyz.controls;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.awt.Rectangle;
 import java.awt.color.ICC_Profile;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import javax.imageio.ImageIO;
 
 import lcms4j.xyz.LCMS4J;
 import lcms4j.xyz.imaging.ImageMetadata;
+import lcms4j.xyz.imaging.ImageSource;
+import lcms4j.xyz.imaging.ImageType;
 import lcms4j.xyz.imaging.ImageWriter;
 import org.junit.Test;
 
@@ -177,7 +195,444 @@ public class IccTransformerTest {
 		System.out.println("> IccTransformer.transform(File, ICC_Profile) finished.");				
 	}
 	
-	
+
+	/**
+	 * Test method for {@link IccTransformer#transformAll(Path, Path, BatchOptions)}.
+	 */
+	@Test
+	public void testTransformAll() {
+		// Define paths
+		String resourcesPath = "src/test/resources/";
+		File inputFolder = new File(resourcesPath + "input");
+		File outputFolder = new File(resourcesPath + "output/batch");
+		File expectedFolder = new File(resourcesPath + "expected");
+		
+		// Perform conversions, with a single slot queue between stages
+		IccProfile destProfile = null;
+		IccTransformer transformer = null;
+		try {
+			destProfile = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			transformer = new IccTransformer(destProfile.getICC_Profile(), LCMS4J.INTENT_RELATIVE_COLORIMETRIC, true);
+			BatchOptions options = new BatchOptions();
+			options.setQueueCapacity(1);
+			Map<Path, LCMS4JException> failures = transformer.transformAll(inputFolder.toPath(), outputFolder.toPath(), options);
+			assertTrue("Failed files: " + failures, failures.isEmpty());
+		} catch (LCMS4JException e) {
+			fail("LCMS4J Exception: " + e.getMessage());
+		} finally {
+			if (transformer != null) transformer.dispose();
+			if (destProfile != null) destProfile.dispose();
+		}
+		
+		// Test results
+		File[] inputFiles = inputFolder.listFiles((dir, name)-> name.toLowerCase().matches(".*\\.(jpe?g|png)"));
+        assert inputFiles != null;
+        for (File in : inputFiles) {
+			File out = new File(outputFolder, in.getName());
+			assertTrue(in.getName() + " was not transformed", out.isFile());
+			File expected = new File(expectedFolder, "converted-" + in.getName());
+			assertTrue(out.getName() + " did not result as expected", compareFiles(out, expected));
+			assertTrue("Can't delete output file: " + out.getName(), out.delete());
+		}
+		assertEquals(0, outputFolder.list().length);
+
+		// Source file with a mixed-case extension
+		Path batchFolder = null;
+		IccProfile batchProfile = null;
+		IccTransformer batchTransformer = null;
+		try {
+			batchFolder = Files.createTempDirectory("lcms4j-batch");
+			Files.copy(new File(inputFolder, "image-srgb.jpg").toPath(), batchFolder.resolve("image-srgb.Jpg"));
+			batchProfile = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			batchTransformer = new IccTransformer(batchProfile.getICC_Profile(), LCMS4J.INTENT_RELATIVE_COLORIMETRIC, true);
+			Map<Path, LCMS4JException> failures = batchTransformer.transformAll(batchFolder, batchFolder.resolve("output"), null);
+			assertTrue("Failed files: " + failures, failures.isEmpty());
+			File out = batchFolder.resolve("output").resolve("image-srgb.Jpg").toFile();
+			assertTrue("image-srgb.Jpg was not transformed", out.isFile());
+			assertTrue(out.getName() + " did not result as expected", compareFiles(out, new File(expectedFolder, "converted-image-srgb.jpg")));
+		} catch (LCMS4JException | IOException e) {
+			fail("Exception: " + e.getMessage());
+		} finally {
+			if (batchTransformer != null) batchTransformer.dispose();
+			if (batchProfile != null) batchProfile.dispose();
+			if (batchFolder != null) {
+				Path output = batchFolder.resolve("output");
+				for (Path path : new Path[] {output.resolve("image-srgb.Jpg"), output, batchFolder.resolve("image-srgb.Jpg"), batchFolder}) {
+					path.toFile().delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransformer#transformAsync(File, File)}.
+	 */
+	@Test
+	public void testTransformAsync() {
+		// Define paths
+		String resourcesPath = "src/test/resources/";
+		File inputFolder = new File(resourcesPath + "input");
+		File outputFolder = new File(resourcesPath + "output/async");
+		File expectedFolder = new File(resourcesPath + "expected");
+		assertTrue("Can't create outputfolder", outputFolder.isDirectory() || outputFolder.mkdirs());
+		
+		// Perform all conversions at once
+		IccProfile destProfile = null;
+		IccTransformer transformer = null;
+		File[] inputFiles = inputFolder.listFiles((dir, name)-> name.toLowerCase().matches(".*\\.(jpe?g|png)"));
+        assert inputFiles != null;
+		try {
+			destProfile = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			transformer = new IccTransformer(destProfile.getICC_Profile(), LCMS4J.INTENT_RELATIVE_COLORIMETRIC, true);
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[inputFiles.length];
+			for (int i=0; i<inputFiles.length; i++) {
+				futures[i] = transformer.transformAsync(inputFiles[i], new File(outputFolder, inputFiles[i].getName()));
+			}
+			CompletableFuture.allOf(futures).join();
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		} finally {
+			if (transformer != null) transformer.dispose();
+			if (destProfile != null) destProfile.dispose();
+		}
+		
+		// Test results
+		for (File in : inputFiles) {
+			File out = new File(outputFolder, in.getName());
+			File expected = new File(expectedFolder, "converted-" + in.getName());
+			assertTrue(out.getName() + " did not result as expected", compareFiles(out, expected));
+			assertTrue("Can't delete output file: " + out.getName(), out.delete());
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransformer#transformStreaming(File, File, int)} and
+	 * {@link IccTransformer#transformStreaming(File, File)}.
+	 */
+	@Test
+	public void testTransformStreaming() {
+		// Define paths
+		String resourcesPath = "src/test/resources/";
+		File inputFolder = new File(resourcesPath + "input");
+		File outputFolder = new File(resourcesPath + "output/streaming");
+		assertTrue("Can't create outputfolder", outputFolder.isDirectory() || outputFolder.mkdirs());
+		
+		// Streaming transformations must have the same pixels as complete transformations
+		IccProfile destProfile = null;
+		IccTransformer transformer = null;
+		File[] inputFiles = inputFolder.listFiles((dir, name)-> name.toLowerCase().matches(".*\\.(jpe?g|png)"));
+        assert inputFiles != null;
+		try {
+			destProfile = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			transformer = new IccTransformer(destProfile.getICC_Profile(), LCMS4J.INTENT_RELATIVE_COLORIMETRIC, true);
+			for (File in : inputFiles) {
+				File out = new File(outputFolder, in.getName() + ".png");
+				transformer.transformStreaming(in, out, 7);
+				BufferedImage expected = transformer.transform(in);
+				BufferedImage streamed = ImageIO.read(out);
+				assertNotNull("Unable to load image: " + out.getAbsolutePath(), streamed);
+				assertArrayEquals(in.getName() + " did not result as expected", 
+						expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()),
+						streamed.getRGB(0, 0, streamed.getWidth(), streamed.getHeight(), null, 0, streamed.getWidth()));
+				assertNotNull(ImageMetadata.getInstance(out).getIccProfile());
+				assertTrue("Can't delete output file: " + out.getName(), out.delete());
+
+				// Default strips
+				transformer.transformStreaming(in, out);
+				streamed = ImageIO.read(out);
+				assertNotNull("Unable to load image: " + out.getAbsolutePath(), streamed);
+				assertArrayEquals(in.getName() + " did not result as expected with default strips", 
+						expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()),
+						streamed.getRGB(0, 0, streamed.getWidth(), streamed.getHeight(), null, 0, streamed.getWidth()));
+				assertTrue("Can't delete output file: " + out.getName(), out.delete());
+			}
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		} finally {
+			if (transformer != null) transformer.dispose();
+			if (destProfile != null) destProfile.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransformer#transformThumbnail(File, int)}.
+	 */
+	@Test
+	public void testTransformThumbnail() {
+		File inputFolder = new File("src/test/resources/input");
+
+		// Thumbnail pixels must be the same as the subsampled pixels of complete transformations
+		IccProfile destProfile = null;
+		IccTransformer transformer = null;
+		File[] inputFiles = inputFolder.listFiles((dir, name)-> name.toLowerCase().matches(".*\\.(jpe?g|png)"));
+        assert inputFiles != null;
+		try {
+			destProfile = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			transformer = new IccTransformer(destProfile.getICC_Profile(), LCMS4J.INTENT_RELATIVE_COLORIMETRIC, true);
+			for (File in : inputFiles) {
+				BufferedImage expected = transformer.transform(in);
+				BufferedImage thumbnail = transformer.transformThumbnail(in, 100);
+				int subsampling = (Math.max(expected.getWidth(), expected.getHeight()) + 99) / 100;
+				assertEquals(in.getName(), (expected.getWidth() + subsampling - 1) / subsampling, thumbnail.getWidth());
+				assertEquals(in.getName(), (expected.getHeight() + subsampling - 1) / subsampling, thumbnail.getHeight());
+				assertTrue(in.getName(), Math.max(thumbnail.getWidth(), thumbnail.getHeight()) <= 100);
+				for (int y=0; y<thumbnail.getHeight(); y++) {
+					for (int x=0; x<thumbnail.getWidth(); x++) {
+						assertEquals(in.getName() + " did not result as expected",
+								expected.getRGB(x * subsampling, y * subsampling), thumbnail.getRGB(x, y));
+					}
+				}
+			}
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		} finally {
+			if (transformer != null) transformer.dispose();
+			if (destProfile != null) destProfile.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransformer#transformEmbeddedThumbnail(File)}.
+	 */
+	@Test
+	public void testTransformEmbeddedThumbnail() {
+		File inputFolder = new File("src/test/resources/input");
+
+		// Embedded thumbnails must look like thumbnails of the main image
+		IccProfile destProfile = null;
+		IccTransformer transformer = null;
+		File[] inputFiles = inputFolder.listFiles((dir, name)-> name.toLowerCase().matches(".*\\.(jpe?g|png)"));
+        assert inputFiles != null;
+		try {
+			destProfile = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			transformer = new IccTransformer(destProfile.getICC_Profile(), LCMS4J.INTENT_RELATIVE_COLORIMETRIC, true);
+			for (File in : inputFiles) {
+				BufferedImage thumbnail = transformer.transformEmbeddedThumbnail(in);
+				if (in.getName().endsWith(".png")) {
+					assertNull(in.getName(), thumbnail);
+					continue;
+				}
+				assertNotNull(in.getName(), thumbnail);
+				BufferedImage expected = transformer.transformThumbnail(in, Math.max(thumbnail.getWidth(), thumbnail.getHeight()));
+				double[] thumbnailMean = getMeanRGB(thumbnail);
+				double[] expectedMean = getMeanRGB(expected);
+				for (int c=0; c<3; c++) {
+					assertEquals(in.getName() + " did not result as expected", expectedMean[c], thumbnailMean[c], 3.0);
+				}
+			}
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		} finally {
+			if (transformer != null) transformer.dispose();
+			if (destProfile != null) destProfile.dispose();
+		}
+	}
+
+	private static double[] getMeanRGB(BufferedImage image) {
+		double[] mean = new double[3];
+		for (int y=0; y<image.getHeight(); y++) {
+			for (int x=0; x<image.getWidth(); x++) {
+				int rgb = image.getRGB(x, y);
+				for (int c=0; c<3; c++) {
+					mean[c] += (rgb >> (16 - 8*c)) & 0xFF;
+				}
+			}
+		}
+		for (int c=0; c<3; c++) {
+			mean[c] /= image.getWidth() * image.getHeight();
+		}
+		return mean;
+	}
+
+	/**
+	 * Test method for {@link IccTransformer#transform(java.io.InputStream, java.io.OutputStream, ImageType)}.
+	 */
+	@Test
+	public void testTransformStream() {
+		File inputFolder = new File("src/test/resources/input");
+		File expectedFolder = new File("src/test/resources/expected");
+
+		// Streamed transformations must be identical to file transformations
+		IccProfile destProfile = null;
+		IccTransformer transformer = null;
+		try {
+			destProfile = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			transformer = new IccTransformer(destProfile.getICC_Profile(), LCMS4J.INTENT_RELATIVE_COLORIMETRIC, true);
+			for (String name : new String[] {"image-srgb.jpg", "image-fogra27.jpg", "image-srgb-transparency.png"}) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				try (InputStream in = new FileInputStream(new File(inputFolder, name))) {
+					transformer.transform(in, out, name.endsWith(".png") ? ImageType.PNG : ImageType.JPEG);
+				}
+				byte[] expected = Files.readAllBytes(new File(expectedFolder, "converted-" + name).toPath());
+				assertArrayEquals(name + " did not result as expected", expected, out.toByteArray());
+			}
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		} finally {
+			if (transformer != null) transformer.dispose();
+			if (destProfile != null) destProfile.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransformer#transform(ImageSource)} and {@link IccTransformer#transform(ImageSource, File)}.
+	 */
+	@Test
+	public void testTransformImageSource() {
+		File inputFolder = new File("src/test/resources/input");
+		File expectedFolder = new File("src/test/resources/expected");
+		File outputFolder = new File("src/test/resources/output/source");
+		assertTrue("Can't create outputfolder", outputFolder.isDirectory() || outputFolder.mkdirs());
+
+		// Transformations of sources in memory must be identical to file transformations
+		IccProfile destProfile = null;
+		IccTransformer transformer = null;
+		try {
+			destProfile = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			transformer = new IccTransformer(destProfile.getICC_Profile(), LCMS4J.INTENT_RELATIVE_COLORIMETRIC, true);
+			for (String name : new String[] {"image-srgb.jpg", "image-fogra27.jpg", "image-grey.png", "image-srgb-transparency.png"}) {
+				File in = new File(inputFolder, name);
+				ImageSource source = new ImageSource(Files.readAllBytes(in.toPath()));
+				ImageMetadata md = source.getMetadata();
+				BufferedImage expected = transformer.transform(in);
+				BufferedImage image = transformer.transform(source);
+				assertEquals(name, expected.getType(), image.getType());
+				assertEquals(name, expected.getWidth(), image.getWidth());
+				assertEquals(name, expected.getHeight(), image.getHeight());
+				assertArrayEquals(name + " did not result as expected",
+						expected.getRaster().getPixels(0, 0, expected.getWidth(), expected.getHeight(), (int[]) null),
+						image.getRaster().getPixels(0, 0, image.getWidth(), image.getHeight(), (int[]) null));
+
+				File out = new File(outputFolder, "converted-" + name);
+				transformer.transform(source, out);
+				assertTrue(name + " did not result as expected", compareFiles(out, new File(expectedFolder, "converted-" + name)));
+
+				// Metadata is parsed only once for all the transformations
+				assertSame(md, source.getMetadata());
+			}
+		} catch (Exception e) {
+			fail("Exception: " + e.getMessage());
+		} finally {
+			if (transformer != null) transformer.dispose();
+			if (destProfile != null) destProfile.dispose();
+		}
+	}
+
+	/**
+	 * Test for {@link IccTransformer#transform(BufferedImage, IccProfile, IccProfile, int, int, int, int)}.
+	 */
+	@Test
+	public void testTransformParallel() {
+		IccProfile src = null;
+		IccProfile dst = null;
+		try {
+			src = new IccProfile(IccProfile.PROFILE_SRGB);
+			dst = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+			
+			// Image with all kinds of colors, and a number of rows that does not fit bands evenly
+			BufferedImage image = new BufferedImage(301, 257, BufferedImage.TYPE_3BYTE_BGR);
+			byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+			for (int i=0; i<data.length; i++) {
+				data[i] = (byte) (i * 31 + (i / 3) * 7);
+			}
+			
+			// Parallel transformations must be identical to serial transformation
+			BufferedImage serial = IccTransformer.transform(image, src, dst, LCMS4J.INTENT_PERCEPTUAL, 0);
+			byte[] expected = ((DataBufferByte) serial.getRaster().getDataBuffer()).getData();
+			for (int parallelism : new int[] {2, 3, 8, IccTransformer.PARALLELISM_AUTO}) {
+				BufferedImage parallel = IccTransformer.transform(image, src, dst, LCMS4J.INTENT_PERCEPTUAL, 0, parallelism, 16);
+				assertArrayEquals("Parallelism " + parallelism, expected, ((DataBufferByte) parallel.getRaster().getDataBuffer()).getData());
+			}
+		} catch (LCMS4JException e) {
+			fail("LCMS4J Exception: " + e.getMessage());
+		} finally {
+			if (src != null) src.dispose();
+			if (dst != null) dst.dispose();
+		}
+	}
+
+	/**
+	 * Test for {@link IccTransformer#transform(BufferedImage, IccProfile, IccProfile, int, int)} with int-packed images.
+	 */
+	@Test
+	public void testTransformIntPacked() {
+		IccProfile src = null;
+		IccProfile dst = null;
+		try {
+			src = new IccProfile(IccProfile.PROFILE_SRGB);
+			dst = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+
+			// Packed int images must transform as byte interleaved images with the same pixels
+			int[][] types = {
+					{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR},
+					{BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_3BYTE_BGR},
+					{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR}
+			};
+			for (int[] type : types) {
+				BufferedImage packed = new BufferedImage(67, 43, type[0]);
+				BufferedImage interleaved = new BufferedImage(67, 43, type[1]);
+				for (int y=0; y<packed.getHeight(); y++) {
+					for (int x=0; x<packed.getWidth(); x++) {
+						int argb = (x * 0x3F1D27 + y * 0x1B45E3) ^ (x << 25);
+						packed.setRGB(x, y, argb);
+						interleaved.setRGB(x, y, argb);
+					}
+				}
+				// Transform a region of interest, to check offsets and strides
+				BufferedImage packedOutput = IccTransformer.transform(packed.getSubimage(5, 3, 50, 30), src, dst, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+				BufferedImage expected = IccTransformer.transform(interleaved.getSubimage(5, 3, 50, 30), src, dst, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+				assertEquals(expected.getType(), packedOutput.getType());
+				assertArrayEquals("Image type " + type[0], expected.getRGB(0, 0, 50, 30, null, 0, 50), packedOutput.getRGB(0, 0, 50, 30, null, 0, 50));
+			}
+		} catch (LCMS4JException e) {
+			fail("LCMS4J Exception: " + e.getMessage());
+		} finally {
+			if (src != null) src.dispose();
+			if (dst != null) dst.dispose();
+		}
+	}
+
+	/**
+	 * Test for {@link IccTransformer#transformInPlace(BufferedImage, java.awt.Rectangle, IccProfile, IccProfile)}.
+	 */
+	@Test
+	public void testTransformInPlace() {
+		IccProfile src = null;
+		IccProfile dst = null;
+		try {
+			src = new IccProfile(IccProfile.PROFILE_SRGB);
+			dst = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+
+			Rectangle roi = new Rectangle(7, 5, 40, 20);
+			for (int type : new int[] {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB}) {
+				BufferedImage image = new BufferedImage(61, 37, type);
+				for (int y=0; y<image.getHeight(); y++) {
+					for (int x=0; x<image.getWidth(); x++) {
+						image.setRGB(x, y, (x * 0x3F1D27 + y * 0x1B45E3) ^ (y << 26));
+					}
+				}
+				int[] original = image.getRGB(0, 0, 61, 37, null, 0, 61);
+				BufferedImage expected = IccTransformer.transform(image.getSubimage(roi.x, roi.y, roi.width, roi.height),
+						src, dst, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+
+				IccTransformer.transformInPlace(image, roi, src, dst);
+
+				// Region holds transformed pixels, and the rest of the image is untouched
+				for (int y=0; y<image.getHeight(); y++) {
+					for (int x=0; x<image.getWidth(); x++) {
+						int rgb = roi.contains(x, y) ? expected.getRGB(x - roi.x, y - roi.y) : original[y * 61 + x];
+						assertEquals("Image type " + type + " at " + x + "," + y, rgb, image.getRGB(x, y));
+					}
+				}
+			}
+		} catch (LCMS4JException e) {
+			fail("LCMS4J Exception: " + e.getMessage());
+		} finally {
+			if (src != null) src.dispose();
+			if (dst != null) dst.dispose();
+		}
+	}
+
 	/**
 	 * Checks if two files have identical byte content.
 	 * @param file1 First file to compare.
@@ -221,4 +676,90 @@ public class IccTransformerTest {
 		return true;
 	}
 	
+
+	/**
+	 * Test method for {@link IccTransformer#transform(BufferedImage, IccProfile, IccProfile, int, int)} with 16-bit images,
+	 * which must keep their bit depth.
+	 */
+	@Test
+	public void testTransformUShort() {
+		IccProfile gray = null;
+		try {
+			gray = new IccProfile(IccProfile.PROFILE_GRAY);
+			BufferedImage image = new BufferedImage(16, 4, BufferedImage.TYPE_USHORT_GRAY);
+			short[] input = ((DataBufferUShort) image.getRaster().getDataBuffer()).getData();
+			for (int i=0; i<input.length; i++) {
+				input[i] = (short) (i * 1021 + 1);
+			}
+			BufferedImage output = IccTransformer.transform(image, gray, gray, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+			assertEquals(DataBuffer.TYPE_USHORT, output.getRaster().getDataBuffer().getDataType());
+			assertEquals(1, output.getRaster().getNumBands());
+			short[] result = ((DataBufferUShort) output.getRaster().getDataBuffer()).getData();
+			for (int i=0; i<input.length; i++) {
+				// Identity transform keeps 16-bit precision
+				assertEquals(input[i] & 0xFFFF, result[i] & 0xFFFF, 1);
+			}
+		} catch (LCMS4JException e) {
+			fail("LCMS4J Exception: " + e.getMessage());
+		} finally {
+			if (gray != null) gray.dispose();
+		}
+	}
+
+	/**
+	 * Test method for {@link IccTransformer#transform(BufferedImage, IccProfile, IccProfile, int, int)} with alpha
+	 * channels, which must be kept, and with premultiplied alpha.
+	 */
+	@Test
+	public void testTransformAlpha() {
+		IccProfile src = null;
+		IccProfile dst = null;
+		try {
+			src = new IccProfile(IccProfile.PROFILE_SRGB);
+			dst = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+
+			// Alpha is unchanged, and colors are transformed as in an opaque image
+			BufferedImage transparent = new BufferedImage(16, 8, BufferedImage.TYPE_4BYTE_ABGR);
+			BufferedImage opaque = new BufferedImage(16, 8, BufferedImage.TYPE_3BYTE_BGR);
+			for (int y=0; y<transparent.getHeight(); y++) {
+				for (int x=0; x<transparent.getWidth(); x++) {
+					int rgb = (x * 0x3F1D27 + y * 0x1B45E3) & 0xFFFFFF;
+					transparent.setRGB(x, y, ((x * 16 + y) << 24) | rgb);
+					opaque.setRGB(x, y, rgb);
+				}
+			}
+			BufferedImage output = IccTransformer.transform(transparent, src, dst, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+			BufferedImage expected = IccTransformer.transform(opaque, src, dst, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+			assertTrue(output.getColorModel().hasAlpha());
+			for (int y=0; y<output.getHeight(); y++) {
+				for (int x=0; x<output.getWidth(); x++) {
+					assertEquals(x * 16 + y, output.getRaster().getSample(x, y, 3));
+					for (int b=0; b<3; b++) {
+						assertEquals(expected.getRaster().getSample(x, y, b), output.getRaster().getSample(x, y, b));
+					}
+				}
+			}
+
+			// Premultiplied colors are un-premultiplied before conversion, into a straight alpha image
+			BufferedImage premultiplied = new BufferedImage(3, 1, BufferedImage.TYPE_4BYTE_ABGR_PRE);
+			premultiplied.getRaster().setPixel(0, 0, new int[] {100, 50, 25, 128});
+			premultiplied.getRaster().setPixel(1, 0, new int[] {0, 0, 0, 0});
+			premultiplied.getRaster().setPixel(2, 0, new int[] {255, 255, 255, 255});
+			output = IccTransformer.transform(premultiplied, src, src, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+			assertEquals(128, output.getRaster().getSample(0, 0, 3));
+			assertEquals(0, output.getRaster().getSample(1, 0, 3));
+			assertEquals(255, output.getRaster().getSample(2, 0, 3));
+			assertFalse(output.isAlphaPremultiplied());
+			int[] pixel = output.getRaster().getPixel(0, 0, (int[]) null);
+			int[] straight = {100 * 255 / 128, 50 * 255 / 128, 25 * 255 / 128};
+			for (int b=0; b<3; b++) {
+				assertEquals(straight[b], pixel[b], 1);
+			}
+		} catch (LCMS4JException e) {
+			fail("LCMS4J Exception: " + e.getMessage());
+		} finally {
+			if (src != null) src.dispose();
+			if (dst != null) dst.dispose();
+		}
+	}
 }
@@ -0,0 +1,72 @@
+package lcms4j.xyz.controls;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link JpegColorConverter} class
+ */
+public class JpegColorConverterTest {
+
+	/**
+	 * Test method for {@link JpegColorConverter#convertYCbCrToRGB(byte[], int)}.<br>
+	 * All YCbCr values are compared with the floating point formulas of the JFIF specification.
+	 */
+	@Test
+	public void testConvertYCbCrToRGB() {
+		byte[] data = new byte[3 << 24];
+		for (int i=0; i < (1 << 24); i++) {
+			data[3*i]   = (byte) (i >> 16);
+			data[3*i+1] = (byte) (i >> 8);
+			data[3*i+2] = (byte) i;
+		}
+		JpegColorConverter.convertYCbCrToRGB(data, 1);
+
+		for (int i=0; i < (1 << 24); i++) {
+			double y  = (i >> 16) & 0xFF;
+			double cb = (i >> 8) & 0xFF;
+			double cr = i & 0xFF;
+			assertEquals(clip8bit(y + 1.402*(cr - 128.0)), data[3*i] & 0xFF);
+			assertEquals(clip8bit(y + 1.772*(cb - 128.0)), data[3*i+2] & 0xFF);
+			assertEquals(clip8bit(y - 0.34414*(cb - 128.0) - 0.71414*(cr - 128.0)), data[3*i+1] & 0xFF);
+		}
+	}
+
+	/**
+	 * Test method for {@link JpegColorConverter#convertYcckToCmyk(byte[], int)}.
+	 */
+	@Test
+	public void testConvertYcckToCmyk() {
+		byte[] data = {(byte) 200, 90, (byte) 160, 30, 16, (byte) 128, (byte) 128, (byte) 255};
+		JpegColorConverter.convertYcckToCmyk(data, 1);
+		assertArrayEquals(new byte[] {(byte) 245, (byte) 190, (byte) 133, (byte) 225, 16, 16, 16, 0}, data);
+	}
+
+	/**
+	 * Test method for {@link JpegColorConverter#convertYCbCrToRGB(byte[], int)}, in parallel.
+	 */
+	@Test
+	public void testConvertParallel() {
+		int numPixels = 5 * JpegColorConverter.MIN_PARALLEL_PIXELS + 17;
+		byte[] serial = new byte[4 * numPixels];
+		new Random(42).nextBytes(serial);
+		byte[] parallel = serial.clone();
+		JpegColorConverter.convertYcckToCmyk(serial, 1);
+		JpegColorConverter.convertYcckToCmyk(parallel, IccTransformer.PARALLELISM_AUTO);
+		assertArrayEquals(serial, parallel);
+
+		serial = new byte[3 * numPixels];
+		new Random(7).nextBytes(serial);
+		parallel = serial.clone();
+		JpegColorConverter.convertYCbCrToRGB(serial, 1);
+		JpegColorConverter.convertYCbCrToRGB(parallel, 3);
+		assertArrayEquals(serial, parallel);
+	}
+
+	private static int clip8bit(double value) {
+		return (int) Math.max(0, Math.min(255, Math.round(value)));
+	}
+}
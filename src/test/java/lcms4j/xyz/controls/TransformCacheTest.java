@@ -0,0 +1,58 @@
+package lcms4j.xyz.controls;
+
+import static org.junit.Assert.*;
+
+import lcms4j.xyz.LCMS4J;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TransformCache} class
+ */
+public class TransformCacheTest {
+
+	/**
+	 * Test method for {@link TransformCache#getTransform(IccProfile, int, IccProfile, int, int, int)}.
+	 */
+	@Test
+	public void testGetTransform() {
+		IccProfile src = null;
+		IccProfile dst = null;
+		long maxSize = TransformCache.getMaxSize();
+		try {
+			TransformCache.clear();
+			src = new IccProfile(IccProfile.PROFILE_SRGB);
+			dst = new IccProfile(IccProfile.PROFILE_ADOBERGB);
+
+			// Same parameters share a single cached transform
+			IccTransform t1 = TransformCache.getTransform(src, LCMS4J.TYPE_RGB_8, dst, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_PERCEPTUAL, 0);
+			IccTransform t2 = TransformCache.getTransform(src, LCMS4J.TYPE_RGB_8, dst, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_PERCEPTUAL, 0);
+			assertEquals(1, TransformCache.getCount());
+			byte[] in = {(byte)255, 0, 0};
+			byte[] out1 = new byte[3];
+			byte[] out2 = new byte[3];
+			t1.transform(in, 0, out1, 0, 1);
+			t2.transform(in, 0, out2, 0, 1);
+			assertArrayEquals(out1, out2);
+			t1.dispose();
+			t2.dispose();
+
+			// Any different parameter needs another transform
+			IccTransform t3 = TransformCache.getTransform(src, LCMS4J.TYPE_RGB_8, dst, LCMS4J.TYPE_RGB_8, LCMS4J.INTENT_RELATIVE_COLORIMETRIC, 0);
+			assertEquals(2, TransformCache.getCount());
+
+			// Transforms in use are not evicted
+			TransformCache.setMaxSize(1);
+			assertEquals(1, TransformCache.getCount());
+			t3.transform(in, 0, out1, 0, 1);
+			t3.dispose();
+			assertEquals(0, TransformCache.getCount());
+			assertEquals(0, TransformCache.getSize());
+		} catch (LCMS4JException e) {
+			fail("LCMS4J Exception: " + e.getMessage());
+		} finally {
+			TransformCache.setMaxSize(maxSize);
+			if (src != null) src.dispose();
+			if (dst != null) dst.dispose();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package lcms4j.xyz.imaging;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ByteArrayImageInputStream} class
+ */
+public class ByteArrayImageInputStreamTest {
+
+	/**
+	 * Creates a sample array, where each byte holds its own index.
+	 * @param length Length of the array.
+	 * @return Sample array.
+	 */
+	private static byte[] sampleData(int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) i;
+		}
+		return data;
+	}
+
+	/**
+	 * Test method for {@link ByteArrayImageInputStream#read()} and {@link ByteArrayImageInputStream#length()} on a
+	 * region of an array.
+	 * @throws IOException On unexpected error.
+	 */
+	@Test
+	public void testRead() throws IOException {
+		ByteArrayImageInputStream is = new ByteArrayImageInputStream(sampleData(20), 5, 10);
+		assertEquals(10, is.length());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, is.getStreamPosition());
+			assertEquals(5 + i, is.read());
+		}
+		assertEquals(-1, is.read());
+		assertEquals(10, is.getStreamPosition());
+		is.close();
+	}
+
+	/**
+	 * Test method for {@link ByteArrayImageInputStream#read(byte[], int, int)} on a region of an array, up to the end
+	 * of the stream.
+	 * @throws IOException On unexpected error.
+	 */
+	@Test
+	public void testReadArray() throws IOException {
+		ByteArrayImageInputStream is = new ByteArrayImageInputStream(sampleData(20), 5, 10);
+		byte[] buffer = new byte[8];
+		assertEquals(0, is.read(buffer, 0, 0));
+		assertEquals(6, is.read(buffer, 2, 6));
+		assertArrayEquals(new byte[] {0, 0, 5, 6, 7, 8, 9, 10}, buffer);
+
+		// Only the bytes left before the end of the region are read
+		assertEquals(4, is.read(buffer, 0, 8));
+		assertArrayEquals(new byte[] {11, 12, 13, 14, 7, 8}, Arrays.copyOf(buffer, 6));
+		assertEquals(-1, is.read(buffer, 0, 8));
+		assertEquals(0, is.read(buffer, 0, 0));
+		is.close();
+	}
+
+	/**
+	 * Test method for {@link ByteArrayImageInputStream#seek(long)}, inside and past the end of the stream.
+	 * @throws IOException On unexpected error.
+	 */
+	@Test
+	public void testSeek() throws IOException {
+		ByteArrayImageInputStream is = new ByteArrayImageInputStream(sampleData(20), 5, 10);
+		is.seek(7);
+		assertEquals(12, is.read());
+		is.seek(0);
+		assertEquals(5, is.readByte());
+		assertEquals((6 << 8) | 7, is.readUnsignedShort());
+
+		// Past the end, nothing is read
+		is.seek(10);
+		assertEquals(-1, is.read());
+		is.seek(12);
+		assertEquals(-1, is.read());
+		assertEquals(-1, is.read(new byte[4], 0, 4));
+
+		// Back inside the stream after reaching its end
+		is.seek(9);
+		assertEquals(14, is.read());
+		assertEquals(-1, is.read());
+		is.close();
+		try {
+			is.read();
+			fail("Read from closed stream not detected");
+		} catch (IOException e) {
+			/* Expected */
+		}
+	}
+
+	/**
+	 * Test method for {@link ByteArrayImageInputStream#length()} on empty regions.
+	 * @throws IOException On unexpected error.
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		ByteArrayImageInputStream is = new ByteArrayImageInputStream(sampleData(4), 4, 0);
+		assertEquals(0, is.length());
+		assertEquals(-1, is.read());
+		assertEquals(-1, is.read(new byte[1], 0, 1));
+		is.close();
+	}
+}
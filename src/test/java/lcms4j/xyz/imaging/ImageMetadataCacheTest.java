@@ -0,0 +1,89 @@
+package lcms4j.xyz.imaging;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ImageMetadataCache} class
+ */
+public class ImageMetadataCacheTest {
+
+	/**
+	 * Test method for {@link ImageMetadata#getInstance(File)} with the cache enabled.
+	 */
+	@Test
+	public void testGetInstance() throws Exception {
+		File jpeg = new File("src/test/resources/input/image-srgb.jpg");
+		File png = new File("src/test/resources/input/image-srgb.png");
+		File copy = File.createTempFile("cache", ".jpg");
+		File invalid = File.createTempFile("invalid", ".jpg");
+		try {
+			ImageMetadataCache.clear();
+			ImageMetadataCache.setMaxSize(1024 * 1024);
+
+			// Repeated requests share the parsed metadata
+			ImageMetadata md = ImageMetadata.getInstance(jpeg);
+			assertSame(md, ImageMetadata.getInstance(jpeg));
+			assertSame(md, ImageMetadata.getInstance(new File(jpeg.getAbsolutePath())));
+			assertEquals(1, ImageMetadataCache.getCount());
+			assertTrue(ImageMetadataCache.getSize() > md.getIccProfile().getData().length);
+
+			// Shared metadata can not be loaded again
+			try {
+				((JPEGMetadata) md).load(png);
+				fail("Cached metadata loaded again");
+			} catch (IllegalStateException e) {
+				/* Expected */
+			}
+			assertEquals(ImageType.JPEG, md.getImageType());
+
+			// Changed files are parsed again
+			Files.copy(jpeg.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			assertTrue(copy.setLastModified(1000000000000L));
+			ImageMetadata copyMd = ImageMetadata.getInstance(copy);
+			assertSame(copyMd, ImageMetadata.getInstance(copy));
+			assertTrue(copy.setLastModified(1000000001000L));
+			assertNotSame(copyMd, ImageMetadata.getInstance(copy));
+			assertEquals(2, ImageMetadataCache.getCount());
+
+			// Least recently used metadata is evicted to fit the size budget
+			ImageMetadataCache.setMaxSize(ImageMetadataCache.getSize());
+			ImageMetadata pngMd = ImageMetadata.getInstance(png);
+			assertSame(pngMd, ImageMetadata.getInstance(png));
+			try {
+				((PNGMetadata) pngMd).load(png);
+				fail("Cached metadata loaded again");
+			} catch (IllegalStateException e) {
+				/* Expected */
+			}
+			assertTrue(new PNGMetadata().load(png));
+			assertTrue(ImageMetadataCache.getSize() <= ImageMetadataCache.getMaxSize());
+			assertNotSame(md, ImageMetadata.getInstance(jpeg));
+
+			// Files that can not be parsed are not cached
+			int count = ImageMetadataCache.getCount();
+			Files.write(invalid.toPath(), new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF});
+			ImageMetadata invalidMd = ImageMetadata.getInstance(invalid);
+			assertEquals(ImageType.JPEG, invalidMd.getImageType());
+			assertNotSame(invalidMd, ImageMetadata.getInstance(invalid));
+			assertEquals(count, ImageMetadataCache.getCount());
+			Files.copy(jpeg.toPath(), invalid.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			assertEquals(md.getWidth(), ImageMetadata.getInstance(invalid).getWidth());
+
+			// Disabled cache always parses files
+			ImageMetadataCache.setMaxSize(0);
+			assertEquals(0, ImageMetadataCache.getCount());
+			assertNotSame(ImageMetadata.getInstance(jpeg), ImageMetadata.getInstance(jpeg));
+		} finally {
+			ImageMetadataCache.setMaxSize(0);
+			ImageMetadataCache.clear();
+			copy.delete();
+			invalid.delete();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package lcms4j.xyz.imaging;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ImageMetadata} class
+ */
+public class ImageMetadataTest {
+
+	/** Folder of input test images */
+	private static final File INPUT_FOLDER = new File("src/test/resources/input");
+
+	/**
+	 * Test method for {@link ImageMetadata#getImageType(File)} and {@link ImageMetadata#getImageType(ByteBuffer)}.
+	 */
+	@Test
+	public void testGetImageType() {
+		assertEquals(ImageType.JPEG, ImageMetadata.getImageType(new File(INPUT_FOLDER, "image-srgb.jpg")));
+		assertEquals(ImageType.PNG, ImageMetadata.getImageType(new File(INPUT_FOLDER, "image-srgb.png")));
+		assertEquals(ImageType.UNKNOWN, ImageMetadata.getImageType(new File(INPUT_FOLDER, "missing.jpg")));
+
+		assertEquals(ImageType.TIFF_LE, ImageMetadata.getImageType(ByteBuffer.wrap(new byte[] {0x49, 0x49, 0x2A, 0x00, 8})));
+		assertEquals(ImageType.TIFF_BE, ImageMetadata.getImageType(ByteBuffer.wrap(new byte[] {0x4D, 0x4D, 0x00, 0x2A, 0})));
+		assertEquals(ImageType.BMP, ImageMetadata.getImageType(ByteBuffer.wrap(new byte[] {0x42, 0x4D, 0})));
+		assertEquals(ImageType.GIF, ImageMetadata.getImageType(ByteBuffer.wrap("GIF89a".getBytes())));
+		assertEquals(ImageType.UNKNOWN, ImageMetadata.getImageType(ByteBuffer.wrap("GIF8".getBytes())));
+		assertEquals(ImageType.UNKNOWN, ImageMetadata.getImageType(ByteBuffer.wrap("RIFF\0\0\0\0WAVE".getBytes())));
+		assertEquals(ImageType.UNKNOWN, ImageMetadata.getImageType(ByteBuffer.allocate(0)));
+
+		// Header after the position of the buffer
+		ByteBuffer header = ByteBuffer.wrap(new byte[] {0, (byte) 0xFF, (byte) 0xD8, (byte) 0xFF});
+		header.position(1);
+		assertEquals(ImageType.JPEG, ImageMetadata.getImageType(header));
+		assertEquals(1, header.position());
+	}
+
+	/**
+	 * Test method for {@link ImageMetadata#getInstance(byte[])} with image formats detected by the header.
+	 * @throws Exception On unexpected error.
+	 */
+	@Test
+	public void testGetInstanceFormats() throws Exception {
+		ByteArrayOutputStream gif = new ByteArrayOutputStream();
+		assertTrue(ImageIO.write(new BufferedImage(37, 21, BufferedImage.TYPE_BYTE_INDEXED), "gif", gif));
+		ImageMetadata md = ImageMetadata.getInstance(gif.toByteArray());
+		assertEquals(ImageType.GIF, md.getImageType());
+		assertEquals(37, md.getWidth());
+		assertEquals(21, md.getHeight());
+
+		ByteArrayOutputStream bmp = new ByteArrayOutputStream();
+		assertTrue(ImageIO.write(new BufferedImage(15, 9, BufferedImage.TYPE_3BYTE_BGR), "bmp", bmp));
+		md = ImageMetadata.getInstance(bmp.toByteArray());
+		assertEquals(ImageType.BMP, md.getImageType());
+		assertEquals(15, md.getWidth());
+		assertEquals(9, md.getHeight());
+
+		// Lossless WebP header: 300 x 200 px
+		int bits = (300 - 1) | (200 - 1) << 14;
+		byte[] webp = new byte[40];
+		System.arraycopy("RIFF\0\0\0\0WEBPVP8L".getBytes(), 0, webp, 0, 16);
+		webp[20] = 0x2F;
+		for (int i = 0; i < 4; i++) {
+			webp[21 + i] = (byte) (bits >>> (8 * i));
+		}
+		md = ImageMetadata.getInstance(webp);
+		assertEquals(ImageType.WEBP, md.getImageType());
+		assertEquals(300, md.getWidth());
+		assertEquals(200, md.getHeight());
+
+		// Known signature but invalid image
+		md = ImageMetadata.getInstance(new byte[] {(byte) 0xFF, (byte) 0xD8, 0, 0});
+		assertEquals(ImageType.JPEG, md.getImageType());
+		assertFalse(md instanceof JPEGMetadata);
+	}
+
+	/**
+	 * Test method for {@link ImageMetadata#readInstance(File)} with a BMP file, whose size is read from its header.
+	 * @throws Exception On unexpected error.
+	 */
+	@Test
+	public void testReadInstanceBmp() throws Exception {
+		File file = File.createTempFile("lcms4j-", ".bmp");
+		try {
+			assertTrue(ImageIO.write(new BufferedImage(15, 9, BufferedImage.TYPE_3BYTE_BGR), "bmp", file));
+			ImageMetadata md = ImageMetadata.readInstance(file);
+			assertEquals(ImageType.BMP, md.getImageType());
+			assertEquals(15, md.getWidth());
+			assertEquals(9, md.getHeight());
+			assertFalse(md.isFailed());
+		} finally {
+			assertTrue(file.delete());
+		}
+
+		// Top-down bitmap, with negative height
+		ByteBuffer header = ByteBuffer.allocate(ImageMetadata.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put((byte) 0x42).put((byte) 0x4D).putInt(14, 40).putInt(18, 640).putInt(22, -480);
+		ImageMetadata md = ImageMetadata.getInstance(header.array());
+		assertEquals(ImageType.BMP, md.getImageType());
+		assertEquals(640, md.getWidth());
+		assertEquals(480, md.getHeight());
+	}
+
+	/**
+	 * Test that images of unknown formats are failed, whether read from a file or from memory.
+	 * @throws Exception On unexpected error.
+	 */
+	@Test
+	public void testGetInstanceUnknownFormat() throws Exception {
+		byte[] data = "RIFF\0\0\0\0WAVE".getBytes();
+		assertTrue(ImageMetadata.getInstance(data).isFailed());
+		File file = File.createTempFile("lcms4j-", ".wav");
+		try {
+			Files.write(file.toPath(), data);
+			ImageMetadata md = ImageMetadata.readInstance(file);
+			assertEquals(ImageType.UNKNOWN, md.getImageType());
+			assertTrue(md.isFailed());
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package lcms4j.xyz.imaging;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ImageSource} class
+ */
+public class ImageSourceTest {
+
+	/** Folder of input test images */
+	private static final File INPUT_FOLDER = new File("src/test/resources/input");
+
+	/**
+	 * Test method for {@link ImageSource#getMetadata()}: metadata is parsed once, and matches the metadata of the file.
+	 * @throws IOException On unexpected error.
+	 */
+	@Test
+	public void testGetMetadata() throws IOException {
+		for (String name : new String[] {"image-srgb.jpg", "image-grey.png"}) {
+			File file = new File(INPUT_FOLDER, name);
+			ImageSource source = new ImageSource(file);
+			assertSame(file, source.getFile());
+			assertEquals(file.length(), source.getLength());
+			ImageMetadata md = source.getMetadata();
+			assertSame(md, source.getMetadata());
+			assertEquals(md.getImageType(), source.getImageType());
+
+			ImageMetadata expected = ImageMetadata.getInstance(file);
+			assertEquals(expected.getImageType(), md.getImageType());
+			assertEquals(expected.getWidth(), md.getWidth());
+			assertEquals(expected.getHeight(), md.getHeight());
+			assertArrayEquals(expected.getIccProfile().getData(), md.getIccProfile().getData());
+		}
+	}
+
+	/**
+	 * Test method for the constructors of {@link ImageSource} from images in memory.
+	 * @throws IOException On unexpected error.
+	 */
+	@Test
+	public void testSourcesInMemory() throws IOException {
+		byte[] data = Files.readAllBytes(new File(INPUT_FOLDER, "image-srgb.png").toPath());
+		byte[] padded = new byte[data.length + 10];
+		System.arraycopy(data, 0, padded, 3, data.length);
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+		direct.put(data).flip();
+		ImageSource[] sources = {
+				new ImageSource(data),
+				new ImageSource(padded, 3, data.length),
+				new ImageSource(ByteBuffer.wrap(padded, 3, data.length)),
+				new ImageSource(direct),
+				new ImageSource(new ByteArrayInputStream(data)),
+		};
+		for (ImageSource source : sources) {
+			assertNull(source.getFile());
+			assertEquals(data.length, source.getLength());
+			assertEquals(ImageType.PNG, source.getImageType());
+			assertEquals(1000, source.getMetadata().getWidth());
+			assertEquals(625, source.getMetadata().getHeight());
+		}
+		assertEquals(0, direct.position());
+
+		try {
+			new ImageSource(padded, 11, data.length);
+			fail("Region out of array bounds not detected");
+		} catch (IndexOutOfBoundsException e) {
+			/* Expected */
+		}
+	}
+
+	/**
+	 * Test method for {@link ImageSource#createImageInputStream()}: each stream reads the image from its start.
+	 * @throws IOException On unexpected error.
+	 */
+	@Test
+	public void testCreateImageInputStream() throws IOException {
+		File file = new File(INPUT_FOLDER, "image-srgb.jpg");
+		byte[] data = Files.readAllBytes(file.toPath());
+		byte[] padded = new byte[data.length + 2];
+		System.arraycopy(data, 0, padded, 1, data.length);
+		ImageSource source = new ImageSource(padded, 1, data.length);
+		BufferedImage expected = ImageIO.read(file);
+		for (int i = 0; i < 2; i++) {
+			ImageInputStream is = source.createImageInputStream();
+			assertEquals(data.length, is.length());
+			BufferedImage image = ImageIO.read(is);
+			assertEquals(expected.getWidth(), image.getWidth());
+			assertEquals(expected.getHeight(), image.getHeight());
+			assertEquals(expected.getRGB(17, 23), image.getRGB(17, 23));
+		}
+	}
+}
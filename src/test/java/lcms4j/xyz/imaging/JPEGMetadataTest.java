@@ -0,0 +1,155 @@
+package lcms4j.xyz.imaging;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link JPEGMetadata} class
+ */
+public class JPEGMetadataTest {
+
+	/** Folder of input test images */
+	private static final File INPUT_FOLDER = new File("src/test/resources/input");
+
+	/**
+	 * Test method for {@link JPEGMetadata#load(File)}.
+	 */
+	@Test
+	public void testLoad() {
+		// EXIF RGB image, with Adobe YCbCr transform, embedded profile and thumbnail
+		JPEGMetadata md = new JPEGMetadata();
+		assertTrue(md.load(new File(INPUT_FOLDER, "image-srgb.jpg")));
+		assertEquals(1000, md.getWidth());
+		assertEquals(625, md.getHeight());
+		assertTrue(md.isRGB());
+		assertEquals(96.0, md.getDpiX(), 0.0);
+		assertEquals(96.0, md.getDpiY(), 0.0);
+		assertEquals(JPEGMetadata.EXIF_CS_SRGB, md.getExifColorSpace());
+		assertTrue(md.isEXIF());
+		assertFalse(md.isJFIF());
+		assertTrue(md.isAdobeApp14Found());
+		assertEquals(JPEGMetadata.ADOBE_TRANSFORM_YCbCr, md.getAdobeColorTransform());
+		assertNotNull(md.getIccProfile());
+		assertTrue(md.hasThumbnail());
+		assertNotNull(md.getThumbnailAsInputStream());
+
+		// CMYK image stored as YCCK
+		md = new JPEGMetadata();
+		assertTrue(md.load(new File(INPUT_FOLDER, "image-fogra27.jpg")));
+		assertTrue(md.isCMYK());
+		assertEquals(JPEGMetadata.ADOBE_TRANSFORM_YCCK, md.getAdobeColorTransform());
+
+		// Greyscale image
+		md = new JPEGMetadata();
+		assertTrue(md.load(new File(INPUT_FOLDER, "image-grey.jpg")));
+		assertTrue(md.isGreyscale());
+	}
+
+	/**
+	 * Test method for {@link JPEGMetadata#load(ByteBuffer, File)}, checking that bytes in memory give the same
+	 * metadata as the mapped file, and that non JPEG data is rejected.
+	 */
+	@Test
+	public void testLoadBytes() throws Exception {
+		File file = new File(INPUT_FOLDER, "image-srgb.jpg");
+		JPEGMetadata fromFile = new JPEGMetadata();
+		assertTrue(fromFile.load(file));
+		JPEGMetadata fromBytes = new JPEGMetadata();
+		assertTrue(fromBytes.load(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), null));
+		assertEquals(fromFile.getWidth(), fromBytes.getWidth());
+		assertEquals(fromFile.getHeight(), fromBytes.getHeight());
+		assertEquals(fromFile.getDpiX(), fromBytes.getDpiX(), 0.0);
+		assertEquals(fromFile.getExifColorSpace(), fromBytes.getExifColorSpace());
+		assertArrayEquals(fromFile.getIccProfile().getData(), fromBytes.getIccProfile().getData());
+
+		// Thumbnail is read from the bytes
+		assertNotNull(fromBytes.getThumbnailAsInputStream());
+
+		// Direct buffers and streams, which are reset after probing if they support marks
+		byte[] data = Files.readAllBytes(file.toPath());
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 10);
+		direct.position(10);
+		direct.put(data);
+		direct.position(10);
+		ImageMetadata md = ImageMetadata.getInstance(direct);
+		assertTrue(md instanceof JPEGMetadata);
+		assertEquals(10, direct.position());
+		assertEquals(fromFile.getWidth(), md.getWidth());
+		assertArrayEquals(fromFile.getIccProfile().getData(), md.getIccProfile().getData());
+		try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+			md = ImageMetadata.getInstance(is);
+			assertEquals(fromFile.getHeight(), md.getHeight());
+			assertEquals(0xFF, is.read());
+			assertEquals(0xD8, is.read());
+		}
+
+		// Not a JPEG image, and truncated JPEG image
+		JPEGMetadata jpeg = new JPEGMetadata();
+		assertFalse(jpeg.load(ByteBuffer.wrap(new byte[] {(byte) 0x89, 'P', 'N', 'G'}), null));
+		assertFalse(jpeg.isTruncated());
+		assertFalse(jpeg.load(ByteBuffer.wrap(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1, 0x10}), null));
+		assertTrue(jpeg.isTruncated());
+	}
+
+	/**
+	 * Test method for {@link JPEGMetadata#load(ByteBuffer, File)}, checking that only bytes ending before the image
+	 * data are truncated, and that malformed images fail without reading more bytes of the file.
+	 * @throws Exception On unexpected error.
+	 */
+	@Test
+	public void testLoadTruncated() throws Exception {
+		byte[] data = Files.readAllBytes(new File(INPUT_FOLDER, "image-srgb.jpg").toPath());
+		JPEGMetadata md = new JPEGMetadata();
+		assertFalse(md.load(ByteBuffer.wrap(data, 0, 100).slice(), null));
+		assertTrue(md.isTruncated());
+
+		// Missing marker after the first segment
+		byte[] malformed = data.clone();
+		int position = 4 + ((malformed[4] & 0xFF) << 8 | (malformed[5] & 0xFF));
+		malformed[position] = 0;
+		assertFalse(md.load(ByteBuffer.wrap(malformed), null));
+		assertFalse(md.isTruncated());
+
+		// Malformed file bigger than the first bytes read
+		File file = File.createTempFile("lcms4j-", ".jpg");
+		try {
+			byte[] big = new byte[4 * ImageMetadata.PREFIX_SIZE];
+			System.arraycopy(malformed, 0, big, 0, position + 2);
+			Files.write(file.toPath(), big);
+			assertFalse(md.load(file));
+			assertFalse(md.isTruncated());
+			assertTrue(ImageMetadata.readInstance(file).isFailed());
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+
+	/**
+	 * Test method for {@link JPEGMetadata#getIccProfile()}, checking that images embedding the same profile
+	 * share the parsed profile.
+	 */
+	@Test
+	public void testSharedIccProfile() {
+		File file = new File(INPUT_FOLDER, "image-srgb.jpg");
+		JPEGMetadata first = new JPEGMetadata();
+		assertTrue(first.load(file));
+		JPEGMetadata second = new JPEGMetadata();
+		assertTrue(second.load(file));
+		assertNotNull(first.getIccProfile());
+		assertSame(first.getIccProfile(), second.getIccProfile());
+		assertEquals(first.getIccProfile().getData().length, first.getIccProfileSize());
+
+		// A different profile is not shared
+		JPEGMetadata other = new JPEGMetadata();
+		assertTrue(other.load(new File(INPUT_FOLDER, "image-fogra27.jpg")));
+		assertNotSame(first.getIccProfile(), other.getIccProfile());
+	}
+}
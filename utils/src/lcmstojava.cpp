@@ -26,21 +26,29 @@ int main(int argc, char** argv) {
 	cout << "public static final int TYPE_BGR_16_PLANAR     = " << TYPE_BGR_16_PLANAR     << ";" << endl;
 	cout << "public static final int TYPE_BGR_16_SE         = " << TYPE_BGR_16_SE         << ";" << endl;
 	cout << "public static final int TYPE_RGBA_8            = " << TYPE_RGBA_8            << ";" << endl;
+	cout << "public static final int TYPE_RGBA_8_PREMUL     = " << TYPE_RGBA_8_PREMUL     << ";" << endl;
 	cout << "public static final int TYPE_RGBA_8_PLANAR     = " << TYPE_RGBA_8_PLANAR     << ";" << endl;
 	cout << "public static final int TYPE_RGBA_16           = " << TYPE_RGBA_16           << ";" << endl;
+	cout << "public static final int TYPE_RGBA_16_PREMUL    = " << TYPE_RGBA_16_PREMUL    << ";" << endl;
 	cout << "public static final int TYPE_RGBA_16_PLANAR    = " << TYPE_RGBA_16_PLANAR    << ";" << endl;
 	cout << "public static final int TYPE_RGBA_16_SE        = " << TYPE_RGBA_16_SE        << ";" << endl;
 	cout << "public static final int TYPE_ARGB_8            = " << TYPE_ARGB_8            << ";" << endl;
+	cout << "public static final int TYPE_ARGB_8_PREMUL     = " << TYPE_ARGB_8_PREMUL     << ";" << endl;
 	cout << "public static final int TYPE_ARGB_8_PLANAR     = " << TYPE_ARGB_8_PLANAR     << ";" << endl;
 	cout << "public static final int TYPE_ARGB_16           = " << TYPE_ARGB_16           << ";" << endl;
+	cout << "public static final int TYPE_ARGB_16_PREMUL    = " << TYPE_ARGB_16_PREMUL    << ";" << endl;
 	cout << "public static final int TYPE_ABGR_8            = " << TYPE_ABGR_8            << ";" << endl;
+	cout << "public static final int TYPE_ABGR_8_PREMUL     = " << TYPE_ABGR_8_PREMUL     << ";" << endl;
 	cout << "public static final int TYPE_ABGR_8_PLANAR     = " << TYPE_ABGR_8_PLANAR     << ";" << endl;
 	cout << "public static final int TYPE_ABGR_16           = " << TYPE_ABGR_16           << ";" << endl;
+	cout << "public static final int TYPE_ABGR_16_PREMUL    = " << TYPE_ABGR_16_PREMUL    << ";" << endl;
 	cout << "public static final int TYPE_ABGR_16_PLANAR    = " << TYPE_ABGR_16_PLANAR    << ";" << endl;
 	cout << "public static final int TYPE_ABGR_16_SE        = " << TYPE_ABGR_16_SE        << ";" << endl;
 	cout << "public static final int TYPE_BGRA_8            = " << TYPE_BGRA_8            << ";" << endl;
+	cout << "public static final int TYPE_BGRA_8_PREMUL     = " << TYPE_BGRA_8_PREMUL     << ";" << endl;
 	cout << "public static final int TYPE_BGRA_8_PLANAR     = " << TYPE_BGRA_8_PLANAR     << ";" << endl;
 	cout << "public static final int TYPE_BGRA_16           = " << TYPE_BGRA_16           << ";" << endl;
+	cout << "public static final int TYPE_BGRA_16_PREMUL    = " << TYPE_BGRA_16_PREMUL    << ";" << endl;
 	cout << "public static final int TYPE_BGRA_16_SE        = " << TYPE_BGRA_16_SE        << ";" << endl;
 	cout << "public static final int TYPE_CMY_8             = " << TYPE_CMY_8             << ";" << endl;
 	cout << "public static final int TYPE_CMY_8_PLANAR      = " << TYPE_CMY_8_PLANAR      << ";" << endl;